@@ -7,6 +7,18 @@ import mms.utility.Packable;
  */
 public class Furniture implements Packable {
 
+    /**
+     * Description of each type of furniture, indexed by ordinal, shared by every piece of
+     * furniture of that type
+     */
+    private static final String[] DESCRIPTIONS = new String[FurnitureType.values().length];
+
+    static {
+        for (FurnitureType type : FurnitureType.values()) {
+            DESCRIPTIONS[type.ordinal()] = "Furniture (" + type.name() + ")";
+        }
+    }
+
     /**
      * Type of the furniture
      */
@@ -35,21 +47,21 @@ public class Furniture implements Packable {
      */
     @Override
     public String toString() {
-        return String.format("Furniture (%s)", type.name());
+        return DESCRIPTIONS[type.ordinal()];
     }
 
     @Override
     public double getWidth() {
-        return type.width * 100;
+        return type.getDimensions().getWidth();
     }
 
     @Override
     public double getHeight() {
-        return type.height * 100;
+        return type.getDimensions().getHeight();
     }
 
     @Override
     public double getLength() {
-        return type.length * 100;
+        return type.getDimensions().getLength();
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package mms.furniture;
 
+import mms.utility.Dimensions;
+
 /**
  * Enum to represent the size of different types of furniture with a width, length and height
  */
@@ -44,9 +46,23 @@ public enum FurnitureType {
      */
     public final double length;
 
+    /**
+     * Dimensions of the furniture in cm, shared by every piece of furniture of this type
+     */
+    private final Dimensions dimensions;
+
     private FurnitureType(double width, double height, double length) {
         this.width = width;
         this.height = height;
         this.length = length;
+        this.dimensions = new Dimensions(width * 100, height * 100, length * 100);
+    }
+
+    /**
+     * Returns the dimensions of this type of furniture in cm
+     * @return dimensions in cm
+     */
+    public Dimensions getDimensions() {
+        return dimensions;
     }
 }
\ No newline at end of file
@@ -0,0 +1,572 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.StorageListener;
+import mms.storage.StorageVisitor;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Evens out how full a fleet of moving trucks is, by moving boxes, bags, furniture and other
+ * items from fuller trucks to emptier ones.
+ * <p>
+ * A truck can only give up the item that would come out next (its first piece of furniture, or
+ * once it has none, the last thing packed), and only takes things other than furniture while it
+ * holds no furniture. Each move therefore takes the next item out of the fullest truck that can
+ * usefully give one up, and packs it into the emptiest truck that will take it, as long as that
+ * leaves the two trucks closer together than before. Moves stop once every truck is within the
+ * given tolerance of each other, or no such move is left.
+ * <p>
+ * The balancer listens to the trucks it tracks, and keeps a summary of what is packed directly
+ * into each one up to date as items are packed and unpacked anywhere inside them. Planning only
+ * looks at these summaries, and at the contents of the trucks it moves items between, so
+ * rebalancing after a few changes does not look through the whole fleet again. The summaries
+ * rely on each truck unpacking furniture first, so a tracked truck cannot be given a different
+ * unpack policy.
+ */
+public class FleetBalancer implements StorageListener {
+
+    /**
+     * How the fullness of a truck is measured
+     */
+    private final LoadMeasure measure;
+
+    /**
+     * Summary of each tracked truck
+     */
+    private final Map<Storage, TruckState> states;
+
+    /**
+     * Tracked trucks, emptiest first
+     */
+    private final TreeSet<TruckState> byLoad;
+
+    /**
+     * Number given to the next truck tracked, to order trucks that are equally full
+     */
+    private long nextId;
+
+    /**
+     * Creates a balancer that is not tracking any trucks.
+     * @param measure how to measure how full a truck is
+     */
+    public FleetBalancer(LoadMeasure measure) {
+        this.measure = measure;
+        this.states = new IdentityHashMap<>();
+        this.byLoad = new TreeSet<>(Comparator.comparingDouble((TruckState state) -> state.load)
+                .thenComparingLong(state -> state.id));
+    }
+
+    /**
+     * Starts balancing the given truck with the others being tracked.
+     * @param truck truck to track
+     * @throws IllegalArgumentException if the truck is already tracked, or does not unpack
+     * {@link UnpackPolicy#furnitureFirst() furniture first}
+     */
+    public void track(MovingTruck truck) throws IllegalArgumentException {
+        if (states.containsKey(truck)) {
+            throw new IllegalArgumentException("Truck is already tracked");
+        }
+        if (truck.getUnpackPolicy() != UnpackPolicy.furnitureFirst()) {
+            throw new IllegalArgumentException("Truck does not unpack furniture first");
+        }
+        TruckState state = new TruckState(truck, nextId++);
+        truck.walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                if (depth == 1) {
+                    // Storage objects packed inside others are always packable
+                    state.added((Packable) storage);
+                }
+                return depth == 0;
+            }
+
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                state.added(item);
+            }
+        });
+        state.load = load(state);
+        states.put(truck, state);
+        byLoad.add(state);
+        truck.addListener(this);
+    }
+
+    /**
+     * Stops balancing the given truck.
+     * @param truck truck previously passed to {@link #track(MovingTruck)}
+     */
+    public void untrack(MovingTruck truck) {
+        TruckState state = states.remove(truck);
+        if (state != null) {
+            byLoad.remove(state);
+            truck.removeListener(this);
+        }
+    }
+
+    /**
+     * Returns how full the given truck is, by the balancer's measure
+     * @param truck tracked truck
+     * @return load of the truck
+     * @throws IllegalArgumentException if the truck is not tracked
+     */
+    public double getLoad(MovingTruck truck) throws IllegalArgumentException {
+        return stateOf(truck).load;
+    }
+
+    /**
+     * Returns the difference between the fullest and the emptiest tracked truck
+     * @return spread of the loads; 0 if no trucks are tracked
+     */
+    public double getImbalance() {
+        return byLoad.isEmpty() ? 0 : byLoad.last().load - byLoad.first().load;
+    }
+
+    /**
+     * Works out the moves that would balance the tracked trucks, without changing them.
+     * @param tolerance difference between the fullest and emptiest truck that is close enough
+     * @param maxMoves largest number of moves to propose
+     * @return moves, in the order they have to be made
+     */
+    public List<TruckMove> plan(double tolerance, int maxMoves) {
+        TreeSet<Trial> trials = new TreeSet<>(Comparator.comparingDouble(Trial::load)
+                .thenComparingLong(trial -> trial.state.id));
+        for (TruckState state : byLoad) {
+            trials.add(new Trial(state));
+        }
+        List<TruckMove> moves = new ArrayList<>();
+        while (moves.size() < maxMoves && trials.size() > 1) {
+            double lightest = trials.first().load();
+            TruckMove move = null;
+            for (Trial donor : trials.descendingSet()) {
+                if (donor.load() - lightest <= tolerance) {
+                    break;
+                }
+                move = findMove(trials, donor);
+                if (move != null) {
+                    break;
+                }
+            }
+            if (move == null) {
+                break;
+            }
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    /**
+     * Makes the given moves, one after another. Every move is checked against the trucks as
+     * they are now before any of them is made, so a plan that no longer fits the trucks is
+     * refused without changing anything.
+     * <p>
+     * Packing can still fail once the moves have started, if something other than the truck
+     * (such as a listener) refuses an item. The item is then packed back into the truck it came
+     * from, after everything else in it, which can change the order that truck unpacks in. The
+     * remaining moves are not made, and the rest of the plan should not be applied; plan again
+     * instead.
+     * @param moves moves from {@link #plan(double, int)}
+     * @throws IllegalArgumentException if a move is to or from a truck that is not tracked
+     * @throws IllegalStateException if the item of a move would not be the next to come out of
+     * its truck, or would not be taken by the truck it is moved to, because the trucks have
+     * changed since the moves were planned; no moves are made in this case. Also thrown if a
+     * truck gives up a different item than planned once the moves have started; the item is
+     * packed back into the truck it came from
+     * @throws PackingException if an item is refused part way through the moves; the item is
+     * packed back into the truck it came from
+     */
+    public void apply(List<TruckMove> moves)
+            throws IllegalArgumentException, IllegalStateException, PackingException {
+        Map<TruckState, Trial> trials = new IdentityHashMap<>();
+        for (TruckMove move : moves) {
+            Trial from = trials.computeIfAbsent(stateOf(move.getFrom()), Trial::new);
+            Trial to = trials.computeIfAbsent(stateOf(move.getTo()), Trial::new);
+            if (from.nextOut() != move.getItem()) {
+                throw new IllegalStateException("Item is not the next to come out of its truck");
+            }
+            if (!to.accepts(move.getItem())) {
+                throw new IllegalStateException("Item would not fit in the truck it is moved to");
+            }
+            from.take();
+            to.give(move.getItem());
+        }
+        for (TruckMove move : moves) {
+            Packable item = move.getFrom().unpack();
+            if (item != move.getItem()) {
+                IllegalStateException e =
+                        new IllegalStateException("Truck gave up a different item than planned");
+                putBack(move, item, e);
+                throw e;
+            }
+            try {
+                move.getTo().pack(item);
+            } catch (PackingException e) {
+                putBack(move, item, e);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Works out the moves that would balance the tracked trucks, and makes them.
+     * @param tolerance difference between the fullest and emptiest truck that is close enough
+     * @param maxMoves largest number of moves to make
+     * @return moves made
+     * @throws PackingException if an item cannot be packed into the truck it is moved to
+     */
+    public List<TruckMove> rebalance(double tolerance, int maxMoves) throws PackingException {
+        List<TruckMove> moves = plan(tolerance, maxMoves);
+        apply(moves);
+        return moves;
+    }
+
+    /**
+     * Refuses to let a tracked truck stop unpacking furniture first, which the balancer's
+     * summary of the truck relies on.
+     * @throws IllegalArgumentException if the storage object is a tracked truck and the policy
+     * is not {@link UnpackPolicy#furnitureFirst()}
+     */
+    @Override
+    public void checkUnpackPolicy(Storage storage, UnpackPolicy policy)
+            throws IllegalArgumentException {
+        if (states.containsKey(storage) && policy != UnpackPolicy.furnitureFirst()) {
+            throw new IllegalArgumentException("Tracked trucks must unpack furniture first");
+        }
+    }
+
+    @Override
+    public void itemPacked(Storage container, Packable item) {
+        TruckState state = states.get(container);
+        if (state != null) {
+            state.added(item);
+        } else {
+            state = truckHolding(container);
+        }
+        if (state != null) {
+            reindex(state);
+        }
+    }
+
+    @Override
+    public void itemUnpacked(Storage container, Packable item) {
+        TruckState state = states.get(container);
+        if (state != null) {
+            state.removed(item);
+        } else {
+            state = truckHolding(container);
+        }
+        if (state != null) {
+            reindex(state);
+        }
+    }
+
+    /**
+     * Tries to move the next item out of the given truck into the emptiest truck that will take
+     * it, if that brings the two trucks closer together.
+     * @param trials trucks being planned for, emptiest first
+     * @param donor truck to take the item from
+     * @return the move; null if there is none
+     */
+    private TruckMove findMove(TreeSet<Trial> trials, Trial donor) {
+        Packable item = donor.nextOut();
+        if (item == null) {
+            return null;
+        }
+        double amount = amount(item);
+        if (amount <= 0) {
+            return null;
+        }
+        for (Trial receiver : trials) {
+            if (receiver.load() + amount >= donor.load()) {
+                // Every truck from here on is at least as full
+                return null;
+            }
+            if (receiver.accepts(item)) {
+                trials.remove(donor);
+                trials.remove(receiver);
+                donor.take();
+                receiver.give(item);
+                trials.add(donor);
+                trials.add(receiver);
+                return new TruckMove(donor.state.truck, receiver.state.truck, item);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Packs an item that could not be moved back into the truck it came from.
+     * @param move move the item was taken out for
+     * @param item item taken out of the truck; nothing is packed if null
+     * @param failure why the item could not be moved, which a failure to pack it back is added to
+     */
+    private static void putBack(TruckMove move, Packable item, Exception failure) {
+        if (item == null) {
+            return;
+        }
+        try {
+            move.getFrom().pack(item);
+        } catch (PackingException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    /**
+     * Returns the tracked truck the given storage object is packed in.
+     * @param container storage object inside a tracked truck
+     * @return summary of the truck; null if it is not in a tracked truck
+     */
+    private TruckState truckHolding(Storage container) {
+        for (Storage storage = container.getParent(); storage != null;
+                storage = storage.getParent()) {
+            TruckState state = states.get(storage);
+            if (state != null) {
+                return state;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Moves a truck to its new place in the order of loads, if its load has changed.
+     * @param state summary of the truck
+     */
+    private void reindex(TruckState state) {
+        double load = load(state);
+        if (load != state.load) {
+            byLoad.remove(state);
+            state.load = load;
+            byLoad.add(state);
+        }
+    }
+
+    private TruckState stateOf(MovingTruck truck) throws IllegalArgumentException {
+        TruckState state = states.get(truck);
+        if (state == null) {
+            throw new IllegalArgumentException("Truck is not tracked");
+        }
+        return state;
+    }
+
+    private double load(TruckState state) {
+        return measure == LoadMeasure.OCCUPIED_CAPACITY
+                ? state.truck.getOccupiedCapacity() : state.volume;
+    }
+
+    /**
+     * Returns how much moving the given item changes the load of a truck.
+     */
+    private double amount(Packable item) {
+        return measure == LoadMeasure.OCCUPIED_CAPACITY ? weight(item) : volume(item);
+    }
+
+    /**
+     * Returns the number of items the given item counts as towards a truck's occupied capacity.
+     */
+    private static int weight(Packable item) {
+        return item instanceof Storage ? ((Storage) item).getOccupiedCapacity() : 1;
+    }
+
+    private static double volume(Packable item) {
+        return item.getWidth() * item.getHeight() * item.getLength();
+    }
+
+    /**
+     * Summary of what is packed directly into a tracked truck.
+     */
+    private static class TruckState {
+
+        /**
+         * Truck being summarised
+         */
+        private final MovingTruck truck;
+
+        /**
+         * Number to order trucks that are equally full
+         */
+        private final long id;
+
+        /**
+         * Furniture packed directly into the truck, in the order it comes out
+         */
+        private final Deque<Packable> furniture;
+
+        /**
+         * Everything else packed directly into the truck, in the order it was packed (so it
+         * comes out from the end)
+         */
+        private final Deque<Packable> others;
+
+        /**
+         * Total widths, heights, lengths and volumes of the items packed directly into the truck
+         */
+        private double width;
+        private double height;
+        private double length;
+        private double volume;
+
+        /**
+         * Load of the truck when it was last placed in the order of loads
+         */
+        private double load;
+
+        private TruckState(MovingTruck truck, long id) {
+            this.truck = truck;
+            this.id = id;
+            this.furniture = new ArrayDeque<>();
+            this.others = new ArrayDeque<>();
+        }
+
+        private void added(Packable item) {
+            (item instanceof Furniture ? furniture : others).addLast(item);
+            width += item.getWidth();
+            height += item.getHeight();
+            length += item.getLength();
+            volume += volume(item);
+        }
+
+        private void removed(Packable item) {
+            Deque<Packable> items = item instanceof Furniture ? furniture : others;
+            if (items.peekFirst() == item) {
+                items.pollFirst();
+            } else if (items.peekLast() == item) {
+                items.pollLast();
+            } else {
+                items.removeFirstOccurrence(item);
+            }
+            if (furniture.isEmpty() && others.isEmpty()) {
+                // Drop any rounding error left over from the subtractions
+                width = height = length = volume = 0;
+            } else {
+                width -= item.getWidth();
+                height -= item.getHeight();
+                length -= item.getLength();
+                volume -= volume(item);
+            }
+        }
+
+        private Packable nextOut() {
+            return furniture.isEmpty() ? others.peekLast() : furniture.peekFirst();
+        }
+    }
+
+    /**
+     * A truck as it would be after the moves planned so far. The truck's summary is only copied
+     * once a move involves the truck.
+     */
+    private class Trial {
+
+        /**
+         * Summary of the truck as it is now
+         */
+        private final TruckState state;
+
+        /**
+         * Furniture and everything else in the truck; the summary's own until first changed
+         */
+        private Deque<Packable> furniture;
+        private Deque<Packable> others;
+
+        /**
+         * Items in the truck, counting those inside bags and boxes
+         */
+        private double items;
+
+        /**
+         * Total widths, heights, lengths and volumes of the items packed directly into the truck
+         */
+        private double width;
+        private double height;
+        private double length;
+        private double volume;
+
+        /**
+         * Whether furniture and others have been copied from the summary
+         */
+        private boolean copied;
+
+        private Trial(TruckState state) {
+            this.state = state;
+            this.furniture = state.furniture;
+            this.others = state.others;
+            this.items = state.truck.getOccupiedCapacity();
+            this.width = state.width;
+            this.height = state.height;
+            this.length = state.length;
+            this.volume = state.volume;
+        }
+
+        private double load() {
+            return measure == LoadMeasure.OCCUPIED_CAPACITY ? items : volume;
+        }
+
+        private Packable nextOut() {
+            return furniture.isEmpty() ? others.peekLast() : furniture.peekFirst();
+        }
+
+        /**
+         * Returns whether the truck would take the given item, by the same rules as
+         * {@link MovingTruck#pack(Packable)}.
+         */
+        private boolean accepts(Packable item) {
+            MovingTruck truck = state.truck;
+            if (!(item instanceof Furniture) && !furniture.isEmpty()) {
+                return false;
+            }
+            if (items >= truck.getCapacity()) {
+                return false;
+            }
+            boolean tooWide = width + item.getWidth() > truck.getWidth();
+            boolean tooHigh = height + item.getHeight() > truck.getHeight();
+            // A truck's length includes the 1500 taken up by the cab
+            boolean tooLong = length + item.getLength() > truck.getLength() - 1500;
+            return !(tooWide ? (tooHigh || tooLong) : (tooHigh && tooLong));
+        }
+
+        /**
+         * Takes the next item out of the truck.
+         */
+        private void take() {
+            copy();
+            Packable item = furniture.isEmpty() ? others.pollLast() : furniture.pollFirst();
+            items -= weight(item);
+            width -= item.getWidth();
+            height -= item.getHeight();
+            length -= item.getLength();
+            volume -= volume(item);
+        }
+
+        /**
+         * Packs an item into the truck.
+         */
+        private void give(Packable item) {
+            copy();
+            (item instanceof Furniture ? furniture : others).addLast(item);
+            items += weight(item);
+            width += item.getWidth();
+            height += item.getHeight();
+            length += item.getLength();
+            volume += volume(item);
+        }
+
+        private void copy() {
+            if (!copied) {
+                furniture = new ArrayDeque<>(furniture);
+                others = new ArrayDeque<>(others);
+                copied = true;
+            }
+        }
+    }
+}
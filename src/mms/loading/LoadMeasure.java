@@ -0,0 +1,18 @@
+package mms.loading;
+
+/**
+ * Enum to represent the ways a {@link FleetBalancer} can measure how full a truck is
+ */
+public enum LoadMeasure {
+    /**
+     * Number of items in the truck, counting the items inside bags and boxes
+     * ({@link mms.storage.Storage#getOccupiedCapacity()})
+     */
+    OCCUPIED_CAPACITY,
+
+    /**
+     * Total volume (width x height x length) of the boxes, bags, furniture and other items
+     * packed directly into the truck
+     */
+    VOLUME
+}
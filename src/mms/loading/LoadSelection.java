@@ -0,0 +1,94 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.storage.MovingTruck;
+import mms.utility.Packable;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The items chosen by {@link SelectiveLoader} to load into a moving truck, and the items left
+ * behind.
+ */
+public class LoadSelection {
+
+    /**
+     * Items and containers chosen, in the order they are loaded
+     */
+    private final List<Packable> selected;
+
+    /**
+     * Items and containers left behind, in the order they were given
+     */
+    private final List<Packable> leftOver;
+
+    /**
+     * Total value of the items and containers chosen
+     */
+    private final double value;
+
+    /**
+     * Whether the items chosen are known to be the most valuable that fit
+     */
+    private final boolean exact;
+
+    /**
+     * Creates a selection.
+     * @param selected items and containers chosen, everything but furniture first
+     * @param leftOver items and containers left behind
+     * @param value total value of the items and containers chosen
+     * @param exact whether the items chosen are known to be the most valuable that fit
+     */
+    LoadSelection(List<Packable> selected, List<Packable> leftOver, double value,
+                  boolean exact) {
+        this.selected = Collections.unmodifiableList(selected);
+        this.leftOver = Collections.unmodifiableList(leftOver);
+        this.value = value;
+        this.exact = exact;
+    }
+
+    /**
+     * Returns the items and containers chosen, in the order they should be loaded
+     * @return items chosen
+     */
+    public List<Packable> getSelected() {
+        return selected;
+    }
+
+    /**
+     * Returns the items and containers left behind
+     * @return items left behind
+     */
+    public List<Packable> getLeftOver() {
+        return leftOver;
+    }
+
+    /**
+     * Returns the total value of the items and containers chosen
+     * @return value loaded
+     */
+    public double getValue() {
+        return value;
+    }
+
+    /**
+     * Returns whether the items chosen are known to be the most valuable that fit, rather than
+     * an approximation
+     * @return true if the selection was solved exactly
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Packs the items and containers chosen into the given truck.
+     * @param truck truck the selection was made for, unchanged since
+     * @throws PackingException if an item or container does not fit in the truck
+     */
+    public void load(MovingTruck truck) throws PackingException {
+        for (Packable item : selected) {
+            truck.pack(item);
+        }
+    }
+}
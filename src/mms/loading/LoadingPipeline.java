@@ -0,0 +1,598 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.personal.Personal;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.utility.Packable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Loads items into moving trucks the way a moving crew does: personal items go into bags, full
+ * bags go into boxes, and full boxes and furniture go onto trucks. Each step runs as a separate
+ * stage on its own thread, so bags are being filled while earlier boxes are being loaded.
+ * <p>
+ * Stages are connected by queues that hold a limited number of items. When a stage falls behind
+ * and its queue fills up, the stage before it waits for room (backpressure), and so on back to
+ * {@link #submit(Packable)}, so a slow stage cannot cause items to pile up without limit.
+ * <p>
+ * A stage keeps packing into its current container until an item does not fit. The container is
+ * then sealed and passed to the next stage, and the item goes into a new container. Items that
+ * do not fit even into a new, empty container are set aside and can be found with
+ * {@link #getRejected()}. Since a moving truck only takes furniture once it has any, the truck
+ * stage holds furniture back and loads it last, in the order it arrived, just before sealing each
+ * truck.
+ * <p>
+ * Items submitted to a pipeline must not be used elsewhere while it is running. Pipelines can
+ * only be run once.
+ */
+public class LoadingPipeline implements AutoCloseable {
+
+    /**
+     * Marks the end of the items in a queue
+     */
+    private static final Work END = new Work(null);
+
+    /**
+     * Creates the bags personal items are packed into
+     */
+    private final Supplier<? extends Bag> bagFactory;
+
+    /**
+     * Creates the boxes bags are packed into
+     */
+    private final Supplier<? extends Box> boxFactory;
+
+    /**
+     * Creates the trucks boxes and furniture are loaded onto
+     */
+    private final Supplier<? extends MovingTruck> truckFactory;
+
+    /**
+     * Queue feeding each stage
+     */
+    private final Map<LoadingStage, BlockingQueue<Work>> queues;
+
+    /**
+     * Stats for each stage
+     */
+    private final Map<LoadingStage, StageStats> stats;
+
+    /**
+     * Sealed trucks, in the order they were filled; only touched by the truck stage until it ends
+     */
+    private final List<MovingTruck> trucks;
+
+    /**
+     * Items that did not fit into an empty container
+     */
+    private final Queue<Packable> rejected;
+
+    /**
+     * Thread running each stage
+     */
+    private final List<Thread> threads;
+
+    /**
+     * First unexpected exception thrown by a stage; null if there has been none
+     */
+    private volatile RuntimeException failure;
+
+    /**
+     * Stage that threw the failure
+     */
+    private volatile LoadingStage failedStage;
+
+    /**
+     * Whether the stages have been started
+     */
+    private boolean started;
+
+    /**
+     * Whether the end of the items has been submitted
+     */
+    private boolean finished;
+
+    /**
+     * Creates a pipeline that has not been started.
+     * @param bagFactory creates a new, empty bag each time it is called
+     * @param boxFactory creates a new, empty box each time it is called
+     * @param truckFactory creates a new, empty truck each time it is called
+     * @param queueCapacity number of items each stage's queue can hold
+     * @throws IllegalArgumentException if queueCapacity < 1
+     */
+    public LoadingPipeline(Supplier<? extends Bag> bagFactory, Supplier<? extends Box> boxFactory,
+                           Supplier<? extends MovingTruck> truckFactory, int queueCapacity)
+            throws IllegalArgumentException {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity < 1");
+        }
+        this.bagFactory = bagFactory;
+        this.boxFactory = boxFactory;
+        this.truckFactory = truckFactory;
+        this.queues = new EnumMap<>(LoadingStage.class);
+        this.stats = new EnumMap<>(LoadingStage.class);
+        for (LoadingStage stage : LoadingStage.values()) {
+            queues.put(stage, new ArrayBlockingQueue<>(queueCapacity));
+            stats.put(stage, new StageStats(stage));
+        }
+        this.trucks = new ArrayList<>();
+        this.rejected = new ConcurrentLinkedQueue<>();
+        this.threads = new ArrayList<>();
+    }
+
+    /**
+     * Starts a thread for each stage.
+     * @throws IllegalStateException if the pipeline has already been started
+     */
+    public void start() throws IllegalStateException {
+        if (started) {
+            throw new IllegalStateException("Pipeline has already been started");
+        }
+        started = true;
+        List<Stage> stages = List.of(new IntakeStage(),
+                new ContainerStage<>(LoadingStage.BAGS, bagFactory, LoadingStage.BOXES),
+                new ContainerStage<>(LoadingStage.BOXES, boxFactory, LoadingStage.TRUCKS),
+                new TruckStage());
+        for (Stage stage : stages) {
+            Thread thread = new Thread(stage,
+                    "loading-" + stage.stage.name().toLowerCase(Locale.ROOT));
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Adds an item to be loaded, waiting for room if the first stage has fallen behind.
+     * @param item item to load
+     * @throws IllegalStateException if the pipeline has not been started, or the end of the
+     * items has already been submitted
+     * @throws InterruptedException if interrupted while waiting for room
+     */
+    public void submit(Packable item) throws IllegalStateException, InterruptedException {
+        if (!started || finished) {
+            throw new IllegalStateException("Pipeline is not accepting items");
+        }
+        queues.get(LoadingStage.INTAKE).put(new Work(item));
+    }
+
+    /**
+     * Tells the pipeline that every item has been submitted, and waits for every stage to finish.
+     * Containers that are only partly full are sealed and passed on as usual.
+     * @return trucks holding the items, in the order they were filled
+     * @throws IllegalStateException if the pipeline has not been started or has already
+     * finished, or if a stage failed unexpectedly (the stage's exception is the cause)
+     * @throws InterruptedException if interrupted while waiting for the stages
+     */
+    public List<MovingTruck> finish() throws IllegalStateException, InterruptedException {
+        if (!started || finished) {
+            throw new IllegalStateException("Pipeline is not running");
+        }
+        finished = true;
+        queues.get(LoadingStage.INTAKE).put(END);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Loading failed in the " + failedStage + " stage",
+                    failure);
+        }
+        return Collections.unmodifiableList(trucks);
+    }
+
+    /**
+     * Starts the pipeline, submits every given item and waits for them to be loaded.
+     * @param items items to load
+     * @return trucks holding the items, in the order they were filled
+     * @throws IllegalStateException if the pipeline has already been started, or if a stage
+     * failed unexpectedly
+     * @throws InterruptedException if interrupted while waiting for the stages
+     */
+    public List<MovingTruck> load(Iterable<? extends Packable> items)
+            throws IllegalStateException, InterruptedException {
+        start();
+        try {
+            for (Packable item : items) {
+                submit(item);
+            }
+            return finish();
+        } finally {
+            close();
+        }
+    }
+
+    /**
+     * Returns the items that did not fit into an empty container of the kind that should hold
+     * them. The returned list is a copy.
+     * @return items that could not be loaded
+     */
+    public List<Packable> getRejected() {
+        return new ArrayList<>(rejected);
+    }
+
+    /**
+     * Returns the throughput and latency of the given stage
+     * @param stage stage to look up
+     * @return stats for the stage
+     */
+    public StageStats getStats(LoadingStage stage) {
+        return stats.get(stage);
+    }
+
+    /**
+     * Stops every stage that is still running, without waiting for queued items. Does nothing
+     * once the pipeline has finished.
+     */
+    @Override
+    public void close() {
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * An item waiting in a queue, with the time it was put there.
+     */
+    private static class Work {
+
+        /**
+         * Item waiting to be dealt with; null for {@link #END}
+         */
+        private final Packable item;
+
+        /**
+         * When the item was put in the queue
+         */
+        private final long enqueued;
+
+        private Work(Packable item) {
+            this.item = item;
+            this.enqueued = System.nanoTime();
+        }
+    }
+
+    /**
+     * One stage of the pipeline, which deals with each item from its queue in turn until it
+     * reaches the end of the items.
+     */
+    private abstract class Stage implements Runnable {
+
+        /**
+         * Which stage this is
+         */
+        private final LoadingStage stage;
+
+        /**
+         * Stats for this stage
+         */
+        private final StageStats stageStats;
+
+        private Stage(LoadingStage stage) {
+            this.stage = stage;
+            this.stageStats = stats.get(stage);
+        }
+
+        @Override
+        public void run() {
+            BlockingQueue<Work> input = queues.get(stage);
+            try {
+                for (Work work = input.take(); work != END; work = input.take()) {
+                    // After a failure, keep taking items so earlier stages are not left waiting
+                    if (failure == null) {
+                        long start = System.nanoTime();
+                        try {
+                            process(work.item);
+                        } catch (RuntimeException e) {
+                            fail(e);
+                        }
+                        stageStats.recordItem(work.enqueued, start, System.nanoTime());
+                    }
+                }
+                if (failure == null) {
+                    try {
+                        finishStage();
+                    } catch (RuntimeException e) {
+                        fail(e);
+                    }
+                }
+                endStage();
+            } catch (InterruptedException e) {
+                // Closed while running; leave the remaining items where they are
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Deals with one item from the stage's queue.
+         * @param item item to deal with
+         * @throws InterruptedException if interrupted while waiting for room downstream
+         */
+        abstract void process(Packable item) throws InterruptedException;
+
+        /**
+         * Called once every item has been dealt with, to pass on anything still held.
+         * @throws InterruptedException if interrupted while waiting for room downstream
+         */
+        abstract void finishStage() throws InterruptedException;
+
+        /**
+         * Called last of all, to tell the next stage there are no more items.
+         * @throws InterruptedException if interrupted while waiting for room downstream
+         */
+        void endStage() throws InterruptedException {
+        }
+
+        /**
+         * Passes an item to the given stage, waiting for room in its queue.
+         * @param next stage to pass the item to
+         * @param item item to pass on
+         * @throws InterruptedException if interrupted while waiting for room
+         */
+        void send(LoadingStage next, Packable item) throws InterruptedException {
+            long start = System.nanoTime();
+            queues.get(next).put(new Work(item));
+            stageStats.recordBlocked(System.nanoTime() - start);
+        }
+
+        /**
+         * Tells the given stage there are no more items.
+         * @param next stage to tell
+         * @throws InterruptedException if interrupted while waiting for room
+         */
+        void sendEnd(LoadingStage next) throws InterruptedException {
+            queues.get(next).put(END);
+        }
+
+        /**
+         * Records that this stage has filled a container and passed it on.
+         */
+        void sealed() {
+            stageStats.recordSealed();
+        }
+
+        /**
+         * Records an unexpected exception, unless another stage has already failed.
+         * @param e exception thrown by the stage
+         */
+        private void fail(RuntimeException e) {
+            synchronized (LoadingPipeline.this) {
+                if (failure == null) {
+                    failedStage = stage;
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends personal items to be bagged, bags to be boxed and everything else to the trucks.
+     */
+    private class IntakeStage extends Stage {
+
+        private IntakeStage() {
+            super(LoadingStage.INTAKE);
+        }
+
+        @Override
+        void process(Packable item) throws InterruptedException {
+            if (item instanceof Personal) {
+                send(LoadingStage.BAGS, item);
+            } else if (item instanceof Bag) {
+                send(LoadingStage.BOXES, item);
+            } else {
+                send(LoadingStage.TRUCKS, item);
+            }
+        }
+
+        @Override
+        void finishStage() {
+        }
+
+        @Override
+        void endStage() throws InterruptedException {
+            sendEnd(LoadingStage.BAGS);
+        }
+    }
+
+    /**
+     * Packs items into containers from a factory, passing each container on to the next stage
+     * once the next item does not fit.
+     * @param <T> type of container
+     */
+    private class ContainerStage<T extends Storage & Packable> extends Stage {
+
+        /**
+         * Creates new containers
+         */
+        private final Supplier<? extends T> factory;
+
+        /**
+         * Stage full containers are passed to
+         */
+        private final LoadingStage next;
+
+        /**
+         * Container currently being filled; null if there is none
+         */
+        private T current;
+
+        /**
+         * Number of items packed into the current container
+         */
+        private int packed;
+
+        private ContainerStage(LoadingStage stage, Supplier<? extends T> factory,
+                               LoadingStage next) {
+            super(stage);
+            this.factory = factory;
+            this.next = next;
+        }
+
+        @Override
+        void process(Packable item) throws InterruptedException {
+            if (current == null) {
+                current = factory.get();
+            }
+            if (tryPack(item)) {
+                return;
+            }
+            if (packed == 0) {
+                rejected.add(item);
+                return;
+            }
+            seal();
+            current = factory.get();
+            if (!tryPack(item)) {
+                rejected.add(item);
+            }
+        }
+
+        @Override
+        void finishStage() throws InterruptedException {
+            if (packed > 0) {
+                seal();
+            }
+        }
+
+        @Override
+        void endStage() throws InterruptedException {
+            // Bags and boxes can arrive at the later stages straight from intake, so each stage
+            // only ends the next one once it has ended itself
+            sendEnd(next);
+        }
+
+        private boolean tryPack(Packable item) {
+            try {
+                current.pack(item);
+            } catch (PackingException e) {
+                return false;
+            }
+            packed++;
+            return true;
+        }
+
+        private void seal() throws InterruptedException {
+            send(next, current);
+            sealed();
+            current = null;
+            packed = 0;
+        }
+    }
+
+    /**
+     * Loads boxes and other items onto trucks, holding furniture back until each truck is about
+     * to be sealed.
+     */
+    private class TruckStage extends Stage {
+
+        /**
+         * Furniture waiting to be loaded, in the order it arrived
+         */
+        private final Deque<Packable> furniture = new ArrayDeque<>();
+
+        /**
+         * Truck currently being loaded; null if there is none
+         */
+        private MovingTruck current;
+
+        /**
+         * Number of items loaded onto the current truck
+         */
+        private int packed;
+
+        private TruckStage() {
+            super(LoadingStage.TRUCKS);
+        }
+
+        @Override
+        void process(Packable item) {
+            if (item instanceof Furniture) {
+                furniture.add(item);
+                return;
+            }
+            if (current == null) {
+                current = truckFactory.get();
+            }
+            if (tryPack(item)) {
+                return;
+            }
+            if (packed == 0) {
+                rejected.add(item);
+                return;
+            }
+            loadFurniture();
+            seal();
+            current = truckFactory.get();
+            if (!tryPack(item)) {
+                rejected.add(item);
+            }
+        }
+
+        @Override
+        void finishStage() {
+            while (!furniture.isEmpty()) {
+                if (current == null) {
+                    current = truckFactory.get();
+                }
+                loadFurniture();
+                if (furniture.isEmpty()) {
+                    break;
+                }
+                if (packed == 0) {
+                    // Too big for an empty truck
+                    rejected.add(furniture.removeFirst());
+                } else {
+                    seal();
+                }
+            }
+            if (packed > 0) {
+                seal();
+            }
+        }
+
+        /**
+         * Loads waiting furniture onto the current truck in the order it arrived, stopping at the
+         * first piece that does not fit. Stopping there, rather than trying every piece, keeps
+         * the work for each truck proportional to the furniture loaded onto it.
+         */
+        private void loadFurniture() {
+            while (!furniture.isEmpty() && tryPack(furniture.peekFirst())) {
+                furniture.removeFirst();
+            }
+        }
+
+        private boolean tryPack(Packable item) {
+            try {
+                current.pack(item);
+            } catch (PackingException e) {
+                return false;
+            }
+            packed++;
+            return true;
+        }
+
+        private void seal() {
+            trucks.add(current);
+            sealed();
+            current = null;
+            packed = 0;
+        }
+    }
+}
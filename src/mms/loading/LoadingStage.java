@@ -0,0 +1,27 @@
+package mms.loading;
+
+/**
+ * Enum to represent the stages of a {@link LoadingPipeline}, in the order items pass through
+ * them
+ */
+public enum LoadingStage {
+    /**
+     * Takes submitted items and sends each one to the stage that packs it
+     */
+    INTAKE,
+
+    /**
+     * Packs personal items into bags
+     */
+    BAGS,
+
+    /**
+     * Packs full bags into boxes
+     */
+    BOXES,
+
+    /**
+     * Loads full boxes, furniture and anything else into moving trucks
+     */
+    TRUCKS
+}
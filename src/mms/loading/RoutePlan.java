@@ -0,0 +1,191 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.storage.MovingTruck;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The order to load a moving truck in for a route, as worked out by {@link RoutePlanner}, along
+ * with what happens at each stop: the items dropped off there and the number of items for later
+ * stops that have to be unpacked and packed again to get to them.
+ */
+public class RoutePlan {
+
+    /**
+     * Items and containers in the order they are loaded
+     */
+    private final List<Packable> loadOrder;
+
+    /**
+     * Items and containers dropped off at each stop, in the order they are unpacked
+     */
+    private final List<List<Packable>> drops;
+
+    /**
+     * Number of items unpacked and packed again at each stop
+     */
+    private final int[] repacks;
+
+    /**
+     * Creates a plan from a load order.
+     * @param loadOrder items and containers in the order they are loaded; everything other than
+     * furniture first, latest stop first, then furniture, earliest stop first
+     * @param stops stop of each item or container in the load order
+     * @param furnitureStart index in the load order of the first piece of furniture
+     */
+    RoutePlan(List<Packable> loadOrder, int[] stops, int furnitureStart) {
+        this.loadOrder = Collections.unmodifiableList(loadOrder);
+        int stopCount = 0;
+        for (int stop : stops) {
+            stopCount = Math.max(stopCount, stop + 1);
+        }
+        this.drops = new ArrayList<>(stopCount);
+        for (int stop = 0; stop < stopCount; stop++) {
+            drops.add(new ArrayList<>());
+        }
+        // Furniture comes out first, in the order it was loaded
+        int[] laterFurniture = new int[stopCount + 1];
+        for (int i = furnitureStart; i < loadOrder.size(); i++) {
+            drops.get(stops[i]).add(loadOrder.get(i));
+            laterFurniture[stops[i]]++;
+        }
+        for (int stop = stopCount - 1; stop >= 0; stop--) {
+            laterFurniture[stop] += laterFurniture[stop + 1];
+        }
+        // Then everything else, in reverse
+        boolean[] needsOthers = new boolean[stopCount];
+        for (int i = furnitureStart - 1; i >= 0; i--) {
+            drops.get(stops[i]).add(loadOrder.get(i));
+            needsOthers[stops[i]] = true;
+        }
+        // Getting to anything but furniture means taking out all the furniture for later stops
+        this.repacks = new int[stopCount];
+        for (int stop = 0; stop < stopCount; stop++) {
+            repacks[stop] = needsOthers[stop] ? laterFurniture[stop + 1] : 0;
+        }
+    }
+
+    /**
+     * Returns the items and containers in the order they should be loaded
+     * @return load order
+     */
+    public List<Packable> getLoadOrder() {
+        return loadOrder;
+    }
+
+    /**
+     * Returns the number of stops on the route, which is one more than the latest stop any item
+     * or container is dropped off at
+     * @return number of stops
+     */
+    public int getStopCount() {
+        return drops.size();
+    }
+
+    /**
+     * Returns the items and containers dropped off at the given stop, in the order they come
+     * off the truck
+     * @param stop stop on the route, counting from 0
+     * @return items dropped off at the stop
+     * @throws IllegalArgumentException if stop < 0 or stop >= number of stops
+     */
+    public List<Packable> getDrops(int stop) throws IllegalArgumentException {
+        checkStop(stop);
+        return Collections.unmodifiableList(drops.get(stop));
+    }
+
+    /**
+     * Returns the number of items for later stops that have to be unpacked and packed again to
+     * get to the items for the given stop
+     * @param stop stop on the route, counting from 0
+     * @return number of items repacked at the stop
+     * @throws IllegalArgumentException if stop < 0 or stop >= number of stops
+     */
+    public int getRepackCount(int stop) throws IllegalArgumentException {
+        checkStop(stop);
+        return repacks[stop];
+    }
+
+    /**
+     * Returns the number of items unpacked and packed again over the whole route
+     * @return number of items repacked
+     */
+    public long getRepackCount() {
+        long total = 0;
+        for (int count : repacks) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * Packs every item and container into the given truck, in the planned order.
+     * @param truck empty truck to load
+     * @throws IllegalArgumentException if the truck does not unpack
+     * {@link UnpackPolicy#furnitureFirst() furniture first}
+     * @throws PackingException if an item or container does not fit in the truck
+     */
+    public void load(MovingTruck truck) throws IllegalArgumentException, PackingException {
+        if (truck.getUnpackPolicy() != UnpackPolicy.furnitureFirst()) {
+            throw new IllegalArgumentException("Truck does not unpack furniture first");
+        }
+        for (Packable item : loadOrder) {
+            truck.pack(item);
+        }
+    }
+
+    /**
+     * Unpacks the items and containers for the given stop from a truck loaded with
+     * {@link #load(MovingTruck)}. Items for later stops that come out along the way are packed
+     * back in so that they will come out in the same order as before.
+     * @param truck truck to unload
+     * @param stop stop on the route, counting from 0
+     * @return items and containers dropped off, in the order they came off the truck
+     * @throws IllegalArgumentException if stop < 0 or stop >= number of stops
+     * @throws IllegalStateException if the truck runs out before every item for the stop has
+     * been found
+     * @throws PackingException if an item for a later stop cannot be packed back in
+     */
+    public List<Packable> unloadStop(MovingTruck truck, int stop)
+            throws IllegalArgumentException, IllegalStateException, PackingException {
+        checkStop(stop);
+        Set<Packable> wanted = Collections.newSetFromMap(new IdentityHashMap<>());
+        wanted.addAll(drops.get(stop));
+        List<Packable> dropped = new ArrayList<>();
+        List<Packable> furniture = new ArrayList<>();
+        List<Packable> others = new ArrayList<>();
+        while (!wanted.isEmpty()) {
+            Packable item = truck.unpack();
+            if (item == null) {
+                throw new IllegalStateException("Truck is missing items for stop " + stop);
+            }
+            if (wanted.remove(item)) {
+                dropped.add(item);
+            } else {
+                (item instanceof Furniture ? furniture : others).add(item);
+            }
+        }
+        // Put everything else back on top in reverse, then the furniture back in order
+        for (int i = others.size() - 1; i >= 0; i--) {
+            truck.pack(others.get(i));
+        }
+        for (Packable item : furniture) {
+            truck.pack(item);
+        }
+        return dropped;
+    }
+
+    private void checkStop(int stop) throws IllegalArgumentException {
+        if (stop < 0 || stop >= drops.size()) {
+            throw new IllegalArgumentException("No stop " + stop + " on the route");
+        }
+    }
+}
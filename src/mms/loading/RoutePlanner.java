@@ -0,0 +1,135 @@
+package mms.loading;
+
+import mms.furniture.Furniture;
+import mms.storage.Storage;
+import mms.storage.StorageVisitor;
+import mms.utility.Packable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Works out the order to load a moving truck in, so that items can be dropped off at each stop
+ * of a route with as few items as possible being unpacked and packed again.
+ * <p>
+ * Moving trucks unpack furniture first in, first out, then everything else last in, first out,
+ * and will not take anything but furniture once they hold furniture. The planner therefore loads
+ * everything else first, latest stop first, so the items for the next stop are always on top,
+ * and then the furniture, earliest stop first, so it comes out in stop order. Any other order
+ * needs at least as many items moved: the only items moved are the furniture for later stops,
+ * which has to come out at every stop that needs something other than furniture, whatever the
+ * order it was loaded in.
+ * <p>
+ * Planning takes time proportional to n log n for n loads, plus the time to look inside any
+ * containers without a stop of their own.
+ */
+public class RoutePlanner {
+
+    /**
+     * Plans the loading of the given loads.
+     * <p>
+     * A load that is a storage object and has no stop of its own is dropped off at the earliest
+     * stop of anything inside it, since it has to come off the truck by then.
+     * @param loads items and containers to load, none of which may be inside another
+     * @param stopOf gives the stop each item or container is dropped off at, counting from 0 for
+     * the first stop; a negative number for items or containers without a stop
+     * @return plan for loading and unloading the truck
+     * @throws IllegalArgumentException if a load has no stop, and is not a storage object
+     * containing something with a stop
+     */
+    public static RoutePlan plan(List<? extends Packable> loads,
+                                 ToIntFunction<? super Packable> stopOf)
+            throws IllegalArgumentException {
+        List<Load> others = new ArrayList<>();
+        List<Load> furniture = new ArrayList<>();
+        for (int i = 0; i < loads.size(); i++) {
+            Packable item = loads.get(i);
+            Load load = new Load(item, stopOf(item, stopOf), i);
+            (item instanceof Furniture ? furniture : others).add(load);
+        }
+        // Others come out last in, first out, so load the latest stops first
+        others.sort(Comparator.comparingInt((Load load) -> load.stop)
+                .thenComparingInt(load -> load.index).reversed());
+        furniture.sort(Comparator.comparingInt((Load load) -> load.stop)
+                .thenComparingInt(load -> load.index));
+        List<Packable> order = new ArrayList<>(loads.size());
+        int[] stops = new int[loads.size()];
+        for (Load load : others) {
+            stops[order.size()] = load.stop;
+            order.add(load.item);
+        }
+        for (Load load : furniture) {
+            stops[order.size()] = load.stop;
+            order.add(load.item);
+        }
+        return new RoutePlan(order, stops, others.size());
+    }
+
+    /**
+     * Returns the stop a load is dropped off at.
+     */
+    private static int stopOf(Packable item, ToIntFunction<? super Packable> stopOf)
+            throws IllegalArgumentException {
+        int stop = stopOf.applyAsInt(item);
+        if (stop < 0 && item instanceof Storage) {
+            int[] earliest = {Integer.MAX_VALUE};
+            ((Storage) item).walk(new StorageVisitor() {
+                @Override
+                public boolean enterStorage(Storage storage, int depth) {
+                    if (depth > 0) {
+                        // Storage objects packed inside others are always packable
+                        consider((Packable) storage);
+                    }
+                    return true;
+                }
+
+                @Override
+                public void visitItem(Packable inner, Storage container, int depth) {
+                    consider(inner);
+                }
+
+                private void consider(Packable inner) {
+                    int innerStop = stopOf.applyAsInt(inner);
+                    if (innerStop >= 0) {
+                        earliest[0] = Math.min(earliest[0], innerStop);
+                    }
+                }
+            });
+            stop = earliest[0] == Integer.MAX_VALUE ? -1 : earliest[0];
+        }
+        if (stop < 0) {
+            throw new IllegalArgumentException("No stop for " + item);
+        }
+        return stop;
+    }
+
+    /**
+     * An item or container to load, with its stop and its place in the list given to the
+     * planner.
+     */
+    private static class Load {
+
+        /**
+         * Item or container to load
+         */
+        private final Packable item;
+
+        /**
+         * Stop it is dropped off at
+         */
+        private final int stop;
+
+        /**
+         * Place in the list given to the planner
+         */
+        private final int index;
+
+        private Load(Packable item, int stop, int index) {
+            this.item = item;
+            this.stop = stop;
+            this.index = index;
+        }
+    }
+}
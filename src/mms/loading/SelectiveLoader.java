@@ -0,0 +1,372 @@
+package mms.loading;
+
+import mms.furniture.Furniture;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.utility.Packable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.IntStream;
+
+/**
+ * Chooses which items to load into a moving truck when they will not all fit, so that the items
+ * left behind are worth as little as possible.
+ * <p>
+ * A truck takes items as long as it has spare capacity, counting every item inside a bag or box,
+ * and the items packed directly into it do not go over its size in more than one of width,
+ * height and length. Choosing what to load is therefore three knapsack problems, one for each
+ * pair of width, height and length that has to stay within the truck, each limited by capacity
+ * and the two sizes. The best answer to any of them is the best load.
+ * <p>
+ * {@link #selectExact} solves each of these exactly by branch and bound, which can take time
+ * exponential in the number of items, so is only allowed for up to {@link #EXACT_LIMIT} items.
+ * {@link #selectApproximate} takes time proportional to n log n for n items: it loads items in
+ * order of value for the share of the truck they take up, and falls back to the single most
+ * valuable item if that is worth more.
+ */
+public class SelectiveLoader {
+
+    /**
+     * Largest number of items {@link #selectExact} will choose from
+     */
+    public static final int EXACT_LIMIT = 25;
+
+    /**
+     * Chooses the items to load, exactly if there are at most {@link #EXACT_LIMIT} of them and
+     * approximately otherwise.
+     * @param truck truck to load
+     * @param items items and containers that could be loaded, none of which may be inside
+     * another
+     * @param valueOf gives the value of loading each item or container
+     * @return items chosen
+     * @throws IllegalArgumentException if a value is negative or not a number
+     */
+    public static LoadSelection select(MovingTruck truck, List<? extends Packable> items,
+                                       ToDoubleFunction<? super Packable> valueOf)
+            throws IllegalArgumentException {
+        return items.size() <= EXACT_LIMIT
+                ? selectExact(truck, items, valueOf) : selectApproximate(truck, items, valueOf);
+    }
+
+    /**
+     * Chooses the most valuable items that can be loaded.
+     * @param truck truck to load
+     * @param items items and containers that could be loaded, none of which may be inside
+     * another
+     * @param valueOf gives the value of loading each item or container
+     * @return items chosen
+     * @throws IllegalArgumentException if there are more than {@link #EXACT_LIMIT} items, or a
+     * value is negative or not a number
+     */
+    public static LoadSelection selectExact(MovingTruck truck, List<? extends Packable> items,
+                                            ToDoubleFunction<? super Packable> valueOf)
+            throws IllegalArgumentException {
+        if (items.size() > EXACT_LIMIT) {
+            throw new IllegalArgumentException(
+                    "Too many items to choose from exactly: " + items.size());
+        }
+        return choose(truck, items, valueOf, true);
+    }
+
+    /**
+     * Chooses items that can be loaded, quickly but not always the most valuable ones.
+     * @param truck truck to load
+     * @param items items and containers that could be loaded, none of which may be inside
+     * another
+     * @param valueOf gives the value of loading each item or container
+     * @return items chosen
+     * @throws IllegalArgumentException if a value is negative or not a number
+     */
+    public static LoadSelection selectApproximate(MovingTruck truck,
+                                                  List<? extends Packable> items,
+                                                  ToDoubleFunction<? super Packable> valueOf)
+            throws IllegalArgumentException {
+        return choose(truck, items, valueOf, false);
+    }
+
+    private static LoadSelection choose(MovingTruck truck, List<? extends Packable> items,
+                                        ToDoubleFunction<? super Packable> valueOf,
+                                        boolean exact) throws IllegalArgumentException {
+        int n = items.size();
+        double[] values = new double[n];
+        // Space each item takes up: capacity, then width, height and length
+        double[][] sizes = new double[4][n];
+        for (int i = 0; i < n; i++) {
+            Packable item = items.get(i);
+            values[i] = valueOf.applyAsDouble(item);
+            if (!(values[i] >= 0) || Double.isInfinite(values[i])) {
+                throw new IllegalArgumentException("Bad value " + values[i] + " for " + item);
+            }
+            sizes[0][i] = item instanceof Storage ? ((Storage) item).getOccupiedCapacity() : 1;
+            sizes[1][i] = item.getWidth();
+            sizes[2][i] = item.getHeight();
+            sizes[3][i] = item.getLength();
+        }
+
+        // A truck's length includes the 1500 taken up by the cab
+        double[] room = {truck.getCapacity() - truck.getOccupiedCapacity(),
+                truck.getWidth(), truck.getHeight(), truck.getLength() - 1500};
+        boolean holdsFurniture = false;
+        for (Packable packed : truck.getElements()) {
+            room[1] -= packed.getWidth();
+            room[2] -= packed.getHeight();
+            room[3] -= packed.getLength();
+            holdsFurniture |= packed instanceof Furniture;
+        }
+
+        List<Integer> candidates = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            // Nothing but furniture goes in once the truck holds furniture
+            if (values[i] > 0 && (!holdsFurniture || items.get(i) instanceof Furniture)) {
+                candidates.add(i);
+            }
+        }
+
+        boolean[] best = new boolean[n];
+        double bestValue = 0;
+        for (int overSize = 1; overSize <= 3; overSize++) {
+            int[] limits = new int[3];
+            for (int k = 0, next = 0; k < 4; k++) {
+                if (k != overSize) {
+                    limits[next++] = k;
+                }
+            }
+            Knapsack knapsack = new Knapsack(candidates, values, sizes, room, limits);
+            if (exact) {
+                knapsack.solveExactly();
+            } else {
+                knapsack.solveGreedily();
+            }
+            if (knapsack.bestValue > bestValue) {
+                bestValue = knapsack.bestValue;
+                best = knapsack.bestChoice;
+            }
+        }
+
+        // Everything else goes in before the furniture
+        List<Packable> selected = new ArrayList<>();
+        List<Packable> furniture = new ArrayList<>();
+        List<Packable> leftOver = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Packable item = items.get(i);
+            if (!best[i]) {
+                leftOver.add(item);
+            } else {
+                (item instanceof Furniture ? furniture : selected).add(item);
+            }
+        }
+        selected.addAll(furniture);
+        return new LoadSelection(selected, leftOver, bestValue, exact);
+    }
+
+    /**
+     * Choice of items to load, with the truck's capacity and two of its sizes as limits.
+     */
+    private static class Knapsack {
+
+        /**
+         * Values of every item
+         */
+        private final double[] values;
+
+        /**
+         * Space every item takes up, for each limit
+         */
+        private final double[][] sizes;
+
+        /**
+         * Space left in the truck, for each limit
+         */
+        private final double[] room;
+
+        /**
+         * Items that fit in an empty truck, most valuable for the space they take up first
+         */
+        private final int[] order;
+
+        /**
+         * For each limit, the positions in the order of the items, most valuable for the space
+         * they take up in that limit first; only needed when solving exactly
+         */
+        private int[][] orderByLimit;
+
+        /**
+         * Value and items of the best choice found so far; which items are chosen is indexed
+         * the same as the values
+         */
+        private double bestValue;
+        private boolean[] bestChoice;
+
+        /**
+         * Items chosen by the search, and the space they use up for each limit
+         */
+        private boolean[] chosen;
+        private double[] used;
+
+        private Knapsack(List<Integer> candidates, double[] values, double[][] allSizes,
+                         double[] allRoom, int[] limits) {
+            this.values = values;
+            this.sizes = new double[limits.length][];
+            this.room = new double[limits.length];
+            for (int k = 0; k < limits.length; k++) {
+                sizes[k] = allSizes[limits[k]];
+                room[k] = allRoom[limits[k]];
+            }
+            int[] fitting = candidates.stream().mapToInt(Integer::intValue)
+                    .filter(this::fitsAlone)
+                    .toArray();
+            this.order = sortedBy(fitting, i -> values[i] / share(i));
+            this.bestChoice = new boolean[values.length];
+        }
+
+        /**
+         * Loads items in order of value for the space they take up, skipping any that do not
+         * fit, unless the single most valuable item is worth more.
+         */
+        private void solveGreedily() {
+            double[] taken = new double[room.length];
+            double value = 0;
+            boolean[] choice = new boolean[values.length];
+            int mostValuable = -1;
+            for (int i : order) {
+                if (mostValuable < 0 || values[i] > values[mostValuable]) {
+                    mostValuable = i;
+                }
+                if (fits(i, taken)) {
+                    for (int k = 0; k < taken.length; k++) {
+                        taken[k] += sizes[k][i];
+                    }
+                    choice[i] = true;
+                    value += values[i];
+                }
+            }
+            if (mostValuable >= 0 && values[mostValuable] > value) {
+                choice = new boolean[values.length];
+                choice[mostValuable] = true;
+                value = values[mostValuable];
+            }
+            bestValue = value;
+            bestChoice = choice;
+        }
+
+        /**
+         * Finds the most valuable items that fit, starting from the greedy choice and only
+         * looking further down a branch while the most it could be worth beats the best so far.
+         */
+        private void solveExactly() {
+            solveGreedily();
+            int[] positions = IntStream.range(0, order.length).toArray();
+            orderByLimit = new int[room.length][];
+            for (int k = 0; k < room.length; k++) {
+                double[] size = sizes[k];
+                orderByLimit[k] = sortedBy(positions, p -> values[order[p]] / size[order[p]]);
+            }
+            chosen = new boolean[values.length];
+            used = new double[room.length];
+            search(0, 0);
+        }
+
+        private void search(int position, double value) {
+            if (value > bestValue) {
+                bestValue = value;
+                bestChoice = chosen.clone();
+            }
+            if (position == order.length || value + bound(position) <= bestValue) {
+                return;
+            }
+            int i = order[position];
+            if (fits(i, used)) {
+                for (int k = 0; k < room.length; k++) {
+                    used[k] += sizes[k][i];
+                }
+                chosen[i] = true;
+                search(position + 1, value + values[i]);
+                chosen[i] = false;
+                for (int k = 0; k < room.length; k++) {
+                    used[k] -= sizes[k][i];
+                }
+            }
+            search(position + 1, value);
+        }
+
+        /**
+         * Returns the most the items from the given position on could add, if items could be
+         * cut to fill the space left under each limit on its own.
+         */
+        private double bound(int position) {
+            double bound = Double.POSITIVE_INFINITY;
+            for (int k = 0; k < room.length; k++) {
+                double left = room[k] - used[k];
+                double total = 0;
+                for (int p : orderByLimit[k]) {
+                    if (p < position) {
+                        continue;
+                    }
+                    int i = order[p];
+                    if (sizes[k][i] <= left) {
+                        left -= sizes[k][i];
+                        total += values[i];
+                    } else {
+                        total += values[i] * left / sizes[k][i];
+                        break;
+                    }
+                }
+                bound = Math.min(bound, total);
+            }
+            return bound;
+        }
+
+        /**
+         * Returns whether an item fits alongside items taking up the given space.
+         */
+        private boolean fits(int i, double[] taken) {
+            for (int k = 0; k < taken.length; k++) {
+                if (taken[k] + sizes[k][i] > room[k]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean fitsAlone(int i) {
+            return fits(i, new double[room.length]);
+        }
+
+        /**
+         * Returns the given numbers sorted from the highest key to the lowest, working out each
+         * key once.
+         */
+        private static int[] sortedBy(int[] numbers, IntToDoubleFunction keyOf) {
+            double[] keys = new double[numbers.length];
+            Integer[] places = new Integer[numbers.length];
+            for (int j = 0; j < numbers.length; j++) {
+                keys[j] = keyOf.applyAsDouble(numbers[j]);
+                places[j] = j;
+            }
+            Arrays.sort(places, Comparator.comparingDouble((Integer j) -> -keys[j]));
+            int[] sorted = new int[numbers.length];
+            for (int j = 0; j < numbers.length; j++) {
+                sorted[j] = numbers[places[j]];
+            }
+            return sorted;
+        }
+
+        /**
+         * Returns the share of the truck an item takes up, adding up its share of each limit.
+         */
+        private double share(int i) {
+            double share = 0;
+            for (int k = 0; k < room.length; k++) {
+                if (sizes[k][i] > 0) {
+                    share += sizes[k][i] / room[k];
+                }
+            }
+            return share;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package mms.loading;
+
+import mms.storage.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Throughput and latency of one stage of a {@link LoadingPipeline}. The numbers can be read
+ * while the pipeline is running.
+ */
+public class StageStats {
+
+    /**
+     * Stage the numbers are for
+     */
+    private final LoadingStage stage;
+
+    /**
+     * Number of items the stage has taken from its queue and dealt with
+     */
+    private final LongAdder items;
+
+    /**
+     * Number of containers the stage has filled and passed on
+     */
+    private final LongAdder sealed;
+
+    /**
+     * Time spent dealing with items, in nanoseconds
+     */
+    private final LongAdder busyNanos;
+
+    /**
+     * Time spent waiting for room in the next stage's queue, in nanoseconds
+     */
+    private final LongAdder blockedNanos;
+
+    /**
+     * Time from each item being put in the stage's queue to the stage being done with it
+     */
+    private final LatencyHistogram latency;
+
+    /**
+     * When the stage started on its first item; 0 before then
+     */
+    private volatile long firstStart;
+
+    /**
+     * When the stage finished its latest item
+     */
+    private volatile long lastEnd;
+
+    /**
+     * Creates empty stats for the given stage.
+     * @param stage stage the numbers are for
+     */
+    StageStats(LoadingStage stage) {
+        this.stage = stage;
+        this.items = new LongAdder();
+        this.sealed = new LongAdder();
+        this.busyNanos = new LongAdder();
+        this.blockedNanos = new LongAdder();
+        this.latency = new LatencyHistogram();
+    }
+
+    /**
+     * Returns the stage the numbers are for
+     * @return stage
+     */
+    public LoadingStage getStage() {
+        return stage;
+    }
+
+    /**
+     * Returns the number of items (or, for later stages, containers) the stage has dealt with
+     * @return number of items
+     */
+    public long getItemCount() {
+        return items.sum();
+    }
+
+    /**
+     * Returns the number of containers the stage has filled and passed on
+     * @return number of containers sealed
+     */
+    public long getSealedCount() {
+        return sealed.sum();
+    }
+
+    /**
+     * Returns the time the stage has spent dealing with items, not counting waiting for items to
+     * arrive or for room in the next stage's queue
+     * @return busy time in nanoseconds
+     */
+    public long getBusyNanos() {
+        return busyNanos.sum();
+    }
+
+    /**
+     * Returns the time the stage has spent waiting for room in the next stage's queue. A stage
+     * that spends a lot of time blocked is being held back by a slower stage after it.
+     * @return blocked time in nanoseconds
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.sum();
+    }
+
+    /**
+     * Returns the time from each item being put in the stage's queue to the stage being done
+     * with it
+     * @return latency of each item
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Returns the number of items dealt with per second, between the stage starting on its first
+     * item and finishing its latest one
+     * @return throughput in items per second; 0 if nothing has been dealt with
+     */
+    public double getThroughput() {
+        long start = firstStart;
+        long elapsed = lastEnd - start;
+        if (start == 0 || elapsed <= 0) {
+            return 0;
+        }
+        return getItemCount() * 1e9 / elapsed;
+    }
+
+    /**
+     * Records that the stage has dealt with an item.
+     * @param enqueued when the item was put in the stage's queue
+     * @param start when the stage started on the item
+     * @param end when the stage was done with the item
+     */
+    void recordItem(long enqueued, long start, long end) {
+        if (firstStart == 0) {
+            firstStart = start;
+        }
+        lastEnd = end;
+        items.increment();
+        busyNanos.add(end - start);
+        latency.record(end - enqueued);
+    }
+
+    /**
+     * Records that the stage has filled a container and passed it on.
+     */
+    void recordSealed() {
+        sealed.increment();
+    }
+
+    /**
+     * Records time spent waiting for room in the next stage's queue.
+     * @param nanos time spent waiting
+     */
+    void recordBlocked(long nanos) {
+        blockedNanos.add(nanos);
+    }
+
+    /**
+     * Returns the human-readable representation of the stats in the format:
+     * <p>'stage': 'items' items, 'sealed' sealed, 'throughput' items/s, p50 'p50' ns, p99
+     * 'p99' ns, blocked 'blocked' ms</p>
+     * @return string representation of the stats
+     */
+    @Override
+    public String toString() {
+        return String.format("%s: %d items, %d sealed, %.0f items/s, p50 %d ns, p99 %d ns, "
+                        + "blocked %d ms", stage, getItemCount(), getSealedCount(),
+                getThroughput(), latency.getQuantile(0.5), latency.getQuantile(0.99),
+                getBlockedNanos() / 1_000_000);
+    }
+}
@@ -0,0 +1,72 @@
+package mms.loading;
+
+import mms.storage.MovingTruck;
+import mms.utility.Packable;
+
+/**
+ * A move of one box, bag, piece of furniture or other item from one truck to another, as
+ * proposed by a {@link FleetBalancer}.
+ */
+public class TruckMove {
+
+    /**
+     * Truck the item is taken out of
+     */
+    private final MovingTruck from;
+
+    /**
+     * Truck the item is packed into
+     */
+    private final MovingTruck to;
+
+    /**
+     * Item being moved
+     */
+    private final Packable item;
+
+    /**
+     * Creates a move.
+     * @param from truck the item is taken out of
+     * @param to truck the item is packed into
+     * @param item item being moved
+     */
+    public TruckMove(MovingTruck from, MovingTruck to, Packable item) {
+        this.from = from;
+        this.to = to;
+        this.item = item;
+    }
+
+    /**
+     * Returns the truck the item is taken out of
+     * @return truck giving up the item
+     */
+    public MovingTruck getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the truck the item is packed into
+     * @return truck receiving the item
+     */
+    public MovingTruck getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the item being moved
+     * @return item
+     */
+    public Packable getItem() {
+        return item;
+    }
+
+    /**
+     * Returns the human-readable representation of the move in the format:
+     * <p>'item' : 'from' -> 'to'</p>
+     * @return string representation of the move
+     */
+    @Override
+    public String toString() {
+        return item + " : " + from + " -> " + to;
+    }
+}
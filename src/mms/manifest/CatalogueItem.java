@@ -0,0 +1,108 @@
+package mms.manifest;
+
+import mms.utility.Packable;
+
+/**
+ * A view of an item in an {@link ItemCatalogue}. Its dimensions and attributes are read straight
+ * from the catalogue each time they are asked for, so views are cheap to create and throw away.
+ * <p>
+ * Views are only meant for looking at items. To pack an item, use {@link #toPackable()} or
+ * {@link ItemCatalogue#packInto(int, mms.storage.Storage)}, since storage objects treat
+ * laptops, televisions and other furniture specially and a view is none of these.
+ */
+public class CatalogueItem implements Packable {
+
+    /**
+     * Catalogue the item is in
+     */
+    private final ItemCatalogue catalogue;
+
+    /**
+     * Id of the item in the catalogue
+     */
+    private final int id;
+
+    /**
+     * Creates a view of the given item.
+     * @param catalogue catalogue the item is in
+     * @param id id of the item
+     */
+    CatalogueItem(ItemCatalogue catalogue, int id) {
+        this.catalogue = catalogue;
+        this.id = id;
+    }
+
+    /**
+     * Returns the id of the item in its catalogue
+     * @return item id
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns what kind of item this is
+     * @return type of the item
+     */
+    public RecordType getType() {
+        return catalogue.getType(id);
+    }
+
+    /**
+     * Returns the owner of a personal item
+     * @return owner; null for furniture
+     */
+    public String getOwner() {
+        return catalogue.getOwner(id);
+    }
+
+    /**
+     * Returns the title of a book
+     * @return title; null if the item is not a book
+     */
+    public String getTitle() {
+        return catalogue.getTitle(id);
+    }
+
+    /**
+     * Returns the age of a laptop
+     * @return age; 0 if the item is not a laptop
+     */
+    public int getAge() {
+        return catalogue.getInt(id, ItemCatalogue.AGE);
+    }
+
+    @Override
+    public double getWidth() {
+        return catalogue.getDouble(id, ItemCatalogue.WIDTH);
+    }
+
+    @Override
+    public double getHeight() {
+        return catalogue.getDouble(id, ItemCatalogue.HEIGHT);
+    }
+
+    @Override
+    public double getLength() {
+        return catalogue.getDouble(id, ItemCatalogue.LENGTH);
+    }
+
+    /**
+     * Creates a new Java object for the item, leaving it in the catalogue
+     * @return new copy of the item
+     * @throws IllegalArgumentException if the item has been removed from the catalogue
+     */
+    public Packable toPackable() throws IllegalArgumentException {
+        return catalogue.get(id);
+    }
+
+    /**
+     * Returns the human-readable representation of the view, which is the same as that of the
+     * item
+     * @return string representation of the item
+     */
+    @Override
+    public String toString() {
+        return catalogue.createItem(id).toString();
+    }
+}
@@ -0,0 +1,16 @@
+package mms.manifest;
+
+/**
+ * Enum to represent the formats a {@link ManifestExporter} can write
+ */
+public enum ExportFormat {
+    /**
+     * Comma separated values, starting with a header line
+     */
+    CSV,
+
+    /**
+     * One JSON object per line
+     */
+    JSON_LINES
+}
@@ -0,0 +1,537 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.personal.Personal;
+import mms.storage.Storage;
+import mms.utility.Packable;
+import mms.utility.Size;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A catalogue of items waiting to be packed, kept outside the Java heap so that millions of
+ * items take up little heap space and do not slow down garbage collection.
+ * <p>
+ * Each item is stored as a fixed size record in direct memory, holding its type, dimensions,
+ * owner and other attributes. Owners are stored once each and referred to by number, and titles
+ * are stored as UTF-8 in a separate direct memory area. Items are only turned back into Java
+ * objects when they are asked for, either through a lightweight {@link CatalogueItem} view or by
+ * taking them out of the catalogue to be packed.
+ * <p>
+ * The records of removed items are reused by items added later, so an id (or a view) must not be
+ * used once its item has been removed. The space taken by the titles of removed books is
+ * reclaimed by moving the remaining titles to a new title area once removed titles take up most
+ * of it. Record blocks are only freed once the catalogue itself is garbage collected. Catalogues
+ * are not thread safe.
+ */
+public class ItemCatalogue {
+
+    /**
+     * Size of each record in bytes
+     */
+    static final int RECORD_SIZE = 40;
+
+    /**
+     * Number of records in each block of direct memory
+     */
+    static final int BLOCK_RECORDS = 1 << 15;
+
+    // Positions of the fields within a record
+    static final int TYPE = 0;
+    static final int SIZE = 1;
+    static final int KIND = 2;
+    static final int FLAGS = 3;
+    static final int OWNER = 4;
+    static final int TITLE = 8;
+    static final int AGE = 12;
+    static final int WIDTH = 16;
+    static final int HEIGHT = 24;
+    static final int LENGTH = 32;
+
+    /**
+     * Flag set on books that are fiction
+     */
+    static final int FICTION = 1;
+
+    /**
+     * Flag set on items that have been removed from the catalogue
+     */
+    static final int REMOVED = 2;
+
+    /**
+     * Initial size of the title area in bytes
+     */
+    private static final int INITIAL_TITLE_BYTES = 1 << 16;
+
+    /**
+     * Record types, by the number stored in each record
+     */
+    private static final RecordType[] TYPES = RecordType.values();
+
+    /**
+     * Sizes, by the number stored in each record
+     */
+    private static final Size[] SIZES = Size.values();
+
+    /**
+     * Clothing types, by the number stored in each record
+     */
+    private static final ClotheType[] CLOTHE_TYPES = ClotheType.values();
+
+    /**
+     * Furniture types, by the number stored in each record
+     */
+    private static final FurnitureType[] FURNITURE_TYPES = FurnitureType.values();
+
+    /**
+     * Blocks of item records
+     */
+    private final List<ByteBuffer> blocks;
+
+    /**
+     * Titles, each stored as its length followed by its UTF-8 bytes
+     */
+    private ByteBuffer titles;
+
+    /**
+     * Owners of the items, by number
+     */
+    private final List<String> owners;
+
+    /**
+     * Number of each owner
+     */
+    private final Map<String, Integer> ownerNumbers;
+
+    /**
+     * Number of records, including removed items
+     */
+    private int recordCount;
+
+    /**
+     * Number of items that have not been removed
+     */
+    private int size;
+
+    /**
+     * Ids of removed items whose records can be reused, with the most recently removed last
+     */
+    private int[] freeIds;
+
+    /**
+     * Number of ids in freeIds
+     */
+    private int freeCount;
+
+    /**
+     * Number of bytes in the title area taken up by the titles of removed books
+     */
+    private int removedTitleBytes;
+
+    /**
+     * Creates an empty catalogue.
+     */
+    public ItemCatalogue() {
+        this.blocks = new ArrayList<>();
+        this.titles = ByteBuffer.allocateDirect(INITIAL_TITLE_BYTES);
+        this.owners = new ArrayList<>();
+        this.ownerNumbers = new HashMap<>();
+        this.freeIds = new int[0];
+    }
+
+    /**
+     * Adds an item to the catalogue. The catalogue keeps a copy of the item, so the item itself
+     * can be thrown away afterwards.
+     * @param item item to add
+     * @return id of the item in the catalogue, which may be the id of an item removed earlier
+     * @throws IllegalArgumentException if the item is not a laptop, book, clothes or furniture
+     * @throws IllegalStateException if the catalogue is full
+     */
+    public int add(Packable item) throws IllegalArgumentException, IllegalStateException {
+        RecordType type = typeOf(item);
+        if (freeCount == 0 && recordCount == Integer.MAX_VALUE) {
+            throw new IllegalStateException("Catalogue is full");
+        }
+        int id = freeCount > 0 ? freeIds[freeCount - 1] : recordCount;
+        if (id / BLOCK_RECORDS == blocks.size()) {
+            blocks.add(ByteBuffer.allocateDirect(BLOCK_RECORDS * RECORD_SIZE));
+        }
+        ByteBuffer block = block(id);
+        int position = position(id);
+        int flags = 0;
+        int owner = -1;
+        int title = -1;
+        int age = 0;
+        int kind = 0;
+        int itemSize = 0;
+        if (item instanceof Personal) {
+            owner = ownerNumber(((Personal) item).getOwner());
+        }
+        switch (type) {
+            case LAPTOP -> age = ((Laptop) item).getAge();
+            case BOOK -> {
+                title = addTitle(((Book) item).getTitle());
+                flags = ((Book) item).isFiction() ? FICTION : 0;
+            }
+            case CLOTHES -> {
+                itemSize = ((Clothes) item).getSize().ordinal();
+                kind = ((Clothes) item).getType().ordinal();
+            }
+            default -> kind = ((Furniture) item).getType().ordinal();
+        }
+        block.put(position + TYPE, (byte) type.ordinal());
+        block.put(position + SIZE, (byte) itemSize);
+        block.put(position + KIND, (byte) kind);
+        block.put(position + FLAGS, (byte) flags);
+        block.putInt(position + OWNER, owner);
+        block.putInt(position + TITLE, title);
+        block.putInt(position + AGE, age);
+        block.putDouble(position + WIDTH, item.getWidth());
+        block.putDouble(position + HEIGHT, item.getHeight());
+        block.putDouble(position + LENGTH, item.getLength());
+        if (freeCount > 0) {
+            freeCount--;
+        } else {
+            recordCount++;
+        }
+        size++;
+        return id;
+    }
+
+    /**
+     * Returns the number of items in the catalogue, not counting removed items
+     * @return number of items
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns whether the given id belongs to an item still in the catalogue
+     * @param id id to check
+     * @return true if the item has been added and not removed
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < recordCount && (getByte(id, FLAGS) & REMOVED) == 0;
+    }
+
+    /**
+     * Returns a view of an item in the catalogue, which reads from the catalogue as needed
+     * @param id id of the item
+     * @return view of the item
+     * @throws IllegalArgumentException if the item is not in the catalogue
+     */
+    public CatalogueItem view(int id) throws IllegalArgumentException {
+        check(id);
+        return new CatalogueItem(this, id);
+    }
+
+    /**
+     * Creates a new Java object for an item in the catalogue, leaving the item in the catalogue
+     * @param id id of the item
+     * @return new copy of the item
+     * @throws IllegalArgumentException if the item is not in the catalogue
+     */
+    public Packable get(int id) throws IllegalArgumentException {
+        check(id);
+        return createItem(id);
+    }
+
+    /**
+     * Removes an item from the catalogue. Its id may be given to an item added later.
+     * @param id id of the item
+     * @return new copy of the item that was removed
+     * @throws IllegalArgumentException if the item is not in the catalogue
+     */
+    public Packable remove(int id) throws IllegalArgumentException {
+        Packable item = get(id);
+        markRemoved(id);
+        return item;
+    }
+
+    /**
+     * Packs an item from the catalogue into the given storage object, removing it from the
+     * catalogue if it was packed.
+     * @param id id of the item
+     * @param storage storage object to pack the item into
+     * @throws IllegalArgumentException if the item is not in the catalogue
+     * @throws PackingException if the item cannot be packed; it is left in the catalogue
+     */
+    public void packInto(int id, Storage storage)
+            throws IllegalArgumentException, PackingException {
+        storage.pack(get(id));
+        markRemoved(id);
+    }
+
+    /**
+     * Returns the ids of the items in the catalogue belonging to the given owner, in order of
+     * id. Only the owner field of each record is read.
+     * @param owner owner to look for
+     * @return ids of the owner's items
+     */
+    public List<Integer> findByOwner(String owner) {
+        List<Integer> found = new ArrayList<>();
+        Integer number = ownerNumbers.get(owner);
+        if (number == null) {
+            return found;
+        }
+        for (int id = 0; id < recordCount; id++) {
+            if (getInt(id, OWNER) == number && (getByte(id, FLAGS) & REMOVED) == 0) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the ids of the items of the given type in the catalogue, in order of id. Only the
+     * type of each record is read.
+     * @param type type of item to look for
+     * @return ids of the items of that type
+     */
+    public List<Integer> findByType(RecordType type) {
+        List<Integer> found = new ArrayList<>();
+        for (int id = 0; id < recordCount; id++) {
+            if (getByte(id, TYPE) == type.ordinal() && (getByte(id, FLAGS) & REMOVED) == 0) {
+                found.add(id);
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the amount of direct memory used by the catalogue
+     * @return number of bytes allocated outside the heap
+     */
+    public long getOffHeapBytes() {
+        return (long) blocks.size() * BLOCK_RECORDS * RECORD_SIZE + titles.capacity();
+    }
+
+    /**
+     * Returns the type of an item in the catalogue.
+     * @param id id of the item
+     * @return type of the item
+     */
+    RecordType getType(int id) {
+        return TYPES[getByte(id, TYPE)];
+    }
+
+    /**
+     * Returns a byte field of an item's record.
+     * @param id id of the item
+     * @param field position of the field in the record
+     * @return value of the field
+     */
+    int getByte(int id, int field) {
+        return block(id).get(position(id) + field);
+    }
+
+    /**
+     * Returns an int field of an item's record.
+     * @param id id of the item
+     * @param field position of the field in the record
+     * @return value of the field
+     */
+    int getInt(int id, int field) {
+        return block(id).getInt(position(id) + field);
+    }
+
+    /**
+     * Returns a double field of an item's record.
+     * @param id id of the item
+     * @param field position of the field in the record
+     * @return value of the field
+     */
+    double getDouble(int id, int field) {
+        return block(id).getDouble(position(id) + field);
+    }
+
+    /**
+     * Returns the owner of an item.
+     * @param id id of the item
+     * @return owner; null if the item has none
+     */
+    String getOwner(int id) {
+        int number = getInt(id, OWNER);
+        return number == -1 ? null : owners.get(number);
+    }
+
+    /**
+     * Returns the title of an item.
+     * @param id id of the item
+     * @return title; null if the item has none
+     */
+    String getTitle(int id) {
+        int position = getInt(id, TITLE);
+        if (position == -1) {
+            return null;
+        }
+        byte[] bytes = new byte[titles.getInt(position)];
+        titles.get(position + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Checks the given id belongs to an item still in the catalogue.
+     * @param id id to check
+     * @throws IllegalArgumentException if the item is not in the catalogue
+     */
+    void check(int id) throws IllegalArgumentException {
+        if (!contains(id)) {
+            throw new IllegalArgumentException("No item with id " + id);
+        }
+    }
+
+    /**
+     * Creates a new Java object from an item's record.
+     * @param id id of the item
+     * @return new copy of the item
+     */
+    Packable createItem(int id) {
+        return switch (getType(id)) {
+            case LAPTOP -> new Laptop(getOwner(id), getInt(id, AGE));
+            case BOOK -> new Book(getOwner(id), getTitle(id),
+                    (getByte(id, FLAGS) & FICTION) != 0);
+            case CLOTHES -> new Clothes(getOwner(id), SIZES[getByte(id, SIZE)],
+                    CLOTHE_TYPES[getByte(id, KIND)]);
+            default -> new Furniture(FURNITURE_TYPES[getByte(id, KIND)]);
+        };
+    }
+
+    /**
+     * Marks an item as removed and makes its record and title free for reuse.
+     * @param id id of an item still in the catalogue
+     */
+    private void markRemoved(int id) {
+        ByteBuffer block = block(id);
+        int position = position(id) + FLAGS;
+        block.put(position, (byte) (block.get(position) | REMOVED));
+        size--;
+        if (freeCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, Math.max(16, freeCount * 2));
+        }
+        freeIds[freeCount++] = id;
+        int title = getInt(id, TITLE);
+        if (title != -1) {
+            removedTitleBytes += 4 + titles.getInt(title);
+            if (removedTitleBytes >= INITIAL_TITLE_BYTES
+                    && removedTitleBytes > titles.position() / 2) {
+                compactTitles();
+            }
+        }
+    }
+
+    /**
+     * Returns the block holding an item's record.
+     * @param id id of the item
+     * @return block of records
+     */
+    private ByteBuffer block(int id) {
+        return blocks.get(id / BLOCK_RECORDS);
+    }
+
+    /**
+     * Returns where an item's record starts within its block.
+     * @param id id of the item
+     * @return position of the record in bytes
+     */
+    private static int position(int id) {
+        return (id % BLOCK_RECORDS) * RECORD_SIZE;
+    }
+
+    /**
+     * Returns the number of the given owner, giving it the next number if it is new.
+     * @param owner owner of an item being added
+     * @return number of the owner
+     */
+    private int ownerNumber(String owner) {
+        Integer number = ownerNumbers.get(owner);
+        if (number == null) {
+            number = owners.size();
+            owners.add(owner);
+            ownerNumbers.put(owner, number);
+        }
+        return number;
+    }
+
+    /**
+     * Adds a title to the title area, moving the area to a bigger block of memory if needed.
+     * @return position of the title
+     * @throws IllegalStateException if the title area would grow past 2GB
+     */
+    private int addTitle(String title) throws IllegalStateException {
+        byte[] bytes = title.getBytes(StandardCharsets.UTF_8);
+        int needed = 4 + bytes.length;
+        if (titles.remaining() < needed) {
+            long capacity = Math.max((long) titles.capacity() * 2, titles.position() + needed);
+            if (titles.position() + (long) needed > Integer.MAX_VALUE) {
+                throw new IllegalStateException("Catalogue is full");
+            }
+            ByteBuffer bigger = ByteBuffer.allocateDirect(
+                    (int) Math.min(capacity, Integer.MAX_VALUE));
+            titles.flip();
+            bigger.put(titles);
+            titles = bigger;
+        }
+        int position = titles.position();
+        titles.putInt(bytes.length);
+        titles.put(bytes);
+        return position;
+    }
+
+    /**
+     * Moves the titles of the books still in the catalogue to a new title area, leaving out the
+     * titles of removed books, and points their records at the new positions. Only called once
+     * removed titles make up more than half of the title area, so the cost is spread over the
+     * removals that freed the space.
+     */
+    private void compactTitles() {
+        int liveBytes = titles.position() - removedTitleBytes;
+        ByteBuffer compacted = ByteBuffer.allocateDirect(
+                (int) Math.min(Math.max((long) liveBytes * 2, INITIAL_TITLE_BYTES),
+                        Integer.MAX_VALUE));
+        for (int id = 0; id < recordCount; id++) {
+            int title = getInt(id, TITLE);
+            if (title == -1 || (getByte(id, FLAGS) & REMOVED) != 0) {
+                continue;
+            }
+            int length = 4 + titles.getInt(title);
+            block(id).putInt(position(id) + TITLE, compacted.position());
+            compacted.put(titles.slice(title, length));
+        }
+        titles = compacted;
+        removedTitleBytes = 0;
+    }
+
+    /**
+     * Returns the type of record to store the given item as.
+     * @param item item being added
+     * @return type of the item
+     * @throws IllegalArgumentException if the item is not a laptop, book, clothes or furniture
+     */
+    private static RecordType typeOf(Packable item) throws IllegalArgumentException {
+        if (item instanceof Laptop) {
+            return RecordType.LAPTOP;
+        } else if (item instanceof Book) {
+            return RecordType.BOOK;
+        } else if (item instanceof Clothes) {
+            return RecordType.CLOTHES;
+        } else if (item instanceof Furniture) {
+            return RecordType.FURNITURE;
+        }
+        throw new IllegalArgumentException(
+                "Cannot catalogue " + (item == null ? "null" : item.getClass().getSimpleName()));
+    }
+}
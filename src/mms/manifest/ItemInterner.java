@@ -0,0 +1,147 @@
+package mms.manifest;
+
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.utility.Packable;
+import mms.utility.Size;
+import mms.utility.StringDictionary;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hands out a single shared instance for each distinct item, so that large manifests with many
+ * identical items (the same book owned by the same person, every chair) only store each one
+ * once. Items are told apart by the dictionary ids of their owners (see
+ * {@link StringDictionary}), so looking one up only hashes the title of books.
+ * <p>
+ * Items are never changed after they are created, so sharing them is safe as far as the items
+ * themselves are concerned. However, a shared item is the same object wherever it is packed, so
+ * anything that tells items apart by identity will see it as a single item. In particular, an
+ * {@link mms.storage.OwnerIndex} only records the last container a shared item was packed into.
+ * Interning should only be used where items are just counted, listed or exported.
+ * <p>
+ * Interners are not thread safe, and keep every item they have handed out until they are
+ * thrown away.
+ */
+public class ItemInterner {
+
+    /**
+     * Shared instance of each distinct laptop, book and piece of clothing
+     */
+    private final Map<List<Object>, Packable> items;
+
+    /**
+     * Shared instance of each type of furniture
+     */
+    private final Map<FurnitureType, Furniture> furniture;
+
+    /**
+     * Creates an empty interner.
+     */
+    public ItemInterner() {
+        this.items = new HashMap<>();
+        this.furniture = new EnumMap<>(FurnitureType.class);
+    }
+
+    /**
+     * Returns the shared laptop with the given owner and age, creating it if needed.
+     * @param owner owner of the laptop
+     * @param age age of the laptop
+     * @return shared laptop
+     * @throws IllegalArgumentException if the owner is null or empty, or if age < 0
+     */
+    public Laptop laptop(String owner, int age) throws IllegalArgumentException {
+        List<Object> key = List.of(Laptop.class, ownerId(owner), age);
+        Packable item = items.get(key);
+        if (item == null) {
+            item = new Laptop(owner, age);
+            items.put(key, item);
+        }
+        return (Laptop) item;
+    }
+
+    /**
+     * Returns the shared book with the given owner, title and fiction status, creating it if
+     * needed.
+     * @param owner owner of the book
+     * @param title title of the book
+     * @param isFiction whether the book is fiction
+     * @return shared book
+     * @throws IllegalArgumentException if the owner or title is null or empty
+     */
+    public Book book(String owner, String title, boolean isFiction)
+            throws IllegalArgumentException {
+        if (title == null || title.isEmpty()) {
+            throw new IllegalArgumentException("Title is null or empty");
+        }
+        List<Object> key = List.of(Book.class, ownerId(owner), title, isFiction);
+        Packable item = items.get(key);
+        if (item == null) {
+            item = new Book(owner, title, isFiction);
+            items.put(key, item);
+        }
+        return (Book) item;
+    }
+
+    /**
+     * Returns the shared piece of clothing with the given owner, size and type, creating it if
+     * needed.
+     * @param owner owner of the clothing
+     * @param size size of the clothing
+     * @param type type of clothing
+     * @return shared piece of clothing
+     * @throws IllegalArgumentException if the owner is null or empty, or if the size or type is
+     * null
+     */
+    public Clothes clothes(String owner, Size size, ClotheType type)
+            throws IllegalArgumentException {
+        if (size == null || type == null) {
+            throw new IllegalArgumentException("Size or type is null");
+        }
+        List<Object> key = List.of(Clothes.class, ownerId(owner), size, type);
+        Packable item = items.get(key);
+        if (item == null) {
+            item = new Clothes(owner, size, type);
+            items.put(key, item);
+        }
+        return (Clothes) item;
+    }
+
+    /**
+     * Returns the shared piece of furniture of the given type, creating it if needed.
+     * @param type type of furniture
+     * @return shared piece of furniture
+     * @throws IllegalArgumentException if the type is null
+     */
+    public Furniture furniture(FurnitureType type) throws IllegalArgumentException {
+        if (type == null) {
+            throw new IllegalArgumentException("Type is null");
+        }
+        return furniture.computeIfAbsent(type, Furniture::new);
+    }
+
+    /**
+     * Returns the number of distinct items handed out so far
+     * @return number of shared items
+     */
+    public int size() {
+        return items.size() + furniture.size();
+    }
+
+    /**
+     * Returns the dictionary id of a valid owner.
+     */
+    private static int ownerId(String owner) throws IllegalArgumentException {
+        if (owner == null || owner.isEmpty()) {
+            throw new IllegalArgumentException("Owner is null or empty");
+        }
+        return StringDictionary.OWNERS.idOf(owner);
+    }
+}
@@ -0,0 +1,18 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.utility.Packable;
+
+/**
+ * Receives items one at a time, for example to pack them into a storage object. Any storage
+ * object can be used as a sink through a method reference such as {@code truck::pack}.
+ */
+public interface ItemSink {
+
+    /**
+     * Accepts the next item.
+     * @param item item to accept
+     * @throws PackingException if the item cannot be accepted
+     */
+    void accept(Packable item) throws PackingException;
+}
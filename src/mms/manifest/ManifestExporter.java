@@ -0,0 +1,458 @@
+package mms.manifest;
+
+import mms.furniture.Furniture;
+import mms.personal.Book;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.personal.Personal;
+import mms.storage.Storage;
+import mms.storage.StorageVisitor;
+import mms.utility.Packable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes every item in a list of storage trees to a channel as CSV or JSON lines, one item per
+ * line, in the order {@link Storage#walk(StorageVisitor)} visits them. Output is built up in a
+ * buffer of fixed size and written each time it fills, so memory use does not depend on the
+ * number of items.
+ * <p>
+ * Each line has the fields read by {@link ManifestImporter}, so exported items can be imported
+ * again, along with two fields saying where the item was:
+ * <ul>
+ *     <li>path - position of the root in the list, followed by the position of each container
+ *     and finally the item in the container above it, separated by '/' (for example "0/2/1" is
+ *     the second element of the third element of the first root)</li>
+ *     <li>container - simple class name of the container the item is packed in</li>
+ * </ul>
+ * Empty storage objects do not produce any lines.
+ * <p>
+ * The exporter keeps a cursor, which is the number of items that have been written to a channel
+ * so far. Exports can be split up by limiting the number of items written in each call, and an
+ * export that failed part way through can be carried on from the cursor, after throwing away any
+ * part of a line left at the end of the output. The cursor only counts items whose lines have
+ * been written in full, and only makes sense while the storage trees are not changed.
+ * Subtrees before the cursor are skipped without visiting the items in them, so carrying on
+ * from a cursor does not cost much more than continuing a walk.
+ */
+public class ManifestExporter {
+
+    /**
+     * Names of the columns written in CSV exports
+     */
+    private static final String[] COLUMNS = {"path", "container", "type", "owner", "title",
+        "fiction", "age", "size", "clothing", "furniture"};
+
+    /**
+     * Storage trees being exported
+     */
+    private final List<Storage> roots;
+
+    /**
+     * Format the items are written in
+     */
+    private final ExportFormat format;
+
+    /**
+     * Lines waiting to be written
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Line currently being built
+     */
+    private final StringBuilder line;
+
+    /**
+     * Number of items written so far
+     */
+    private long cursor;
+
+    /**
+     * Number of item lines in the buffer
+     */
+    private int bufferedItems;
+
+    /**
+     * Position in the buffer just after the end of each item line in it
+     */
+    private int[] lineEnds;
+
+    /**
+     * Whether the CSV header line has been written in full since the cursor was last at item 0
+     */
+    private boolean headerWritten;
+
+    /**
+     * Creates an exporter for the given storage trees, with its cursor at the first item.
+     * @param roots storage trees to export
+     * @param format format to write the items in
+     * @param bufferSize size of the output buffer in bytes
+     * @throws IllegalArgumentException if bufferSize < 1
+     */
+    public ManifestExporter(List<? extends Storage> roots, ExportFormat format, int bufferSize)
+            throws IllegalArgumentException {
+        if (bufferSize < 1) {
+            throw new IllegalArgumentException("Buffer size < 1");
+        }
+        this.roots = new ArrayList<>(roots);
+        this.format = format;
+        this.buffer = ByteBuffer.allocate(bufferSize);
+        this.line = new StringBuilder();
+        this.lineEnds = new int[16];
+    }
+
+    /**
+     * Returns the number of items written so far, which is also the position of the next item to
+     * be written
+     * @return cursor position
+     */
+    public long getCursor() {
+        return cursor;
+    }
+
+    /**
+     * Moves the cursor, so the next export starts from the given item. For CSV, the header line
+     * is only written by exports starting from item 0, and only once unless the cursor is moved
+     * back to 0 with this method.
+     * @param cursor position of the next item to write
+     * @throws IllegalArgumentException if cursor < 0 or cursor > {@link #getItemCount()}
+     */
+    public void seek(long cursor) throws IllegalArgumentException {
+        if (cursor < 0 || cursor > getItemCount()) {
+            throw new IllegalArgumentException("Cursor out of range: " + cursor);
+        }
+        this.cursor = cursor;
+        headerWritten = false;
+    }
+
+    /**
+     * Returns the number of items in the storage trees
+     * @return number of items
+     */
+    public long getItemCount() {
+        long count = 0;
+        for (Storage root : roots) {
+            count += root.getOccupiedCapacity();
+        }
+        return count;
+    }
+
+    /**
+     * Returns whether every item has been written
+     * @return true if the cursor is at the end
+     */
+    public boolean isFinished() {
+        return cursor >= getItemCount();
+    }
+
+    /**
+     * Writes every item from the cursor onwards to the channel.
+     * @param channel blocking channel to write to
+     * @return number of items written
+     * @throws IOException if the channel cannot be written to; the cursor is left after the last
+     * item written in full
+     * @throws IllegalArgumentException if one of the items is not a laptop, book, clothes or
+     * furniture; the cursor is left after the last item written in full
+     */
+    public long export(WritableByteChannel channel) throws IOException, IllegalArgumentException {
+        return export(channel, Long.MAX_VALUE);
+    }
+
+    /**
+     * Writes up to the given number of items from the cursor onwards to the channel.
+     * @param channel blocking channel to write to
+     * @param maxItems largest number of items to write
+     * @return number of items written
+     * @throws IOException if the channel cannot be written to; the cursor is left after the last
+     * item written in full
+     * @throws IllegalArgumentException if maxItems < 0, or if one of the items is not a laptop,
+     * book, clothes or furniture; the cursor is left after the last item written in full
+     */
+    public long export(WritableByteChannel channel, long maxItems)
+            throws IOException, IllegalArgumentException {
+        if (maxItems < 0) {
+            throw new IllegalArgumentException("Max items < 0");
+        }
+        long start = cursor;
+        buffer.clear();
+        bufferedItems = 0;
+        try {
+            if (cursor == 0 && format == ExportFormat.CSV && !headerWritten) {
+                line.setLength(0);
+                line.append(String.join(",", COLUMNS)).append('\n');
+                append(channel, false);
+                // Written on its own, so an export carried on after a failure knows whether the
+                // header made it out
+                flush(channel);
+                headerWritten = true;
+            }
+            ItemWriter writer = new ItemWriter(channel, cursor, maxItems);
+            for (int i = 0; i < roots.size() && writer.remaining > 0; i++) {
+                Storage root = roots.get(i);
+                if (writer.skip >= root.getOccupiedCapacity()) {
+                    writer.skip -= root.getOccupiedCapacity();
+                } else {
+                    writer.path[0] = i;
+                    root.walk(writer);
+                }
+            }
+            flush(channel);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return cursor - start;
+    }
+
+    /**
+     * Writes the lines in the buffer to the channel and moves the cursor past their items. If
+     * writing fails part way through, the cursor is still moved past the items whose lines were
+     * written in full.
+     */
+    private void flush(WritableByteChannel channel) throws IOException {
+        buffer.flip();
+        int written = bufferedItems;
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            written = 0;
+            while (written < bufferedItems && lineEnds[written] <= buffer.position()) {
+                written++;
+            }
+            throw e;
+        } finally {
+            cursor += written;
+            buffer.clear();
+            bufferedItems = 0;
+        }
+    }
+
+    /**
+     * Adds the line that has been built to the buffer, writing the buffer first if the line does
+     * not fit in it.
+     * @param isItem whether the line is for an item
+     */
+    private void append(WritableByteChannel channel, boolean isItem) throws IOException {
+        byte[] bytes = line.toString().getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > buffer.remaining()) {
+            flush(channel);
+        }
+        if (bytes.length > buffer.capacity()) {
+            // Too long to ever fit in the buffer, so write it on its own
+            ByteBuffer whole = ByteBuffer.wrap(bytes);
+            while (whole.hasRemaining()) {
+                channel.write(whole);
+            }
+            if (isItem) {
+                cursor++;
+            }
+        } else {
+            buffer.put(bytes);
+            if (isItem) {
+                if (bufferedItems == lineEnds.length) {
+                    lineEnds = Arrays.copyOf(lineEnds, lineEnds.length * 2);
+                }
+                lineEnds[bufferedItems++] = buffer.position();
+            }
+        }
+    }
+
+    /**
+     * Builds the line for an item in the current format.
+     */
+    private void buildLine(String path, Storage container, Packable item) {
+        String owner = item instanceof Personal ? ((Personal) item).getOwner() : null;
+        String title = null;
+        String fiction = null;
+        String age = null;
+        String size = null;
+        String clothing = null;
+        String furniture = null;
+        String type;
+        if (item instanceof Laptop) {
+            type = "laptop";
+            age = Integer.toString(((Laptop) item).getAge());
+        } else if (item instanceof Book) {
+            type = "book";
+            title = ((Book) item).getTitle();
+            fiction = Boolean.toString(((Book) item).isFiction());
+        } else if (item instanceof Clothes) {
+            type = "clothes";
+            size = ((Clothes) item).getSize().name();
+            clothing = ((Clothes) item).getType().name();
+        } else if (item instanceof Furniture) {
+            type = "furniture";
+            furniture = ((Furniture) item).getType().name();
+        } else {
+            throw new IllegalArgumentException(
+                    "Cannot export " + item.getClass().getSimpleName());
+        }
+        String[] values = {path, container.getClass().getSimpleName(), type, owner, title,
+            fiction, age, size, clothing, furniture};
+
+        line.setLength(0);
+        if (format == ExportFormat.CSV) {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendCsv(values[i]);
+            }
+        } else {
+            line.append('{');
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] == null) {
+                    continue;
+                }
+                if (line.length() > 1) {
+                    line.append(',');
+                }
+                appendJson(COLUMNS[i]);
+                line.append(':');
+                if (COLUMNS[i].equals("fiction") || COLUMNS[i].equals("age")) {
+                    line.append(values[i]);
+                } else {
+                    appendJson(values[i]);
+                }
+            }
+            line.append('}');
+        }
+        line.append('\n');
+    }
+
+    private void appendCsv(String value) {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1
+                && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            line.append(value);
+            return;
+        }
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                line.append('"');
+            }
+            line.append(c);
+        }
+        line.append('"');
+    }
+
+    private void appendJson(String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> line.append("\\\"");
+                case '\\' -> line.append("\\\\");
+                case '\n' -> line.append("\\n");
+                case '\r' -> line.append("\\r");
+                case '\t' -> line.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        line.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        line.append(c);
+                    }
+                }
+            }
+        }
+        line.append('"');
+    }
+
+    /**
+     * Visitor that writes the items in a storage tree, skipping those before the cursor and
+     * stopping once enough items have been written.
+     */
+    private class ItemWriter implements StorageVisitor {
+
+        /**
+         * Channel being written to
+         */
+        private final WritableByteChannel channel;
+
+        /**
+         * Number of items still to skip before writing
+         */
+        private long skip;
+
+        /**
+         * Number of items still to write
+         */
+        private long remaining;
+
+        /**
+         * Position of each open container in the container above it, starting with the position
+         * of the root in the list
+         */
+        private int[] path;
+
+        /**
+         * Position of the next element in each open container
+         */
+        private int[] next;
+
+        private ItemWriter(WritableByteChannel channel, long skip, long remaining) {
+            this.channel = channel;
+            this.skip = skip;
+            this.remaining = remaining;
+            this.path = new int[16];
+            this.next = new int[16];
+        }
+
+        @Override
+        public boolean enterStorage(Storage storage, int depth) {
+            if (depth >= path.length) {
+                path = Arrays.copyOf(path, path.length * 2);
+                next = Arrays.copyOf(next, next.length * 2);
+            }
+            if (depth > 0) {
+                path[depth] = next[depth - 1]++;
+            }
+            next[depth] = 0;
+            if (remaining == 0) {
+                return false;
+            }
+            if (skip >= storage.getOccupiedCapacity()) {
+                skip -= storage.getOccupiedCapacity();
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void visitItem(Packable item, Storage container, int depth) {
+            int position = next[depth - 1]++;
+            if (remaining == 0) {
+                return;
+            }
+            if (skip > 0) {
+                skip--;
+                return;
+            }
+            StringBuilder itemPath = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                itemPath.append(path[i]).append('/');
+            }
+            itemPath.append(position);
+            buildLine(itemPath.toString(), container, item);
+            try {
+                append(channel, true);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            remaining--;
+        }
+    }
+}
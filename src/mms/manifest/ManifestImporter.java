@@ -0,0 +1,444 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.utility.Packable;
+import mms.utility.Size;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Reads item lists from CSV or JSON lines files and hands each item to a sink as soon as it has
+ * been read, so only one line is held in memory at a time however large the file is.
+ * <p>
+ * Each item is described by the following fields. Only the fields needed by the item's type have
+ * to be given, and field names and values are not case sensitive, apart from owners and titles.
+ * Whitespace around values is ignored.
+ * <ul>
+ *     <li>type - laptop, book, clothes or furniture</li>
+ *     <li>owner - owner of a laptop, book or clothes</li>
+ *     <li>age - age of a laptop</li>
+ *     <li>title - title of a book</li>
+ *     <li>fiction - true if a book is fiction (defaults to false)</li>
+ *     <li>size - size of clothes (small, medium or large)</li>
+ *     <li>clothing - type of clothes (pants, shirt, shorts or socks)</li>
+ *     <li>furniture - type of furniture (chair, table, bed, desk or television)</li>
+ * </ul>
+ * CSV files start with a header line naming the fields in each column. Values containing commas
+ * or quotes can be surrounded by double quotes, with quotes inside them doubled, but cannot span
+ * several lines. JSON lines files have one flat JSON object per line. Blank lines are skipped in
+ * both formats.
+ */
+public class ManifestImporter {
+
+    /**
+     * Looks up a field of the item being read.
+     */
+    private interface Fields {
+
+        /**
+         * Returns the value of a field.
+         * @param name lower case name of the field
+         * @return value of the field; null if it was not given
+         */
+        String get(String name);
+    }
+
+    private ManifestImporter() {
+    }
+
+    /**
+     * Reads items from a CSV file, handing each one to the sink as it is read.
+     * @param in CSV to read
+     * @param sink sink to hand the items to
+     * @return number of items read
+     * @throws IOException if the input cannot be read or a line does not describe a valid item
+     * @throws PackingException if the sink does not accept an item; items before it have
+     * already been accepted
+     */
+    public static long importCsv(Reader in, ItemSink sink) throws IOException, PackingException {
+        return importCsv(in, sink, null);
+    }
+
+    /**
+     * Reads items from a CSV file, handing each one to the sink as it is read. Identical items
+     * are shared through the given interner (see {@link ItemInterner} for when this is safe).
+     * @param in CSV to read
+     * @param sink sink to hand the items to
+     * @param interner interner to get the items from; null to create a new item for each line
+     * @return number of items read
+     * @throws IOException if the input cannot be read or a line does not describe a valid item
+     * @throws PackingException if the sink does not accept an item; items before it have
+     * already been accepted
+     */
+    public static long importCsv(Reader in, ItemSink sink, ItemInterner interner)
+            throws IOException, PackingException {
+        BufferedReader reader = new BufferedReader(in);
+        String line = reader.readLine();
+        if (line == null) {
+            return 0;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        List<String> header = splitCsv(line, 1);
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+
+        long count = 0;
+        int lineNumber = 1;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            List<String> values = splitCsv(line, lineNumber);
+            Packable item = createItem(name -> {
+                Integer column = columns.get(name);
+                if (column == null || column >= values.size() || values.get(column).isEmpty()) {
+                    return null;
+                }
+                return values.get(column);
+            }, interner, lineNumber);
+            sink.accept(item);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Reads items from a JSON lines file, handing each one to the sink as it is read.
+     * @param in JSON lines to read
+     * @param sink sink to hand the items to
+     * @return number of items read
+     * @throws IOException if the input cannot be read or a line does not describe a valid item
+     * @throws PackingException if the sink does not accept an item; items before it have
+     * already been accepted
+     */
+    public static long importJsonLines(Reader in, ItemSink sink)
+            throws IOException, PackingException {
+        return importJsonLines(in, sink, null);
+    }
+
+    /**
+     * Reads items from a JSON lines file, handing each one to the sink as it is read. Identical
+     * items are shared through the given interner (see {@link ItemInterner} for when this is
+     * safe).
+     * @param in JSON lines to read
+     * @param sink sink to hand the items to
+     * @param interner interner to get the items from; null to create a new item for each line
+     * @return number of items read
+     * @throws IOException if the input cannot be read or a line does not describe a valid item
+     * @throws PackingException if the sink does not accept an item; items before it have
+     * already been accepted
+     */
+    public static long importJsonLines(Reader in, ItemSink sink, ItemInterner interner)
+            throws IOException, PackingException {
+        BufferedReader reader = new BufferedReader(in);
+        String line;
+        long count = 0;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            Map<String, String> values = parseJsonObject(line, lineNumber);
+            sink.accept(createItem(values::get, interner, lineNumber));
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Creates the item described by the given fields, or gets it from the interner if there is
+     * one.
+     * @param fields fields of the item
+     * @param interner interner to get the item from; null to create a new item
+     * @param lineNumber line the item was read from, for error messages
+     * @return item described by the fields
+     * @throws IOException if a field is missing or invalid
+     */
+    private static Packable createItem(Fields fields, ItemInterner interner, int lineNumber)
+            throws IOException {
+        String type = required(fields, "type", lineNumber);
+        try {
+            switch (type.toLowerCase(Locale.ROOT)) {
+                case "laptop" -> {
+                    String owner = required(fields, "owner", lineNumber);
+                    int age = Integer.parseInt(required(fields, "age", lineNumber));
+                    return interner == null ? new Laptop(owner, age) : interner.laptop(owner, age);
+                }
+                case "book" -> {
+                    String owner = required(fields, "owner", lineNumber);
+                    String title = required(fields, "title", lineNumber);
+                    boolean isFiction = parseBoolean(fields.get("fiction"), "fiction");
+                    return interner == null ? new Book(owner, title, isFiction)
+                            : interner.book(owner, title, isFiction);
+                }
+                case "clothes" -> {
+                    String owner = required(fields, "owner", lineNumber);
+                    Size size = Size.valueOf(upper(required(fields, "size", lineNumber)));
+                    ClotheType clothing =
+                            ClotheType.valueOf(upper(required(fields, "clothing", lineNumber)));
+                    return interner == null ? new Clothes(owner, size, clothing)
+                            : interner.clothes(owner, size, clothing);
+                }
+                case "furniture" -> {
+                    FurnitureType furniture =
+                            FurnitureType.valueOf(upper(required(fields, "furniture", lineNumber)));
+                    return interner == null ? new Furniture(furniture)
+                            : interner.furniture(furniture);
+                }
+                default -> throw new IOException("Line " + lineNumber + ": unknown type " + type);
+            }
+        } catch (IllegalArgumentException e) {
+            // Also covers badly formed numbers and enum names
+            throw new IOException("Line " + lineNumber + ": invalid " + type
+                    + (e.getMessage() == null ? "" : " (" + e.getMessage() + ")"), e);
+        }
+    }
+
+    /**
+     * Returns the value of a field that has to be given, without surrounding whitespace.
+     * @param fields fields of the item
+     * @param name lower case name of the field
+     * @param lineNumber line the item was read from, for error messages
+     * @return trimmed value of the field
+     * @throws IOException if the field was not given
+     */
+    private static String required(Fields fields, String name, int lineNumber)
+            throws IOException {
+        String value = fields.get(name);
+        if (value == null) {
+            throw new IOException("Line " + lineNumber + ": missing " + name);
+        }
+        return value.trim();
+    }
+
+    /**
+     * Parses an optional true or false value, which is false if left out.
+     * @param value value to parse; null if it was not given
+     * @param name name of the field, for error messages
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is anything other than true or false
+     */
+    private static boolean parseBoolean(String value, String name)
+            throws IllegalArgumentException {
+        if (value == null || value.isBlank()) {
+            return false;
+        }
+        return switch (value.trim().toLowerCase(Locale.ROOT)) {
+            case "true" -> true;
+            case "false" -> false;
+            default -> throw new IllegalArgumentException(name + " must be true or false");
+        };
+    }
+
+    /**
+     * Converts a value to the upper case form used by enum constant names.
+     * @param value value to convert
+     * @return value in upper case
+     */
+    private static String upper(String value) {
+        return value.toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits a CSV line into its values, removing any quotes around them.
+     */
+    static List<String> splitCsv(String line, int lineNumber) throws IOException {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IOException("Line " + lineNumber + ": unterminated quote");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers, booleans or null. Field names
+     * are converted to lower case, numbers and booleans are returned as their text, and null
+     * values are left out.
+     */
+    static Map<String, String> parseJsonObject(String line, int lineNumber) throws IOException {
+        Map<String, String> values = new HashMap<>();
+        int[] position = {skipSpace(line, 0)};
+        expect(line, position, '{', lineNumber);
+        if (peek(line, position) == '}') {
+            position[0]++;
+        } else {
+            while (true) {
+                String name = readJsonString(line, position, lineNumber);
+                expect(line, position, ':', lineNumber);
+                String value = peek(line, position) == '"'
+                        ? readJsonString(line, position, lineNumber)
+                        : readJsonLiteral(line, position, lineNumber);
+                if (value != null) {
+                    values.put(name.toLowerCase(Locale.ROOT), value);
+                }
+                char next = peek(line, position);
+                position[0]++;
+                if (next == '}') {
+                    break;
+                } else if (next != ',') {
+                    throw new IOException("Line " + lineNumber + ": expected , or }");
+                }
+            }
+        }
+        if (skipSpace(line, position[0]) != line.length()) {
+            throw new IOException("Line " + lineNumber + ": unexpected text after object");
+        }
+        return values;
+    }
+
+    /**
+     * Reads a JSON string starting at the given position, after any whitespace, and moves the
+     * position past its closing quote.
+     * @param line line being parsed
+     * @param position single element array holding the position to read from
+     * @param lineNumber number of the line, for error messages
+     * @return the string with its escapes replaced
+     * @throws IOException if there is no string at the position, or it is badly formed
+     */
+    private static String readJsonString(String line, int[] position, int lineNumber)
+            throws IOException {
+        expect(line, position, '"', lineNumber);
+        StringBuilder value = new StringBuilder();
+        int i = position[0];
+        while (i < line.length() && line.charAt(i) != '"') {
+            char c = line.charAt(i++);
+            if (c != '\\') {
+                value.append(c);
+                continue;
+            }
+            if (i >= line.length()) {
+                break;
+            }
+            char escaped = line.charAt(i++);
+            switch (escaped) {
+                case 'n' -> value.append('\n');
+                case 't' -> value.append('\t');
+                case 'r' -> value.append('\r');
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'u' -> {
+                    if (i + 4 > line.length()) {
+                        throw new IOException("Line " + lineNumber + ": bad escape");
+                    }
+                    try {
+                        value.append((char) Integer.parseInt(line.substring(i, i + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Line " + lineNumber + ": bad escape", e);
+                    }
+                    i += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        if (i >= line.length()) {
+            throw new IOException("Line " + lineNumber + ": unterminated string");
+        }
+        position[0] = i + 1;
+        return value.toString();
+    }
+
+    /**
+     * Reads a number, boolean or null starting at the given position, after any whitespace, and
+     * moves the position past it. The literal itself is not checked.
+     * @param line line being parsed
+     * @param position single element array holding the position to read from
+     * @param lineNumber number of the line, for error messages
+     * @return text of the literal; null if it is null
+     * @throws IOException if there is no value at the position
+     */
+    private static String readJsonLiteral(String line, int[] position, int lineNumber)
+            throws IOException {
+        int start = skipSpace(line, position[0]);
+        int end = start;
+        while (end < line.length() && ",}".indexOf(line.charAt(end)) == -1
+                && !Character.isWhitespace(line.charAt(end))) {
+            end++;
+        }
+        if (start == end) {
+            throw new IOException("Line " + lineNumber + ": missing value");
+        }
+        position[0] = end;
+        String literal = line.substring(start, end);
+        return literal.equals("null") ? null : literal;
+    }
+
+    /**
+     * Skips any whitespace and consumes the expected character.
+     * @param line line being parsed
+     * @param position single element array holding the position to read from
+     * @param expected character that has to come next
+     * @param lineNumber number of the line, for error messages
+     * @throws IOException if the next character is a different one
+     */
+    private static void expect(String line, int[] position, char expected, int lineNumber)
+            throws IOException {
+        if (peek(line, position) != expected) {
+            throw new IOException("Line " + lineNumber + ": expected " + expected);
+        }
+        position[0]++;
+    }
+
+    /**
+     * Skips any whitespace and returns the next character without consuming it.
+     * @param line line being parsed
+     * @param position single element array holding the position to read from; moved past the
+     * whitespace
+     * @return next character; '\0' at the end of the line
+     */
+    private static char peek(String line, int[] position) {
+        position[0] = skipSpace(line, position[0]);
+        return position[0] < line.length() ? line.charAt(position[0]) : '\0';
+    }
+
+    /**
+     * Finds the first character at or after a position that is not whitespace.
+     * @param line line being parsed
+     * @param position position to start from
+     * @return position of the character; the length of the line if there is none
+     */
+    private static int skipSpace(String line, int position) {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
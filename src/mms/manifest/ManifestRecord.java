@@ -0,0 +1,343 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.utility.Packable;
+import mms.utility.Size;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A view of a single storage object or item stored in a {@link MappedManifest}. Each getter reads
+ * straight from the file, so creating a record is cheap and records can be thrown away freely.
+ */
+public class ManifestRecord {
+
+    /**
+     * Sizes, by the number stored in each record
+     */
+    private static final Size[] SIZES = Size.values();
+
+    /**
+     * Clothing types, by the number stored in each record
+     */
+    private static final ClotheType[] CLOTHE_TYPES = ClotheType.values();
+
+    /**
+     * Furniture types, by the number stored in each record
+     */
+    private static final FurnitureType[] FURNITURE_TYPES = FurnitureType.values();
+
+    /**
+     * Manifest the record is in
+     */
+    private final MappedManifest manifest;
+
+    /**
+     * Number of the record in the manifest
+     */
+    private final int number;
+
+    /**
+     * Creates a view of the given record.
+     * @param manifest manifest the record is in
+     * @param number number of the record
+     */
+    ManifestRecord(MappedManifest manifest, int number) {
+        this.manifest = manifest;
+        this.number = number;
+    }
+
+    /**
+     * Returns the number of the record in its manifest
+     * @return record number
+     */
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns what kind of storage object or item the record is for
+     * @return type of the record
+     */
+    public RecordType getType() {
+        return manifest.getType(number);
+    }
+
+    /**
+     * Returns the width of the storage object or item in cm
+     * @return width
+     */
+    public double getWidth() {
+        return manifest.getDouble(number, MappedManifest.WIDTH);
+    }
+
+    /**
+     * Returns the height of the storage object or item in cm
+     * @return height
+     */
+    public double getHeight() {
+        return manifest.getDouble(number, MappedManifest.HEIGHT);
+    }
+
+    /**
+     * Returns the length of the storage object or item in cm. For moving trucks this is the
+     * total length, including the cab.
+     * @return length
+     */
+    public double getLength() {
+        return manifest.getDouble(number, MappedManifest.LENGTH);
+    }
+
+    /**
+     * Returns the owner of a personal item
+     * @return owner; null if the record is not for a personal item
+     */
+    public String getOwner() {
+        return isPersonal() ? manifest.getString(manifest.getInt(number, MappedManifest.TEXT))
+                : null;
+    }
+
+    /**
+     * Returns the title of a book
+     * @return title; null if the record is not for a book
+     */
+    public String getTitle() {
+        return getType() == RecordType.BOOK
+                ? manifest.getString(manifest.getInt(number, MappedManifest.TITLE)) : null;
+    }
+
+    /**
+     * Returns the comment on a box
+     * @return comment; null if the record is not for a box
+     */
+    public String getComment() {
+        return getType() == RecordType.BOX
+                ? manifest.getString(manifest.getInt(number, MappedManifest.TEXT)) : null;
+    }
+
+    /**
+     * Returns the age of a laptop
+     * @return age; 0 if the record is not for a laptop
+     */
+    public int getAge() {
+        return getType() == RecordType.LAPTOP ? manifest.getInt(number, MappedManifest.NUMBER)
+                : 0;
+    }
+
+    /**
+     * Returns whether a book is fiction
+     * @return true if the record is for a fiction book
+     */
+    public boolean isFiction() {
+        return (manifest.getByte(number, MappedManifest.FLAGS) & MappedManifest.FICTION) != 0;
+    }
+
+    /**
+     * Returns the size of a storage object or piece of clothing
+     * @return size; null for other items
+     */
+    public Size getSize() {
+        RecordType type = getType();
+        return type.isStorage() || type == RecordType.CLOTHES
+                ? SIZES[manifest.getByte(number, MappedManifest.SIZE)] : null;
+    }
+
+    /**
+     * Returns the type of a piece of clothing
+     * @return clothing type; null if the record is not for clothes
+     */
+    public ClotheType getClotheType() {
+        return getType() == RecordType.CLOTHES
+                ? CLOTHE_TYPES[manifest.getByte(number, MappedManifest.KIND)] : null;
+    }
+
+    /**
+     * Returns the type of a piece of furniture
+     * @return furniture type; null if the record is not for furniture
+     */
+    public FurnitureType getFurnitureType() {
+        return getType() == RecordType.FURNITURE
+                ? FURNITURE_TYPES[manifest.getByte(number, MappedManifest.KIND)] : null;
+    }
+
+    /**
+     * Returns the number of elements packed directly in a storage object
+     * @return number of elements; 0 if the record is not for a storage object
+     */
+    public int getElementCount() {
+        return getType().isStorage() ? manifest.getInt(number, MappedManifest.NUMBER) : 0;
+    }
+
+    /**
+     * Returns the elements packed directly in a storage object, in packing order
+     * @return records of the elements; empty if the record is not for a storage object
+     */
+    public List<ManifestRecord> getElements() {
+        List<ManifestRecord> elements = new ArrayList<>(getElementCount());
+        for (int child = manifest.getInt(number, MappedManifest.FIRST_CHILD); child != -1;
+                child = manifest.getInt(child, MappedManifest.NEXT_SIBLING)) {
+            elements.add(new ManifestRecord(manifest, child));
+        }
+        return elements;
+    }
+
+    /**
+     * Builds the storage object or item this record is for, along with everything packed inside
+     * it. Only this record and the records beneath it are read.
+     * @return a new storage object or item; null for moving trucks, which cannot be packed (use
+     * {@link #toStorage()} for those)
+     * @throws IllegalStateException if the records beneath this one do not form a valid tree
+     */
+    public Packable toPackable() throws IllegalStateException {
+        if (getType() == RecordType.TRUCK) {
+            return null;
+        }
+        if (getType().isStorage()) {
+            return (Packable) toStorage();
+        }
+        return createItem(number);
+    }
+
+    /**
+     * Builds the storage object this record is for, along with everything packed inside it.
+     * Storage objects are packed into their containers while they are empty and filled afterwards
+     * (see {@link SavedStorage}), so the storage object is the same as the one that was written
+     * and unpacks in the same order.
+     * @return a new storage object; null if the record is not for a storage object
+     * @throws IllegalStateException if the records beneath this one do not form a valid tree
+     */
+    public Storage toStorage() throws IllegalStateException {
+        if (!getType().isStorage()) {
+            return null;
+        }
+        SavedStorage root = new SavedStorage(createStorage(number), false);
+        // Storage objects still being read, and the next element record for each
+        Deque<SavedStorage> open = new ArrayDeque<>();
+        Deque<int[]> nextChild = new ArrayDeque<>();
+        open.push(root);
+        nextChild.push(new int[] {manifest.getInt(number, MappedManifest.FIRST_CHILD)});
+        try {
+            while (!open.isEmpty()) {
+                int[] next = nextChild.peek();
+                if (next[0] == -1) {
+                    SavedStorage finished = open.pop();
+                    nextChild.pop();
+                    if (!open.isEmpty()) {
+                        open.peek().add(finished);
+                    }
+                    continue;
+                }
+                int child = next[0];
+                next[0] = manifest.getInt(child, MappedManifest.NEXT_SIBLING);
+                if (manifest.getType(child).isStorage()) {
+                    open.push(new SavedStorage(createStorage(child),
+                            (manifest.getByte(child, MappedManifest.FLAGS)
+                                    & MappedManifest.PACKED_FRAGILE) != 0));
+                    nextChild.push(new int[] {manifest.getInt(child, MappedManifest.FIRST_CHILD)});
+                } else {
+                    open.peek().add(createItem(child));
+                }
+            }
+            return root.restore();
+        } catch (PackingException | ClassCastException e) {
+            throw new IllegalStateException("Stored items cannot be restored: " + e.getMessage(),
+                    e);
+        }
+    }
+
+    /**
+     * Returns the number of items packed in a storage object, including items inside storage
+     * objects packed in it
+     * @return occupied capacity; 0 if the record is not for a storage object
+     */
+    public int getOccupiedCapacity() {
+        return getType().isStorage() ? manifest.getInt(number, MappedManifest.OCCUPIED) : 0;
+    }
+
+    /**
+     * Returns whether a box held a laptop or television when the manifest was written
+     * @return true if the record is for a fragile box
+     */
+    public boolean isFragile() {
+        return getType() == RecordType.BOX
+                && (manifest.getByte(number, MappedManifest.FLAGS) & MappedManifest.FRAGILE) != 0;
+    }
+
+    /**
+     * Returns the human-readable representation of the record, which is the same as that of the
+     * storage object or item it is for when the manifest was written. Storage objects are
+     * described from the record alone, without building them.
+     * @return string representation of the record
+     */
+    @Override
+    public String toString() {
+        return switch (getType()) {
+            // The capacity only depends on the size, so an empty truck has the same capacity
+            case TRUCK -> "MovingTruck (" + getOccupiedCapacity() + "/"
+                    + createStorage(number).getCapacity() + ")";
+            case BOX -> describe("Box") + " - " + (getComment().isEmpty() ? "'\0"
+                    : isFragile() ? getComment() + " FRAGILE" : "");
+            case BAG -> describe("Bag");
+            default -> createItem(number).toString();
+        };
+    }
+
+    /**
+     * Returns the description of a box or bag in the same format as {@link Storage#toString()}.
+     */
+    private String describe(String className) {
+        return String.format("%s (%s, %s, %s) %s", className, String.format("%.2f", getWidth()),
+                String.format("%.2f", getHeight()), String.format("%.2f", getLength()),
+                getSize());
+    }
+
+    private boolean isPersonal() {
+        RecordType type = getType();
+        return type == RecordType.LAPTOP || type == RecordType.BOOK
+                || type == RecordType.CLOTHES;
+    }
+
+    /**
+     * Creates an empty storage object from the given record.
+     */
+    private Storage createStorage(int record) {
+        ManifestRecord view = new ManifestRecord(manifest, record);
+        Storage storage = switch (view.getType()) {
+            case TRUCK -> new MovingTruck(view.getWidth(), view.getHeight(), view.getLength(),
+                    view.getSize());
+            case BOX -> new Box(view.getWidth(), view.getHeight(), view.getLength(),
+                    view.getSize(), view.getComment());
+            default -> new Bag(view.getWidth(), view.getHeight(), view.getLength(),
+                    view.getSize());
+        };
+        storage.setUnpackPolicy(
+                ManifestSnapshot.POLICIES[manifest.getByte(record, MappedManifest.KIND)]);
+        return storage;
+    }
+
+    /**
+     * Creates the item described by the given record.
+     */
+    private Packable createItem(int record) {
+        ManifestRecord view = new ManifestRecord(manifest, record);
+        return switch (view.getType()) {
+            case LAPTOP -> new Laptop(view.getOwner(), view.getAge());
+            case BOOK -> new Book(view.getOwner(), view.getTitle(), view.isFiction());
+            case CLOTHES -> new Clothes(view.getOwner(), view.getSize(), view.getClotheType());
+            default -> new Furniture(view.getFurnitureType());
+        };
+    }
+}
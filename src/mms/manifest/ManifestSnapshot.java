@@ -0,0 +1,520 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.StorageVisitor;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+import mms.utility.Size;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes snapshots of whole storage trees (usually a fleet of moving trucks) in a
+ * compact binary format.
+ * <p>
+ * A snapshot starts with a magic number and a format version, followed by the number of root
+ * storage objects. Each storage object and item is then written depth first, in packing order,
+ * as a one byte tag followed by its fields. Storage objects record their dimensions, size,
+ * unpack policy, comment and whether they counted as fragile when they were packed (boxes only)
+ * and number of elements. Strings such as owners and titles are written in full the first time
+ * they appear and as a reference number after that, so a snapshot with a handful of owners only
+ * stores each owner once.
+ * <p>
+ * Reading a snapshot packs each item back into its container in the original order. Storage
+ * objects are packed into their containers while they are empty and filled afterwards (see
+ * {@link SavedStorage}), so the rebuilt trees are the same as the originals and unpack in the
+ * same order, even where the originals were filled in a different order than they are read back.
+ */
+public class ManifestSnapshot {
+
+    /**
+     * Number every snapshot starts with ("MMSS")
+     */
+    static final int MAGIC = 0x4D4D5353;
+
+    /**
+     * Version of the format written by this class
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Tag for a moving truck
+     */
+    static final byte TRUCK = 1;
+
+    /**
+     * Tag for a box
+     */
+    static final byte BOX = 2;
+
+    /**
+     * Tag for a bag
+     */
+    static final byte BAG = 3;
+
+    /**
+     * Tag for a laptop
+     */
+    static final byte LAPTOP = 4;
+
+    /**
+     * Tag for a book
+     */
+    static final byte BOOK = 5;
+
+    /**
+     * Tag for clothes
+     */
+    static final byte CLOTHES = 6;
+
+    /**
+     * Tag for furniture
+     */
+    static final byte FURNITURE = 7;
+
+    /**
+     * Unpack policies that can be stored in a snapshot, indexed by their stored number
+     */
+    static final UnpackPolicy[] POLICIES = {
+        UnpackPolicy.fifo(), UnpackPolicy.lifo(), UnpackPolicy.fragileLast(),
+        UnpackPolicy.largestVolumeFirst(), UnpackPolicy.furnitureFirst()
+    };
+
+    private ManifestSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the given storage trees to a stream. The stream is flushed but not
+     * closed.
+     * @param roots storage objects to write, along with everything packed in them
+     * @param out stream to write to
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if a tree contains a kind of storage or item the format
+     * does not support, or uses an unpack policy created with
+     * {@link UnpackPolicy#comparing(java.util.Comparator)}
+     */
+    public static void write(List<? extends Storage> roots, OutputStream out)
+            throws IOException, IllegalArgumentException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        data.writeByte(VERSION);
+        writeVarInt(data, roots.size());
+        Map<String, Integer> strings = new HashMap<>();
+        for (Storage root : roots) {
+            writeTree(data, root, strings);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads a snapshot written by {@link #write(List, OutputStream)}, rebuilding the storage
+     * trees it contains.
+     * @param in stream to read from
+     * @return root storage objects, in the order they were written
+     * @throws IOException if the stream cannot be read, or does not contain a valid snapshot
+     */
+    public static List<Storage> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a manifest snapshot");
+        }
+        int version = data.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        int rootCount = readVarInt(data);
+        List<Storage> roots = new ArrayList<>(rootCount);
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < rootCount; i++) {
+            byte tag = data.readByte();
+            if (tag != TRUCK && tag != BOX && tag != BAG) {
+                throw new IOException("Item found outside of any storage");
+            }
+            roots.add(readTree(data, tag, strings));
+        }
+        return roots;
+    }
+
+    /**
+     * Writes a storage object and everything packed in it.
+     * @param data stream to write to
+     * @param root storage object to write
+     * @param strings strings already written to the stream, with their reference numbers
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if the tree contains a kind of storage or item the format
+     * does not support, or uses a custom unpack policy
+     */
+    static void writeTree(DataOutputStream data, Storage root, Map<String, Integer> strings)
+            throws IOException, IllegalArgumentException {
+        // Fragile flags of the elements of each open storage object, and the next one to use
+        Deque<boolean[]> flags = new ArrayDeque<>();
+        Deque<int[]> next = new ArrayDeque<>();
+        try {
+            root.walk(new StorageVisitor() {
+                @Override
+                public boolean enterStorage(Storage storage, int depth) {
+                    // A root was not packed by anything, so it is recorded as it is now
+                    boolean packedFragile = flags.isEmpty()
+                            ? storage instanceof Box && ((Box) storage).isFragile()
+                            : flags.peek()[next.peek()[0]++];
+                    try {
+                        writeStorage(data, storage, packedFragile, strings);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    flags.push(storage.getPackedFragile());
+                    next.push(new int[] {0});
+                    return true;
+                }
+
+                @Override
+                public void exitStorage(Storage storage, int depth) {
+                    flags.pop();
+                    next.pop();
+                }
+
+                @Override
+                public void visitItem(Packable item, Storage container, int depth) {
+                    next.peek()[0]++;
+                    try {
+                        writeItem(data, item, strings);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Writes an item, or a storage object and everything packed in it.
+     * @param data stream to write to
+     * @param item item or storage object to write
+     * @param strings strings already written to the stream, with their reference numbers
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if the format does not support the item
+     */
+    static void writeNode(DataOutputStream data, Packable item, Map<String, Integer> strings)
+            throws IOException, IllegalArgumentException {
+        if (item instanceof Storage) {
+            writeTree(data, (Storage) item, strings);
+        } else {
+            writeItem(data, item, strings);
+        }
+    }
+
+    /**
+     * Reads an item written by {@link #writeNode(DataOutputStream, Packable, Map)}.
+     * @param data stream to read from
+     * @param strings strings already read from the stream, by reference number
+     * @return the item, or the storage object with everything packed in it
+     * @throws IOException if the stream cannot be read or does not hold a valid item
+     */
+    static Packable readNode(DataInputStream data, List<String> strings) throws IOException {
+        byte tag = data.readByte();
+        if (tag == BOX || tag == BAG) {
+            return (Packable) readTree(data, tag, strings);
+        } else if (tag == TRUCK) {
+            throw new IOException("Moving truck found inside another storage");
+        }
+        return readItem(data, tag, strings);
+    }
+
+    /**
+     * Reads a storage object and everything packed in it, after its tag has been read.
+     * @param data stream to read from
+     * @param tag tag of the storage object
+     * @param strings strings already read from the stream, by reference number
+     * @return the storage object, with everything packed in it
+     * @throws IOException if the stream cannot be read or does not hold a valid tree
+     */
+    static Storage readTree(DataInputStream data, byte tag, List<String> strings)
+            throws IOException {
+        SavedStorage root = readStorage(data, tag, strings);
+        // Storage objects still being read, and how many elements each is still waiting for
+        Deque<SavedStorage> open = new ArrayDeque<>();
+        Deque<int[]> remaining = new ArrayDeque<>();
+        open.push(root);
+        remaining.push(new int[] {readVarInt(data)});
+
+        while (true) {
+            // Close every storage object that has read all of its elements
+            while (remaining.peek()[0] == 0) {
+                SavedStorage finished = open.pop();
+                remaining.pop();
+                if (open.isEmpty()) {
+                    return restore(root);
+                } else if (!(finished.getStorage() instanceof Packable)) {
+                    throw new IOException("Moving truck found inside another storage");
+                }
+                open.peek().add(finished);
+                remaining.peek()[0]--;
+            }
+            tag = data.readByte();
+            if (tag == TRUCK || tag == BOX || tag == BAG) {
+                open.push(readStorage(data, tag, strings));
+                remaining.push(new int[] {readVarInt(data)});
+            } else {
+                open.peek().add(readItem(data, tag, strings));
+                remaining.peek()[0]--;
+            }
+        }
+    }
+
+    /**
+     * Packs the items read from a snapshot back into their storage objects.
+     * @param root storage object read, with everything recorded beneath it
+     * @return the rebuilt storage object
+     * @throws IOException if the items cannot be packed back, so were not written from a real
+     * storage tree
+     */
+    private static Storage restore(SavedStorage root) throws IOException {
+        try {
+            return root.restore();
+        } catch (PackingException e) {
+            throw new IOException("Snapshot items cannot be restored: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the fields of a storage object, without its elements.
+     * @param data stream to write to
+     * @param storage storage object to write
+     * @param packedFragile whether the storage object was fragile when it was packed
+     * @param strings strings already written to the stream, with their reference numbers
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if the format does not support the storage object or its
+     * unpack policy
+     */
+    private static void writeStorage(DataOutputStream data, Storage storage,
+                                     boolean packedFragile, Map<String, Integer> strings)
+            throws IOException {
+        int policy = Arrays.asList(POLICIES).indexOf(storage.getUnpackPolicy());
+        if (policy == -1) {
+            throw new IllegalArgumentException("Custom unpack policies cannot be saved");
+        }
+        if (storage instanceof MovingTruck) {
+            data.writeByte(TRUCK);
+        } else if (storage instanceof Box) {
+            data.writeByte(BOX);
+        } else if (storage instanceof Bag) {
+            data.writeByte(BAG);
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported storage " + storage.getClass().getSimpleName());
+        }
+        data.writeDouble(storage.getWidth());
+        data.writeDouble(storage.getHeight());
+        data.writeDouble(storage.getLength());
+        data.writeByte(storage.getSize().ordinal());
+        data.writeByte(policy);
+        if (storage instanceof Box) {
+            writeString(data, ((Box) storage).getComment(), strings);
+            data.writeBoolean(packedFragile);
+        }
+        writeVarInt(data, storage.getElements().size());
+    }
+
+    /**
+     * Reads the fields of a storage object written by
+     * {@link #writeStorage(DataOutputStream, Storage, boolean, Map)}, after its tag has been read.
+     * @param data stream to read from
+     * @param tag tag of the storage object
+     * @param strings strings already read from the stream, by reference number
+     * @return the storage object, still empty
+     * @throws IOException if the stream cannot be read or does not hold a valid storage object
+     */
+    private static SavedStorage readStorage(DataInputStream data, byte tag, List<String> strings)
+            throws IOException {
+        double width = data.readDouble();
+        double height = data.readDouble();
+        double length = data.readDouble();
+        Size size = readEnum(data, Size.values());
+        UnpackPolicy policy = readEnum(data, POLICIES);
+        Storage storage;
+        boolean packedFragile = false;
+        try {
+            switch (tag) {
+                case TRUCK -> storage = new MovingTruck(width, height, length, size);
+                case BOX -> {
+                    storage = new Box(width, height, length, size, readString(data, strings));
+                    packedFragile = data.readBoolean();
+                }
+                default -> storage = new Bag(width, height, length, size);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid storage in snapshot: " + e.getMessage(), e);
+        }
+        storage.setUnpackPolicy(policy);
+        return new SavedStorage(storage, packedFragile);
+    }
+
+    /**
+     * Writes an item that is not a storage object.
+     * @param data stream to write to
+     * @param item item to write
+     * @param strings strings already written to the stream, with their reference numbers
+     * @throws IOException if the stream cannot be written to
+     * @throws IllegalArgumentException if the format does not support the item
+     */
+    private static void writeItem(DataOutputStream data, Packable item,
+                                  Map<String, Integer> strings) throws IOException {
+        if (item instanceof Laptop) {
+            Laptop laptop = (Laptop) item;
+            data.writeByte(LAPTOP);
+            writeString(data, laptop.getOwner(), strings);
+            writeVarInt(data, laptop.getAge());
+        } else if (item instanceof Book) {
+            Book book = (Book) item;
+            data.writeByte(BOOK);
+            writeString(data, book.getOwner(), strings);
+            writeString(data, book.getTitle(), strings);
+            data.writeBoolean(book.isFiction());
+        } else if (item instanceof Clothes) {
+            Clothes clothes = (Clothes) item;
+            data.writeByte(CLOTHES);
+            writeString(data, clothes.getOwner(), strings);
+            data.writeByte(clothes.getSize().ordinal());
+            data.writeByte(clothes.getType().ordinal());
+        } else if (item instanceof Furniture) {
+            data.writeByte(FURNITURE);
+            data.writeByte(((Furniture) item).getType().ordinal());
+        } else {
+            throw new IllegalArgumentException(
+                    "Unsupported item " + item.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Reads an item written by {@link #writeItem(DataOutputStream, Packable, Map)}, after its
+     * tag has been read.
+     * @param data stream to read from
+     * @param tag tag of the item
+     * @param strings strings already read from the stream, by reference number
+     * @return the item
+     * @throws IOException if the stream cannot be read or does not hold a valid item
+     */
+    private static Packable readItem(DataInputStream data, byte tag, List<String> strings)
+            throws IOException {
+        try {
+            return switch (tag) {
+                case LAPTOP -> new Laptop(readString(data, strings), readVarInt(data));
+                case BOOK -> new Book(readString(data, strings), readString(data, strings),
+                        data.readBoolean());
+                case CLOTHES -> new Clothes(readString(data, strings),
+                        readEnum(data, Size.values()), readEnum(data, ClotheType.values()));
+                case FURNITURE -> new Furniture(readEnum(data, FurnitureType.values()));
+                default -> throw new IOException("Unknown tag " + tag);
+            };
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid item in snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a string, or a reference to it if it has already been written.
+     */
+    private static void writeString(DataOutputStream data, String value,
+                                    Map<String, Integer> strings) throws IOException {
+        Integer reference = strings.get(value);
+        if (reference != null) {
+            writeVarInt(data, reference);
+        } else {
+            // A reference one past the end of the table introduces a new string
+            writeVarInt(data, strings.size());
+            data.writeUTF(value);
+            strings.put(value, strings.size());
+        }
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String, Map)}.
+     * @param data stream to read from
+     * @param strings strings already read from the stream, by reference number, which a new
+     * string is added to
+     * @return the string
+     * @throws IOException if the stream cannot be read or refers to a string not read yet
+     */
+    private static String readString(DataInputStream data, List<String> strings)
+            throws IOException {
+        int reference = readVarInt(data);
+        if (reference == strings.size()) {
+            strings.add(data.readUTF());
+        } else if (reference > strings.size()) {
+            throw new IOException("Bad string reference " + reference);
+        }
+        return strings.get(reference);
+    }
+
+    /**
+     * Reads a value written as its position in the given array.
+     */
+    static <T> T readEnum(DataInputStream data, T[] values) throws IOException {
+        int ordinal = data.readUnsignedByte();
+        if (ordinal >= values.length) {
+            throw new IOException("Bad value " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Writes a non-negative int using seven bits per byte, so small numbers take one byte.
+     */
+    static void writeVarInt(DataOutputStream data, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            data.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte(value);
+    }
+
+    /**
+     * Reads a number written by {@link #writeVarInt(DataOutputStream, int)}.
+     * @param data stream to read from
+     * @return the number, which is never negative
+     * @throws IOException if the stream cannot be read, or does not hold a number that fits in
+     * a non-negative int
+     */
+    static int readVarInt(DataInputStream data) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = data.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                // The fifth byte only has room for the last four bits, and the top one of those
+                // would make the number negative
+                if (shift == 28 && b > 7) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed number");
+    }
+}
@@ -0,0 +1,481 @@
+package mms.manifest;
+
+import mms.furniture.Furniture;
+import mms.personal.Book;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.personal.Personal;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.StorageVisitor;
+import mms.utility.Packable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A fleet of storage trees stored in a memory-mapped file, which can be navigated and searched
+ * without reading the whole fleet into memory.
+ * <p>
+ * The file holds a fixed size header, then one fixed size record for every storage object and
+ * item, then a table of the strings (owners, titles and comments) the records refer to. Records
+ * are written depth first in packing order. Each record links to its first element and to the
+ * next element of the same container, so a container's elements can be listed without looking
+ * at anything else. Only the records that are actually looked at are read from the file, and
+ * strings are only decoded when asked for.
+ * <p>
+ * Files are limited to 2GB, which is around 40 million records.
+ */
+public class MappedManifest {
+
+    /**
+     * Number every manifest file starts with ("MMSM")
+     */
+    static final int MAGIC = 0x4D4D534D;
+
+    /**
+     * Version of the file format written by this class
+     */
+    static final int VERSION = 3;
+
+    /**
+     * Size of the file header in bytes
+     */
+    static final int HEADER_SIZE = 32;
+
+    /**
+     * Size of each record in bytes
+     */
+    static final int RECORD_SIZE = 48;
+
+    // Positions of the fields within a record
+    static final int TYPE = 0;
+    static final int SIZE = 1;
+    static final int KIND = 2;
+    static final int FLAGS = 3;
+    static final int TEXT = 4;
+    static final int TITLE = 8;
+    static final int NUMBER = 12;
+    static final int FIRST_CHILD = 16;
+    static final int NEXT_SIBLING = 20;
+    static final int WIDTH = 24;
+    static final int HEIGHT = 32;
+    static final int LENGTH = 40;
+
+    /**
+     * Position of the occupied capacity within a storage record, which shares the title field
+     * since storage objects have no title
+     */
+    static final int OCCUPIED = TITLE;
+
+    /**
+     * Flag set on books that are fiction
+     */
+    static final int FICTION = 1;
+
+    /**
+     * Flag set on boxes that counted as fragile when they were packed into their container
+     */
+    static final int PACKED_FRAGILE = 2;
+
+    /**
+     * Flag set on boxes that were fragile when the manifest was written
+     */
+    static final int FRAGILE = 4;
+
+    /**
+     * Record types, by the number stored in each record
+     */
+    private static final RecordType[] TYPES = RecordType.values();
+
+    /**
+     * Contents of the file
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Number of root storage objects
+     */
+    private final int rootCount;
+
+    /**
+     * Number of records
+     */
+    private final int recordCount;
+
+    /**
+     * Position of the string table in the file
+     */
+    private final int stringTable;
+
+    /**
+     * Strings decoded so far, by number
+     */
+    private final String[] strings;
+
+    private MappedManifest(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a manifest file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported manifest version " + buffer.getInt(4));
+        }
+        rootCount = buffer.getInt(8);
+        recordCount = buffer.getInt(12);
+        stringTable = (int) buffer.getLong(16);
+        if (stringTable != HEADER_SIZE + (long) recordCount * RECORD_SIZE
+                || stringTable + 4 > buffer.capacity()) {
+            throw new IOException("Corrupt manifest header");
+        }
+        strings = new String[buffer.getInt(stringTable)];
+    }
+
+    /**
+     * Opens a manifest file written by {@link #write(List, Path)}. The file is mapped into memory
+     * rather than read; nothing past the header is looked at until it is needed.
+     * @param file file to open
+     * @return manifest backed by the file
+     * @throws IOException if the file cannot be opened or is not a manifest file
+     */
+    public static MappedManifest open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Manifest file is too large");
+            }
+            return new MappedManifest(
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the given storage trees to a manifest file, replacing anything already in it.
+     * @param roots storage objects to write, along with everything packed in them
+     * @param file file to write to
+     * @throws IOException if the file cannot be written or the trees are too large for one file
+     * @throws IllegalArgumentException if a tree contains a kind of storage or item the format
+     * does not support, or uses a custom unpack policy
+     */
+    public static void write(List<? extends Storage> roots, Path file)
+            throws IOException, IllegalArgumentException {
+        // First pass: count the records and number the strings
+        Map<String, Integer> numbers = new LinkedHashMap<>();
+        int[] records = {0};
+        for (Storage root : roots) {
+            root.walk(new StorageVisitor() {
+                @Override
+                public boolean enterStorage(Storage storage, int depth) {
+                    records[0]++;
+                    if (storage instanceof Box) {
+                        numbers.putIfAbsent(((Box) storage).getComment(), numbers.size());
+                    }
+                    return true;
+                }
+
+                @Override
+                public void visitItem(Packable item, Storage container, int depth) {
+                    records[0]++;
+                    if (item instanceof Personal) {
+                        numbers.putIfAbsent(((Personal) item).getOwner(), numbers.size());
+                    }
+                    if (item instanceof Book) {
+                        numbers.putIfAbsent(((Book) item).getTitle(), numbers.size());
+                    }
+                }
+            });
+        }
+        List<byte[]> encoded = new ArrayList<>(numbers.size());
+        long tableSize = 4 + 4L * numbers.size();
+        for (String string : numbers.keySet()) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            encoded.add(bytes);
+            tableSize += 4 + bytes.length;
+        }
+        long stringTable = HEADER_SIZE + (long) records[0] * RECORD_SIZE;
+        if (stringTable + tableSize > Integer.MAX_VALUE) {
+            throw new IOException("Too many records for one manifest file");
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(
+                    FileChannel.MapMode.READ_WRITE, 0, stringTable + tableSize);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, roots.size());
+            buffer.putInt(12, records[0]);
+            buffer.putLong(16, stringTable);
+            writeRecords(roots, buffer, numbers);
+
+            int position = (int) stringTable;
+            buffer.putInt(position, encoded.size());
+            int offset = 4 + 4 * encoded.size();
+            for (int i = 0; i < encoded.size(); i++) {
+                buffer.putInt(position + 4 + 4 * i, offset);
+                buffer.putInt(position + offset, encoded.get(i).length);
+                buffer.put(position + offset + 4, encoded.get(i));
+                offset += 4 + encoded.get(i).length;
+            }
+            buffer.force();
+        }
+    }
+
+    /**
+     * Second pass of {@link #write(List, Path)}: writes a record for every storage object and
+     * item, linking each one to the previous element of the same container.
+     */
+    private static void writeRecords(List<? extends Storage> roots, ByteBuffer buffer,
+                                     Map<String, Integer> numbers) {
+        int[] next = {0};
+        // Record number of the latest element written in each open storage object, with an
+        // extra entry at the bottom for the roots
+        Deque<int[]> latest = new ArrayDeque<>();
+        latest.push(new int[] {-1});
+        // Fragile flags of the elements of each open storage object, and the next one to use
+        Deque<boolean[]> flags = new ArrayDeque<>();
+        Deque<int[]> nextFlag = new ArrayDeque<>();
+        StorageVisitor visitor = new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                boolean packedFragile = flags.isEmpty()
+                        ? storage instanceof Box && ((Box) storage).isFragile()
+                        : flags.peek()[nextFlag.peek()[0]++];
+                flags.push(storage.getPackedFragile());
+                nextFlag.push(new int[] {0});
+                int record = add();
+                int position = HEADER_SIZE + record * RECORD_SIZE;
+                int policy = Arrays.asList(ManifestSnapshot.POLICIES)
+                        .indexOf(storage.getUnpackPolicy());
+                if (policy == -1) {
+                    throw new IllegalArgumentException("Custom unpack policies cannot be saved");
+                }
+                RecordType type;
+                if (storage instanceof MovingTruck) {
+                    type = RecordType.TRUCK;
+                } else if (storage instanceof Box) {
+                    type = RecordType.BOX;
+                    buffer.putInt(position + TEXT, numbers.get(((Box) storage).getComment()));
+                } else if (storage instanceof Bag) {
+                    type = RecordType.BAG;
+                } else {
+                    throw new IllegalArgumentException(
+                            "Unsupported storage " + storage.getClass().getSimpleName());
+                }
+                buffer.put(position + TYPE, (byte) type.ordinal());
+                buffer.put(position + SIZE, (byte) storage.getSize().ordinal());
+                buffer.put(position + KIND, (byte) policy);
+                int flagBits = packedFragile ? PACKED_FRAGILE : 0;
+                if (storage instanceof Box && ((Box) storage).isFragile()) {
+                    flagBits |= FRAGILE;
+                }
+                buffer.put(position + FLAGS, (byte) flagBits);
+                buffer.putInt(position + NUMBER, storage.getElements().size());
+                buffer.putInt(position + OCCUPIED, storage.getOccupiedCapacity());
+                putDimensions(position, storage.getWidth(), storage.getHeight(),
+                        storage.getLength());
+                latest.push(new int[] {-1});
+                return true;
+            }
+
+            @Override
+            public void exitStorage(Storage storage, int depth) {
+                latest.pop();
+                flags.pop();
+                nextFlag.pop();
+            }
+
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                nextFlag.peek()[0]++;
+                int position = HEADER_SIZE + add() * RECORD_SIZE;
+                RecordType type;
+                if (item instanceof Laptop) {
+                    type = RecordType.LAPTOP;
+                    buffer.putInt(position + NUMBER, ((Laptop) item).getAge());
+                } else if (item instanceof Book) {
+                    type = RecordType.BOOK;
+                    buffer.putInt(position + TITLE, numbers.get(((Book) item).getTitle()));
+                    buffer.put(position + FLAGS, (byte) (((Book) item).isFiction() ? FICTION : 0));
+                } else if (item instanceof Clothes) {
+                    type = RecordType.CLOTHES;
+                    buffer.put(position + SIZE, (byte) ((Clothes) item).getSize().ordinal());
+                    buffer.put(position + KIND, (byte) ((Clothes) item).getType().ordinal());
+                } else if (item instanceof Furniture) {
+                    type = RecordType.FURNITURE;
+                    buffer.put(position + KIND, (byte) ((Furniture) item).getType().ordinal());
+                } else {
+                    throw new IllegalArgumentException(
+                            "Unsupported item " + item.getClass().getSimpleName());
+                }
+                if (item instanceof Personal) {
+                    buffer.putInt(position + TEXT, numbers.get(((Personal) item).getOwner()));
+                }
+                buffer.put(position + TYPE, (byte) type.ordinal());
+                putDimensions(position, item.getWidth(), item.getHeight(), item.getLength());
+            }
+
+            /**
+             * Claims the next record, links it to the previous element of its container (or to
+             * its container, if it is the first element) and returns its number.
+             */
+            private int add() {
+                int record = next[0]++;
+                int position = HEADER_SIZE + record * RECORD_SIZE;
+                buffer.putInt(position + TEXT, -1);
+                buffer.putInt(position + TITLE, -1);
+                buffer.putInt(position + FIRST_CHILD, -1);
+                buffer.putInt(position + NEXT_SIBLING, -1);
+                int[] previous = latest.peek();
+                if (previous[0] != -1) {
+                    buffer.putInt(HEADER_SIZE + previous[0] * RECORD_SIZE + NEXT_SIBLING,
+                            record);
+                } else if (latest.size() > 1) {
+                    // First element of a container, which is always the record before it
+                    buffer.putInt(HEADER_SIZE + (record - 1) * RECORD_SIZE + FIRST_CHILD,
+                            record);
+                }
+                previous[0] = record;
+                return record;
+            }
+
+            private void putDimensions(int position, double width, double height,
+                                       double length) {
+                buffer.putDouble(position + WIDTH, width);
+                buffer.putDouble(position + HEIGHT, height);
+                buffer.putDouble(position + LENGTH, length);
+            }
+        };
+        for (Storage root : roots) {
+            root.walk(visitor);
+        }
+    }
+
+    /**
+     * Returns the number of root storage objects in the manifest
+     * @return number of roots
+     */
+    public int getRootCount() {
+        return rootCount;
+    }
+
+    /**
+     * Returns the total number of storage objects and items in the manifest
+     * @return number of records
+     */
+    public int getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Returns the root storage objects of the manifest, in the order they were written
+     * @return records of the roots
+     */
+    public List<ManifestRecord> getRoots() {
+        List<ManifestRecord> roots = new ArrayList<>(rootCount);
+        for (int record = rootCount == 0 ? -1 : 0; record != -1;
+                record = getInt(record, NEXT_SIBLING)) {
+            roots.add(new ManifestRecord(this, record));
+        }
+        return roots;
+    }
+
+    /**
+     * Returns the record with the given number. Records are numbered from 0 in the order they
+     * were written, depth first.
+     * @param number number of the record
+     * @return the record
+     * @throws IndexOutOfBoundsException if there is no record with that number
+     */
+    public ManifestRecord getRecord(int number) throws IndexOutOfBoundsException {
+        if (number < 0 || number >= recordCount) {
+            throw new IndexOutOfBoundsException("No record " + number);
+        }
+        return new ManifestRecord(this, number);
+    }
+
+    /**
+     * Finds every personal item belonging to the given owner by scanning the records. The owner
+     * is looked up in the string table once, after which each record is checked by comparing a
+     * single number, without decoding any strings.
+     * @param owner owner to look for
+     * @return records of the owner's items, in the order they were written
+     */
+    public List<ManifestRecord> findByOwner(String owner) {
+        List<ManifestRecord> found = new ArrayList<>();
+        int number = findString(owner);
+        if (number == -1) {
+            return found;
+        }
+        for (int record = 0; record < recordCount; record++) {
+            RecordType type = getType(record);
+            if (!type.isStorage() && type != RecordType.FURNITURE
+                    && getInt(record, TEXT) == number) {
+                found.add(new ManifestRecord(this, record));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Returns the number of the given string in the string table.
+     * @param value string to look for
+     * @return number of the string; -1 if it is not in the table
+     */
+    private int findString(String value) {
+        for (int i = 0; i < strings.length; i++) {
+            if (value.equals(getString(i))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    RecordType getType(int record) {
+        return TYPES[getByte(record, TYPE)];
+    }
+
+    int getByte(int record, int field) {
+        return buffer.get(HEADER_SIZE + record * RECORD_SIZE + field);
+    }
+
+    int getInt(int record, int field) {
+        return buffer.getInt(HEADER_SIZE + record * RECORD_SIZE + field);
+    }
+
+    double getDouble(int record, int field) {
+        return buffer.getDouble(HEADER_SIZE + record * RECORD_SIZE + field);
+    }
+
+    /**
+     * Returns a string from the string table, decoding it the first time it is asked for.
+     * @param number number of the string; -1 for none
+     * @return the string; null if number is -1
+     */
+    String getString(int number) {
+        if (number == -1) {
+            return null;
+        }
+        if (strings[number] == null) {
+            int position = stringTable + buffer.getInt(stringTable + 4 + 4 * number);
+            byte[] bytes = new byte[buffer.getInt(position)];
+            buffer.get(position + 4, bytes);
+            strings[number] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return strings[number];
+    }
+}
@@ -0,0 +1,485 @@
+package mms.manifest;
+
+import mms.exceptions.BadItemException;
+import mms.exceptions.PackingException;
+import mms.storage.Storage;
+import mms.storage.StorageListener;
+import mms.storage.StorageVisitor;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An append-only journal of every item packed into or unpacked from a storage tree, which can
+ * be replayed to rebuild the tree after a crash.
+ * <p>
+ * The journal file starts with a snapshot of the tree as it was when journaling started, in the
+ * same format as {@link ManifestSnapshot}. Each pack is then recorded as the number of the
+ * container and the item (including everything inside it, if it is a storage object), each
+ * unpack as just the number of the container, and each change of unpack policy as the number of
+ * the container and the new policy. Unpacking is repeated on replay by calling
+ * {@link Storage#unpack()} on the same container, which takes out the same item because unpack
+ * policies only depend on what was packed and in what order.
+ * <p>
+ * Records are collected in memory and written to disk together (group commit). They are written
+ * and forced to disk once the given number of records has built up, when {@link #sync()} is
+ * called and when the journal is closed. If the program crashes, only the records since the
+ * last of these are lost.
+ * <p>
+ * Each item is encoded before it is packed, so an item that cannot be saved is refused by
+ * {@link Storage#pack(Packable)} instead of being packed without a record, and custom unpack
+ * policies are refused by {@link Storage#setUnpackPolicy(UnpackPolicy)}. Errors writing the
+ * journal to disk are not thrown while packing or unpacking, since the change has already been
+ * made by then; instead nothing more is recorded, and the error is thrown by the next call to
+ * {@link #sync()} or {@link #close()}.
+ */
+public class PackingJournal implements StorageListener, AutoCloseable {
+
+    /**
+     * Number every journal starts with ("MMSJ")
+     */
+    static final int MAGIC = 0x4D4D534A;
+
+    /**
+     * Version of the journal format written by this class
+     */
+    static final int VERSION = 2;
+
+    /**
+     * Record of an item being packed
+     */
+    static final byte PACK = 1;
+
+    /**
+     * Record of an item being unpacked
+     */
+    static final byte UNPACK = 2;
+
+    /**
+     * Record of the unpack policy of a storage object being changed
+     */
+    static final byte POLICY = 3;
+
+    /**
+     * File the journal is written to
+     */
+    private final FileChannel channel;
+
+    /**
+     * Storage tree being journaled
+     */
+    private final Storage root;
+
+    /**
+     * Number of records to collect before writing them to disk
+     */
+    private final int groupSize;
+
+    /**
+     * Records waiting to be written
+     */
+    private final ByteArrayOutputStream pending;
+
+    /**
+     * The record currently being written
+     */
+    private final ByteArrayOutputStream recordBytes;
+
+    /**
+     * Stream writing to recordBytes
+     */
+    private final DataOutputStream record;
+
+    /**
+     * Strings already written to the journal, with their reference numbers
+     */
+    private final Map<String, Integer> strings;
+
+    /**
+     * Number given to each storage object in the tree
+     */
+    private final Map<Storage, Integer> numbers;
+
+    /**
+     * Number to give the next storage object added to the tree
+     */
+    private int nextNumber;
+
+    /**
+     * Number of records waiting to be written
+     */
+    private int pendingRecords;
+
+    /**
+     * Number of strings introduced by records that have been kept; strings numbered from here
+     * on belong to a record still being written
+     */
+    private int keptStrings;
+
+    /**
+     * Storage object the record in recordBytes is for, if it was written before the item was
+     * packed
+     */
+    private Storage preparedContainer;
+
+    /**
+     * Item the record in recordBytes is for, if it was written before the item was packed
+     */
+    private Packable preparedItem;
+
+    /**
+     * First error that stopped the journal from being written; null if there has been none
+     */
+    private IOException failure;
+
+    /**
+     * Starts journaling the given storage tree to a file, replacing anything already in it. The
+     * current state of the tree is written and forced to disk before this returns.
+     * @param file file to write the journal to
+     * @param root storage tree to journal
+     * @param groupSize number of records to collect before writing them to disk
+     * @throws IOException if the journal cannot be written
+     * @throws IllegalArgumentException if groupSize < 1, or if the tree contains a kind of
+     * storage or item that cannot be saved (see {@link ManifestSnapshot})
+     */
+    public PackingJournal(Path file, Storage root, int groupSize)
+            throws IOException, IllegalArgumentException {
+        if (groupSize < 1) {
+            throw new IllegalArgumentException("Group size < 1");
+        }
+        this.root = root;
+        this.groupSize = groupSize;
+        this.pending = new ByteArrayOutputStream();
+        this.recordBytes = new ByteArrayOutputStream();
+        this.record = new DataOutputStream(recordBytes);
+        this.strings = new HashMap<>();
+        this.numbers = new IdentityHashMap<>();
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+        try {
+            DataOutputStream header = new DataOutputStream(pending);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            ManifestSnapshot.writeTree(header, root, strings);
+            number(root);
+            keptStrings = strings.size();
+            sync();
+        } catch (IOException | IllegalArgumentException e) {
+            channel.close();
+            throw e;
+        }
+        root.addListener(this);
+    }
+
+    /**
+     * Rebuilds a storage tree from a journal. A record cut short at the end of the journal (for
+     * example by a crash part way through a write) is ignored.
+     * @param file journal to read
+     * @return the storage tree as it was after the last complete record
+     * @throws IOException if the journal cannot be read or is not a valid journal
+     */
+    public static Storage replay(Path file) throws IOException {
+        try (DataInputStream data = new DataInputStream(new BufferedInputStream(
+                Channels.newInputStream(FileChannel.open(file, StandardOpenOption.READ))))) {
+            if (data.readInt() != MAGIC) {
+                throw new IOException("Not a packing journal");
+            }
+            int version = data.readUnsignedByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version " + version);
+            }
+            List<String> strings = new ArrayList<>();
+            byte tag = data.readByte();
+            if (tag != ManifestSnapshot.TRUCK && tag != ManifestSnapshot.BOX
+                    && tag != ManifestSnapshot.BAG) {
+                throw new IOException("Journal does not start with a storage tree");
+            }
+            Storage root = ManifestSnapshot.readTree(data, tag, strings);
+            List<Storage> containers = new ArrayList<>();
+            addContainers(root, containers);
+
+            while (true) {
+                int type = data.read();
+                if (type == -1) {
+                    return root;
+                }
+                try {
+                    Storage container = containerAt(containers, ManifestSnapshot.readVarInt(data));
+                    if (type == PACK) {
+                        Packable item = ManifestSnapshot.readNode(data, strings);
+                        container.pack(item);
+                        if (item instanceof Storage) {
+                            addContainers((Storage) item, containers);
+                        }
+                    } else if (type == UNPACK) {
+                        container.unpack();
+                    } else if (type == POLICY) {
+                        container.setUnpackPolicy(
+                                ManifestSnapshot.readEnum(data, ManifestSnapshot.POLICIES));
+                    } else {
+                        throw new IOException("Unknown journal record " + type);
+                    }
+                } catch (EOFException e) {
+                    // The last record was only partly written
+                    return root;
+                } catch (PackingException e) {
+                    throw new IOException("Journaled item cannot be packed: " + e.getMessage(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the record of an item about to be packed into the journaled tree, so that an item
+     * that cannot be saved is refused before it is packed.
+     * @throws BadItemException if the item cannot be saved (see {@link ManifestSnapshot})
+     */
+    @Override
+    public synchronized void checkPack(Storage container, Packable item)
+            throws BadItemException {
+        discardRecord();
+        try {
+            writePack(container, item);
+        } catch (IOException | IllegalArgumentException e) {
+            discardRecord();
+            throw new BadItemException("Item cannot be journaled: " + e.getMessage());
+        }
+        preparedContainer = container;
+        preparedItem = item;
+    }
+
+    /**
+     * Records an item being packed into the journaled tree, using the record written by
+     * {@link #checkPack(Storage, Packable)}. Nothing is thrown; see the class description.
+     */
+    @Override
+    public synchronized void itemPacked(Storage container, Packable item) {
+        if (preparedContainer != container || preparedItem != item) {
+            // The item was not checked by this journal first
+            discardRecord();
+            try {
+                writePack(container, item);
+            } catch (IOException | IllegalArgumentException e) {
+                discardRecord();
+                fail(new IOException("Item cannot be journaled: " + e.getMessage(), e));
+            }
+        }
+        preparedContainer = null;
+        preparedItem = null;
+        if (item instanceof Storage) {
+            number((Storage) item);
+        }
+        recorded();
+    }
+
+    /**
+     * Records an item being unpacked from the journaled tree. Nothing is thrown; see the class
+     * description.
+     */
+    @Override
+    public synchronized void itemUnpacked(Storage container, Packable item) {
+        discardRecord();
+        try {
+            record.writeByte(UNPACK);
+            ManifestSnapshot.writeVarInt(record, numbers.get(container));
+        } catch (IOException e) {
+            discardRecord();
+            fail(e);
+        }
+        if (item instanceof Storage) {
+            forget((Storage) item);
+        }
+        recorded();
+    }
+
+    /**
+     * Refuses custom unpack policies, which cannot be saved.
+     * @throws IllegalArgumentException if the policy is not one of the policies provided by
+     * {@link UnpackPolicy}
+     */
+    @Override
+    public void checkUnpackPolicy(Storage storage, UnpackPolicy policy)
+            throws IllegalArgumentException {
+        if (policyNumber(policy) == -1) {
+            throw new IllegalArgumentException("Custom unpack policies cannot be journaled");
+        }
+    }
+
+    /**
+     * Records the unpack policy of a storage object in the journaled tree being changed.
+     * Nothing is thrown; see the class description.
+     */
+    @Override
+    public synchronized void unpackPolicyChanged(Storage storage, UnpackPolicy policy) {
+        discardRecord();
+        try {
+            record.writeByte(POLICY);
+            ManifestSnapshot.writeVarInt(record, numbers.get(storage));
+            record.writeByte(policyNumber(policy));
+        } catch (IOException e) {
+            discardRecord();
+            fail(e);
+        }
+        recorded();
+    }
+
+    /**
+     * Writes any records waiting in memory to the journal and forces them to disk.
+     * @throws IOException if the journal cannot be written, or if an earlier record could not
+     * be written
+     */
+    public synchronized void sync() throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (pending.size() > 0) {
+            ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            pending.reset();
+            pendingRecords = 0;
+        }
+        channel.force(false);
+    }
+
+    /**
+     * Stops journaling, writing any records waiting in memory to disk first.
+     * @throws IOException if the journal cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        root.removeListener(this);
+        try {
+            sync();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the record of an item being packed to recordBytes.
+     */
+    private void writePack(Storage container, Packable item) throws IOException {
+        record.writeByte(PACK);
+        ManifestSnapshot.writeVarInt(record, numbers.get(container));
+        ManifestSnapshot.writeNode(record, item, strings);
+    }
+
+    /**
+     * Throws away the record being written, and any strings it introduced.
+     */
+    private void discardRecord() {
+        recordBytes.reset();
+        if (strings.size() > keptStrings) {
+            strings.values().removeIf(number -> number >= keptStrings);
+        }
+        preparedContainer = null;
+        preparedItem = null;
+    }
+
+    /**
+     * Stops recording after an error, keeping the first error to throw from {@link #sync()}.
+     */
+    private void fail(IOException e) {
+        if (failure == null) {
+            failure = e;
+        }
+    }
+
+    /**
+     * Adds the record just written to the group waiting in memory, writing the group to disk
+     * once it is big enough. Once the journal has failed, records are thrown away instead.
+     */
+    private void recorded() {
+        if (failure != null) {
+            discardRecord();
+            return;
+        }
+        try {
+            recordBytes.writeTo(pending);
+            recordBytes.reset();
+            keptStrings = strings.size();
+            if (++pendingRecords >= groupSize) {
+                sync();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * Returns the number the given policy is saved as.
+     * @return position of the policy in {@link ManifestSnapshot#POLICIES}; -1 for custom
+     * policies
+     */
+    private static int policyNumber(UnpackPolicy policy) {
+        return Arrays.asList(ManifestSnapshot.POLICIES).indexOf(policy);
+    }
+
+    /**
+     * Gives numbers to the given storage object and every storage object inside it, in the same
+     * order that {@link #addContainers(Storage, List)} lists them on replay.
+     */
+    private void number(Storage storage) {
+        storage.walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                numbers.put(storage, nextNumber++);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Forgets the numbers of a storage object that has left the tree and everything inside it.
+     * If it is packed back in later, it is recorded in full and numbered again.
+     */
+    private void forget(Storage storage) {
+        storage.walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                numbers.remove(storage);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Adds the given storage object and every storage object inside it to the list of numbered
+     * containers.
+     */
+    private static void addContainers(Storage storage, List<Storage> containers) {
+        storage.walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                containers.add(storage);
+                return true;
+            }
+        });
+    }
+
+    private static Storage containerAt(List<Storage> containers, int number) throws IOException {
+        if (number < 0 || number >= containers.size()) {
+            throw new IOException("Unknown container " + number);
+        }
+        return containers.get(number);
+    }
+}
@@ -0,0 +1,49 @@
+package mms.manifest;
+
+/**
+ * Enum to represent the kinds of record stored in a {@link MappedManifest}
+ */
+public enum RecordType {
+    /**
+     * A moving truck
+     */
+    TRUCK,
+
+    /**
+     * A box
+     */
+    BOX,
+
+    /**
+     * A bag
+     */
+    BAG,
+
+    /**
+     * A laptop
+     */
+    LAPTOP,
+
+    /**
+     * A book
+     */
+    BOOK,
+
+    /**
+     * A piece of clothing
+     */
+    CLOTHES,
+
+    /**
+     * A piece of furniture
+     */
+    FURNITURE;
+
+    /**
+     * Returns whether records of this type are storage objects that can have elements
+     * @return true for trucks, boxes and bags
+     */
+    public boolean isStorage() {
+        return this == TRUCK || this == BOX || this == BAG;
+    }
+}
@@ -0,0 +1,132 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.storage.Storage;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A storage object read from a saved copy, such as a snapshot or a manifest file, along with the
+ * elements recorded for it. The storage object starts out empty, and {@link #restore()} packs
+ * the elements back into it.
+ * <p>
+ * Packing the elements back one storage object at a time does not always work: the checks made
+ * by {@link Storage#pack(Packable)} depend on what each storage object held at the time, and a
+ * box may have been filled after it was packed. Each storage object is therefore packed into its
+ * container while it is empty, and filled afterwards, so every check passes that passed when the
+ * original was packed. Whether a box was fragile when it was packed, which
+ * {@link UnpackPolicy#fragileLast()} goes by, is recreated as well. Every element goes through
+ * pack, so the rebuilt tree meets the same rules as the original.
+ */
+class SavedStorage {
+
+    /**
+     * Storage object being rebuilt
+     */
+    private final Storage storage;
+
+    /**
+     * Whether the storage object was fragile when it was packed into its container
+     */
+    private final boolean packedFragile;
+
+    /**
+     * Elements recorded for the storage object, in packing order
+     */
+    private final List<Packable> elements;
+
+    /**
+     * Saved copies of the storage objects among the elements, in the same order
+     */
+    private final List<SavedStorage> nested;
+
+    /**
+     * Creates a saved copy with no elements recorded yet.
+     * @param storage empty storage object to rebuild
+     * @param packedFragile whether the storage object was fragile when it was packed
+     */
+    SavedStorage(Storage storage, boolean packedFragile) {
+        this.storage = storage;
+        this.packedFragile = packedFragile;
+        this.elements = new ArrayList<>();
+        this.nested = new ArrayList<>();
+    }
+
+    /**
+     * Returns the storage object being rebuilt
+     * @return storage object
+     */
+    Storage getStorage() {
+        return storage;
+    }
+
+    /**
+     * Records an item that is not a storage object as the next element.
+     * @param item item to record
+     */
+    void add(Packable item) {
+        elements.add(item);
+    }
+
+    /**
+     * Records a storage object as the next element.
+     * @param child saved copy of the storage object
+     * @throws ClassCastException if the storage object cannot be packed, like a moving truck
+     */
+    void add(SavedStorage child) throws ClassCastException {
+        elements.add((Packable) child.storage);
+        nested.add(child);
+    }
+
+    /**
+     * Packs every recorded element back into the storage object, and the elements recorded for
+     * each storage object among them, as described in the class description.
+     * @return the rebuilt storage object
+     * @throws PackingException if an element is refused, which does not happen for elements
+     * recorded from a real storage tree
+     */
+    Storage restore() throws PackingException {
+        // Storage objects packed into their containers but not filled yet
+        Deque<SavedStorage> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            SavedStorage saved = pending.pop();
+            int nextNested = 0;
+            for (Packable item : saved.elements) {
+                if (item instanceof Storage) {
+                    SavedStorage child = saved.nested.get(nextNested++);
+                    child.packInto(saved.storage);
+                    pending.push(child);
+                } else {
+                    saved.storage.pack(item);
+                }
+            }
+        }
+        return storage;
+    }
+
+    /**
+     * Packs the storage object, still empty, into its container. A box that was fragile when it
+     * was packed holds a television while it is packed, so it counts as fragile again; a
+     * television fits wherever a laptop does, and takes up no more room than the laptop or
+     * television the box held at the time.
+     * @param container storage object to pack into
+     * @throws PackingException if the container refuses the storage object
+     */
+    private void packInto(Storage container) throws PackingException {
+        if (packedFragile) {
+            storage.pack(new Furniture(FurnitureType.TELEVISION));
+            container.pack((Packable) storage);
+            storage.unpack();
+        } else {
+            container.pack((Packable) storage);
+        }
+    }
+}
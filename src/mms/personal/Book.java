@@ -1,10 +1,17 @@
 package mms.personal;
 
+import mms.utility.Dimensions;
+
 /**
  * Represents a book that can be read, that has an owner and title and is fictional or not
  */
 public class Book extends Personal {
 
+    /**
+     * Dimensions shared by every book
+     */
+    private static final Dimensions DIMENSIONS = new Dimensions(20, 20, 5);
+
     /**
      * Title of the book
      */
@@ -24,7 +31,7 @@ public class Book extends Personal {
      * @throws IllegalArgumentException if the title and/or owner is null or an empty string
      */
     public Book(String owner, String title, boolean isFiction) throws IllegalArgumentException {
-        super(owner, 20, 20, 5);
+        super(owner, DIMENSIONS);
         if (title == null || title.isEmpty()) {
             throw new IllegalArgumentException();
         }
@@ -40,6 +47,14 @@ public class Book extends Personal {
         return title;
     }
 
+    /**
+     * Returns whether the book is fiction
+     * @return true if the book is fiction, false if it is non-fiction
+     */
+    public boolean isFiction() {
+        return isFiction;
+    }
+
     /**
      * Returns the human-readable representation of the book in the format:
      * <p>Book ('owner') Title: 'title' ('isFiction')</p>
@@ -52,10 +67,8 @@ public class Book extends Personal {
      * @return string representation of this book
      */
     @Override
-    public String toString() {
-        return String.format(
-                "%s Title: %s (%s)", super.toString(), getTitle(),
-                isFiction ? "Fiction" : "Non-Fiction"
-        );
+    protected String describe() {
+        return super.describe() + " Title: " + title + " ("
+                + (isFiction ? "Fiction" : "Non-Fiction") + ")";
     }
 }
\ No newline at end of file
@@ -1,5 +1,6 @@
 package mms.personal;
 
+import mms.utility.Dimensions;
 import mms.utility.Size;
 
 /**
@@ -7,6 +8,16 @@ import mms.utility.Size;
  */
 public class Clothes extends Personal {
 
+    /**
+     * Dimensions shared by every piece of clothing of each size, in the order of
+     * {@link Size#values()}
+     */
+    private static final Dimensions[] DIMENSIONS = {
+        new Dimensions(40, 65, 10),
+        new Dimensions(50, 70, 10),
+        new Dimensions(55, 75, 10)
+    };
+
     /**
      * Type of clothing
      */
@@ -30,12 +41,7 @@ public class Clothes extends Personal {
      * @param type type of clothing
      */
     public Clothes(String owner, Size size, ClotheType type) {
-        super(owner);
-        switch (size) {
-            case SMALL -> super.setDimensions(40, 65, 10);
-            case MEDIUM -> super.setDimensions(50, 70, 10);
-            case LARGE -> super.setDimensions(55, 75, 10);
-        }
+        super(owner, DIMENSIONS[size.ordinal()]);
         this.size = size;
         this.type = type;
     }
@@ -68,7 +74,7 @@ public class Clothes extends Personal {
      * @return string representation of this piece of clothing
      */
     @Override
-    public String toString() {
-        return String.format("%s (%s, %s)", super.toString(), getSize(), getType());
+    protected String describe() {
+        return super.describe() + " (" + getSize() + ", " + getType() + ")";
     }
 }
\ No newline at end of file
@@ -1,10 +1,17 @@
 package mms.personal;
 
+import mms.utility.Dimensions;
+
 /**
  * Represents a laptop object
  */
 public class Laptop extends Personal {
 
+    /**
+     * Dimensions shared by every laptop
+     */
+    private static final Dimensions DIMENSIONS = new Dimensions(35, 20, 2);
+
     /**
      * Age of the laptop
      */
@@ -17,7 +24,7 @@ public class Laptop extends Personal {
      * @throws IllegalArgumentException if the age < 0
      */
     public Laptop(String owner, int age) throws IllegalArgumentException {
-        super(owner, 35, 20, 2);
+        super(owner, DIMENSIONS);
         if (age < 0) {
             throw new IllegalArgumentException("Age provided is less than 0");
         }
@@ -43,7 +50,7 @@ public class Laptop extends Personal {
      * @return string representation of this laptop
      */
     @Override
-    public String toString() {
-        return String.format("%s - %s", super.toString(), getAge());
+    protected String describe() {
+        return super.describe() + " - " + getAge();
     }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package mms.personal;
 
+import mms.utility.Dimensions;
 import mms.utility.Packable;
+import mms.utility.StringDictionary;
 
 /**
  * Represents a personal item, which come in many sizes but always have an owner
@@ -8,24 +10,19 @@ import mms.utility.Packable;
 public abstract class Personal implements Packable {
 
     /**
-     * Width of the personal item in cm
+     * Dimensions of the personal item, which may be shared with other items of the same kind
      */
-    private double width;
+    private Dimensions dimensions;
 
     /**
-     * Length of the personal item in cm
+     * Id of the owner of the personal item in {@link StringDictionary#OWNERS}
      */
-    private double length;
+    private final int ownerId;
 
     /**
-     * Height of the personal item in cm
+     * Description of the personal item, built the first time it is needed
      */
-    private double height;
-
-    /**
-     * The owner of the personal item
-     */
-    private final String owner;
+    private String description;
 
     /**
      * Creates a personal item with a given owner and a width, length and height of 0
@@ -36,10 +33,8 @@ public abstract class Personal implements Packable {
         if (owner == null || owner.isEmpty()) {
             throw new IllegalArgumentException("Owner is null or empty");
         }
-        this.owner = owner;
-        width = 0;
-        height = 0;
-        length = 0;
+        this.ownerId = StringDictionary.OWNERS.idOf(owner);
+        dimensions = Dimensions.NONE;
     }
 
     /**
@@ -59,9 +54,19 @@ public abstract class Personal implements Packable {
         if (width < 0 || height < 0 || length < 0) {
             throw new IllegalArgumentException();
         }
-        this.width = width;
-        this.height = height;
-        this.length = length;
+        this.dimensions = new Dimensions(width, height, length);
+    }
+
+    /**
+     * Creates a personal item with a given owner and dimensions. Items of the same kind should
+     * pass the same dimensions object, so it is only stored once.
+     * @param owner owner of the personal item
+     * @param dimensions dimensions of the personal item
+     * @throws IllegalArgumentException if the given owner is null or an empty string
+     */
+    protected Personal(String owner, Dimensions dimensions) throws IllegalArgumentException {
+        this(owner);
+        this.dimensions = dimensions;
     }
 
     /**
@@ -78,7 +83,7 @@ public abstract class Personal implements Packable {
      */
     @Override
     public double getWidth() {
-        return width;
+        return dimensions.getWidth();
     }
 
     /**
@@ -87,7 +92,7 @@ public abstract class Personal implements Packable {
      */
     @Override
     public double getLength() {
-        return length;
+        return dimensions.getLength();
     }
 
     /**
@@ -96,7 +101,7 @@ public abstract class Personal implements Packable {
      */
     @Override
     public double getHeight() {
-        return height;
+        return dimensions.getHeight();
     }
 
     /**
@@ -106,9 +111,15 @@ public abstract class Personal implements Packable {
      * @param length new length of the item in cm
      */
     protected void setDimensions(double width, double height, double length) {
-        this.width = width;
-        this.height = height;
-        this.length = length;
+        this.dimensions = new Dimensions(width, height, length);
+    }
+
+    /**
+     * Updates the dimensions of a personal item to the given shared dimensions
+     * @param dimensions new dimensions of the item
+     */
+    protected void setDimensions(Dimensions dimensions) {
+        this.dimensions = dimensions;
     }
 
     /**
@@ -116,7 +127,16 @@ public abstract class Personal implements Packable {
      * @return owner of item
      */
     public String getOwner() {
-        return owner;
+        return StringDictionary.OWNERS.get(ownerId);
+    }
+
+    /**
+     * Returns the id of the owner of the personal item in {@link StringDictionary#OWNERS}. Two
+     * items have the same owner exactly when their owner ids are equal.
+     * @return id of the owner
+     */
+    public int getOwnerId() {
+        return ownerId;
     }
 
     /**
@@ -131,6 +151,18 @@ public abstract class Personal implements Packable {
      */
     @Override
     public String toString() {
-        return String.format("%s (%s)", this.getClass().getSimpleName(), getOwner());
+        if (description == null) {
+            description = describe();
+        }
+        return description;
+    }
+
+    /**
+     * Builds the description returned by {@link #toString()}. Personal items do not change, so
+     * this is only called once for each item.
+     * @return string representation of this personal item
+     */
+    protected String describe() {
+        return getClass().getSimpleName() + " (" + getOwner() + ")";
     }
 }
\ No newline at end of file
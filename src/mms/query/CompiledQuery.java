@@ -0,0 +1,360 @@
+package mms.query;
+
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Personal;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.OwnerIndex;
+import mms.storage.Storage;
+import mms.storage.StorageVisitor;
+import mms.utility.Packable;
+import mms.utility.Size;
+import mms.utility.StringDictionary;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * A {@link Query} ready to be run against storage trees.
+ * <p>
+ * The conditions on each thing are tested one after another, cheapest first: its class, then
+ * its owner by id in {@link StringDictionary#OWNERS} rather than by name, then the rest. When a
+ * tree is walked, storage objects with nothing inside that could match are skipped: empty ones
+ * when looking for items, bags when looking for furniture, and anything with no storage object
+ * a {@link Query#within within} condition asks for at or below it.
+ * <p>
+ * Given an {@link OwnerIndex}, a query for an owner's items looks them up in the index rather
+ * than walking the tree when the owner has fewer items in the index than there are in the
+ * tree, taking time proportional to the number of items the owner has times their nesting
+ * depth. A query for storage objects {@link Query#containing containing} certain items finds
+ * those items first, then only looks at the storage objects holding them.
+ * @param <T> type of thing the query finds
+ */
+public class CompiledQuery<T> {
+
+    /**
+     * Whether the query finds storage objects rather than other items
+     */
+    private final boolean containers;
+
+    /**
+     * Class the things found have to be an instance of; null if nothing can match
+     */
+    private final Class<?> required;
+
+    /**
+     * Owner of the items found; null for any owner
+     */
+    private final String owner;
+
+    /**
+     * Tests every condition on a thing itself, leaving out where it is and what it contains
+     */
+    private final Predicate<Object> test;
+
+    /**
+     * Storage objects the things found have to be inside; null for anywhere
+     */
+    private final CompiledQuery<?> within;
+
+    /**
+     * Items the storage objects found have to contain; null for anything
+     */
+    private final CompiledQuery<?> containing;
+
+    /**
+     * Creates a compiled query.
+     * @param containers whether the query finds storage objects
+     * @param required class the things found have to be an instance of; null if nothing can
+     * match
+     * @param owner owner of the items found; null for any
+     * @param size size of the things found; null for any
+     * @param furnitureType type of the furniture found; null for any
+     * @param clotheType type of the clothes found; null for any
+     * @param fiction whether the books found are fiction; null for either
+     * @param fragile whether the things found are fragile; null for either
+     * @param within query for the storage objects the things found are inside; null for any
+     * @param containing query for the items the storage objects found contain; null for any
+     */
+    CompiledQuery(boolean containers, Class<?> required, String owner, Size size,
+                  FurnitureType furnitureType, ClotheType clotheType, Boolean fiction,
+                  Boolean fragile, CompiledQuery<?> within, CompiledQuery<?> containing) {
+        this.containers = containers;
+        this.required = required;
+        this.owner = owner;
+        this.within = within;
+        this.containing = containing;
+
+        List<Predicate<Object>> tests = new ArrayList<>();
+        if (required != null && required != Packable.class && required != Storage.class) {
+            tests.add(required::isInstance);
+        }
+        if (owner != null) {
+            // Looked up without adding the owner to the dictionary. An owner it does not have
+            // yet matches nothing until an item is created for them, so look again each time.
+            int ownerId = StringDictionary.OWNERS.find(owner);
+            if (ownerId != -1) {
+                tests.add(thing -> ((Personal) thing).getOwnerId() == ownerId);
+            } else {
+                tests.add(thing -> ((Personal) thing).getOwnerId()
+                        == StringDictionary.OWNERS.find(owner));
+            }
+        }
+        if (furnitureType != null) {
+            tests.add(thing -> ((Furniture) thing).getType() == furnitureType);
+        }
+        if (clotheType != null) {
+            tests.add(thing -> ((Clothes) thing).getType() == clotheType);
+        }
+        if (fiction != null) {
+            boolean wanted = fiction;
+            tests.add(thing -> ((Book) thing).isFiction() == wanted);
+        }
+        if (size != null) {
+            tests.add(thing -> (thing instanceof Storage ? ((Storage) thing).getSize()
+                    : ((Clothes) thing).getSize()) == size);
+        }
+        if (fragile != null) {
+            boolean wanted = fragile;
+            tests.add(thing -> isFragile(thing) == wanted);
+        }
+        this.test = combine(tests);
+    }
+
+    /**
+     * Finds the things in the given tree that the query asks for. The root of the tree is not
+     * included.
+     * @param root storage object at the top of the tree
+     * @return things found, in no particular order
+     */
+    public List<T> find(Storage root) {
+        return find(root, null);
+    }
+
+    /**
+     * Finds the things in the given tree that the query asks for, using an index of the items in
+     * the tree where that is quicker. The root of the tree is not included.
+     * @param root storage object at the top of the tree
+     * @param index index tracking the tree, or a storage object containing it; null if there is
+     * none
+     * @return things found, in no particular order
+     */
+    public List<T> find(Storage root, OwnerIndex index) {
+        List<T> found = new ArrayList<>();
+        search(root, index, false, (thing, container) -> {
+            @SuppressWarnings("unchecked")
+            T match = (T) thing;
+            found.add(match);
+        });
+        return found;
+    }
+
+    /**
+     * Passes each thing found in the given tree to a sink, along with the storage object it is
+     * directly inside.
+     * @param includeRoot whether the root itself can be found
+     */
+    private void search(Storage root, OwnerIndex index, boolean includeRoot, Sink sink) {
+        if (required == null) {
+            return;
+        }
+        Scope scope = null;
+        if (within != null) {
+            scope = within.scope(root, index);
+            if (scope.matched.isEmpty()) {
+                return;
+            }
+        }
+        if (containing != null) {
+            searchContaining(root, index, includeRoot, scope, sink);
+        } else if (owner != null && index != null
+                && index.getItems(owner).size() < root.getOccupiedCapacity()) {
+            // The index may track other trees too, so is only quicker if the owner has fewer
+            // items in it than there are in this tree
+            searchIndex(root, index, scope, sink);
+        } else {
+            searchTree(root, includeRoot, scope, sink);
+        }
+    }
+
+    /**
+     * Walks the tree, skipping storage objects with nothing inside that could match.
+     */
+    private void searchTree(Storage root, boolean includeRoot, Scope scope, Sink sink) {
+        boolean furnitureOnly = Furniture.class.isAssignableFrom(required);
+        root.walk(new StorageVisitor() {
+            /**
+             * Depth of the outermost storage object being walked that the scope asks for; -1
+             * if there is none
+             */
+            private int scopeDepth = -1;
+
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                if (containers && (depth > 0 || includeRoot)
+                        && (scope == null || scopeDepth >= 0) && test.test(storage)) {
+                    sink.accept(storage, storage.getParent());
+                }
+                if (!containers && (storage.getOccupiedCapacity() == 0
+                        || furnitureOnly && storage instanceof Bag)) {
+                    return false;
+                }
+                if (scope != null && scopeDepth < 0) {
+                    if (scope.matched.containsKey(storage)) {
+                        scopeDepth = depth;
+                    } else if (!scope.leadsTo.containsKey(storage)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public void exitStorage(Storage storage, int depth) {
+                if (scopeDepth == depth) {
+                    scopeDepth = -1;
+                }
+            }
+
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                if (!containers && (scope == null || scopeDepth >= 0) && test.test(item)) {
+                    sink.accept(item, container);
+                }
+            }
+        });
+    }
+
+    /**
+     * Looks up the owner's items in the index, keeping those in the tree.
+     */
+    private void searchIndex(Storage root, OwnerIndex index, Scope scope, Sink sink) {
+        for (Personal item : index.getItems(owner)) {
+            if (!test.test(item)) {
+                continue;
+            }
+            Storage container = index.getContainer(item);
+            boolean inScope = scope == null;
+            for (Storage storage = container; storage != null; storage = storage.getParent()) {
+                inScope |= scope != null && scope.matched.containsKey(storage);
+                if (storage == root) {
+                    if (inScope) {
+                        sink.accept(item, container);
+                    }
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the items the storage objects have to contain, then looks at the storage objects
+     * above them.
+     */
+    private void searchContaining(Storage root, OwnerIndex index, boolean includeRoot,
+                                  Scope scope, Sink sink) {
+        Map<Storage, Boolean> holding = new IdentityHashMap<>();
+        List<Storage> order = new ArrayList<>();
+        containing.search(root, index, false, (thing, container) -> {
+            for (Storage storage = container; storage != null && holding.put(storage, true) == null;
+                    storage = storage.getParent()) {
+                order.add(storage);
+                if (storage == root) {
+                    break;
+                }
+            }
+        });
+        for (Storage storage : order) {
+            if ((storage != root || includeRoot) && test.test(storage)
+                    && (scope == null || hasScopeAbove(storage, root, scope))) {
+                sink.accept(storage, storage.getParent());
+            }
+        }
+    }
+
+    /**
+     * Returns whether a storage object the scope asks for is above the given one in the tree.
+     */
+    private static boolean hasScopeAbove(Storage storage, Storage root, Scope scope) {
+        if (storage == root) {
+            return false;
+        }
+        for (Storage above = storage.getParent(); above != null; above = above.getParent()) {
+            if (scope.matched.containsKey(above)) {
+                return true;
+            }
+            if (above == root) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the storage objects in the tree (including its root) that this query asks for, and
+     * the storage objects above them.
+     */
+    private Scope scope(Storage root, OwnerIndex index) {
+        Scope scope = new Scope();
+        search(root, index, true, (thing, container) -> {
+            Storage storage = (Storage) thing;
+            scope.matched.put(storage, true);
+            for (Storage above = container; above != null && storage != root
+                    && scope.leadsTo.put(above, true) == null; above = above.getParent()) {
+                if (above == root) {
+                    break;
+                }
+            }
+        });
+        return scope;
+    }
+
+    private static Predicate<Object> combine(List<Predicate<Object>> tests) {
+        if (tests.isEmpty()) {
+            return thing -> true;
+        }
+        Predicate<Object> combined = tests.get(0);
+        for (int i = 1; i < tests.size(); i++) {
+            combined = combined.and(tests.get(i));
+        }
+        return combined;
+    }
+
+    private static boolean isFragile(Object thing) {
+        if (thing instanceof Box) {
+            return ((Box) thing).isFragile();
+        }
+        return thing instanceof Packable && Storage.isFragileItem((Packable) thing);
+    }
+
+    /**
+     * Receives each thing found, with the storage object it is directly inside.
+     */
+    private interface Sink {
+        void accept(Object thing, Storage container);
+    }
+
+    /**
+     * The storage objects a {@link Query#within within} condition asks for, and the storage
+     * objects above them that have to be walked to reach them.
+     */
+    private static class Scope {
+
+        /**
+         * Storage objects asked for
+         */
+        private final Map<Storage, Boolean> matched = new IdentityHashMap<>();
+
+        /**
+         * Storage objects with one asked for somewhere inside them
+         */
+        private final Map<Storage, Boolean> leadsTo = new IdentityHashMap<>();
+    }
+}
@@ -0,0 +1,266 @@
+package mms.query;
+
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Personal;
+import mms.storage.Storage;
+import mms.utility.Packable;
+import mms.utility.Size;
+
+/**
+ * A question about the contents of a storage tree, such as "fragile boxes containing books by
+ * Jane", made of a kind of thing to look for and conditions it has to meet.
+ * <p>
+ * Queries are immutable: each condition returns a new query with the condition added. A query
+ * is {@link #compile() compiled} before it is run, which checks the conditions fit together and
+ * works out the cheapest way to test them and which parts of a tree can be skipped.
+ * @param <T> type of thing the query finds
+ */
+public class Query<T> {
+
+    /**
+     * Whether the query finds storage objects rather than other items
+     */
+    private final boolean containers;
+
+    /**
+     * Class the things found have to be an instance of
+     */
+    private final Class<?> type;
+
+    /**
+     * Owner of the personal items found; null for any owner
+     */
+    private final String owner;
+
+    /**
+     * Size of the clothes or storage objects found; null for any size
+     */
+    private final Size size;
+
+    /**
+     * Type of the furniture found; null for any type
+     */
+    private final FurnitureType furnitureType;
+
+    /**
+     * Type of the clothes found; null for any type
+     */
+    private final ClotheType clotheType;
+
+    /**
+     * Whether the books found are fiction; null for either
+     */
+    private final Boolean fiction;
+
+    /**
+     * Whether the things found are fragile; null for either
+     */
+    private final Boolean fragile;
+
+    /**
+     * Storage objects the things found have to be inside; null for anywhere
+     */
+    private final Query<? extends Storage> within;
+
+    /**
+     * Items the storage objects found have to contain; null for anything
+     */
+    private final Query<?> containing;
+
+    private Query(boolean containers, Class<?> type, String owner, Size size,
+                  FurnitureType furnitureType, ClotheType clotheType, Boolean fiction,
+                  Boolean fragile, Query<? extends Storage> within, Query<?> containing) {
+        this.containers = containers;
+        this.type = type;
+        this.owner = owner;
+        this.size = size;
+        this.furnitureType = furnitureType;
+        this.clotheType = clotheType;
+        this.fiction = fiction;
+        this.fragile = fragile;
+        this.within = within;
+        this.containing = containing;
+    }
+
+    /**
+     * Returns a query for every item that is not a storage object.
+     * @return query for items
+     */
+    public static Query<Packable> items() {
+        return items(Packable.class);
+    }
+
+    /**
+     * Returns a query for the items of the given type.
+     * @param type class of the items to find
+     * @param <T> type of the items
+     * @return query for items of the type
+     * @throws IllegalArgumentException if the type is a type of storage object
+     */
+    public static <T extends Packable> Query<T> items(Class<T> type)
+            throws IllegalArgumentException {
+        if (Storage.class.isAssignableFrom(type)) {
+            throw new IllegalArgumentException("Storage objects are found with containers()");
+        }
+        return new Query<>(false, type, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Returns a query for every storage object.
+     * @return query for storage objects
+     */
+    public static Query<Storage> containers() {
+        return containers(Storage.class);
+    }
+
+    /**
+     * Returns a query for the storage objects of the given type.
+     * @param type class of the storage objects to find
+     * @param <T> type of the storage objects
+     * @return query for storage objects of the type
+     */
+    public static <T extends Storage> Query<T> containers(Class<T> type) {
+        return new Query<>(true, type, null, null, null, null, null, null, null, null);
+    }
+
+    /**
+     * Returns this query, only finding personal items belonging to the given owner.
+     * @param owner owner of the items
+     * @return narrowed query
+     * @throws IllegalArgumentException if the owner is null or empty
+     */
+    public Query<T> ownedBy(String owner) throws IllegalArgumentException {
+        if (owner == null || owner.isEmpty()) {
+            throw new IllegalArgumentException("Owner is null or empty");
+        }
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, containing);
+    }
+
+    /**
+     * Returns this query, only finding clothes or storage objects of the given size.
+     * @param size size of the clothes or storage objects
+     * @return narrowed query
+     */
+    public Query<T> sized(Size size) {
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, containing);
+    }
+
+    /**
+     * Returns this query, only finding furniture of the given type.
+     * @param furnitureType type of the furniture
+     * @return narrowed query
+     */
+    public Query<T> ofType(FurnitureType furnitureType) {
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, containing);
+    }
+
+    /**
+     * Returns this query, only finding clothes of the given type.
+     * @param clotheType type of the clothes
+     * @return narrowed query
+     */
+    public Query<T> ofType(ClotheType clotheType) {
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, containing);
+    }
+
+    /**
+     * Returns this query, only finding fiction or non-fiction books.
+     * @param fiction true for fiction, false for non-fiction
+     * @return narrowed query
+     */
+    public Query<T> fiction(boolean fiction) {
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, containing);
+    }
+
+    /**
+     * Returns this query, only finding things that are fragile or not. Laptops and televisions
+     * are fragile, and so are boxes containing them; no other storage object is fragile.
+     * @param fragile true for fragile things, false for the rest
+     * @return narrowed query
+     */
+    public Query<T> fragile(boolean fragile) {
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, containing);
+    }
+
+    /**
+     * Returns this query, only finding things inside a storage object found by the given query,
+     * at any depth. The root of the tree being searched counts as a storage object they can be
+     * inside.
+     * @param containerQuery query for the storage objects
+     * @return narrowed query
+     */
+    public Query<T> within(Query<? extends Storage> containerQuery) {
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, containerQuery, containing);
+    }
+
+    /**
+     * Returns this query, only finding storage objects with something found by the given query
+     * inside them, at any depth.
+     * @param contentsQuery query for the things inside
+     * @return narrowed query
+     * @throws IllegalArgumentException if this query is not for storage objects
+     */
+    public Query<T> containing(Query<?> contentsQuery) throws IllegalArgumentException {
+        if (!containers) {
+            throw new IllegalArgumentException("Only storage objects can contain anything");
+        }
+        return new Query<>(containers, type, owner, size, furnitureType, clotheType, fiction,
+                fragile, within, contentsQuery);
+    }
+
+    /**
+     * Compiles the query so it can be run.
+     * <p>
+     * Conditions that only some kinds of thing can meet narrow the kind of thing looked for:
+     * an owner to personal items, a type of clothing to clothes, and so on. If no kind of thing
+     * can meet every condition, the compiled query finds nothing without looking.
+     * @return compiled query
+     */
+    public CompiledQuery<T> compile() {
+        Class<?> required = type;
+        if (owner != null) {
+            required = narrow(required, Personal.class);
+        }
+        if (fiction != null) {
+            required = narrow(required, Book.class);
+        }
+        if (clotheType != null) {
+            required = narrow(required, Clothes.class);
+        }
+        if (furnitureType != null) {
+            required = narrow(required, Furniture.class);
+        }
+        if (size != null && !containers) {
+            required = narrow(required, Clothes.class);
+        }
+        return new CompiledQuery<>(containers, required, owner, size, furnitureType,
+                clotheType, fiction, fragile, within == null ? null : within.compile(),
+                containing == null ? null : containing.compile());
+    }
+
+    /**
+     * Returns the more specific of two classes; null if neither is a subclass of the other, or
+     * the current class is already null.
+     */
+    private static Class<?> narrow(Class<?> current, Class<?> implied) {
+        if (current == null) {
+            return null;
+        } else if (current.isAssignableFrom(implied)) {
+            return implied;
+        } else if (implied.isAssignableFrom(current)) {
+            return current;
+        }
+        return null;
+    }
+}
@@ -43,30 +43,17 @@ public class Bag extends Storage implements Packable {
     }
 
     /**
-     * Adds an item to the bag's internal list. If the bag is at capacity, or the item doesn't
-     * conform to the bag's dimensions an exception is thrown. If the item is not of the personal
-     * class an exception is also thrown.
-     * @param item the item to add to the list
-     * @throws BadItemException if the item being added is not of the personal class
-     * @throws StorageFullException if the total weight of the items + the weight of the item being
-     * added > bag's max weight (1.5kg)
-     * @throws StorageFullException  if the current number of items currently inside this storage
-     * (previously packed items) >= the capacity of this storage or if two of the following are
-     * true:
-     * <ul>
-     *     <li>∑ widths of items in the storage + width of new item > storage width,</li>
-     *     <li>∑ heights of items in the storage + height of new item > storage height,</li>
-     *     <li>∑ lengths of items in the storage + length of new item > storage length</li>
-     * </ul>
+     * Checks that the item is a personal item and that the bag is not over its maximum weight.
+     * @param item item about to be packed
+     * @throws BadItemException if the item is not of the personal class
+     * @throws StorageFullException if the bag is over its maximum weight (1.5kg)
      */
     @Override
-    public void pack(Packable item) throws PackingException {
+    protected void checkItem(Packable item) throws PackingException {
         if (!(item instanceof Personal)) {
             throw new BadItemException("Not an instance of the personal class");
         } else if (getOccupiedCapacity() * Personal.getBaseWeight() > 1500) {
             throw new StorageFullException("Exceeding bag's maximum weight");
-        } else {
-            super.pack(item);
         }
     }
 }
\ No newline at end of file
@@ -1,9 +1,6 @@
 package mms.storage;
 
 import mms.exceptions.PackingException;
-import mms.furniture.Furniture;
-import mms.furniture.FurnitureType;
-import mms.personal.Laptop;
 import mms.utility.Packable;
 import mms.utility.Size;
 
@@ -18,6 +15,16 @@ public class Box extends Storage implements Packable {
      */
     private final String comment;
 
+    /**
+     * Description of the box, rebuilt when the box's fragility has changed since it was built
+     */
+    private String description;
+
+    /**
+     * Whether the box was fragile when its description was built
+     */
+    private boolean describedFragile;
+
     /**
      * Creates a medium-sized box with a given width, height, length and comment. A comment
      * is not allowed to be null.
@@ -62,17 +69,7 @@ public class Box extends Storage implements Packable {
      * @return whether the box has fragile items or not
      */
     public boolean isFragile() {
-        for (Packable item : getElements()) {
-            // Iterate through each element and check if it's fragile
-            if (item instanceof Furniture) {
-                if (((Furniture) item).getType().equals(FurnitureType.TELEVISION)) {
-                    return true;
-                }
-            } else if (item instanceof Laptop) {
-                return true;
-            }
-        }
-        return false;
+        return getFragileCount() > 0;
     }
 
     /**
@@ -99,13 +96,18 @@ public class Box extends Storage implements Packable {
      */
     @Override
     public String toString() {
-        String comment = "";
-        if (getComment().isEmpty()) {
-            comment = "'\0";
-        } else if (isFragile()) {
-            comment = getComment() + " FRAGILE";
+        boolean fragile = isFragile();
+        if (description == null || describedFragile != fragile) {
+            String comment = "";
+            if (getComment().isEmpty()) {
+                comment = "'\0";
+            } else if (fragile) {
+                comment = getComment() + " FRAGILE";
+            }
+            description = super.toString() + " - " + comment;
+            describedFragile = fragile;
         }
-        return String.format("%s - %s",  super.toString(), comment);
+        return description;
     }
 
     /**
@@ -0,0 +1,410 @@
+package mms.storage;
+
+import mms.furniture.Furniture;
+import mms.utility.Packable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The items packed directly in a storage object, kept in packing order, along with the order
+ * they will be unpacked in.
+ * <p>
+ * Items are kept in an array of slots. Unpacking from the front or the back just moves the
+ * bounds of the occupied slots, and unpacking from the middle leaves an empty slot behind. Empty
+ * slots are squeezed out once they make up most of the occupied range, so every operation takes
+ * constant amortised time apart from the work done by the unpack order.
+ * <p>
+ * The dimensions, volume and flags of each item are recorded in primitive arrays alongside it
+ * when it is packed, so totals, unpack orders and scans over the contents read contiguous
+ * memory instead of calling each item.
+ */
+class Contents {
+
+    /**
+     * Flag recorded for items that were fragile when they were packed
+     */
+    static final byte FRAGILE = 1;
+
+    /**
+     * Flag recorded for furniture items
+     */
+    static final byte FURNITURE = 2;
+
+    /**
+     * Flag recorded for storage objects
+     */
+    static final byte STORAGE = 4;
+
+    /**
+     * Smallest number of slots allocated
+     */
+    private static final int MIN_SLOTS = 8;
+
+    /**
+     * Packed items; slots that have been unpacked hold null
+     */
+    private Packable[] items;
+
+    /**
+     * Flags recorded for each slot when its item was packed
+     */
+    private byte[] flags;
+
+    /**
+     * Width of the item in each slot in cm, recorded when it was packed
+     */
+    private double[] widths;
+
+    /**
+     * Height of the item in each slot in cm, recorded when it was packed
+     */
+    private double[] heights;
+
+    /**
+     * Length of the item in each slot in cm, recorded when it was packed
+     */
+    private double[] lengths;
+
+    /**
+     * Volume of the item in each slot in cm^3, recorded when it was packed
+     */
+    private double[] volumes;
+
+    /**
+     * Total width of the packed items
+     */
+    private double totalWidth;
+
+    /**
+     * Total height of the packed items
+     */
+    private double totalHeight;
+
+    /**
+     * Total length of the packed items
+     */
+    private double totalLength;
+
+    /**
+     * Index of the first occupied slot
+     */
+    private int start;
+
+    /**
+     * One past the index of the last occupied slot
+     */
+    private int end;
+
+    /**
+     * Number of items currently packed
+     */
+    private int size;
+
+    /**
+     * Number of times an item has been copied to a different slot when the slots were resized
+     * or compacted
+     */
+    private long moveCount;
+
+    /**
+     * Decides which slot is unpacked next
+     */
+    private UnpackPolicy.Order order;
+
+    /**
+     * Creates empty contents that unpack using the given policy.
+     * @param policy policy deciding the unpack order
+     */
+    Contents(UnpackPolicy policy) {
+        items = new Packable[MIN_SLOTS];
+        flags = new byte[MIN_SLOTS];
+        widths = new double[MIN_SLOTS];
+        heights = new double[MIN_SLOTS];
+        lengths = new double[MIN_SLOTS];
+        volumes = new double[MIN_SLOTS];
+        order = policy.newOrder(this);
+    }
+
+    /**
+     * Changes the order items are unpacked in.
+     * @param policy policy deciding the unpack order
+     */
+    void setPolicy(UnpackPolicy policy) {
+        order = policy.newOrder(this);
+        order.rebuild();
+    }
+
+    /**
+     * Returns the number of items currently packed
+     * @return number of items
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of times an item has been copied to a different slot when the slots
+     * were resized or compacted
+     * @return number of item moves so far
+     */
+    long getMoveCount() {
+        return moveCount;
+    }
+
+    /**
+     * Returns the total width of the packed items in cm
+     * @return total width
+     */
+    double getTotalWidth() {
+        return totalWidth;
+    }
+
+    /**
+     * Returns the total height of the packed items in cm
+     * @return total height
+     */
+    double getTotalHeight() {
+        return totalHeight;
+    }
+
+    /**
+     * Returns the total length of the packed items in cm
+     * @return total length
+     */
+    double getTotalLength() {
+        return totalLength;
+    }
+
+    /**
+     * Adds an item after all the items currently packed.
+     * @param item item to add
+     * @param width width of the item in cm
+     * @param height height of the item in cm
+     * @param length length of the item in cm
+     */
+    void add(Packable item, double width, double height, double length) {
+        if (end == items.length) {
+            resize(Math.max(MIN_SLOTS, size * 2));
+        }
+        int slot = end++;
+        items[slot] = item;
+        flags[slot] = flagsOf(item);
+        widths[slot] = width;
+        heights[slot] = height;
+        lengths[slot] = length;
+        volumes[slot] = item.getVolume();
+        totalWidth += width;
+        totalHeight += height;
+        totalLength += length;
+        size++;
+        order.added(slot);
+    }
+
+    /**
+     * Removes the item the unpack order says should come out next.
+     * @return item removed; null if there are no items
+     */
+    Packable removeNext() {
+        if (size == 0) {
+            return null;
+        }
+        int slot = order.poll();
+        Packable item = items[slot];
+        items[slot] = null;
+        totalWidth -= widths[slot];
+        totalHeight -= heights[slot];
+        totalLength -= lengths[slot];
+        size--;
+        // Keep start and end on occupied slots
+        while (start < end && items[start] == null) {
+            start++;
+        }
+        while (end > start && items[end - 1] == null) {
+            end--;
+        }
+        if (size == 0) {
+            start = end = 0;
+            // Drop any rounding error left over from the subtractions
+            totalWidth = totalHeight = totalLength = 0;
+        } else if (end - start > MIN_SLOTS && size < (end - start) / 4) {
+            resize(items.length);
+        }
+        return item;
+    }
+
+    /**
+     * Removes every item, keeping the slot arrays for items packed later.
+     */
+    void clear() {
+        Arrays.fill(items, start, end, null);
+        start = end = size = 0;
+        totalWidth = totalHeight = totalLength = 0;
+        order.rebuild();
+    }
+
+    /**
+     * Returns a new list of the packed items in packing order.
+     * @return list of the packed items
+     */
+    List<Packable> toList() {
+        List<Packable> list = new ArrayList<>(size);
+        for (int slot = start; slot < end; slot++) {
+            if (items[slot] != null) {
+                list.add(items[slot]);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Returns the index of the first occupied slot at or after the given index.
+     * @param from index to start looking at
+     * @return index of the next occupied slot; -1 if there are none
+     */
+    int nextSlot(int from) {
+        for (int slot = Math.max(from, start); slot < end; slot++) {
+            if (items[slot] != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index of the first occupied slot
+     * @return index of the first occupied slot; -1 if there are no items
+     */
+    int firstSlot() {
+        return size == 0 ? -1 : start;
+    }
+
+    /**
+     * Returns the index of the last occupied slot
+     * @return index of the last occupied slot; -1 if there are no items
+     */
+    int lastSlot() {
+        return size == 0 ? -1 : end - 1;
+    }
+
+    /**
+     * Returns the item in the given slot
+     * @param slot index of an occupied slot
+     * @return item in the slot
+     */
+    Packable get(int slot) {
+        return items[slot];
+    }
+
+    /**
+     * Returns the volume of the item in the given slot when it was packed
+     * @param slot index of an occupied slot
+     * @return volume of the item in cm^3
+     */
+    double getVolume(int slot) {
+        return volumes[slot];
+    }
+
+    /**
+     * Returns whether the item in the given slot was fragile when it was packed
+     * @param slot index of an occupied slot
+     * @return true if the item was fragile
+     */
+    boolean isFragile(int slot) {
+        return (flags[slot] & FRAGILE) != 0;
+    }
+
+    /**
+     * Returns whether the item in the given slot is furniture
+     * @param slot index of an occupied slot
+     * @return true if the item is furniture
+     */
+    boolean isFurniture(int slot) {
+        return (flags[slot] & FURNITURE) != 0;
+    }
+
+    /**
+     * Returns whether the item in the given slot is a storage object
+     * @param slot index of an occupied slot
+     * @return true if the item is a storage object
+     */
+    boolean isStorage(int slot) {
+        return (flags[slot] & STORAGE) != 0;
+    }
+
+    /**
+     * Moves the packed items to the front of a slot array of the given length (or longer if
+     * needed), keeping them in packing order, and rebuilds the unpack order for their new slots.
+     * The totals are summed again from scratch, so rounding errors from unpacking do not build
+     * up.
+     * @param length preferred number of slots
+     */
+    private void resize(int length) {
+        boolean inPlace = length == items.length;
+        Packable[] newItems = inPlace ? items : new Packable[length];
+        byte[] newFlags = inPlace ? flags : new byte[length];
+        double[] newWidths = inPlace ? widths : new double[length];
+        double[] newHeights = inPlace ? heights : new double[length];
+        double[] newLengths = inPlace ? lengths : new double[length];
+        double[] newVolumes = inPlace ? volumes : new double[length];
+        int next = 0;
+        for (int slot = start; slot < end; slot++) {
+            if (items[slot] != null) {
+                newItems[next] = items[slot];
+                newFlags[next] = flags[slot];
+                newWidths[next] = widths[slot];
+                newHeights[next] = heights[slot];
+                newLengths[next] = lengths[slot];
+                newVolumes[next] = volumes[slot];
+                next++;
+            }
+        }
+        if (inPlace) {
+            Arrays.fill(items, next, end, null);
+        }
+        items = newItems;
+        flags = newFlags;
+        widths = newWidths;
+        heights = newHeights;
+        lengths = newLengths;
+        volumes = newVolumes;
+        start = 0;
+        end = next;
+        moveCount += next;
+        totalWidth = sum(widths, next);
+        totalHeight = sum(heights, next);
+        totalLength = sum(lengths, next);
+        order.rebuild();
+    }
+
+    /**
+     * Adds up the first count values of an array.
+     */
+    private static double sum(double[] values, int count) {
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += values[i];
+        }
+        return total;
+    }
+
+    /**
+     * Works out the flags to record for an item being packed.
+     * @param item item being packed
+     * @return flags for the item
+     */
+    private static byte flagsOf(Packable item) {
+        byte result = 0;
+        if (Storage.isFragileItem(item) || (item instanceof Box && ((Box) item).isFragile())) {
+            result |= FRAGILE;
+        }
+        if (item instanceof Furniture) {
+            result |= FURNITURE;
+        }
+        if (item instanceof Storage) {
+            result |= STORAGE;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,109 @@
+package mms.storage;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of durations in nanoseconds, with buckets that double in size: bucket i counts
+ * durations of less than 2^i ns that did not fit in a smaller bucket. Recording only touches one
+ * striped counter per bucket plus a running total, so many threads can record at once without
+ * contending on a single value.
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets; the last one also counts anything longer than about 9 minutes
+     */
+    public static final int BUCKETS = 40;
+
+    /**
+     * Count of durations in each bucket
+     */
+    private final LongAdder[] buckets;
+
+    /**
+     * Total of all durations recorded
+     */
+    private final LongAdder sum;
+
+    /**
+     * Creates an empty histogram.
+     */
+    public LatencyHistogram() {
+        buckets = new LongAdder[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+        sum = new LongAdder();
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos duration in nanoseconds; negative durations are recorded as 0
+     */
+    public void record(long nanos) {
+        long duration = Math.max(0, nanos);
+        int bucket = Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(duration));
+        buckets[bucket].increment();
+        sum.add(duration);
+    }
+
+    /**
+     * Returns the upper bound of a bucket
+     * @param bucket index of the bucket
+     * @return durations in the bucket are less than this many nanoseconds; Long.MAX_VALUE for
+     * the last bucket
+     */
+    public static long getUpperBound(int bucket) {
+        return bucket == BUCKETS - 1 ? Long.MAX_VALUE : 1L << bucket;
+    }
+
+    /**
+     * Returns the number of durations recorded in a bucket
+     * @param bucket index of the bucket
+     * @return count for the bucket
+     */
+    public long getCount(int bucket) {
+        return buckets[bucket].sum();
+    }
+
+    /**
+     * Returns the number of durations recorded
+     * @return total count
+     */
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the total of all durations recorded
+     * @return sum in nanoseconds
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+
+    /**
+     * Returns an estimate of the given quantile, as the upper bound of the bucket it falls in
+     * @param quantile quantile between 0 and 1, such as 0.99
+     * @return upper bound of the quantile in nanoseconds; 0 if nothing has been recorded
+     */
+    public long getQuantile(double quantile) {
+        long count = getCount();
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) {
+                return getUpperBound(i);
+            }
+        }
+        return getUpperBound(BUCKETS - 1);
+    }
+}
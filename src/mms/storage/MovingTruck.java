@@ -6,13 +6,22 @@ import mms.furniture.Furniture;
 import mms.utility.Packable;
 import mms.utility.Size;
 
-import java.util.ArrayList;
-
 /**
  * Represents a moving truck that facilitates the movement of items
  */
 public class MovingTruck extends Storage {
 
+    /**
+     * Description of the truck, rebuilt when the number of items on board has changed since it
+     * was built
+     */
+    private String description;
+
+    /**
+     * Number of items on board when the truck's description was built
+     */
+    private int describedOccupied;
+
     /**
      * Creates an empty large-sized moving truck with a given width, height and length
      * @param width width of the moving truck
@@ -26,6 +35,7 @@ public class MovingTruck extends Storage {
         if (length < 1500) {
             throw new IllegalArgumentException("Given length is less than 1500");
         }
+        setUnpackPolicy(getDefaultUnpackPolicy());
     }
 
     /**
@@ -43,77 +53,48 @@ public class MovingTruck extends Storage {
         if (length < 1500) {
             throw new IllegalArgumentException("Given length is less than 1500");
         }
+        setUnpackPolicy(getDefaultUnpackPolicy());
     }
 
+    /**
+     * Returns the unpack policy moving trucks start with, which is
+     * {@link UnpackPolicy#furnitureFirst()}
+     * @return default unpack policy
+     */
+    @Override
+    protected UnpackPolicy getDefaultUnpackPolicy() {
+        return UnpackPolicy.furnitureFirst();
+    }
+
+    /**
+     * Checks that no items other than furniture are packed once the truck holds furniture.
+     * @param item item about to be packed
+     * @throws PackingOrderException if the item is not furniture and the truck already holds
+     * furniture
+     */
     @Override
-    public void pack(Packable item) throws PackingException {
-        if (!(item instanceof Furniture)) {
-            for (Packable packedItem : getElements()) {
-                if (packedItem instanceof Furniture) {
-                    throw new PackingOrderException("Only furniture can be added now.");
-                }
-            }
+    protected void checkItem(Packable item) throws PackingException {
+        if (!(item instanceof Furniture) && getFurnitureCount() > 0) {
+            throw new PackingOrderException("Only furniture can be added now.");
         }
-        super.pack(item);
     }
 
     /**
      * Removes an item from the truck's  internal list. First, all the furniture is removed in a
      * first in, first out format. After, all the other items are removed in a first in, last out
-     * format.
+     * format. This order comes from the truck's {@link UnpackPolicy#furnitureFirst()} unpack
+     * policy, so it changes if the truck is given a different policy.
      * @return item removed from the list
      */
-
     @Override
     public Packable unpack() {
-        ArrayList<Packable> unpackedFurniture = new ArrayList<>();
-        ArrayList<Packable> unpackedItems = new ArrayList<>();
-        Packable unpackedItem;
-
-        int j = getElements().size();
-
-        // Unpack each item from the truck
-        for (int i = 0; i < j; i++) {
-            Packable item = super.unpack();
-            // Add to different arraylist depending on whether it's furniture or not
-            if (item instanceof Furniture) {
-                unpackedFurniture.add(item);
-            } else {
-                unpackedItems.add(item);
-            }
-        }
-
-        // Unpack furniture if still in truck (FIFO)
-        if (!unpackedFurniture.isEmpty()) {
-            unpackedItem = unpackedFurniture.remove(0);
-        } else if (!unpackedItems.isEmpty()) {
-            // If there is no furniture, unpack that normal items (FILO)
-            unpackedItem = unpackedItems.remove(unpackedItems.size() - 1);
-        } else {
-            unpackedItem = null;
-        }
-
-        // Repack all non-furniture items
-        for (Packable item : unpackedItems) {
-            try {
-                pack(item);
-            } catch (PackingException e) {
-                // As pack method throws packingException and unpack doesn't, this exception is
-                // caught.
-            }
-        }
-
-        // Lastly, repack all other furniture items
-        for (Packable item : unpackedFurniture) {
-            try {
-                pack(item);
-            } catch (PackingException e) {
-                // As pack method throws packingException and unpack doesn't, this exception is
-                // caught.
-            }
-        }
-
-        return unpackedItem;
+        TruckUnpackEvent event = new TruckUnpackEvent();
+        event.begin();
+        long moves = getMoveCount();
+        Packable item = super.unpack();
+        event.finish(this, item, item == null ? 0 : 1 + (int) (getMoveCount() - moves),
+                item == null ? "empty" : "unpacked");
+        return item;
     }
 
     /**
@@ -128,7 +109,12 @@ public class MovingTruck extends Storage {
      */
     @Override
     public String toString() {
-        return String.format("MovingTruck (%s/%s)", getOccupiedCapacity(), getCapacity());
+        int occupied = getOccupiedCapacity();
+        if (description == null || describedOccupied != occupied) {
+            description = "MovingTruck (" + occupied + "/" + getCapacity() + ")";
+            describedOccupied = occupied;
+        }
+        return description;
     }
 
     /**
@@ -0,0 +1,218 @@
+package mms.storage;
+
+import mms.personal.Personal;
+import mms.utility.Packable;
+import mms.utility.StringDictionary;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the personal items in one or more storage trees, grouped by owner. The index
+ * listens to the storage objects it tracks and is kept up to date as items are packed and
+ * unpacked anywhere inside them, so finding an owner's items or the containers holding them
+ * does not require searching the trees.
+ * <p>
+ * A single index can track several storage trees (for example every truck in a fleet), as long
+ * as none of the tracked storage objects is nested inside another. Each personal item is
+ * expected to be packed in at most one place at a time.
+ * <p>
+ * Owners are looked up by their id in {@link StringDictionary#OWNERS}, so indexing an item never
+ * needs to hash or compare owner names. The index only holds entries for owners whose items it
+ * has seen, however many owners the dictionary holds.
+ */
+public class OwnerIndex implements StorageListener {
+
+    /**
+     * For each owner id the index has seen, the container each of their items is packed
+     * directly into
+     */
+    private final Map<Integer, Map<Personal, Storage>> itemsByOwner;
+
+    /**
+     * For each owner id the index has seen, the number of their items packed directly into each
+     * container
+     */
+    private final Map<Integer, Map<Storage, Integer>> containersByOwner;
+
+    /**
+     * Owners that have had items indexed
+     */
+    private final Set<String> owners;
+
+    /**
+     * Creates an empty index that is not tracking any storage objects.
+     */
+    public OwnerIndex() {
+        itemsByOwner = new HashMap<>();
+        containersByOwner = new HashMap<>();
+        owners = new LinkedHashSet<>();
+    }
+
+    /**
+     * Indexes every personal item currently in the given storage object and keeps the index up
+     * to date as the storage object's contents change.
+     * @param root storage object to track
+     */
+    public void track(Storage root) {
+        addAll(root);
+        root.addListener(this);
+    }
+
+    /**
+     * Stops tracking the given storage object and removes its items from the index.
+     * @param root storage object previously passed to {@link #track(Storage)}
+     */
+    public void untrack(Storage root) {
+        root.removeListener(this);
+        removeAll(root);
+    }
+
+    /**
+     * Returns the personal items belonging to the given owner. The returned set is a read-only
+     * view that reflects later changes to the index, unless the index has never seen the owner,
+     * in which case it is empty and stays empty.
+     * @param owner owner of the items
+     * @return items belonging to the owner
+     */
+    public Set<Personal> getItems(String owner) {
+        Map<Personal, Storage> items = find(StringDictionary.OWNERS.find(owner));
+        return items == null ? Set.of() : Collections.unmodifiableSet(items.keySet());
+    }
+
+    /**
+     * Returns the storage objects that directly contain at least one item belonging to the given
+     * owner. The returned set is a read-only view that reflects later changes to the index,
+     * unless the index has never seen the owner, in which case it is empty and stays empty.
+     * @param owner owner of the items
+     * @return containers holding the owner's items
+     */
+    public Set<Storage> getContainers(String owner) {
+        int ownerId = StringDictionary.OWNERS.find(owner);
+        return find(ownerId) == null ? Set.of()
+                : Collections.unmodifiableSet(containersByOwner.get(ownerId).keySet());
+    }
+
+    /**
+     * Returns the storage object the given item is packed directly into.
+     * @param item personal item to look up
+     * @return container holding the item; null if the item is not in any tracked storage
+     */
+    public Storage getContainer(Personal item) {
+        Map<Personal, Storage> items = find(item.getOwnerId());
+        return items == null ? null : items.get(item);
+    }
+
+    /**
+     * Returns the owners that have had items indexed.
+     * @return owners known to the index
+     */
+    public Set<String> getOwners() {
+        return Collections.unmodifiableSet(owners);
+    }
+
+    @Override
+    public void itemPacked(Storage container, Packable item) {
+        if (item instanceof Storage) {
+            addAll((Storage) item);
+        } else if (item instanceof Personal) {
+            add((Personal) item, container);
+        }
+    }
+
+    @Override
+    public void itemUnpacked(Storage container, Packable item) {
+        if (item instanceof Storage) {
+            removeAll((Storage) item);
+        } else if (item instanceof Personal) {
+            remove((Personal) item, container);
+        }
+    }
+
+    /**
+     * Indexes every personal item in the given storage object.
+     * @param storage storage object to index
+     */
+    private void addAll(Storage storage) {
+        storage.walk(new StorageVisitor() {
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                if (item instanceof Personal) {
+                    add((Personal) item, container);
+                }
+            }
+        });
+    }
+
+    /**
+     * Removes every personal item in the given storage object from the index.
+     * @param storage storage object to remove
+     */
+    private void removeAll(Storage storage) {
+        storage.walk(new StorageVisitor() {
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                if (item instanceof Personal) {
+                    remove((Personal) item, container);
+                }
+            }
+        });
+    }
+
+    /**
+     * Records that the given item is packed in the given container.
+     * @param item item to add
+     * @param container container holding the item
+     */
+    private void add(Personal item, Storage container) {
+        int ownerId = item.getOwnerId();
+        itemsOf(ownerId).put(item, container);
+        containersByOwner.get(ownerId).merge(container, 1, Integer::sum);
+    }
+
+    /**
+     * Records that the given item is no longer packed in the given container.
+     * @param item item to remove
+     * @param container container that held the item
+     */
+    private void remove(Personal item, Storage container) {
+        int ownerId = item.getOwnerId();
+        Map<Personal, Storage> items = find(ownerId);
+        if (items == null || items.remove(item) == null) {
+            return;
+        }
+        // Drop the container once none of the owner's items are left in it
+        containersByOwner.get(ownerId).computeIfPresent(
+                container, (key, count) -> count == 1 ? null : count - 1);
+    }
+
+    /**
+     * Returns the items of the owner with the given id, without setting anything up.
+     * @param ownerId id of the owner; -1 for an owner that has never been seen
+     * @return map from the owner's items to their containers; null if the index has not seen
+     * the owner
+     */
+    private Map<Personal, Storage> find(int ownerId) {
+        return itemsByOwner.get(ownerId);
+    }
+
+    /**
+     * Returns the items of the owner with the given id, setting up the owner's entries in the
+     * index if it has not seen them before.
+     * @param ownerId id of the owner
+     * @return map from the owner's items to their containers
+     */
+    private Map<Personal, Storage> itemsOf(int ownerId) {
+        Map<Personal, Storage> items = itemsByOwner.get(ownerId);
+        if (items == null) {
+            items = new HashMap<>();
+            itemsByOwner.put(ownerId, items);
+            containersByOwner.put(ownerId, new HashMap<>());
+            owners.add(StringDictionary.OWNERS.get(ownerId));
+        }
+        return items;
+    }
+}
@@ -0,0 +1,14 @@
+package mms.storage;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for an item packed into, or refused by, a storage object.
+ */
+@Name("mms.storage.Pack")
+@Label("Pack")
+@Description("An item packed into or refused by a storage object")
+class PackEvent extends StorageOperationEvent {
+}
@@ -0,0 +1,48 @@
+package mms.storage;
+
+import mms.exceptions.BadItemException;
+import mms.exceptions.PackingException;
+import mms.exceptions.PackingOrderException;
+import mms.exceptions.StorageFullException;
+
+/**
+ * Enum to represent the reasons an item can be refused by a storage object, as counted by
+ * {@link StorageMetrics}
+ */
+public enum RejectionReason {
+    /**
+     * The storage object had no room for the item ({@link StorageFullException})
+     */
+    STORAGE_FULL,
+
+    /**
+     * The item cannot go in the storage object ({@link BadItemException})
+     */
+    BAD_ITEM,
+
+    /**
+     * The item was packed in the wrong order ({@link PackingOrderException})
+     */
+    PACKING_ORDER,
+
+    /**
+     * Any other packing exception
+     */
+    OTHER;
+
+    /**
+     * Returns the reason matching the given exception
+     * @param exception exception thrown by a storage object
+     * @return reason for the exception
+     */
+    public static RejectionReason of(PackingException exception) {
+        if (exception instanceof StorageFullException) {
+            return STORAGE_FULL;
+        } else if (exception instanceof BadItemException) {
+            return BAD_ITEM;
+        } else if (exception instanceof PackingOrderException) {
+            return PACKING_ORDER;
+        }
+        return OTHER;
+    }
+}
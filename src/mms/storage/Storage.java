@@ -1,12 +1,19 @@
 package mms.storage;
 
+import mms.exceptions.BadItemException;
 import mms.exceptions.PackingException;
 import mms.exceptions.StorageFullException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Laptop;
 import mms.utility.Packable;
 import mms.utility.Size;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Represents some form of storage entity.
@@ -36,24 +43,52 @@ public abstract class Storage {
     private final double length;
 
     /**
-     * Total width of all the items in the storage object
+     * Records the items placed in this storage object
      */
-    private double occupiedWidth;
+    private final Contents internalStorage;
 
     /**
-     * Total height of all the items in the storage object
+     * Decides the order items are unpacked from this storage object
      */
-    private double occupiedHeight;
+    private UnpackPolicy unpackPolicy;
 
     /**
-     * Total length of all the items in the storage object
+     * The storage object this storage object is packed in; null if it is not packed
      */
-    private double occupiedLength;
+    private Storage parent;
 
     /**
-     * Records the items placed in this storage object
+     * Number of items in this storage object, including items inside nested storage objects.
+     * Kept up to date on each pack and unpack anywhere below this storage object.
+     */
+    private int occupiedCapacity;
+
+    /**
+     * Number of fragile items (laptops and televisions) packed directly in this storage object
+     */
+    private int fragileCount;
+
+    /**
+     * Number of furniture items packed directly in this storage object
+     */
+    private int furnitureCount;
+
+    /**
+     * Number of changes made to this storage object or anything inside it, so that a
+     * {@link StorageCheckpoint} can tell when nothing inside has changed
      */
-    private ArrayList<Packable> internalStorage;
+    private long changeStamp;
+
+    /**
+     * Listeners told about changes to this storage object and its contents; null until the first
+     * listener is added
+     */
+    private List<StorageListener> listeners;
+
+    /**
+     * Description of this storage object, built the first time it is needed
+     */
+    private String description;
 
     /**
      * Creates an empty medium-sized storage object with a given width, height and length.
@@ -70,8 +105,8 @@ public abstract class Storage {
         this.width = width;
         this.height = height;
         this.length = length;
-        internalStorage = new ArrayList<>();
-        occupiedWidth = occupiedHeight = occupiedLength = 0;
+        unpackPolicy = UnpackPolicy.fifo();
+        internalStorage = new Contents(unpackPolicy);
     }
 
     /**
@@ -118,7 +153,7 @@ public abstract class Storage {
      * @return new list containing all items in the storage object
      */
     public List<Packable> getElements() {
-        return new ArrayList<>(internalStorage);
+        return internalStorage.toList();
     }
 
     /**
@@ -131,7 +166,7 @@ public abstract class Storage {
     public List<Packable> getElementsOfType(Packable reference) {
         ArrayList<Packable> internalStorageRefined = new ArrayList<>();
 
-        for (Packable item : internalStorage) {
+        for (Packable item : internalStorage.toList()) {
             if (item.getClass().equals(reference.getClass())) {
                 internalStorageRefined.add(item);
             }
@@ -139,6 +174,59 @@ public abstract class Storage {
         return internalStorageRefined;
     }
 
+    /**
+     * Returns the storage object this storage object is currently packed in
+     * @return storage object containing this one; null if it has not been packed
+     */
+    public Storage getParent() {
+        return parent;
+    }
+
+    /**
+     * Returns the policy deciding the order items are unpacked from this storage object
+     * @return unpack policy of this storage
+     */
+    public UnpackPolicy getUnpackPolicy() {
+        return unpackPolicy;
+    }
+
+    /**
+     * Changes the order items are unpacked from this storage object. Items already packed are
+     * unpacked according to the new policy as well.
+     * @param unpackPolicy new unpack policy
+     * @throws IllegalArgumentException if the policy is null, or if a listener of this storage
+     * object or of a storage object containing it refuses the policy
+     */
+    public void setUnpackPolicy(UnpackPolicy unpackPolicy) throws IllegalArgumentException {
+        if (unpackPolicy == null) {
+            throw new IllegalArgumentException("Unpack policy is null");
+        }
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            if (storage.listeners != null) {
+                for (StorageListener listener : storage.listeners) {
+                    listener.checkUnpackPolicy(this, unpackPolicy);
+                }
+            }
+        }
+        this.unpackPolicy = unpackPolicy;
+        internalStorage.setPolicy(unpackPolicy);
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            if (storage.listeners != null) {
+                for (StorageListener listener : storage.listeners) {
+                    listener.unpackPolicyChanged(this, unpackPolicy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the unpack policy storage objects of this type start with
+     * @return default unpack policy
+     */
+    protected UnpackPolicy getDefaultUnpackPolicy() {
+        return UnpackPolicy.fifo();
+    }
+
     /**
      * Gets the size of the object
      * @return size of the storage
@@ -173,8 +261,11 @@ public abstract class Storage {
     protected abstract int getMultiplier();
 
     /**
-     * Packs an item into the storage's internal list.
+     * Packs an item into the storage's internal list. If the item is itself a storage object,
+     * this storage object becomes its parent.
      * @param item the item to add to the list
+     * @throws BadItemException if the item is a storage object that is already packed somewhere,
+     * or if it is this storage object or one of the storage objects containing it
      * @throws PackingException if current number of items in the storage is >= storage capacity
      * or if two of the following are true:
      * <ul>
@@ -182,53 +273,399 @@ public abstract class Storage {
      * <li>height of items in storage + new item height > storage height</li>
      * <li>length of items in storage + new item length > storage length</li>
      * </ul>
+     * or if a listener of this storage object or of a storage object containing it refuses the
+     * item (see {@link StorageListener#checkPack(Storage, Packable)})
      */
     public void pack(Packable item) throws PackingException {
-        boolean tooWide = occupiedWidth + item.getWidth() > width;
-        boolean tooHigh = occupiedHeight + item.getHeight() > height;
-        boolean tooLong = occupiedLength + item.getLength() > length;
+        StorageMetrics metrics = StorageMetrics.getInstalled();
+        long start = metrics == null ? 0 : System.nanoTime();
+        PackEvent event = new PackEvent();
+        event.begin();
+        long moves = internalStorage.getMoveCount();
+        double itemWidth;
+        double itemHeight;
+        double itemLength;
+        try {
+            // Checked before anything is read from the item, which the check may refuse
+            checkItem(item);
+            if (item instanceof Storage) {
+                checkCanContain(item);
+            }
+            itemWidth = item.getWidth();
+            itemHeight = item.getHeight();
+            itemLength = item.getLength();
+            boolean tooWide = internalStorage.getTotalWidth() + itemWidth > width;
+            boolean tooHigh = internalStorage.getTotalHeight() + itemHeight > height;
+            boolean tooLong = internalStorage.getTotalLength() + itemLength > length;
+            if (getOccupiedCapacity() >= getCapacity()
+                    || (tooWide ? (tooHigh || tooLong) : (tooHigh && tooLong))) {
+                throw new StorageFullException();
+            }
+            checkListeners(item);
+        } catch (PackingException e) {
+            throw rejected(e, item, event);
+        }
+        internalStorage.add(item, itemWidth, itemHeight, itemLength);
+        updateAggregates(item, 1);
+        notifyPacked(item);
+        if (metrics != null) {
+            metrics.recordPack(this, System.nanoTime() - start);
+        }
+        event.finish(this, item, 1 + (int) (internalStorage.getMoveCount() - moves), "packed");
+    }
 
-        if (getOccupiedCapacity() >= getCapacity()
-                || (tooWide ? (tooHigh || tooLong) : (tooHigh && tooLong))) {
-            throw new StorageFullException();
-        } else {
-            internalStorage.add(item);
-            occupiedWidth += item.getWidth();
-            occupiedHeight += item.getHeight();
-            occupiedLength += item.getLength();
+    /**
+     * Checks rules about which items this kind of storage object accepts, before the checks
+     * made by {@link #pack(Packable)} for every storage object. Does nothing unless overridden.
+     * @param item item about to be packed
+     * @throws PackingException if this storage object does not accept the item
+     */
+    protected void checkItem(Packable item) throws PackingException {
+    }
+
+    /**
+     * Returns whether each element of this storage object was fragile when it was packed, which
+     * is what {@link UnpackPolicy#fragileLast()} goes by. A box counts as fragile if it held a
+     * laptop or television at the time, whatever it holds now.
+     * @return fragile flag of each element, indexed the same as {@link #getElements()}
+     */
+    public boolean[] getPackedFragile() {
+        boolean[] fragile = new boolean[internalStorage.size()];
+        int i = 0;
+        for (int slot = internalStorage.firstSlot(); slot != -1;
+                slot = internalStorage.nextSlot(slot + 1)) {
+            fragile[i++] = internalStorage.isFragile(slot);
         }
+        return fragile;
     }
 
     /**
-     * Removes an item from the storage in a first in, first out format.
-     * @return item at first index of storage; null if it's empty
+     * Removes an item from the storage in the order given by the storage's unpack policy. Unless
+     * the policy has been changed, storage is unpacked in a first in, first out format.
+     * @return next item according to the unpack policy; null if the storage is empty
      */
     public Packable unpack() {
-        if (internalStorage.isEmpty()) {
+        StorageMetrics metrics = StorageMetrics.getInstalled();
+        long start = metrics == null ? 0 : System.nanoTime();
+        UnpackEvent event = new UnpackEvent();
+        event.begin();
+        long moves = internalStorage.getMoveCount();
+        Packable item = internalStorage.removeNext();
+        if (item == null) {
+            event.finish(this, null, 0, "empty");
             return null;
         } else {
-            Packable item = internalStorage.remove(0);
-            occupiedWidth -= item.getWidth();
-            occupiedLength -= item.getLength();
-            occupiedHeight -= item.getHeight();
+            updateAggregates(item, -1);
+            notifyUnpacked(item);
+            if (metrics != null) {
+                metrics.recordUnpack(this, System.nanoTime() - start);
+            }
+            event.finish(this, item, 1 + (int) (internalStorage.getMoveCount() - moves),
+                    "unpacked");
             return item;
         }
     }
 
     /**
-     * Returns how many elements exist in the storage list
+     * Removes every item from the storage object, keeping the memory used to hold them so the
+     * storage object can be filled again without allocating. Storage objects that were packed in
+     * this one are left as they are, but can be packed somewhere else afterwards.
+     * <p>
+     * If this storage object or any storage object containing it has listeners, the items are
+     * unpacked one at a time in unpack order, so the listeners are told about each of them.
+     * Otherwise they are all dropped at once, which takes time proportional to the number of
+     * items and so is constant when spread over the packs that put them there.
+     */
+    public void clear() {
+        if (hasListeners()) {
+            while (unpack() != null) {
+                // Listeners are told about each item as it comes out
+            }
+            return;
+        }
+        StorageMetrics metrics = StorageMetrics.getInstalled();
+        if (metrics != null) {
+            metrics.recordCleared(this, internalStorage.size());
+        }
+        for (int slot = internalStorage.firstSlot(); slot != -1;
+                slot = internalStorage.nextSlot(slot + 1)) {
+            if (internalStorage.isStorage(slot)) {
+                ((Storage) internalStorage.get(slot)).parent = null;
+            }
+        }
+        internalStorage.clear();
+        for (Storage ancestor = parent; ancestor != null; ancestor = ancestor.parent) {
+            ancestor.occupiedCapacity -= occupiedCapacity;
+            ancestor.changeStamp++;
+        }
+        changeStamp++;
+        occupiedCapacity = 0;
+        fragileCount = 0;
+        furnitureCount = 0;
+    }
+
+    /**
+     * Returns the storage object to the state it was in when it was created, so that it can be
+     * reused: every item is removed as by {@link #clear()}, the unpack policy goes back to the
+     * default for the type of storage object and every listener is removed. Listeners are told
+     * about the items removed and the policy change before they are removed, so they are not
+     * left holding anything that is no longer packed.
+     * @throws IllegalStateException if the storage object is packed in another storage object
+     */
+    public void reset() throws IllegalStateException {
+        if (parent != null) {
+            throw new IllegalStateException("Storage is packed in another storage");
+        }
+        clear();
+        if (unpackPolicy != getDefaultUnpackPolicy()) {
+            setUnpackPolicy(getDefaultUnpackPolicy());
+        }
+        listeners = null;
+    }
+
+    /**
+     * Records that this storage object refused an item, in the installed metrics and by
+     * finishing the pack event begun for it, which a flight recording may want.
+     * @param exception exception refusing the item
+     * @param item item that was refused
+     * @param event event begun when the item was offered
+     * @param <E> type of the exception
+     * @return the given exception
+     */
+    private <E extends PackingException> E rejected(E exception, Packable item,
+                                                    PackEvent event) {
+        RejectionReason reason = RejectionReason.of(exception);
+        StorageMetrics metrics = StorageMetrics.getInstalled();
+        if (metrics != null) {
+            metrics.recordRejection(this, reason);
+        }
+        event.finish(this, item, 0, reason.name().toLowerCase(Locale.ROOT));
+        return exception;
+    }
+
+    /**
+     * Returns the number of times an item has been copied to a different slot inside this
+     * storage object when its slots were resized or compacted
+     * @return number of item moves so far
+     */
+    long getMoveCount() {
+        return internalStorage.getMoveCount();
+    }
+
+    /**
+     * Returns the number of changes made to this storage object or anything inside it. Packing
+     * or unpacking an item anywhere inside this storage object, or clearing it or anything
+     * inside it, increases the count.
+     * @return number of changes so far
+     */
+    long getChangeStamp() {
+        return changeStamp;
+    }
+
+    /**
+     * Returns whether this storage object or any storage object containing it has listeners.
+     * @return true if there are listeners
+     */
+    boolean hasListeners() {
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            if (storage.listeners != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks that the given storage object can be packed into this one. A storage object can
+     * only be in one place at a time, and packing a storage object into itself or into anything
+     * it contains would create a loop. Only the containers above this one are checked, so this
+     * takes time proportional to the nesting depth of this storage object.
+     * @param item storage object about to be packed
+     * @throws BadItemException if the storage object is already packed, or if it is this storage
+     * object or one of the storage objects containing it
+     */
+    private void checkCanContain(Packable item) throws BadItemException {
+        Storage storage = (Storage) item;
+        if (storage.parent != null) {
+            throw new BadItemException("Storage is already packed in another storage");
+        }
+        for (Storage ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor == storage) {
+                throw new BadItemException("Storage cannot be packed into itself");
+            }
+        }
+    }
+
+    /**
+     * Updates the parent link of a packed or unpacked storage object, and the cached counts of
+     * this storage object and every storage object containing it.
+     * @param item item that was packed or unpacked
+     * @param direction 1 if the item was packed, -1 if it was unpacked
+     */
+    private void updateAggregates(Packable item, int direction) {
+        int itemCount = 1;
+        if (item instanceof Storage) {
+            Storage storage = (Storage) item;
+            storage.parent = direction > 0 ? this : null;
+            itemCount = storage.occupiedCapacity;
+        }
+        if (item instanceof Furniture) {
+            furnitureCount += direction;
+        }
+        if (isFragileItem(item)) {
+            fragileCount += direction;
+        }
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            storage.occupiedCapacity += direction * itemCount;
+            storage.changeStamp++;
+        }
+    }
+
+    /**
+     * Asks the listeners of this storage object, and of every storage object containing it,
+     * whether an item can be packed into this storage object.
+     * @param item item about to be packed
+     * @throws PackingException if a listener refuses the item
+     */
+    private void checkListeners(Packable item) throws PackingException {
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            if (storage.listeners != null) {
+                for (StorageListener listener : storage.listeners) {
+                    listener.checkPack(this, item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells the listeners of this storage object, and of every storage object containing it, that
+     * an item was packed into this storage object.
+     * @param item item that was packed
+     */
+    private void notifyPacked(Packable item) {
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            if (storage.listeners != null) {
+                for (StorageListener listener : storage.listeners) {
+                    listener.itemPacked(this, item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Tells the listeners of this storage object, and of every storage object containing it, that
+     * an item was unpacked from this storage object.
+     * @param item item that was unpacked
+     */
+    private void notifyUnpacked(Packable item) {
+        for (Storage storage = this; storage != null; storage = storage.parent) {
+            if (storage.listeners != null) {
+                for (StorageListener listener : storage.listeners) {
+                    listener.itemUnpacked(this, item);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a listener that is told whenever an item is packed into or unpacked from this storage
+     * object or any storage object nested inside it.
+     * @param listener listener to add
+     */
+    public void addListener(StorageListener listener) {
+        if (listeners == null) {
+            listeners = new ArrayList<>();
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener previously added to this storage object. Does nothing if the listener
+     * was not added.
+     * @param listener listener to remove
+     */
+    public void removeListener(StorageListener listener) {
+        if (listeners != null) {
+            listeners.remove(listener);
+            if (listeners.isEmpty()) {
+                listeners = null;
+            }
+        }
+    }
+
+    /**
+     * Returns whether the given item is fragile on its own, that is whether it is a laptop or a
+     * television. Boxes are not fragile on their own; see {@link Box#isFragile()}.
+     * @param item item to check
+     * @return true if the item is fragile
+     */
+    public static boolean isFragileItem(Packable item) {
+        if (item instanceof Furniture) {
+            return ((Furniture) item).getType().equals(FurnitureType.TELEVISION);
+        }
+        return item instanceof Laptop;
+    }
+
+    /**
+     * Returns the number of fragile items (laptops and televisions) packed directly in this
+     * storage object
+     * @return number of fragile items in this storage
+     */
+    int getFragileCount() {
+        return fragileCount;
+    }
+
+    /**
+     * Returns the number of furniture items packed directly in this storage object
+     * @return number of furniture items in this storage
+     */
+    int getFurnitureCount() {
+        return furnitureCount;
+    }
+
+    /**
+     * Returns how many elements exist in the storage list. Items inside nested storage objects
+     * are counted individually rather than counting the storage object itself.
      * @return number of elements in storage
      */
     public int getOccupiedCapacity() {
-        int numItems = 0;
-        for (Packable item : getElements()) {
-            if (item instanceof Storage) {
-                numItems += ((Storage) item).getOccupiedCapacity();
+        return occupiedCapacity;
+    }
+
+    /**
+     * Walks this storage object and every storage object nested inside it, depth first and in
+     * packing order, reporting each storage object and item to the given visitor.
+     * <p>
+     * The walk keeps its own stack of partially visited storage objects instead of recursing,
+     * so it can handle storage objects nested to any depth.
+     * @param visitor visitor to report the storage objects and items to
+     */
+    public void walk(StorageVisitor visitor) {
+        Deque<WalkFrame> stack = new ArrayDeque<>();
+        if (visitor.enterStorage(this, 0)) {
+            stack.push(new WalkFrame(this, 0));
+        }
+        while (!stack.isEmpty()) {
+            WalkFrame frame = stack.peek();
+            Contents elements = frame.storage.internalStorage;
+            if (frame.next == -1) {
+                // Every element of this storage has been visited
+                stack.pop();
+                visitor.exitStorage(frame.storage, frame.depth);
+                continue;
+            }
+            int slot = frame.next;
+            Packable item = elements.get(slot);
+            frame.next = elements.nextSlot(slot + 1);
+            if (elements.isStorage(slot)) {
+                Storage nested = (Storage) item;
+                if (visitor.enterStorage(nested, frame.depth + 1)) {
+                    stack.push(new WalkFrame(nested, frame.depth + 1));
+                }
             } else {
-                numItems += 1;
+                visitor.visitItem(item, frame.storage, frame.depth + 1);
             }
         }
-        return numItems;
     }
 
     /**
@@ -246,9 +683,22 @@ public abstract class Storage {
      */
     @Override
     public String toString() {
-        return String.format("%s (%s, %s, %s) %s",
-                this.getClass().getSimpleName(), String.format("%.2f", width),
-                String.format("%.2f", height), String.format("%.2f", length), size);
+        return describe();
+    }
+
+    /**
+     * Returns the description of this storage object used by both {@link #toString()} and
+     * {@link #toString(int)}. The description only depends on the dimensions and size, which do
+     * not change, so it is only built once.
+     * @return description of the storage object
+     */
+    private String describe() {
+        if (description == null) {
+            description = String.format("%s (%s, %s, %s) %s",
+                    this.getClass().getSimpleName(), String.format("%.2f", width),
+                    String.format("%.2f", height), String.format("%.2f", length), size);
+        }
+        return description;
     }
 
     /**
@@ -277,22 +727,59 @@ public abstract class Storage {
         if (level < 0) {
             throw new IllegalArgumentException("Level is less than zero");
         }
-        String storageDesc = String.format("%s (%s, %s, %s) %s",
-                this.getClass().getSimpleName(), String.format("%.2f", width),
-                String.format("%.2f", height), String.format("%.2f", length), size);
-
-        StringBuilder result = new StringBuilder(
-                String.format("%s%s", "\t".repeat(level), storageDesc));
+        StringBuilder result = new StringBuilder();
+        walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                appendLine(storage.describe(), depth);
+                return true;
+            }
 
-        for (Packable item : internalStorage) {
-            result.append(System.lineSeparator());
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                appendLine(item.toString(), depth);
+            }
 
-            if (item instanceof Storage) {
-                result.append(((Storage) item).toString(level + 1));
-            } else {
-                result.append("\t".repeat(level + 1)).append(item.toString());
+            private void appendLine(String line, int depth) {
+                if (result.length() > 0) {
+                    result.append(System.lineSeparator());
+                }
+                result.append("\t".repeat(level + depth)).append(line);
             }
-        }
+        });
         return result.toString();
     }
+
+    /**
+     * A storage object partway through being walked, along with the index of the next element
+     * to visit.
+     */
+    private static class WalkFrame {
+
+        /**
+         * Storage object being walked
+         */
+        private final Storage storage;
+
+        /**
+         * Depth of the storage object in the walk
+         */
+        private final int depth;
+
+        /**
+         * Slot of the next element of the storage object to visit; -1 once all have been visited
+         */
+        private int next;
+
+        /**
+         * Creates a frame positioned at the first element of the given storage object.
+         * @param storage storage object being walked
+         * @param depth depth of the storage object in the walk
+         */
+        private WalkFrame(Storage storage, int depth) {
+            this.storage = storage;
+            this.depth = depth;
+            this.next = storage.internalStorage.firstSlot();
+        }
+    }
 }
\ No newline at end of file
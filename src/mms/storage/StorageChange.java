@@ -0,0 +1,73 @@
+package mms.storage;
+
+import mms.utility.Packable;
+
+/**
+ * An item or storage object that was added to, removed from or moved within a storage tree
+ * between two {@link StorageCheckpoint checkpoints}.
+ */
+public class StorageChange {
+
+    /**
+     * Item or storage object that changed
+     */
+    private final Packable item;
+
+    /**
+     * Storage object it was in; null if it was added
+     */
+    private final Storage from;
+
+    /**
+     * Storage object it is in now; null if it was removed
+     */
+    private final Storage to;
+
+    /**
+     * Creates a change.
+     * @param item item or storage object that changed
+     * @param from storage object it was in; null if it was added
+     * @param to storage object it is in now; null if it was removed
+     */
+    StorageChange(Packable item, Storage from, Storage to) {
+        this.item = item;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Returns the item or storage object that changed
+     * @return item changed
+     */
+    public Packable getItem() {
+        return item;
+    }
+
+    /**
+     * Returns the storage object the item was in at the earlier checkpoint
+     * @return storage object the item came from; null if it was added
+     */
+    public Storage getFrom() {
+        return from;
+    }
+
+    /**
+     * Returns the storage object the item is in at the later checkpoint
+     * @return storage object the item went to; null if it was removed
+     */
+    public Storage getTo() {
+        return to;
+    }
+
+    /**
+     * Returns the human-readable representation of the change in the format:
+     * <p>'item' : 'from' -> 'to'</p>
+     * Where 'from' or 'to' is "none" for added or removed items.
+     * @return string representation of the change
+     */
+    @Override
+    public String toString() {
+        return item + " : " + (from == null ? "none" : from) + " -> "
+                + (to == null ? "none" : to);
+    }
+}
@@ -0,0 +1,380 @@
+package mms.storage;
+
+import mms.utility.Packable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A record of what was packed where in a storage tree (usually a moving truck) at one moment,
+ * which can be compared with a later checkpoint of the same tree to find what changed in
+ * between.
+ * <p>
+ * Every storage object counts the changes made to it and to everything inside it. A checkpoint
+ * keeps that count for each storage object in the tree, so when two checkpoints agree on the
+ * count for a storage object, nothing inside it changed and it is skipped without looking
+ * inside. Taking a checkpoint from a previous one likewise reuses the parts of the previous
+ * checkpoint that have not changed. Both take time proportional to the number of elements
+ * directly inside the storage objects that changed, and the size of anything moved into or out
+ * of the tree, rather than to the size of the whole tree.
+ * <p>
+ * Items are told apart by identity, so an item is reported as moved only if the same item
+ * object is in a different storage object in the later checkpoint.
+ */
+public class StorageCheckpoint {
+
+    /**
+     * Record of the root storage object
+     */
+    private final Node root;
+
+    private StorageCheckpoint(Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Records what is packed where in the given storage tree.
+     * @param root storage object at the top of the tree
+     * @return checkpoint of the tree
+     */
+    public static StorageCheckpoint take(Storage root) {
+        return take(root, null);
+    }
+
+    /**
+     * Records what is packed where in the given storage tree, reusing the parts of a previous
+     * checkpoint of the tree that have not changed since.
+     * @param root storage object at the top of the tree
+     * @param previous earlier checkpoint of the same tree; null if there is none
+     * @return checkpoint of the tree
+     */
+    public static StorageCheckpoint take(Storage root, StorageCheckpoint previous) {
+        Node previousRoot = previous != null && previous.root.storage == root
+                ? previous.root : null;
+        Node rootNode = record(root, previousRoot);
+        // Fill in storage objects one at a time, so deep nesting does not overflow the stack
+        Deque<Node[]> pending = new ArrayDeque<>();
+        if (rootNode != previousRoot) {
+            pending.push(new Node[] {rootNode, previousRoot});
+        }
+        while (!pending.isEmpty()) {
+            Node[] next = pending.pop();
+            Node node = next[0];
+            Map<Packable, Node> earlier = next[1] == null ? Map.of() : next[1].children();
+            for (int i = 0; i < node.elements.length; i++) {
+                if (node.elements[i] instanceof Storage) {
+                    Storage storage = (Storage) node.elements[i];
+                    Node previousChild = earlier.get(storage);
+                    Node child = record(storage, previousChild);
+                    node.children[i] = child;
+                    if (child != previousChild) {
+                        pending.push(new Node[] {child, previousChild});
+                    }
+                }
+            }
+        }
+        return new StorageCheckpoint(rootNode);
+    }
+
+    /**
+     * Returns the storage object at the top of the tree this checkpoint records
+     * @return root storage object
+     */
+    public Storage getRoot() {
+        return root.storage;
+    }
+
+    /**
+     * Returns what changed in the tree between this checkpoint and now.
+     * @return changes made since this checkpoint
+     */
+    public StorageDiff diffToCurrent() {
+        return diffTo(take(root.storage, this));
+    }
+
+    /**
+     * Returns what changed in the tree between this checkpoint and a later one.
+     * @param later later checkpoint of the same tree
+     * @return changes made between the two checkpoints
+     * @throws IllegalArgumentException if the later checkpoint is of a different tree
+     */
+    public StorageDiff diffTo(StorageCheckpoint later) throws IllegalArgumentException {
+        if (later.root.storage != root.storage) {
+            throw new IllegalArgumentException("Checkpoints are of different trees");
+        }
+        return new Comparison(root, later.root).run();
+    }
+
+    /**
+     * Returns the previous record of a storage object if nothing in it has changed since, and a
+     * new record with its elements otherwise. The new record's children are filled in later.
+     */
+    private static Node record(Storage storage, Node previous) {
+        if (previous != null && previous.stamp == storage.getChangeStamp()) {
+            return previous;
+        }
+        return new Node(storage, storage.getChangeStamp(),
+                storage.getElements().toArray(new Packable[0]));
+    }
+
+    /**
+     * Record of the elements of one storage object at the time of a checkpoint.
+     */
+    private static class Node {
+
+        /**
+         * Storage object recorded
+         */
+        private final Storage storage;
+
+        /**
+         * Change count of the storage object when it was recorded
+         */
+        private final long stamp;
+
+        /**
+         * Elements of the storage object, in packing order
+         */
+        private final Packable[] elements;
+
+        /**
+         * Records of the elements that are storage objects, indexed the same as the elements;
+         * null for other items
+         */
+        private final Node[] children;
+
+        private Node(Storage storage, long stamp, Packable[] elements) {
+            this.storage = storage;
+            this.stamp = stamp;
+            this.elements = elements;
+            this.children = new Node[elements.length];
+        }
+
+        /**
+         * Returns the records of the storage objects directly inside this one.
+         */
+        private Map<Packable, Node> children() {
+            Map<Packable, Node> children = new IdentityHashMap<>();
+            for (int i = 0; i < elements.length; i++) {
+                if (this.children[i] != null) {
+                    children.put(elements[i], this.children[i]);
+                }
+            }
+            return children;
+        }
+    }
+
+    /**
+     * Works out the changes between two records of the same tree.
+     * <p>
+     * A storage object in both trees that changed has its two records compared: elements only
+     * in one of them are noted, along with the storage object they were in, and storage objects
+     * in both are compared in turn if they changed. A storage object that is only found on one
+     * side has all of its elements noted for that side, unless it turns up on the other side
+     * after all, in which case its records are compared instead. An item is then moved if it was
+     * in different storage objects on the two sides, removed if it is only on the earlier side
+     * and the storage object it was in is still in the tree, and added the other way round.
+     * Items inside a storage object that was removed or added as a whole are not reported
+     * separately.
+     */
+    private static class Comparison {
+
+        /**
+         * Storage object at the top of both trees
+         */
+        private final Storage root;
+
+        /**
+         * Elements noted for the earlier and the later side
+         */
+        private final Side before = new Side();
+        private final Side after = new Side();
+
+        /**
+         * Storage objects in both trees whose records have been compared
+         */
+        private final Map<Storage, Boolean> compared = new IdentityHashMap<>();
+
+        /**
+         * Pairs of earlier and later records of the same storage object waiting to be compared
+         */
+        private final Deque<Node[]> pairs = new ArrayDeque<>();
+
+        /**
+         * Records waiting to have all their elements noted
+         */
+        private final Deque<Listing> listings = new ArrayDeque<>();
+
+        private Comparison(Node earlier, Node later) {
+            this.root = earlier.storage;
+            if (earlier.stamp != later.stamp) {
+                pairs.push(new Node[] {earlier, later});
+            }
+        }
+
+        private StorageDiff run() {
+            while (!pairs.isEmpty() || !listings.isEmpty()
+                    || !before.pending.isEmpty() || !after.pending.isEmpty()) {
+                while (!pairs.isEmpty() || !listings.isEmpty()) {
+                    if (!pairs.isEmpty()) {
+                        Node[] pair = pairs.pop();
+                        compare(pair[0], pair[1]);
+                    } else {
+                        Listing listing = listings.pop();
+                        list(listing.side, listing.node);
+                    }
+                }
+                // Storage objects only found on one side so far have to be looked inside
+                for (Side side : List.of(before, after)) {
+                    for (Node node : side.pending.values()) {
+                        listings.push(new Listing(side, node));
+                    }
+                    side.pending.clear();
+                }
+            }
+
+            List<StorageChange> added = new ArrayList<>();
+            List<StorageChange> removed = new ArrayList<>();
+            List<StorageChange> moved = new ArrayList<>();
+            for (Packable item : before.order) {
+                Storage from = before.containers.get(item);
+                Storage to = after.containers.get(item);
+                if (to == null) {
+                    if (isIn(from, after)) {
+                        removed.add(new StorageChange(item, from, null));
+                    }
+                } else if (to != from) {
+                    moved.add(new StorageChange(item, from, to));
+                }
+            }
+            for (Packable item : after.order) {
+                Storage to = after.containers.get(item);
+                if (!before.containers.containsKey(item) && isIn(to, before)) {
+                    added.add(new StorageChange(item, null, to));
+                }
+            }
+            return new StorageDiff(added, removed, moved);
+        }
+
+        /**
+         * Returns whether a storage object is in the tree on the given side.
+         */
+        private boolean isIn(Storage storage, Side side) {
+            return storage == root || compared.containsKey(storage)
+                    || side.containers.containsKey(storage);
+        }
+
+        /**
+         * Notes the elements that are only in one of two records of the same storage object, and
+         * queues up the storage objects in both that changed.
+         */
+        private void compare(Node earlier, Node later) {
+            compared.put(earlier.storage, Boolean.TRUE);
+            Map<Packable, Integer> laterIndex = new IdentityHashMap<>();
+            for (int i = 0; i < later.elements.length; i++) {
+                laterIndex.put(later.elements[i], i);
+            }
+            for (int i = 0; i < earlier.elements.length; i++) {
+                Integer j = laterIndex.remove(earlier.elements[i]);
+                if (j == null) {
+                    note(before, earlier.storage, earlier.elements[i], earlier.children[i]);
+                } else if (earlier.children[i] != null
+                        && earlier.children[i].stamp != later.children[j].stamp) {
+                    pairs.push(new Node[] {earlier.children[i], later.children[j]});
+                }
+            }
+            for (int j = 0; j < later.elements.length; j++) {
+                if (laterIndex.containsKey(later.elements[j])) {
+                    note(after, later.storage, later.elements[j], later.children[j]);
+                }
+            }
+        }
+
+        /**
+         * Notes every element of a record for one side.
+         */
+        private void list(Side side, Node node) {
+            for (int i = 0; i < node.elements.length; i++) {
+                note(side, node.storage, node.elements[i], node.children[i]);
+            }
+        }
+
+        /**
+         * Notes the storage object an element was in on one side, and if the element is a
+         * storage object, decides how to look inside it.
+         */
+        private void note(Side side, Storage container, Packable element, Node child) {
+            side.containers.put(element, container);
+            side.order.add(element);
+            if (child == null) {
+                return;
+            }
+            Side other = side == before ? after : before;
+            side.nodes.put(child.storage, child);
+            Node otherChild = other.nodes.get(child.storage);
+            if (otherChild == null) {
+                // Wait to see whether it turns up on the other side
+                side.pending.put(child.storage, child);
+            } else if (other.pending.remove(child.storage) != null) {
+                if (otherChild.stamp != child.stamp) {
+                    pairs.push(side == before ? new Node[] {child, otherChild}
+                            : new Node[] {otherChild, child});
+                }
+            } else {
+                // Already listed on the other side, so has to be listed on this one too
+                listings.push(new Listing(side, child));
+            }
+        }
+    }
+
+    /**
+     * What has been noted for one of the two checkpoints being compared.
+     */
+    private static class Side {
+
+        /**
+         * Storage object each noted element was in
+         */
+        private final Map<Packable, Storage> containers = new IdentityHashMap<>();
+
+        /**
+         * Noted elements, in the order they were noted
+         */
+        private final List<Packable> order = new ArrayList<>();
+
+        /**
+         * Records of the noted storage objects
+         */
+        private final Map<Storage, Node> nodes = new IdentityHashMap<>();
+
+        /**
+         * Records of storage objects found on this side, waiting to be found on the other
+         */
+        private final Map<Storage, Node> pending = new IdentityHashMap<>();
+    }
+
+    /**
+     * A record waiting to be listed for one side.
+     */
+    private static class Listing {
+
+        /**
+         * Side the record belongs to
+         */
+        private final Side side;
+
+        /**
+         * Record to list
+         */
+        private final Node node;
+
+        private Listing(Side side, Node node) {
+            this.side = side;
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package mms.storage;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The items and storage objects added to, removed from and moved within a storage tree between
+ * two {@link StorageCheckpoint checkpoints}. Items inside a storage object that was added or
+ * removed as a whole are not listed separately.
+ */
+public class StorageDiff {
+
+    /**
+     * Items and storage objects added to the tree
+     */
+    private final List<StorageChange> added;
+
+    /**
+     * Items and storage objects removed from the tree
+     */
+    private final List<StorageChange> removed;
+
+    /**
+     * Items and storage objects moved from one storage object in the tree to another
+     */
+    private final List<StorageChange> moved;
+
+    /**
+     * Creates a diff.
+     * @param added items and storage objects added to the tree
+     * @param removed items and storage objects removed from the tree
+     * @param moved items and storage objects moved within the tree
+     */
+    StorageDiff(List<StorageChange> added, List<StorageChange> removed,
+                List<StorageChange> moved) {
+        this.added = Collections.unmodifiableList(added);
+        this.removed = Collections.unmodifiableList(removed);
+        this.moved = Collections.unmodifiableList(moved);
+    }
+
+    /**
+     * Returns the items and storage objects added to the tree, along with where they were put
+     * @return items added
+     */
+    public List<StorageChange> getAdded() {
+        return added;
+    }
+
+    /**
+     * Returns the items and storage objects removed from the tree, along with where they were
+     * @return items removed
+     */
+    public List<StorageChange> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Returns the items and storage objects moved from one storage object in the tree to
+     * another
+     * @return items moved
+     */
+    public List<StorageChange> getMoved() {
+        return moved;
+    }
+
+    /**
+     * Returns whether nothing was added, removed or moved
+     * @return true if the tree did not change
+     */
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && moved.isEmpty();
+    }
+
+    /**
+     * Returns the human-readable representation of the diff, with one line for each change,
+     * starting with '+' for added items, '-' for removed items and '~' for moved items
+     * @return string representation of the diff
+     */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        appendLines(result, "+ ", added);
+        appendLines(result, "- ", removed);
+        appendLines(result, "~ ", moved);
+        return result.toString();
+    }
+
+    private static void appendLines(StringBuilder result, String prefix,
+                                    List<StorageChange> changes) {
+        for (StorageChange change : changes) {
+            if (result.length() > 0) {
+                result.append(System.lineSeparator());
+            }
+            result.append(prefix).append(change);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package mms.storage;
+
+import mms.utility.Packable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Records an item being packed into or unpacked from a storage object, along with where that
+ * storage object was at the time.
+ */
+public class StorageEvent {
+
+    /**
+     * Whether the item was packed or unpacked
+     */
+    private final StorageEventType type;
+
+    /**
+     * The item that was packed or unpacked
+     */
+    private final Packable item;
+
+    /**
+     * The storage objects from the outermost container down to the one the item was packed into
+     * or unpacked from
+     */
+    private final List<Storage> path;
+
+    /**
+     * Creates an event for an item packed into or unpacked from the given container. The path to
+     * the container is worked out from the container's current parents.
+     * @param type whether the item was packed or unpacked
+     * @param item the item that was packed or unpacked
+     * @param container the storage object the item was packed into or unpacked from
+     */
+    public StorageEvent(StorageEventType type, Packable item, Storage container) {
+        this.type = type;
+        this.item = item;
+        List<Storage> containers = new ArrayList<>();
+        for (Storage storage = container; storage != null; storage = storage.getParent()) {
+            containers.add(storage);
+        }
+        Collections.reverse(containers);
+        this.path = Collections.unmodifiableList(containers);
+    }
+
+    /**
+     * Returns whether the item was packed or unpacked
+     * @return type of the event
+     */
+    public StorageEventType getType() {
+        return type;
+    }
+
+    /**
+     * Returns the item that was packed or unpacked
+     * @return item the event is about
+     */
+    public Packable getItem() {
+        return item;
+    }
+
+    /**
+     * Returns the storage object the item was packed into or unpacked from
+     * @return container the event happened in
+     */
+    public Storage getContainer() {
+        return path.get(path.size() - 1);
+    }
+
+    /**
+     * Returns the storage objects from the outermost container (usually a moving truck) down to
+     * the one the item was packed into or unpacked from, as they were when the event happened
+     * @return read-only path to the container
+     */
+    public List<Storage> getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the human-readable representation of the event in the format:
+     * <p>'type' 'item' in 'container'</p>
+     * @return string representation of the event
+     */
+    @Override
+    public String toString() {
+        return String.format("%s %s in %s", type, item, getContainer());
+    }
+}
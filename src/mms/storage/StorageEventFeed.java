@@ -0,0 +1,166 @@
+package mms.storage;
+
+import mms.utility.Packable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * Publishes the pack and unpack events of the storage objects it listens to, in batches, to
+ * any number of {@link Flow.Subscriber}s.
+ * <p>
+ * Add the feed to a storage object with {@link Storage#addListener(StorageListener)}. Packing
+ * and unpacking only put an event on a bounded queue; a background thread takes events off the
+ * queue in batches and hands them to the subscribers. Each batch is a read-only list that
+ * subscribers can keep without copying.
+ * <p>
+ * Subscribers control how fast they receive batches through {@link Flow.Subscription#request}.
+ * If a subscriber falls behind, the background thread waits for it, the queue fills up, and
+ * packing waits for room on the queue, so a slow subscriber slows the packers down instead of
+ * events being lost.
+ */
+public class StorageEventFeed implements StorageListener, Flow.Publisher<List<StorageEvent>>,
+        AutoCloseable {
+
+    /**
+     * Placed on the queue to tell the background thread to stop
+     */
+    private static final StorageEvent END =
+            new StorageEvent(StorageEventType.PACKED, null, null);
+
+    /**
+     * Events waiting to be published
+     */
+    private final BlockingQueue<StorageEvent> queue;
+
+    /**
+     * Largest number of events published in a single batch
+     */
+    private final int maxBatchSize;
+
+    /**
+     * Delivers batches to subscribers, buffering a limited number for each one
+     */
+    private final SubmissionPublisher<List<StorageEvent>> publisher;
+
+    /**
+     * Moves events from the queue to the publisher
+     */
+    private final Thread dispatcher;
+
+    /**
+     * Whether the feed has been closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * Creates a feed that queues up to the given number of events and publishes them in batches
+     * of at most the given size.
+     * @param queueCapacity number of events that can be waiting before packing has to wait
+     * @param maxBatchSize largest number of events published in a single batch
+     * @throws IllegalArgumentException if queueCapacity or maxBatchSize < 1
+     */
+    public StorageEventFeed(int queueCapacity, int maxBatchSize)
+            throws IllegalArgumentException {
+        if (queueCapacity < 1 || maxBatchSize < 1) {
+            throw new IllegalArgumentException("Queue capacity or batch size < 1");
+        }
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.publisher = new SubmissionPublisher<>();
+        this.dispatcher = new Thread(this::dispatch, "storage-event-feed");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super List<StorageEvent>> subscriber) {
+        publisher.subscribe(subscriber);
+    }
+
+    @Override
+    public void itemPacked(Storage container, Packable item) {
+        enqueue(new StorageEvent(StorageEventType.PACKED, item, container));
+    }
+
+    @Override
+    public void itemUnpacked(Storage container, Packable item) {
+        enqueue(new StorageEvent(StorageEventType.UNPACKED, item, container));
+    }
+
+    /**
+     * Publishes any events still waiting, then completes every subscriber. Events for changes
+     * made after the feed is closed are ignored. The feed should only be closed once nothing is
+     * being packed into or unpacked from the storage objects it listens to.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        boolean interrupted = false;
+        boolean ended = false;
+        while (dispatcher.isAlive()) {
+            try {
+                if (!ended) {
+                    queue.put(END);
+                    ended = true;
+                }
+                dispatcher.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts an event on the queue, waiting for room if the queue is full.
+     * @param event event to publish
+     */
+    private void enqueue(StorageEvent event) {
+        if (closed) {
+            return;
+        }
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            // The event is dropped, but the interrupt is kept for the caller to see
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run by the background thread. Takes events off the queue in batches and publishes them
+     * until the feed is closed.
+     */
+    private void dispatch() {
+        List<StorageEvent> batch = new ArrayList<>(maxBatchSize);
+        boolean done = false;
+        while (!done) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, maxBatchSize - 1);
+            if (batch.get(batch.size() - 1) == END) {
+                batch.remove(batch.size() - 1);
+                done = true;
+            }
+            if (!batch.isEmpty()) {
+                // Blocks while any subscriber's buffer is full
+                publisher.submit(List.copyOf(batch));
+            }
+            batch.clear();
+        }
+        publisher.close();
+    }
+}
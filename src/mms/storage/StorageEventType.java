@@ -0,0 +1,16 @@
+package mms.storage;
+
+/**
+ * Enum to represent the kinds of change reported by a {@link StorageEvent}
+ */
+public enum StorageEventType {
+    /**
+     * An item was packed into a storage object
+     */
+    PACKED,
+
+    /**
+     * An item was unpacked from a storage object
+     */
+    UNPACKED
+}
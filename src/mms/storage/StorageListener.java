@@ -0,0 +1,59 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.utility.Packable;
+
+/**
+ * Listens for items being packed into or unpacked from a storage object. A listener added to a
+ * storage object is told about changes to that storage object and to every storage object
+ * nested inside it.
+ * <p>
+ * Before an item is packed or an unpack policy is changed, each listener is asked whether the
+ * change can go ahead, so a listener that cannot handle a change can refuse it before anything
+ * has been changed. Listeners that do not need to refuse anything can ignore these checks.
+ */
+public interface StorageListener {
+
+    /**
+     * Called once an item has passed the checks made by the storage object, just before it is
+     * packed. Throwing stops the item from being packed, and no listener is told that it was.
+     * @param container the storage object the item is about to be packed directly into
+     * @param item the item about to be packed
+     * @throws PackingException if the listener cannot accept the item being packed
+     */
+    default void checkPack(Storage container, Packable item) throws PackingException {
+    }
+
+    /**
+     * Called after an item has been packed.
+     * @param container the storage object the item was packed directly into
+     * @param item the item that was packed
+     */
+    void itemPacked(Storage container, Packable item);
+
+    /**
+     * Called after an item has been unpacked.
+     * @param container the storage object the item was unpacked directly from
+     * @param item the item that was unpacked
+     */
+    void itemUnpacked(Storage container, Packable item);
+
+    /**
+     * Called just before the unpack policy of a storage object is changed. Throwing stops the
+     * policy from being changed.
+     * @param storage the storage object whose policy is about to change
+     * @param policy the new unpack policy
+     * @throws IllegalArgumentException if the listener cannot accept the new policy
+     */
+    default void checkUnpackPolicy(Storage storage, UnpackPolicy policy)
+            throws IllegalArgumentException {
+    }
+
+    /**
+     * Called after the unpack policy of a storage object has been changed.
+     * @param storage the storage object whose policy changed
+     * @param policy the new unpack policy
+     */
+    default void unpackPolicyChanged(Storage storage, UnpackPolicy policy) {
+    }
+}
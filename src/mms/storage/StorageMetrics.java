@@ -0,0 +1,278 @@
+package mms.storage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts what storage objects do while it is installed with {@link #install(StorageMetrics)}:
+ * items packed and unpacked, items refused and why, how long packing and unpacking took, and
+ * how many items are currently packed. Everything is counted separately for each class of
+ * storage object (for example Box and MovingTruck).
+ * <p>
+ * Counters are striped ({@link LongAdder}), so storage objects used from many threads do not
+ * slow each other down. When no metrics are installed, storage objects only check a single
+ * field and do no other work.
+ * <p>
+ * The number of items currently packed only counts packs and unpacks made while the metrics were
+ * installed, so it is only accurate for storage objects that were empty at the time.
+ */
+public class StorageMetrics {
+
+    /**
+     * Metrics currently being recorded; null when metrics are off
+     */
+    private static volatile StorageMetrics installed;
+
+    /**
+     * Metrics for each class of storage object
+     */
+    private final Map<Class<?>, TypeMetrics> types;
+
+    /**
+     * Creates metrics with every count at zero.
+     */
+    public StorageMetrics() {
+        types = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Starts recording metrics from every storage object, replacing any metrics already
+     * installed.
+     * @param metrics metrics to record into; null to stop recording
+     */
+    public static void install(StorageMetrics metrics) {
+        installed = metrics;
+    }
+
+    /**
+     * Returns the metrics currently being recorded
+     * @return installed metrics; null if metrics are off
+     */
+    public static StorageMetrics getInstalled() {
+        return installed;
+    }
+
+    /**
+     * Returns the number of items packed into storage objects of the given class
+     * @param type class of storage object
+     * @return number of successful packs
+     */
+    public long getPackCount(Class<? extends Storage> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? 0 : metrics.packs.sum();
+    }
+
+    /**
+     * Returns the number of items unpacked from storage objects of the given class, including
+     * items removed by {@link Storage#clear()}
+     * @param type class of storage object
+     * @return number of items unpacked
+     */
+    public long getUnpackCount(Class<? extends Storage> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? 0 : metrics.unpacks.sum();
+    }
+
+    /**
+     * Returns the number of items refused by storage objects of the given class for the given
+     * reason
+     * @param type class of storage object
+     * @param reason reason for refusing the items
+     * @return number of items refused
+     */
+    public long getRejectionCount(Class<? extends Storage> type, RejectionReason reason) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? 0 : metrics.rejections[reason.ordinal()].sum();
+    }
+
+    /**
+     * Returns the number of items currently packed directly in storage objects of the given
+     * class
+     * @param type class of storage object
+     * @return number of items packed
+     */
+    public long getItemCount(Class<? extends Storage> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? 0 : metrics.items.sum();
+    }
+
+    /**
+     * Returns how long successful packs into storage objects of the given class took
+     * @param type class of storage object
+     * @return pack durations; empty if nothing has been packed
+     */
+    public LatencyHistogram getPackLatency(Class<? extends Storage> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? new LatencyHistogram() : metrics.packLatency;
+    }
+
+    /**
+     * Returns how long unpacks from storage objects of the given class took
+     * @param type class of storage object
+     * @return unpack durations; empty if nothing has been unpacked
+     */
+    public LatencyHistogram getUnpackLatency(Class<? extends Storage> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics == null ? new LatencyHistogram() : metrics.unpackLatency;
+    }
+
+    /**
+     * Returns the metrics as text, one value per line, in the format:
+     * <p>'name'{type="'class'"[,'label'="'value'"]} 'value'</p>
+     * Histograms are written as a line for each bucket, labelled with the longest duration in it
+     * ("le") and counting every duration up to that, followed by their count and sum. Classes are
+     * written in name order.
+     * @return text dump of the metrics
+     */
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        writeTo(out);
+        return out.toString();
+    }
+
+    /**
+     * Writes the metrics as text, in the format described by {@link #dump()}.
+     * @param out where to write the metrics
+     * @throws UncheckedIOException if the metrics cannot be written
+     */
+    public void writeTo(Appendable out) {
+        List<Class<?>> classes = new ArrayList<>(types.keySet());
+        classes.sort(Comparator.comparing(Class::getName));
+        try {
+            for (Class<?> type : classes) {
+                TypeMetrics metrics = types.get(type);
+                String label = "type=\"" + type.getSimpleName() + "\"";
+                line(out, "storage_packs_total", label, metrics.packs.sum());
+                line(out, "storage_unpacks_total", label, metrics.unpacks.sum());
+                for (RejectionReason reason : RejectionReason.values()) {
+                    line(out, "storage_rejections_total", label + ",reason=\""
+                            + reason.name().toLowerCase(Locale.ROOT) + "\"",
+                            metrics.rejections[reason.ordinal()].sum());
+                }
+                line(out, "storage_items", label, metrics.items.sum());
+                histogram(out, "storage_pack_latency_ns", label, metrics.packLatency);
+                histogram(out, "storage_unpack_latency_ns", label, metrics.unpackLatency);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Records an item packed into a storage object.
+     * @param storage storage object the item was packed into
+     * @param nanos how long packing took
+     */
+    void recordPack(Storage storage, long nanos) {
+        TypeMetrics metrics = typeMetrics(storage.getClass());
+        metrics.packs.increment();
+        metrics.items.increment();
+        metrics.packLatency.record(nanos);
+    }
+
+    /**
+     * Records an item unpacked from a storage object.
+     * @param storage storage object the item was unpacked from
+     * @param nanos how long unpacking took
+     */
+    void recordUnpack(Storage storage, long nanos) {
+        TypeMetrics metrics = typeMetrics(storage.getClass());
+        metrics.unpacks.increment();
+        metrics.items.decrement();
+        metrics.unpackLatency.record(nanos);
+    }
+
+    /**
+     * Records items removed from a storage object all at once by {@link Storage#clear()}.
+     * @param storage storage object that was cleared
+     * @param count number of items removed
+     */
+    void recordCleared(Storage storage, int count) {
+        TypeMetrics metrics = typeMetrics(storage.getClass());
+        metrics.unpacks.add(count);
+        metrics.items.add(-count);
+    }
+
+    /**
+     * Records an item refused by a storage object.
+     * @param storage storage object that refused the item
+     * @param reason reason for refusing the item
+     */
+    void recordRejection(Storage storage, RejectionReason reason) {
+        typeMetrics(storage.getClass()).rejections[reason.ordinal()].increment();
+    }
+
+    private TypeMetrics typeMetrics(Class<?> type) {
+        TypeMetrics metrics = types.get(type);
+        return metrics != null ? metrics : types.computeIfAbsent(type, key -> new TypeMetrics());
+    }
+
+    private static void line(Appendable out, String name, String labels, long value)
+            throws IOException {
+        out.append(name).append('{').append(labels).append("} ")
+                .append(Long.toString(value)).append('\n');
+    }
+
+    private static void histogram(Appendable out, String name, String labels,
+                                  LatencyHistogram histogram) throws IOException {
+        long cumulative = 0;
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            cumulative += histogram.getCount(i);
+            long bound = LatencyHistogram.getUpperBound(i);
+            line(out, name + "_bucket", labels + ",le=\""
+                    + (bound == Long.MAX_VALUE ? "+Inf" : Long.toString(bound - 1)) + "\"",
+                    cumulative);
+        }
+        line(out, name + "_count", labels, cumulative);
+        line(out, name + "_sum", labels, histogram.getSum());
+    }
+
+    /**
+     * Metrics for one class of storage object.
+     */
+    private static class TypeMetrics {
+
+        /**
+         * Number of items packed
+         */
+        private final LongAdder packs = new LongAdder();
+
+        /**
+         * Number of items unpacked
+         */
+        private final LongAdder unpacks = new LongAdder();
+
+        /**
+         * Number of items refused, for each reason
+         */
+        private final LongAdder[] rejections = new LongAdder[RejectionReason.values().length];
+
+        /**
+         * Number of items currently packed
+         */
+        private final LongAdder items = new LongAdder();
+
+        /**
+         * Durations of successful packs
+         */
+        private final LatencyHistogram packLatency = new LatencyHistogram();
+
+        /**
+         * Durations of unpacks
+         */
+        private final LatencyHistogram unpackLatency = new LatencyHistogram();
+
+        private TypeMetrics() {
+            for (int i = 0; i < rejections.length; i++) {
+                rejections[i] = new LongAdder();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package mms.storage;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import mms.utility.Packable;
+
+/**
+ * A Java Flight Recorder event for an operation on a storage object. The details are only worked
+ * out and the event only committed while a recording has it enabled, so creating and finishing
+ * events costs next to nothing when nothing is being recorded.
+ */
+@Category({"Moving", "Storage"})
+abstract class StorageOperationEvent extends Event {
+
+    /**
+     * Class of the storage object the operation was on
+     */
+    @Label("Container Type")
+    Class<?> containerType;
+
+    /**
+     * Class of the item packed, refused or unpacked; null if there was none
+     */
+    @Label("Item Type")
+    Class<?> itemType;
+
+    /**
+     * Number of storage objects the container was packed inside
+     */
+    @Label("Depth")
+    @Description("Number of storage objects the container was packed inside")
+    int depth;
+
+    /**
+     * Number of items moved by the operation
+     */
+    @Label("Elements Moved")
+    @Description("The item packed or unpacked, plus items copied to new slots while the "
+            + "container grew or closed gaps")
+    int elementsMoved;
+
+    /**
+     * What happened, such as "packed", "unpacked" or the reason an item was refused
+     */
+    @Label("Outcome")
+    String outcome;
+
+    /**
+     * Ends the event and, if a recording wants it, fills in its details and commits it.
+     * @param container storage object the operation was on
+     * @param item item packed, refused or unpacked; null if there was none
+     * @param elementsMoved number of items moved by the operation
+     * @param outcome what happened
+     */
+    void finish(Storage container, Packable item, int elementsMoved, String outcome) {
+        end();
+        if (!shouldCommit()) {
+            return;
+        }
+        this.containerType = container.getClass();
+        this.itemType = item == null ? null : item.getClass();
+        int depth = 0;
+        for (Storage parent = container.getParent(); parent != null;
+                parent = parent.getParent()) {
+            depth++;
+        }
+        this.depth = depth;
+        this.elementsMoved = elementsMoved;
+        this.outcome = outcome;
+        commit();
+    }
+}
@@ -0,0 +1,115 @@
+package mms.storage;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * A pool of empty storage objects of one kind, so that code which fills and throws away many
+ * containers (for example when trying out load plans) can reuse them instead of creating new
+ * ones each time. Storage objects are created by the given factory when the pool is empty, and
+ * are {@link Storage#reset() reset} when they are given back.
+ * <p>
+ * Every storage object from a pool is identical when it is handed out, so a pool should only be
+ * used for containers that are interchangeable, such as boxes of a standard size. Pools are not
+ * thread safe.
+ * @param <T> type of storage object in the pool
+ */
+public class StoragePool<T extends Storage> {
+
+    /**
+     * Creates new storage objects when the pool is empty
+     */
+    private final Supplier<? extends T> factory;
+
+    /**
+     * Largest number of storage objects kept waiting in the pool
+     */
+    private final int maxIdle;
+
+    /**
+     * Storage objects waiting to be handed out
+     */
+    private final Deque<T> idle;
+
+    /**
+     * The same storage objects as idle, to catch ones given back twice
+     */
+    private final Set<T> idleSet;
+
+    /**
+     * Number of storage objects created by the factory
+     */
+    private long createdCount;
+
+    /**
+     * Creates an empty pool.
+     * @param factory creates new storage objects when the pool is empty; each call must return
+     * a new, empty storage object that is not packed anywhere
+     * @param maxIdle largest number of storage objects to keep waiting in the pool; storage
+     * objects given back once it is full are left for the garbage collector
+     * @throws IllegalArgumentException if maxIdle < 0
+     */
+    public StoragePool(Supplier<? extends T> factory, int maxIdle)
+            throws IllegalArgumentException {
+        if (maxIdle < 0) {
+            throw new IllegalArgumentException("Max idle < 0");
+        }
+        this.factory = factory;
+        this.maxIdle = maxIdle;
+        this.idle = new ArrayDeque<>();
+        this.idleSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    /**
+     * Takes an empty storage object from the pool, creating a new one if the pool is empty.
+     * @return empty storage object
+     */
+    public T acquire() {
+        T storage = idle.pollFirst();
+        if (storage == null) {
+            createdCount++;
+            return factory.get();
+        }
+        idleSet.remove(storage);
+        return storage;
+    }
+
+    /**
+     * Gives a storage object back to the pool, emptying it with {@link Storage#reset()}. The
+     * storage object must not be used again by the caller.
+     * @param storage storage object taken from this pool
+     * @throws IllegalStateException if the storage object is packed in another storage object
+     * @throws IllegalArgumentException if the storage object is already in the pool
+     */
+    public void release(T storage) throws IllegalStateException, IllegalArgumentException {
+        if (idleSet.contains(storage)) {
+            throw new IllegalArgumentException("Storage is already in the pool");
+        }
+        storage.reset();
+        if (idle.size() < maxIdle) {
+            // Hand out the most recently used storage objects first, while they are still cached
+            idle.addFirst(storage);
+            idleSet.add(storage);
+        }
+    }
+
+    /**
+     * Returns the number of storage objects waiting in the pool
+     * @return number of idle storage objects
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Returns the number of storage objects the pool has created so far
+     * @return number of storage objects created
+     */
+    public long getCreatedCount() {
+        return createdCount;
+    }
+}
@@ -0,0 +1,40 @@
+package mms.storage;
+
+import mms.utility.Packable;
+
+/**
+ * Receives callbacks while a storage tree is walked by {@link Storage#walk(StorageVisitor)}.
+ * Storage objects and items are visited depth first, in the order they were packed.
+ * The storage tree must not be modified while it is being walked.
+ */
+public interface StorageVisitor {
+
+    /**
+     * Called when a storage object is reached, before any of its elements are visited.
+     * @param storage the storage object being entered
+     * @param depth number of containers between the storage and the root of the walk (0 for
+     *              the root itself)
+     * @return true if the elements of the storage should be visited, false to skip them
+     */
+    default boolean enterStorage(Storage storage, int depth) {
+        return true;
+    }
+
+    /**
+     * Called once all the elements of an entered storage object have been visited. This is not
+     * called for storage objects whose elements were skipped.
+     * @param storage the storage object being exited
+     * @param depth depth of the storage object
+     */
+    default void exitStorage(Storage storage, int depth) {
+    }
+
+    /**
+     * Called for each item in the tree that is not itself a storage object.
+     * @param item the item being visited
+     * @param container the storage object the item is directly packed in
+     * @param depth depth of the item (one more than the depth of its container)
+     */
+    default void visitItem(Packable item, Storage container, int depth) {
+    }
+}
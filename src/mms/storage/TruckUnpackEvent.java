@@ -0,0 +1,15 @@
+package mms.storage;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for an item unpacked from a moving truck. It covers the whole
+ * truck unpack, so it contains the {@link UnpackEvent} for the same item.
+ */
+@Name("mms.storage.TruckUnpack")
+@Label("Moving Truck Unpack")
+@Description("An item unpacked from a moving truck")
+class TruckUnpackEvent extends StorageOperationEvent {
+}
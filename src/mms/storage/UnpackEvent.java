@@ -0,0 +1,14 @@
+package mms.storage;
+
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Java Flight Recorder event for an item unpacked from a storage object.
+ */
+@Name("mms.storage.Unpack")
+@Label("Unpack")
+@Description("An item unpacked from a storage object, or an attempt to unpack an empty one")
+class UnpackEvent extends StorageOperationEvent {
+}
@@ -0,0 +1,318 @@
+package mms.storage;
+
+import mms.utility.Packable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Decides the order items are unpacked from a storage object. Each storage object has a policy,
+ * set with {@link Storage#setUnpackPolicy(UnpackPolicy)}; boxes and bags unpack first in, first
+ * out unless told otherwise, and moving trucks unpack {@link #furnitureFirst()}.
+ * <p>
+ * First in, first out and last in, first out unpack in constant time. The other policies keep
+ * the packed items in a binary heap and unpack in time proportional to the logarithm of the
+ * number of items packed. Items the policy considers equal are unpacked first in, first out.
+ */
+public abstract class UnpackPolicy {
+
+    /**
+     * Unpacks items in the order they were packed
+     */
+    private static final UnpackPolicy FIFO = new UnpackPolicy() {
+        @Override
+        Order newOrder(Contents contents) {
+            return new EndOrder(contents, true);
+        }
+    };
+
+    /**
+     * Unpacks the most recently packed item first
+     */
+    private static final UnpackPolicy LIFO = new UnpackPolicy() {
+        @Override
+        Order newOrder(Contents contents) {
+            return new EndOrder(contents, false);
+        }
+    };
+
+    /**
+     * Unpacks items that are not fragile before fragile ones
+     */
+    private static final UnpackPolicy FRAGILE_LAST = new UnpackPolicy() {
+        @Override
+        Order newOrder(Contents contents) {
+            return new HeapOrder(contents, (first, second) ->
+                    Boolean.compare(contents.isFragile(first), contents.isFragile(second)));
+        }
+    };
+
+    /**
+     * Unpacks the items with the largest volume first
+     */
+    private static final UnpackPolicy LARGEST_VOLUME_FIRST = new UnpackPolicy() {
+        @Override
+        Order newOrder(Contents contents) {
+            return new HeapOrder(contents, (first, second) -> Double.compare(
+                    contents.getVolume(second), contents.getVolume(first)));
+        }
+    };
+
+    /**
+     * Unpacks furniture first in, first out, then everything else last in, first out
+     */
+    private static final UnpackPolicy FURNITURE_FIRST = new UnpackPolicy() {
+        @Override
+        Order newOrder(Contents contents) {
+            return new HeapOrder(contents, (first, second) -> {
+                boolean firstIsFurniture = contents.isFurniture(first);
+                if (firstIsFurniture != contents.isFurniture(second)) {
+                    return firstIsFurniture ? -1 : 1;
+                }
+                // Furniture comes out in packing order, everything else in reverse
+                return firstIsFurniture ? 0 : Integer.compare(second, first);
+            });
+        }
+    };
+
+    /**
+     * Returns a policy that unpacks items in the order they were packed (first in, first out).
+     * @return first in, first out policy
+     */
+    public static UnpackPolicy fifo() {
+        return FIFO;
+    }
+
+    /**
+     * Returns a policy that unpacks the most recently packed item first (last in, first out).
+     * @return last in, first out policy
+     */
+    public static UnpackPolicy lifo() {
+        return LIFO;
+    }
+
+    /**
+     * Returns a policy that unpacks items that are not fragile before fragile ones. An item is
+     * fragile if it is a laptop, a television or a fragile box (see {@link Box#isFragile()}).
+     * Whether a box is fragile is decided when it is packed.
+     * @return fragile last policy
+     */
+    public static UnpackPolicy fragileLast() {
+        return FRAGILE_LAST;
+    }
+
+    /**
+     * Returns a policy that unpacks the items with the largest volume first.
+     * @return largest volume first policy
+     */
+    public static UnpackPolicy largestVolumeFirst() {
+        return LARGEST_VOLUME_FIRST;
+    }
+
+    /**
+     * Returns a policy that unpacks all furniture first in, first out, and then unpacks all
+     * other items last in, first out. This is the policy used by moving trucks.
+     * @return furniture first policy
+     */
+    public static UnpackPolicy furnitureFirst() {
+        return FURNITURE_FIRST;
+    }
+
+    /**
+     * Returns a policy that unpacks items in the order given by a comparator, smallest first.
+     * Items the comparator considers equal are unpacked first in, first out. The comparator must
+     * give the same result for the same two items for as long as they are packed.
+     * @param comparator comparator ordering the items
+     * @return policy using the comparator
+     */
+    public static UnpackPolicy comparing(Comparator<? super Packable> comparator) {
+        return new UnpackPolicy() {
+            @Override
+            Order newOrder(Contents contents) {
+                return new HeapOrder(contents, (first, second) ->
+                        comparator.compare(contents.get(first), contents.get(second)));
+            }
+        };
+    }
+
+    /**
+     * Creates the unpack order for the given contents.
+     * @param contents contents the order is for
+     * @return new order, which the contents will tell about each slot it fills
+     */
+    abstract Order newOrder(Contents contents);
+
+    /**
+     * Keeps track of which slot of some contents should be unpacked next.
+     */
+    interface Order {
+
+        /**
+         * Called after an item has been added to the given slot.
+         * @param slot slot that was filled
+         */
+        void added(int slot);
+
+        /**
+         * Removes and returns the slot that should be unpacked next. Only called when there is
+         * at least one item.
+         * @return slot to unpack
+         */
+        int poll();
+
+        /**
+         * Called after the items have been moved to different slots, or when the order is first
+         * used with contents that already have items, to start again from the current slots.
+         */
+        void rebuild();
+    }
+
+    /**
+     * Compares two occupied slots of some contents.
+     */
+    private interface SlotComparator {
+
+        /**
+         * Compares the items in two slots.
+         * @param first first slot
+         * @param second second slot
+         * @return negative if the first slot should be unpacked sooner, positive if later, and
+         * zero if it does not matter
+         */
+        int compare(int first, int second);
+    }
+
+    /**
+     * Unpacks from either the front or the back of the contents.
+     */
+    private static class EndOrder implements Order {
+
+        /**
+         * Contents being unpacked
+         */
+        private final Contents contents;
+
+        /**
+         * Whether items come from the front (true) or the back (false)
+         */
+        private final boolean fromFront;
+
+        private EndOrder(Contents contents, boolean fromFront) {
+            this.contents = contents;
+            this.fromFront = fromFront;
+        }
+
+        @Override
+        public void added(int slot) {
+            // The contents already keep track of both ends
+        }
+
+        @Override
+        public int poll() {
+            return fromFront ? contents.firstSlot() : contents.lastSlot();
+        }
+
+        @Override
+        public void rebuild() {
+            // Nothing to rebuild
+        }
+    }
+
+    /**
+     * Unpacks slots in the order given by a comparator, using a binary heap of slot indices.
+     */
+    private static class HeapOrder implements Order {
+
+        /**
+         * Contents being unpacked
+         */
+        private final Contents contents;
+
+        /**
+         * Orders the slots, with ties broken by packing order
+         */
+        private final SlotComparator comparator;
+
+        /**
+         * Occupied slots, arranged as a binary heap
+         */
+        private int[] heap;
+
+        /**
+         * Number of slots in the heap
+         */
+        private int size;
+
+        private HeapOrder(Contents contents, SlotComparator comparator) {
+            this.contents = contents;
+            this.comparator = (first, second) -> {
+                int result = comparator.compare(first, second);
+                return result != 0 ? result : Integer.compare(first, second);
+            };
+            this.heap = new int[8];
+        }
+
+        @Override
+        public void added(int slot) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            heap[size] = slot;
+            siftUp(size++);
+        }
+
+        @Override
+        public int poll() {
+            int slot = heap[0];
+            heap[0] = heap[--size];
+            siftDown(0);
+            return slot;
+        }
+
+        @Override
+        public void rebuild() {
+            size = 0;
+            for (int slot = contents.nextSlot(0); slot != -1; slot = contents.nextSlot(slot + 1)) {
+                if (size == heap.length) {
+                    heap = Arrays.copyOf(heap, size * 2);
+                }
+                heap[size++] = slot;
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        private void siftUp(int index) {
+            int slot = heap[index];
+            while (index > 0) {
+                int parent = (index - 1) / 2;
+                if (comparator.compare(slot, heap[parent]) >= 0) {
+                    break;
+                }
+                heap[index] = heap[parent];
+                index = parent;
+            }
+            heap[index] = slot;
+        }
+
+        private void siftDown(int index) {
+            int slot = heap[index];
+            while (true) {
+                int child = 2 * index + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && comparator.compare(heap[child + 1], heap[child]) < 0) {
+                    child++;
+                }
+                if (comparator.compare(heap[child], slot) >= 0) {
+                    break;
+                }
+                heap[index] = heap[child];
+                index = child;
+            }
+            heap[index] = slot;
+        }
+    }
+}
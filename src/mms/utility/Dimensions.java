@@ -0,0 +1,106 @@
+package mms.utility;
+
+/**
+ * An immutable width, height and length in cm. Items of the same kind and size share a single
+ * instance, rather than each storing their own copy of the same three values.
+ */
+public final class Dimensions {
+
+    /**
+     * Dimensions of 0x0x0cm
+     */
+    public static final Dimensions NONE = new Dimensions(0, 0, 0);
+
+    /**
+     * Width in cm
+     */
+    private final double width;
+
+    /**
+     * Height in cm
+     */
+    private final double height;
+
+    /**
+     * Length in cm
+     */
+    private final double length;
+
+    /**
+     * Creates dimensions with the given width, height and length
+     * @param width width in cm
+     * @param height height in cm
+     * @param length length in cm
+     * @throws IllegalArgumentException if the width, height or length is < 0
+     */
+    public Dimensions(double width, double height, double length)
+            throws IllegalArgumentException {
+        if (width < 0 || height < 0 || length < 0) {
+            throw new IllegalArgumentException("Dimension < 0");
+        }
+        this.width = width;
+        this.height = height;
+        this.length = length;
+    }
+
+    /**
+     * Returns the width in cm
+     * @return width
+     */
+    public double getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height in cm
+     * @return height
+     */
+    public double getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the length in cm
+     * @return length
+     */
+    public double getLength() {
+        return length;
+    }
+
+    /**
+     * Returns whether the given object is a set of dimensions with the same width, height and
+     * length
+     * @param other object to compare to
+     * @return true if the dimensions are the same
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof Dimensions)) {
+            return false;
+        }
+        Dimensions dimensions = (Dimensions) other;
+        return Double.compare(width, dimensions.width) == 0
+                && Double.compare(height, dimensions.height) == 0
+                && Double.compare(length, dimensions.length) == 0;
+    }
+
+    /**
+     * Returns a hash code consistent with {@link #equals(Object)}
+     * @return hash code of the dimensions
+     */
+    @Override
+    public int hashCode() {
+        return (Double.hashCode(width) * 31 + Double.hashCode(height)) * 31
+                + Double.hashCode(length);
+    }
+
+    /**
+     * Returns the human-readable representation of the dimensions in the format:
+     * <p>'width'x'height'x'length'cm</p>
+     * @return string representation of the dimensions
+     */
+    @Override
+    public String toString() {
+        return String.format("%sx%sx%scm", width, height, length);
+    }
+}
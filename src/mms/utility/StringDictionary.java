@@ -0,0 +1,114 @@
+package mms.utility;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Gives each distinct string a small integer id, and keeps a single shared copy of it. Personal
+ * items store the ids of their owners instead of their own copies of the owner names, so a
+ * manifest with a handful of owners only holds a handful of owner strings, and owners can be
+ * compared by id. Only use a shared dictionary for strings that come from a small set, such as
+ * owners; titles and other strings that are mostly distinct are better kept as plain fields.
+ * <p>
+ * Ids are handed out in order starting from 0 and never change. Strings are kept for as long as
+ * the program runs, even once nothing uses them any more. Dictionaries are thread safe.
+ */
+public class StringDictionary {
+
+    /**
+     * Dictionary of the owners of personal items
+     */
+    public static final StringDictionary OWNERS = new StringDictionary();
+
+    /**
+     * Id of each string in the dictionary
+     */
+    private final Map<String, Integer> ids;
+
+    /**
+     * Strings in the dictionary, by id; only the first size entries are used
+     */
+    private volatile String[] strings;
+
+    /**
+     * Number of strings in the dictionary
+     */
+    private volatile int size;
+
+    /**
+     * Creates an empty dictionary.
+     */
+    public StringDictionary() {
+        this.ids = new ConcurrentHashMap<>();
+        this.strings = new String[16];
+    }
+
+    /**
+     * Returns the id of the given string, adding it to the dictionary if it is not already there
+     * @param string string to look up
+     * @return id of the string
+     * @throws IllegalArgumentException if the string is null
+     */
+    public int idOf(String string) throws IllegalArgumentException {
+        if (string == null) {
+            throw new IllegalArgumentException("String is null");
+        }
+        Integer id = ids.get(string);
+        return id != null ? id : add(string);
+    }
+
+    /**
+     * Returns the id of the given string without adding it to the dictionary
+     * @param string string to look up
+     * @return id of the string; -1 if it is not in the dictionary
+     */
+    public int find(String string) {
+        Integer id = string == null ? null : ids.get(string);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Returns the shared copy of the string with the given id
+     * @param id id of the string
+     * @return string with the id
+     * @throws IndexOutOfBoundsException if no string has the id
+     */
+    public String get(int id) throws IndexOutOfBoundsException {
+        if (id < 0 || id >= size) {
+            throw new IndexOutOfBoundsException("No string with id " + id);
+        }
+        return strings[id];
+    }
+
+    /**
+     * Returns the number of strings in the dictionary
+     * @return number of strings
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a string to the dictionary, unless another thread added it first.
+     * @param string string to add
+     * @return id of the string
+     */
+    private synchronized int add(String string) {
+        Integer existing = ids.get(string);
+        if (existing != null) {
+            return existing;
+        }
+        int id = size;
+        String[] current = strings;
+        if (id == current.length) {
+            current = Arrays.copyOf(current, id * 2);
+        }
+        current[id] = string;
+        // Publish the array before the new size, and both before the id can be seen
+        strings = current;
+        size = id + 1;
+        ids.put(string, id);
+        return id;
+    }
+}
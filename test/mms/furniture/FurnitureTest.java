@@ -0,0 +1,19 @@
+package mms.furniture;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FurnitureTest {
+
+    @Test
+    public void testToString() {
+        assertEquals("Furniture (BED)", new Furniture(FurnitureType.BED).toString());
+    }
+
+    @Test
+    public void testToStringSharedByType() {
+        assertSame(new Furniture(FurnitureType.BED).toString(),
+                new Furniture(FurnitureType.BED).toString());
+    }
+}
@@ -0,0 +1,247 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.UnpackPolicy;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FleetBalancerTest {
+
+    private MovingTruck first;
+    private MovingTruck second;
+    private MovingTruck third;
+    private FleetBalancer balancer;
+
+    private static MovingTruck bigTruck() {
+        return new MovingTruck(1e9, 1e9, 1e9, Size.LARGE) {
+            @Override
+            protected int getMultiplier() {
+                return 1 << 20;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        first = bigTruck();
+        second = bigTruck();
+        third = bigTruck();
+        balancer = new FleetBalancer(LoadMeasure.OCCUPIED_CAPACITY);
+    }
+
+    private void trackAll() {
+        balancer.track(first);
+        balancer.track(second);
+        balancer.track(third);
+    }
+
+    @Test
+    public void testBalancesLooseItems() throws PackingException {
+        for (int i = 0; i < 30; i++) {
+            first.pack(new Book("Jane", "Tales " + i, true));
+        }
+        trackAll();
+        assertEquals(30, balancer.getImbalance(), 0);
+
+        List<TruckMove> moves = balancer.rebalance(0, Integer.MAX_VALUE);
+        assertEquals(20, moves.size());
+        assertEquals(0, balancer.getImbalance(), 0);
+        assertEquals(10, first.getOccupiedCapacity());
+        assertEquals(10, second.getOccupiedCapacity());
+        assertEquals(10, third.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testMovesBoxesWhole() throws PackingException {
+        Box box = new Box(1000, 1000, 1000, Size.LARGE, "Books");
+        for (int i = 0; i < 6; i++) {
+            box.pack(new Book("Jane", "Tales " + i, true));
+        }
+        first.pack(new Laptop("Thomas", 2));
+        first.pack(box);
+        balancer.track(first);
+        balancer.track(second);
+        assertEquals(7, balancer.getLoad(first), 0);
+
+        List<TruckMove> moves = balancer.rebalance(0, Integer.MAX_VALUE);
+        assertEquals(List.of(box), moves.stream().map(TruckMove::getItem).toList());
+        assertSame(second, box.getParent());
+        assertEquals(5, balancer.getImbalance(), 0);
+    }
+
+    @Test
+    public void testOthersStayOutOfTrucksWithFurniture() throws PackingException {
+        for (int i = 0; i < 6; i++) {
+            first.pack(new Laptop("Thomas", 2));
+        }
+        Furniture chair = new Furniture(FurnitureType.CHAIR);
+        first.pack(chair);
+        second.pack(new Furniture(FurnitureType.TABLE));
+        balancer.track(first);
+        balancer.track(second);
+
+        List<TruckMove> moves = balancer.rebalance(0, Integer.MAX_VALUE);
+        assertEquals(1, moves.size());
+        assertSame(chair, moves.get(0).getItem());
+        assertEquals(6, first.getOccupiedCapacity());
+        assertEquals(2, second.getOccupiedCapacity());
+
+        // Only an empty truck can take the laptops
+        balancer.track(third);
+        moves = balancer.rebalance(0, Integer.MAX_VALUE);
+        for (TruckMove move : moves) {
+            assertSame(third, move.getTo());
+        }
+        assertEquals(3, first.getOccupiedCapacity());
+        assertEquals(3, third.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testRespectsCapacity() throws PackingException {
+        MovingTruck small = new MovingTruck(1e9, 1e9, 1e9, Size.SMALL);
+        for (int i = 0; i < 40; i++) {
+            first.pack(new Book("Jane", "Tales " + i, true));
+        }
+        balancer.track(first);
+        balancer.track(small);
+
+        balancer.rebalance(0, Integer.MAX_VALUE);
+        assertEquals(small.getCapacity(), small.getOccupiedCapacity());
+        assertEquals(40 - small.getCapacity(), first.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testRespectsSize() throws PackingException {
+        // Room for two books: the second only goes over the height
+        MovingTruck low = new MovingTruck(1e9, 30, 1510);
+        for (int i = 0; i < 10; i++) {
+            first.pack(new Book("Jane", "Tales " + i, true));
+        }
+        balancer.track(first);
+        balancer.track(low);
+
+        balancer.rebalance(0, Integer.MAX_VALUE);
+        assertEquals(2, low.getOccupiedCapacity());
+        assertEquals(8, first.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testFollowsChangesInsideTrucks() throws PackingException {
+        trackAll();
+        Box box = new Box(1000, 1000, 1000, Size.LARGE, "Books");
+        second.pack(box);
+        for (int i = 0; i < 5; i++) {
+            box.pack(new Book("Jane", "Tales " + i, true));
+        }
+        assertEquals(5, balancer.getLoad(second), 0);
+        assertEquals(5, balancer.getImbalance(), 0);
+
+        box.unpack();
+        assertEquals(4, balancer.getLoad(second), 0);
+        second.unpack();
+        assertEquals(0, balancer.getImbalance(), 0);
+
+        balancer.untrack(second);
+        second.pack(box);
+        assertThrows(IllegalArgumentException.class, () -> balancer.getLoad(second));
+        assertEquals(0, balancer.getImbalance(), 0);
+    }
+
+    @Test
+    public void testMeasuresVolume() throws PackingException {
+        balancer = new FleetBalancer(LoadMeasure.VOLUME);
+        first.pack(new Furniture(FurnitureType.TABLE));
+        first.pack(new Furniture(FurnitureType.CHAIR));
+        first.pack(new Furniture(FurnitureType.CHAIR));
+        balancer.track(first);
+        balancer.track(second);
+        Furniture table = new Furniture(FurnitureType.TABLE);
+        Furniture chair = new Furniture(FurnitureType.CHAIR);
+        double tableVolume = table.getWidth() * table.getHeight() * table.getLength();
+        double chairVolume = chair.getWidth() * chair.getHeight() * chair.getLength();
+        assertEquals(tableVolume + 2 * chairVolume, balancer.getLoad(first), 1e-6);
+
+        List<TruckMove> moves = balancer.rebalance(0, Integer.MAX_VALUE);
+        assertEquals(1, moves.size());
+        assertEquals(2, first.getOccupiedCapacity());
+        assertEquals(tableVolume, balancer.getLoad(second), 1e-6);
+    }
+
+    @Test
+    public void testPlanningLeavesTrucksAlone() throws PackingException {
+        for (int i = 0; i < 4; i++) {
+            first.pack(new Book("Jane", "Tales " + i, true));
+        }
+        trackAll();
+        List<TruckMove> moves = balancer.plan(0, Integer.MAX_VALUE);
+        assertEquals(2, moves.size());
+        assertEquals(4, first.getOccupiedCapacity());
+        assertEquals(1, balancer.plan(0, 1).size());
+        assertTrue(balancer.plan(4, Integer.MAX_VALUE).isEmpty());
+
+        // The planned moves no longer start from the top of the truck
+        first.pack(new Book("Jane", "More Tales", true));
+        assertThrows(IllegalStateException.class, () -> balancer.apply(moves));
+    }
+
+    @Test
+    public void testStalePlanChangesNothing() throws PackingException {
+        for (int i = 0; i < 4; i++) {
+            first.pack(new Book("Jane", "Tales " + i, true));
+        }
+        trackAll();
+        List<TruckMove> moves = balancer.plan(0, Integer.MAX_VALUE);
+        assertEquals(2, moves.size());
+
+        // The first move still fits, but the second truck no longer takes anything else
+        MovingTruck receiver = moves.get(1).getTo();
+        receiver.pack(new Furniture(FurnitureType.TABLE));
+        String before = first.toString(0);
+        assertThrows(IllegalStateException.class, () -> balancer.apply(moves));
+        assertEquals(before, first.toString(0));
+        assertEquals(0, moves.get(0).getTo().getOccupiedCapacity());
+    }
+
+    @Test
+    public void testTrackedPolicyFixed() throws PackingException {
+        Book b0 = new Book("Jane", "Tales 0", true);
+        Book b1 = new Book("Jane", "Tales 1", true);
+        first.pack(b0);
+        first.pack(b1);
+        trackAll();
+        assertThrows(IllegalArgumentException.class,
+                () -> first.setUnpackPolicy(UnpackPolicy.fifo()));
+        assertSame(UnpackPolicy.furnitureFirst(), first.getUnpackPolicy());
+        List<TruckMove> moves = balancer.plan(0, Integer.MAX_VALUE);
+        assertEquals(1, moves.size());
+        assertSame(b1, moves.get(0).getItem());
+        balancer.apply(moves);
+        assertEquals(List.of(b0), first.getElements());
+        assertEquals(List.of(b1), moves.get(0).getTo().getElements());
+
+        // Once untracked, the truck can be given any policy again
+        balancer.untrack(first);
+        first.setUnpackPolicy(UnpackPolicy.fifo());
+    }
+
+    @Test
+    public void testBadTrucks() {
+        balancer.track(first);
+        assertThrows(IllegalArgumentException.class, () -> balancer.track(first));
+        second.setUnpackPolicy(UnpackPolicy.fifo());
+        assertThrows(IllegalArgumentException.class, () -> balancer.track(second));
+        assertThrows(IllegalArgumentException.class, () -> balancer.getLoad(second));
+        assertEquals(0, balancer.getImbalance(), 0);
+    }
+}
@@ -0,0 +1,122 @@
+package mms.loading;
+
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class LoadingPipelineTest {
+
+    private static LoadingPipeline pipeline(int queueCapacity) {
+        return new LoadingPipeline(() -> new Bag(100, 100, 100, Size.LARGE),
+                () -> new Box(1000, 1000, 1000, Size.LARGE, "Bags"),
+                () -> new MovingTruck(10000, 10000, 10000, Size.LARGE), queueCapacity);
+    }
+
+    private static List<Packable> items(int personal, int furniture) {
+        List<Packable> items = new ArrayList<>();
+        for (int i = 0; i < personal; i++) {
+            items.add(i % 2 == 0 ? new Laptop("Thomas", i % 5) : new Book("Jane", "Tales", true));
+            // Spread the furniture through the personal items
+            if (i % (personal / furniture) == 0 && items.size() < personal + furniture) {
+                items.add(new Furniture(FurnitureType.values()[i % FurnitureType.values().length]));
+            }
+        }
+        return items;
+    }
+
+    @Test
+    public void testLoadsEveryItem() throws InterruptedException {
+        LoadingPipeline pipeline = pipeline(2);
+        List<Packable> items = items(180, 20);
+        List<MovingTruck> trucks = pipeline.load(items);
+
+        int loaded = 0;
+        for (MovingTruck truck : trucks) {
+            assertTrue(truck.getOccupiedCapacity() > 0);
+            loaded += truck.getOccupiedCapacity();
+        }
+        assertEquals(List.of(), pipeline.getRejected());
+        assertEquals(items.size(), loaded);
+    }
+
+    @Test
+    public void testStats() throws InterruptedException {
+        LoadingPipeline pipeline = pipeline(1);
+        List<Packable> items = items(180, 20);
+        List<MovingTruck> trucks = pipeline.load(items);
+
+        StageStats intake = pipeline.getStats(LoadingStage.INTAKE);
+        StageStats bags = pipeline.getStats(LoadingStage.BAGS);
+        StageStats boxes = pipeline.getStats(LoadingStage.BOXES);
+        StageStats loading = pipeline.getStats(LoadingStage.TRUCKS);
+        assertEquals(items.size(), intake.getItemCount());
+        assertEquals(180, bags.getItemCount());
+        assertEquals(bags.getSealedCount(), boxes.getItemCount());
+        assertEquals(boxes.getSealedCount() + 20, loading.getItemCount());
+        assertEquals(trucks.size(), loading.getSealedCount());
+        assertEquals(180, bags.getLatency().getCount());
+        assertTrue(bags.getThroughput() > 0);
+        assertTrue(bags.getBusyNanos() > 0);
+        assertTrue(bags.toString().startsWith("BAGS: 180 items, " + bags.getSealedCount()
+                + " sealed, "));
+    }
+
+    @Test
+    public void testRejectsItemsTooBigForEmptyContainers() throws InterruptedException {
+        LoadingPipeline pipeline = new LoadingPipeline(() -> new Bag(1, 1, 1, Size.SMALL),
+                () -> new Box(1000, 1000, 1000, Size.LARGE, "Bags"),
+                () -> new MovingTruck(1, 1, 1501, Size.SMALL), 4);
+        Laptop laptop = new Laptop("Thomas", 2);
+        Furniture table = new Furniture(FurnitureType.TABLE);
+        List<MovingTruck> trucks = pipeline.load(List.of(laptop, table));
+
+        assertEquals(List.of(), trucks);
+        List<Packable> rejected = pipeline.getRejected();
+        assertEquals(2, rejected.size());
+        assertTrue(rejected.contains(laptop));
+        assertTrue(rejected.contains(table));
+    }
+
+    @Test
+    public void testStageFailure() throws InterruptedException {
+        LoadingPipeline pipeline = new LoadingPipeline(() -> null,
+                () -> new Box(1000, 1000, 1000, Size.LARGE, "Bags"),
+                () -> new MovingTruck(10000, 10000, 10000, Size.LARGE), 1);
+        try {
+            pipeline.load(items(20, 2));
+            fail("Expected the bag stage to fail");
+        } catch (IllegalStateException e) {
+            assertEquals("Loading failed in the BAGS stage", e.getMessage());
+            assertTrue(e.getCause() instanceof NullPointerException);
+        }
+    }
+
+    @Test
+    public void testNotStarted() throws InterruptedException {
+        LoadingPipeline pipeline = pipeline(1);
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(new Laptop("Thomas", 2)));
+        assertThrows(IllegalStateException.class, pipeline::finish);
+        pipeline.start();
+        assertThrows(IllegalStateException.class, pipeline::start);
+        pipeline.submit(new Laptop("Thomas", 2));
+        assertEquals(1, pipeline.finish().size());
+        assertThrows(IllegalStateException.class, () -> pipeline.submit(new Laptop("Thomas", 2)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQueueCapacity() {
+        pipeline(0);
+    }
+}
@@ -0,0 +1,236 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.StorageListener;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class RoutePlannerTest {
+
+    private static MovingTruck bigTruck() {
+        return new MovingTruck(1e9, 1e9, 1e9, Size.LARGE) {
+            @Override
+            protected int getMultiplier() {
+                return 1 << 20;
+            }
+        };
+    }
+
+    /**
+     * Counts the items packed into a truck.
+     */
+    private static class PackCounter implements StorageListener {
+
+        private int packs;
+
+        @Override
+        public void itemPacked(Storage container, Packable item) {
+            packs++;
+        }
+
+        @Override
+        public void itemUnpacked(Storage container, Packable item) {
+        }
+    }
+
+    private static Map<Packable, Integer> route(int items, int stops, long seed) {
+        Random random = new Random(seed);
+        Map<Packable, Integer> route = new IdentityHashMap<>();
+        for (int i = 0; i < items; i++) {
+            Packable item = switch (random.nextInt(3)) {
+                case 0 -> new Furniture(FurnitureType.values()[random.nextInt(4)]);
+                case 1 -> new Laptop("Thomas", 2);
+                default -> new Book("Jane", "Tales", true);
+            };
+            route.put(item, random.nextInt(stops));
+        }
+        return route;
+    }
+
+    @Test
+    public void testUnloadsEachStop() throws PackingException {
+        Map<Packable, Integer> route = route(2000, 8, 1);
+        RoutePlan plan = RoutePlanner.plan(new ArrayList<>(route.keySet()),
+                item -> route.getOrDefault(item, -1));
+        assertEquals(8, plan.getStopCount());
+        assertEquals(2000, plan.getLoadOrder().size());
+
+        MovingTruck truck = bigTruck();
+        plan.load(truck);
+        PackCounter counter = new PackCounter();
+        truck.addListener(counter);
+        for (int stop = 0; stop < plan.getStopCount(); stop++) {
+            counter.packs = 0;
+            List<Packable> dropped = plan.unloadStop(truck, stop);
+            assertEquals(plan.getDrops(stop), dropped);
+            for (Packable item : dropped) {
+                assertEquals(stop, (int) route.get(item));
+            }
+            assertEquals(plan.getRepackCount(stop), counter.packs);
+        }
+        assertNull(truck.unpack());
+    }
+
+    @Test
+    public void testFurnitureOnlyStopsNeedNoRepacking() throws PackingException {
+        Furniture table = new Furniture(FurnitureType.TABLE);
+        Furniture chair = new Furniture(FurnitureType.CHAIR);
+        Laptop laptop = new Laptop("Thomas", 2);
+        Map<Packable, Integer> route = Map.of(table, 1, chair, 0, laptop, 1);
+        RoutePlan plan = RoutePlanner.plan(List.of(table, chair, laptop), route::get);
+
+        assertEquals(List.of(laptop, chair, table), plan.getLoadOrder());
+        assertEquals(0, plan.getRepackCount(0));
+        assertEquals(0, plan.getRepackCount(1));
+        assertEquals(List.of(chair), plan.getDrops(0));
+        assertEquals(List.of(table, laptop), plan.getDrops(1));
+    }
+
+    @Test
+    public void testLaterFurnitureMovedForPersonalItems() {
+        Furniture table = new Furniture(FurnitureType.TABLE);
+        Furniture chair = new Furniture(FurnitureType.CHAIR);
+        Laptop laptop = new Laptop("Thomas", 2);
+        Book book = new Book("Jane", "Tales", true);
+        Map<Packable, Integer> route = Map.of(laptop, 0, book, 1, table, 1, chair, 2);
+        RoutePlan plan = RoutePlanner.plan(List.of(table, chair, laptop, book), route::get);
+
+        assertEquals(List.of(book, laptop, table, chair), plan.getLoadOrder());
+        assertEquals(2, plan.getRepackCount(0));
+        assertEquals(1, plan.getRepackCount(1));
+        assertEquals(0, plan.getRepackCount(2));
+        assertEquals(3, plan.getRepackCount());
+    }
+
+    @Test
+    public void testNoLoadOrderNeedsFewerRepacks() throws PackingException {
+        Map<Packable, Integer> route = route(6, 3, 7);
+        List<Packable> items = new ArrayList<>(route.keySet());
+        RoutePlan plan = RoutePlanner.plan(items, route::get);
+        // Some furniture has to be moved on this route whatever the order
+        assertTrue(plan.getRepackCount() > 0);
+
+        int fewest = Integer.MAX_VALUE;
+        for (List<Packable> order : permutations(items)) {
+            MovingTruck truck = bigTruck();
+            try {
+                for (Packable item : order) {
+                    truck.pack(item);
+                }
+            } catch (PackingException e) {
+                // Not a load order a truck accepts
+                continue;
+            }
+            fewest = Math.min(fewest, repacks(truck, route, plan.getStopCount()));
+        }
+        assertEquals(fewest, plan.getRepackCount());
+    }
+
+    /**
+     * Unloads each stop in turn, packing back whatever comes out for later stops, and returns
+     * the number of items packed back.
+     */
+    private static int repacks(MovingTruck truck, Map<Packable, Integer> route, int stops)
+            throws PackingException {
+        int repacks = 0;
+        for (int stop = 0; stop < stops; stop++) {
+            Set<Packable> wanted = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Map.Entry<Packable, Integer> entry : route.entrySet()) {
+                if (entry.getValue() == stop) {
+                    wanted.add(entry.getKey());
+                }
+            }
+            List<Packable> furniture = new ArrayList<>();
+            List<Packable> others = new ArrayList<>();
+            while (!wanted.isEmpty()) {
+                Packable item = truck.unpack();
+                if (!wanted.remove(item)) {
+                    (item instanceof Furniture ? furniture : others).add(item);
+                }
+            }
+            repacks += furniture.size() + others.size();
+            for (int i = others.size() - 1; i >= 0; i--) {
+                truck.pack(others.get(i));
+            }
+            for (Packable item : furniture) {
+                truck.pack(item);
+            }
+        }
+        return repacks;
+    }
+
+    private static List<List<Packable>> permutations(List<Packable> items) {
+        List<List<Packable>> result = new ArrayList<>();
+        if (items.isEmpty()) {
+            result.add(new ArrayList<>());
+            return result;
+        }
+        for (int i = 0; i < items.size(); i++) {
+            List<Packable> rest = new ArrayList<>(items);
+            Packable first = rest.remove(i);
+            for (List<Packable> permutation : permutations(rest)) {
+                permutation.add(0, first);
+                result.add(permutation);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testContainerTakesEarliestStopInside() throws PackingException {
+        Box box = new Box(1000, 1000, 1000, Size.LARGE, "Books");
+        Laptop laptop = new Laptop("Thomas", 2);
+        Book book = new Book("Jane", "Tales", true);
+        box.pack(laptop);
+        box.pack(book);
+        Book loose = new Book("Jane", "More Tales", true);
+        Map<Packable, Integer> route = Map.of(laptop, 2, book, 1, loose, 0);
+        RoutePlan plan = RoutePlanner.plan(List.of(box, loose),
+                item -> route.getOrDefault(item, -1));
+
+        assertEquals(2, plan.getStopCount());
+        assertEquals(List.of(box), plan.getDrops(1));
+        assertEquals(List.of(box, loose), plan.getLoadOrder());
+    }
+
+    @Test
+    public void testNoStop() {
+        Book book = new Book("Jane", "Tales", true);
+        Box empty = new Box(1000, 1000, 1000, Size.LARGE, "Empty");
+        assertThrows(IllegalArgumentException.class,
+                () -> RoutePlanner.plan(List.of(book), item -> -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> RoutePlanner.plan(List.of(empty), item -> -1));
+    }
+
+    @Test
+    public void testBadStopAndTruck() {
+        Book book = new Book("Jane", "Tales", true);
+        RoutePlan plan = RoutePlanner.plan(List.of(book), item -> 0);
+        assertThrows(IllegalArgumentException.class, () -> plan.getDrops(1));
+        assertThrows(IllegalArgumentException.class, () -> plan.getRepackCount(-1));
+
+        MovingTruck truck = bigTruck();
+        truck.setUnpackPolicy(UnpackPolicy.fifo());
+        assertThrows(IllegalArgumentException.class, () -> plan.load(truck));
+    }
+}
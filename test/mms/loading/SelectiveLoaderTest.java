@@ -0,0 +1,199 @@
+package mms.loading;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SelectiveLoaderTest {
+
+    private static Map<Packable, Double> manifest(int items, long seed) {
+        Random random = new Random(seed);
+        Map<Packable, Double> values = new IdentityHashMap<>();
+        for (int i = 0; i < items; i++) {
+            Packable item = switch (random.nextInt(3)) {
+                case 0 -> new Furniture(FurnitureType.values()[random.nextInt(5)]);
+                case 1 -> new Laptop("Thomas", 2);
+                default -> new Book("Jane", "Tales", true);
+            };
+            values.put(item, 1.0 + random.nextInt(100));
+        }
+        return values;
+    }
+
+    /**
+     * Returns a truck that fits about the given share of the items' total width, height and
+     * length.
+     */
+    private static MovingTruck truckFor(List<Packable> items, double share, Size size) {
+        double width = 0;
+        double height = 0;
+        double length = 0;
+        for (Packable item : items) {
+            width += item.getWidth();
+            height += item.getHeight();
+            length += item.getLength();
+        }
+        return new MovingTruck(width * share, height * share, 1500 + length * share, size);
+    }
+
+    /**
+     * Returns the value of the most valuable set of items the truck would take, trying them all.
+     */
+    private static double bestByTryingAll(MovingTruck truck, List<Packable> items,
+                                          Map<Packable, Double> values) {
+        double best = 0;
+        for (int subset = 0; subset < 1 << items.size(); subset++) {
+            double value = 0;
+            double width = 0;
+            double height = 0;
+            double length = 0;
+            int count = 0;
+            for (int i = 0; i < items.size(); i++) {
+                if ((subset & 1 << i) != 0) {
+                    Packable item = items.get(i);
+                    value += values.get(item);
+                    width += item.getWidth();
+                    height += item.getHeight();
+                    length += item.getLength();
+                    count++;
+                }
+            }
+            boolean tooWide = width > truck.getWidth();
+            boolean tooHigh = height > truck.getHeight();
+            boolean tooLong = length > truck.getLength() - 1500;
+            if (count <= truck.getCapacity()
+                    && !(tooWide ? (tooHigh || tooLong) : (tooHigh && tooLong))) {
+                best = Math.max(best, value);
+            }
+        }
+        return best;
+    }
+
+    @Test
+    public void testPrefersValuableItems() throws PackingException {
+        MovingTruck truck = new MovingTruck(1e9, 1e9, 1e9, Size.SMALL);
+        List<Packable> books = new ArrayList<>();
+        Map<Packable, Double> values = new IdentityHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            Book book = new Book("Jane", "Tales " + i, true);
+            books.add(book);
+            values.put(book, (double) i);
+        }
+        LoadSelection selection = SelectiveLoader.select(truck, books, values::get);
+        assertTrue(selection.isExact());
+        assertEquals(books.subList(8, 20), selection.getSelected());
+        assertEquals(books.subList(0, 8), selection.getLeftOver());
+        assertEquals((8 + 19) * 6, selection.getValue(), 0);
+
+        selection.load(truck);
+        assertEquals(truck.getCapacity(), truck.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testExactMatchesTryingAll() throws PackingException {
+        for (long seed = 0; seed < 20; seed++) {
+            Map<Packable, Double> values = manifest(14, seed);
+            List<Packable> items = new ArrayList<>(values.keySet());
+            MovingTruck truck = truckFor(items, 0.4, Size.MEDIUM);
+            LoadSelection selection = SelectiveLoader.selectExact(truck, items, values::get);
+            assertEquals(bestByTryingAll(truck, items, values), selection.getValue(), 1e-9);
+            assertEquals(items.size(),
+                    selection.getSelected().size() + selection.getLeftOver().size());
+            selection.load(truck);
+        }
+    }
+
+    @Test
+    public void testApproximateFitsAndComesClose() throws PackingException {
+        double exactTotal = 0;
+        double approximateTotal = 0;
+        for (long seed = 0; seed < 20; seed++) {
+            Map<Packable, Double> values = manifest(SelectiveLoader.EXACT_LIMIT, seed);
+            List<Packable> items = new ArrayList<>(values.keySet());
+            MovingTruck truck = truckFor(items, 0.3, Size.LARGE);
+            LoadSelection exact = SelectiveLoader.selectExact(truck, items, values::get);
+            LoadSelection approximate =
+                    SelectiveLoader.selectApproximate(truck, items, values::get);
+            assertFalse(approximate.isExact());
+            assertTrue(approximate.getValue() <= exact.getValue());
+            exactTotal += exact.getValue();
+            approximateTotal += approximate.getValue();
+            approximate.load(truck);
+        }
+        assertTrue(approximateTotal >= 0.9 * exactTotal);
+    }
+
+    @Test
+    public void testCountsItemsInsideContainers() throws PackingException {
+        MovingTruck truck = new MovingTruck(1e9, 1e9, 1e9, Size.SMALL);
+        Box box = new Box(1000, 1000, 1000, Size.LARGE, "Books");
+        for (int i = 0; i < 10; i++) {
+            box.pack(new Book("Jane", "Tales " + i, true));
+        }
+        Laptop first = new Laptop("Thomas", 2);
+        Laptop second = new Laptop("Thomas", 2);
+        Laptop third = new Laptop("Thomas", 2);
+        Map<Packable, Double> values = Map.of(box, 10.0, first, 4.0, second, 4.0, third, 4.0);
+        LoadSelection selection = SelectiveLoader.select(truck,
+                List.of(first, box, second, third), values::get);
+        assertEquals(18, selection.getValue(), 0);
+        assertEquals(List.of(third), selection.getLeftOver());
+        selection.load(truck);
+        assertEquals(12, truck.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testOnlyFurnitureOnceTruckHoldsFurniture() throws PackingException {
+        MovingTruck truck = new MovingTruck(1e9, 1e9, 1e9, Size.LARGE);
+        truck.pack(new Furniture(FurnitureType.BED));
+        Furniture chair = new Furniture(FurnitureType.CHAIR);
+        Laptop laptop = new Laptop("Thomas", 2);
+        LoadSelection selection = SelectiveLoader.select(truck, List.of(laptop, chair),
+                item -> 100);
+        assertEquals(List.of(chair), selection.getSelected());
+        assertEquals(List.of(laptop), selection.getLeftOver());
+        selection.load(truck);
+    }
+
+    @Test
+    public void testLoadsFurnitureLast() {
+        MovingTruck truck = new MovingTruck(1e9, 1e9, 1e9, Size.LARGE);
+        Furniture chair = new Furniture(FurnitureType.CHAIR);
+        Laptop laptop = new Laptop("Thomas", 2);
+        LoadSelection selection = SelectiveLoader.selectApproximate(truck,
+                List.of(chair, laptop), item -> 1);
+        assertEquals(List.of(laptop, chair), selection.getSelected());
+    }
+
+    @Test
+    public void testBadInput() {
+        MovingTruck truck = new MovingTruck(1e9, 1e9, 1e9, Size.LARGE);
+        Book book = new Book("Jane", "Tales", true);
+        assertThrows(IllegalArgumentException.class,
+                () -> SelectiveLoader.select(truck, List.of(book), item -> -1));
+        assertThrows(IllegalArgumentException.class,
+                () -> SelectiveLoader.select(truck, List.of(book), item -> Double.NaN));
+        List<Packable> many = new ArrayList<>();
+        for (int i = 0; i <= SelectiveLoader.EXACT_LIMIT; i++) {
+            many.add(new Book("Jane", "Tales " + i, true));
+        }
+        assertThrows(IllegalArgumentException.class,
+                () -> SelectiveLoader.selectExact(truck, many, item -> 1));
+        assertFalse(SelectiveLoader.select(truck, many, item -> 1).isExact());
+    }
+}
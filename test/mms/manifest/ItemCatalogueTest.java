@@ -0,0 +1,142 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ItemCatalogueTest {
+
+    private ItemCatalogue catalogue;
+    private int laptop;
+    private int book;
+    private int clothes;
+    private int table;
+
+    @Before
+    public void setUp() {
+        catalogue = new ItemCatalogue();
+        laptop = catalogue.add(new Laptop("Thomas", 2));
+        book = catalogue.add(new Book("Jane", "Tāles", true));
+        clothes = catalogue.add(new Clothes("Thomas", Size.MEDIUM, ClotheType.SHIRT));
+        table = catalogue.add(new Furniture(FurnitureType.TABLE));
+    }
+
+    @Test
+    public void testItemsRoundTrip() {
+        assertEquals(4, catalogue.size());
+        assertEquals("Laptop (Thomas) - 2", catalogue.get(laptop).toString());
+        assertEquals("Book (Jane) Title: Tāles (Fiction)", catalogue.get(book).toString());
+        assertEquals("Clothes (Thomas) (MEDIUM, SHIRT)", catalogue.get(clothes).toString());
+        assertEquals("Furniture (TABLE)", catalogue.get(table).toString());
+        assertNotSame(catalogue.get(book), catalogue.get(book));
+    }
+
+    @Test
+    public void testView() {
+        CatalogueItem view = catalogue.view(clothes);
+        assertEquals(RecordType.CLOTHES, view.getType());
+        assertEquals("Thomas", view.getOwner());
+        assertNull(view.getTitle());
+        assertEquals(50, view.getWidth(), 0);
+        assertEquals(70, view.getHeight(), 0);
+        assertEquals(10, view.getLength(), 0);
+        assertEquals(35000, view.getVolume(), 0);
+        assertEquals("Clothes (Thomas) (MEDIUM, SHIRT)", view.toString());
+        assertEquals(2, catalogue.view(laptop).getAge());
+        assertEquals("Tāles", catalogue.view(book).getTitle());
+        assertNull(catalogue.view(table).getOwner());
+        assertEquals(300, catalogue.view(table).getWidth(), 1e-9);
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(List.of(laptop, clothes), catalogue.findByOwner("Thomas"));
+        assertEquals(List.of(), catalogue.findByOwner("Nobody"));
+        assertEquals(List.of(book), catalogue.findByType(RecordType.BOOK));
+        catalogue.remove(laptop);
+        assertEquals(List.of(clothes), catalogue.findByOwner("Thomas"));
+        assertEquals(3, catalogue.size());
+        assertFalse(catalogue.contains(laptop));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetRemoved() {
+        catalogue.remove(book);
+        catalogue.get(book);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddStorage() {
+        catalogue.add(new Box(10, 10, 10, "Box"));
+    }
+
+    @Test
+    public void testPackInto() throws PackingException {
+        MovingTruck truck = new MovingTruck(2000, 2500, 4000, Size.LARGE);
+        catalogue.packInto(table, truck);
+        assertFalse(catalogue.contains(table));
+        try {
+            catalogue.packInto(book, truck);
+            fail("Expected books to be refused after furniture");
+        } catch (PackingException e) {
+            assertTrue(catalogue.contains(book));
+        }
+        assertEquals(1, truck.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testGrowsAcrossBlocks() {
+        int count = ItemCatalogue.BLOCK_RECORDS * 2 + 10;
+        for (int i = 0; i < count; i++) {
+            catalogue.add(new Book("Owner " + (i % 7), "A fairly long title number " + i,
+                    i % 2 == 0));
+        }
+        assertEquals(count + 4, catalogue.size());
+        int last = count + 3;
+        assertEquals("Book (Owner " + ((count - 1) % 7) + ") Title: A fairly long title number "
+                + (count - 1) + " (Non-Fiction)", catalogue.get(last).toString());
+        assertEquals("Tāles", catalogue.view(book).getTitle());
+    }
+
+    @Test
+    public void testRemovedRecordsReused() {
+        catalogue.remove(laptop);
+        catalogue.remove(table);
+        int reused = catalogue.add(new Laptop("Dawn", 1));
+        assertEquals(table, reused);
+        assertEquals("Laptop (Dawn) - 1", catalogue.get(reused).toString());
+        assertEquals(laptop, catalogue.add(new Furniture(FurnitureType.BED)));
+        assertEquals(4, catalogue.size());
+        assertEquals(4, catalogue.add(new Furniture(FurnitureType.CHAIR)));
+    }
+
+    @Test
+    public void testRemovedTitlesReclaimed() {
+        String padding = "x".repeat(1000);
+        int[] ids = new int[1000];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = catalogue.add(new Book("Jane", padding + i, false));
+        }
+        long grown = catalogue.getOffHeapBytes();
+        for (int i = 0; i < ids.length - 1; i++) {
+            catalogue.remove(ids[i]);
+        }
+        assertTrue(catalogue.getOffHeapBytes() < grown);
+        assertEquals(padding + (ids.length - 1), catalogue.view(ids[ids.length - 1]).getTitle());
+        assertEquals("Tāles", catalogue.view(book).getTitle());
+    }
+}
@@ -0,0 +1,81 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ItemInternerTest {
+
+    private ItemInterner interner;
+
+    @Before
+    public void setUp() {
+        interner = new ItemInterner();
+    }
+
+    @Test
+    public void testSharesIdenticalItems() {
+        Book book = interner.book("Jane", "Tales", true);
+        assertSame(book, interner.book(new String("Jane"), new String("Tales"), true));
+        assertNotSame(book, interner.book("Jane", "Tales", false));
+        assertNotSame(book, interner.book("Ann", "Tales", true));
+        assertSame(interner.laptop("Jane", 2), interner.laptop("Jane", 2));
+        assertNotSame(interner.laptop("Jane", 2), interner.laptop("Jane", 3));
+        assertSame(interner.clothes("Jane", Size.SMALL, ClotheType.SOCKS),
+                interner.clothes("Jane", Size.SMALL, ClotheType.SOCKS));
+        assertSame(interner.furniture(FurnitureType.BED), interner.furniture(FurnitureType.BED));
+        assertEquals(7, interner.size());
+    }
+
+    @Test
+    public void testSharesStrings() {
+        Book first = interner.book("Jane", "Tales", true);
+        Book second = interner.book(new String("Jane"), "Notes", true);
+        assertSame(first.getOwner(), second.getOwner());
+    }
+
+    @Test
+    public void testDimensionsUnchanged() {
+        assertEquals(55, interner.clothes("Jane", Size.LARGE, ClotheType.PANTS).getWidth(), 0);
+        assertEquals(75, interner.clothes("Jane", Size.LARGE, ClotheType.PANTS).getHeight(), 0);
+        assertEquals(130, interner.furniture(FurnitureType.TELEVISION).getWidth(), 1e-9);
+        assertEquals(10, interner.furniture(FurnitureType.TELEVISION).getLength(), 1e-9);
+        assertEquals(5, interner.book("Jane", "Tales", true).getLength(), 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidItem() {
+        interner.laptop("Jane", -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNullOwner() {
+        interner.book(null, "Tales", true);
+    }
+
+    @Test
+    public void testImportWithInterner() throws IOException, PackingException {
+        List<Packable> items = new ArrayList<>();
+        String csv = "type,owner,title,furniture\n"
+                + "book,Jane,Tales,\n"
+                + "furniture,,,chair\n"
+                + "book,Jane,Tales,\n"
+                + "furniture,,,chair\n";
+        assertEquals(4, ManifestImporter.importCsv(new StringReader(csv), items::add, interner));
+        assertSame(items.get(0), items.get(2));
+        assertSame(items.get(1), items.get(3));
+        assertEquals(2, interner.size());
+    }
+}
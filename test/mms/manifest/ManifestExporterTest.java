@@ -0,0 +1,234 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ManifestExporterTest {
+
+    private List<Storage> roots;
+
+    @Before
+    public void setUp() throws PackingException {
+        MovingTruck truck = new MovingTruck(2000, 2500, 4000, Size.LARGE);
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        box.pack(new Book("Jane", "Tales, \"twice\" told", true));
+        box.pack(new Bag(50, 50, 50));
+        Bag bag = new Bag(100, 100, 100);
+        bag.pack(new Laptop("Thomas", 2));
+        bag.pack(new Clothes("Thomas", Size.SMALL, ClotheType.SOCKS));
+        box.pack(bag);
+        truck.pack(box);
+        truck.pack(new Furniture(FurnitureType.TABLE));
+        Bag second = new Bag(100, 100, 100);
+        second.pack(new Book("Ann", "Notes", false));
+        roots = List.of(truck, second);
+    }
+
+    private static String export(ManifestExporter exporter, long maxItems) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exporter.export(Channels.newChannel(out), maxItems);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCsv() throws IOException {
+        ManifestExporter exporter = new ManifestExporter(roots, ExportFormat.CSV, 64);
+        assertEquals(5, exporter.getItemCount());
+        assertEquals("path,container,type,owner,title,fiction,age,size,clothing,furniture\n"
+                + "0/0/0,Box,book,Jane,\"Tales, \"\"twice\"\" told\",true,,,,\n"
+                + "0/0/2/0,Bag,laptop,Thomas,,,2,,,\n"
+                + "0/0/2/1,Bag,clothes,Thomas,,,,SMALL,SOCKS,\n"
+                + "0/1,MovingTruck,furniture,,,,,,,TABLE\n"
+                + "1/0,Bag,book,Ann,Notes,false,,,,\n", export(exporter, Long.MAX_VALUE));
+        assertTrue(exporter.isFinished());
+        assertEquals(5, exporter.getCursor());
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        ManifestExporter exporter = new ManifestExporter(roots, ExportFormat.JSON_LINES, 4096);
+        String json = export(exporter, 2);
+        assertEquals("{\"path\":\"0/0/0\",\"container\":\"Box\",\"type\":\"book\","
+                + "\"owner\":\"Jane\",\"title\":\"Tales, \\\"twice\\\" told\",\"fiction\":true}\n"
+                + "{\"path\":\"0/0/2/0\",\"container\":\"Bag\",\"type\":\"laptop\","
+                + "\"owner\":\"Thomas\",\"age\":2}\n", json);
+        assertEquals(2, exporter.getCursor());
+    }
+
+    @Test
+    public void testChunksMatchWholeExport() throws IOException {
+        for (ExportFormat format : ExportFormat.values()) {
+            String whole = export(new ManifestExporter(roots, format, 16), Long.MAX_VALUE);
+            ManifestExporter chunked = new ManifestExporter(roots, format, 16);
+            StringBuilder parts = new StringBuilder();
+            while (!chunked.isFinished()) {
+                parts.append(export(chunked, 2));
+            }
+            assertEquals(whole, parts.toString());
+            assertEquals("", export(chunked, 2));
+
+            ManifestExporter resumed = new ManifestExporter(roots, format, 16);
+            resumed.seek(3);
+            assertTrue(whole.endsWith(export(resumed, Long.MAX_VALUE)));
+            assertEquals(5, resumed.getCursor());
+        }
+    }
+
+    /**
+     * Returns a channel that writes to the given stream, and fails once it has been written to
+     * the given number of times.
+     */
+    private static WritableByteChannel failingAfter(int writeLimit, ByteArrayOutputStream out) {
+        return new WritableByteChannel() {
+            private int writes;
+
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (++writes > writeLimit) {
+                    throw new IOException("Disk full");
+                }
+                int count = src.remaining();
+                byte[] bytes = new byte[count];
+                src.get(bytes);
+                out.write(bytes);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    public void testResumeAfterFailure() throws IOException {
+        String whole = export(new ManifestExporter(roots, ExportFormat.CSV, 4096), 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ManifestExporter exporter = new ManifestExporter(roots, ExportFormat.CSV, 80);
+        try {
+            exporter.export(failingAfter(2, out));
+            fail("Expected the export to fail");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getMessage());
+        }
+        assertTrue(exporter.getCursor() > 0);
+        assertTrue(exporter.getCursor() < 5);
+        String resumed = out.toString(StandardCharsets.UTF_8) + export(exporter, 5);
+        assertEquals(whole, resumed);
+    }
+
+    /**
+     * Returns a channel that writes to the given stream a few bytes at a time, and fails once
+     * the given number of bytes have been written.
+     */
+    private static WritableByteChannel failingAfterBytes(int byteLimit, ByteArrayOutputStream out) {
+        return new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) throws IOException {
+                if (out.size() >= byteLimit) {
+                    throw new IOException("Disk full");
+                }
+                int count = Math.min(Math.min(src.remaining(), 7), byteLimit - out.size());
+                byte[] bytes = new byte[count];
+                src.get(bytes);
+                out.write(bytes);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @Test
+    public void testResumeAfterFailureInsideBuffer() throws IOException {
+        String whole = export(new ManifestExporter(roots, ExportFormat.CSV, 4096), 5);
+        // Fail part way through the third item, once the first two have been written in full
+        int header = whole.indexOf('\n') + 1;
+        int secondItem = whole.indexOf('\n', whole.indexOf('\n', header) + 1) + 1;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ManifestExporter exporter = new ManifestExporter(roots, ExportFormat.CSV, 4096);
+        try {
+            exporter.export(failingAfterBytes(secondItem + 3, out));
+            fail("Expected the export to fail");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getMessage());
+        }
+        assertEquals(2, exporter.getCursor());
+        String written = out.toString(StandardCharsets.UTF_8);
+        String resumed = written.substring(0, written.lastIndexOf('\n') + 1)
+                + export(exporter, 5);
+        assertEquals(whole, resumed);
+    }
+
+    @Test
+    public void testResumeAfterFailureWritesHeaderOnce() throws IOException {
+        String whole = export(new ManifestExporter(roots, ExportFormat.CSV, 4096), 5);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ManifestExporter exporter = new ManifestExporter(roots, ExportFormat.CSV, 4096);
+        try {
+            // Only the header gets out
+            exporter.export(failingAfter(1, out));
+            fail("Expected the export to fail");
+        } catch (IOException e) {
+            assertEquals("Disk full", e.getMessage());
+        }
+        assertEquals(0, exporter.getCursor());
+        String resumed = out.toString(StandardCharsets.UTF_8) + export(exporter, 5);
+        assertEquals(whole, resumed);
+    }
+
+    @Test
+    public void testExportCanBeImported() throws IOException, PackingException {
+        List<Packable> items = new ArrayList<>();
+        String csv = export(new ManifestExporter(roots, ExportFormat.CSV, 32), 5);
+        assertEquals(5, ManifestImporter.importCsv(new StringReader(csv), items::add));
+        String json = export(new ManifestExporter(roots, ExportFormat.JSON_LINES, 32), 5);
+        assertEquals(5, ManifestImporter.importJsonLines(new StringReader(json), items::add));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(items.get(i).toString(), items.get(i + 5).toString());
+        }
+        assertEquals("Book (Jane) Title: Tales, \"twice\" told (Fiction)", items.get(0).toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSeekPastEnd() {
+        new ManifestExporter(roots, ExportFormat.CSV, 16).seek(6);
+    }
+}
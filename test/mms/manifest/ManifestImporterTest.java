@@ -0,0 +1,117 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.exceptions.StorageFullException;
+import mms.storage.Box;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ManifestImporterTest {
+
+    private List<Packable> items;
+
+    @Before
+    public void setUp() {
+        items = new ArrayList<>();
+    }
+
+    @Test
+    public void testImportCsv() throws IOException, PackingException {
+        String csv = "Type,Owner,Title,Fiction,Age,Size,Clothing,Furniture\n"
+                + "laptop,Thomas,,,2,,,\n"
+                + "\n"
+                + "BOOK,Jane,\"Tales, \"\"twice\"\" told\",true,,,,\n"
+                + "clothes,Jane,,,,medium,shirt,\n"
+                + "furniture,,,,,,,television\n";
+        assertEquals(4, ManifestImporter.importCsv(new StringReader(csv), items::add));
+        assertEquals("Laptop (Thomas) - 2", items.get(0).toString());
+        assertEquals("Book (Jane) Title: Tales, \"twice\" told (Fiction)",
+                items.get(1).toString());
+        assertEquals("Clothes (Jane) (MEDIUM, SHIRT)", items.get(2).toString());
+        assertEquals("Furniture (TELEVISION)", items.get(3).toString());
+    }
+
+    @Test
+    public void testImportJsonLines() throws IOException, PackingException {
+        String json = "{\"type\": \"laptop\", \"owner\": \"Thomas\", \"age\": 2}\n"
+                + "\n"
+                + "{\"type\":\"book\",\"owner\":\"Jane\",\"title\":\"Tales \\\"told\\\"\","
+                + "\"fiction\":true,\"size\":null}\n"
+                + "{ \"Type\" : \"furniture\" , \"furniture\" : \"chair\" }\n";
+        assertEquals(3, ManifestImporter.importJsonLines(new StringReader(json), items::add));
+        assertEquals("Laptop (Thomas) - 2", items.get(0).toString());
+        assertEquals("Book (Jane) Title: Tales \"told\" (Fiction)", items.get(1).toString());
+        assertEquals("Furniture (CHAIR)", items.get(2).toString());
+    }
+
+    @Test
+    public void testValuesTrimmed() throws IOException, PackingException {
+        String csv = "type,owner,title,age\n"
+                + " book , Jane ,\" Tales \",\n"
+                + "laptop,\" Jane\", , 2 \n";
+        assertEquals(2, ManifestImporter.importCsv(new StringReader(csv), items::add));
+        assertEquals("Book (Jane) Title: Tales (Non-Fiction)", items.get(0).toString());
+        assertEquals("Laptop (Jane) - 2", items.get(1).toString());
+    }
+
+    @Test
+    public void testErrorsGiveLineNumber() throws PackingException {
+        String[] badCsv = {
+            "type,owner\nbook,Jane\n",
+            "type,owner,age\nlaptop,Jane,-1\n",
+            "type,furniture\nfurniture,sofa\n",
+            "type,owner\nlaptop,\"Jane\n",
+            "type,owner,title,fiction\nbook,Jane,Tales,yes\n",
+            "type,owner,title,fiction\nbook,Jane,Tales,1\n",
+            "type,owner,title,fiction\nbook,Jane,Tales,ture\n",
+        };
+        for (String csv : badCsv) {
+            try {
+                ManifestImporter.importCsv(new StringReader(csv), items::add);
+                fail("Expected IOException for " + csv);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+            }
+        }
+        String[] badJson = {
+            "{\"type\":\"widget\"}",
+            "{\"type\":\"laptop\",\"owner\":\"Jane\",\"age\":x}",
+            "{\"type\":\"laptop\" \"owner\":\"Jane\"}",
+            "{\"type\":\"laptop\"} extra",
+        };
+        for (String json : badJson) {
+            try {
+                ManifestImporter.importJsonLines(new StringReader("\n" + json), items::add);
+                fail("Expected IOException for " + json);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2: "));
+            }
+        }
+        assertTrue(items.isEmpty());
+    }
+
+    @Test
+    public void testPacksIntoStorage() throws IOException {
+        Box box = new Box(1000, 1000, 1000, Size.SMALL, "Books");
+        StringBuilder csv = new StringBuilder("type,owner,title\n");
+        for (int i = 0; i < 10; i++) {
+            csv.append("book,Jane,Book ").append(i).append('\n');
+        }
+        try {
+            ManifestImporter.importCsv(new StringReader(csv.toString()), box::pack);
+            fail("Expected the box to fill up");
+        } catch (PackingException e) {
+            assertTrue(e instanceof StorageFullException);
+        }
+        assertEquals(box.getCapacity(), box.getOccupiedCapacity());
+    }
+}
@@ -0,0 +1,203 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ManifestSnapshotTest {
+
+    private MovingTruck truck;
+
+    @Before
+    public void setUp() throws PackingException {
+        truck = new MovingTruck(2000, 2500, 4000, Size.LARGE);
+        Box box = new Box(400, 280, 250, "Materials");
+        Box inner = new Box(100, 150, 100, "");
+        Bag bag = new Bag(100, 50, 100, Size.SMALL);
+        inner.pack(new Book("Jane", "Tales from magicians", true));
+        bag.pack(new Clothes("Barry", Size.SMALL, ClotheType.SHORTS));
+        bag.pack(new Laptop("Dawn", 3));
+        box.pack(inner);
+        box.pack(bag);
+        box.pack(new Furniture(FurnitureType.TELEVISION));
+        bag.setUnpackPolicy(UnpackPolicy.lifo());
+        truck.pack(box);
+        truck.pack(new Clothes("Lucy", Size.MEDIUM, ClotheType.SOCKS));
+        truck.pack(new Furniture(FurnitureType.BED));
+        truck.pack(new Furniture(FurnitureType.TABLE));
+    }
+
+    private static List<Storage> roundTrip(List<? extends Storage> roots) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ManifestSnapshot.write(roots, out);
+        return ManifestSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        MovingTruck empty = new MovingTruck(1000, 1000, 2000);
+        List<Storage> copies = roundTrip(List.of(truck, empty));
+
+        assertEquals(2, copies.size());
+        assertTrue(copies.get(0) instanceof MovingTruck);
+        assertEquals(truck.toString(0), copies.get(0).toString(0));
+        assertEquals(empty.toString(0), copies.get(1).toString(0));
+        assertEquals(truck.getLength(), copies.get(0).getLength(), 0);
+    }
+
+    @Test
+    public void testRoundTripKeepsUnpackOrder() throws IOException {
+        Storage copy = roundTrip(List.of(truck)).get(0);
+        Packable original;
+        while ((original = truck.unpack()) != null) {
+            Packable copied = copy.unpack();
+            assertEquals(original.toString(), copied.toString());
+            if (original instanceof Storage) {
+                Storage originalStorage = (Storage) original;
+                assertEquals(originalStorage.getUnpackPolicy(),
+                        ((Storage) copied).getUnpackPolicy());
+                assertEquals(originalStorage.toString(0), ((Storage) copied).toString(0));
+            }
+        }
+        assertNull(copy.unpack());
+    }
+
+    @Test
+    public void testRoundTripBoxFilledAfterPacking() throws IOException, PackingException {
+        MovingTruck small = new MovingTruck(1000, 1000, 2000, Size.SMALL);
+        Box box = new Box(100, 100, 100, "Books");
+        small.pack(box);
+        try {
+            while (true) {
+                small.pack(new Clothes("Lucy", Size.SMALL, ClotheType.SOCKS));
+            }
+        } catch (PackingException e) {
+            // Truck is full
+        }
+        box.pack(new Book("Jane", "Tales from magicians", true));
+        box.pack(new Book("Jane", "Tales from wizards", false));
+        assertEquals("MovingTruck (14/12)", small.toString());
+
+        Storage copy = roundTrip(List.of(small)).get(0);
+        assertEquals(small.toString(0), copy.toString(0));
+    }
+
+    @Test
+    public void testRoundTripKeepsFragileLastOrder() throws IOException, PackingException {
+        MovingTruck small = new MovingTruck(1000, 1000, 2000, Size.SMALL);
+        small.setUnpackPolicy(UnpackPolicy.fragileLast());
+        Box box = new Box(100, 100, 100, "Electronics");
+        small.pack(new Laptop("Dawn", 3));
+        small.pack(box);
+        small.pack(new Clothes("Lucy", Size.SMALL, ClotheType.SOCKS));
+        // The box was not fragile when it was packed, so it still comes out early
+        box.pack(new Laptop("Dawn", 1));
+
+        Storage copy = roundTrip(List.of(small)).get(0);
+        Packable original;
+        while ((original = small.unpack()) != null) {
+            assertEquals(original.toString(), copy.unpack().toString());
+        }
+        assertNull(copy.unpack());
+    }
+
+    @Test
+    public void testRoundTripFragileBoxFilledAfterPacking() throws IOException, PackingException {
+        MovingTruck small = new MovingTruck(1000, 1000, 2000, Size.SMALL);
+        small.setUnpackPolicy(UnpackPolicy.fragileLast());
+        Box box = new Box(100, 100, 100, "Electronics");
+        box.pack(new Book("Jane", "Tales", false));
+        box.pack(new Laptop("Dawn", 1));
+        small.pack(box);
+        try {
+            while (true) {
+                small.pack(new Clothes("Lucy", Size.SMALL, ClotheType.SOCKS));
+            }
+        } catch (PackingException e) {
+            // Truck is full
+        }
+        // The box still counts as fragile once the laptop it was packed with is gone
+        box.pack(new Book("Jane", "More tales", true));
+        box.pack(new Book("Jane", "Even more tales", true));
+        assertNotNull(box.unpack());
+        assertNotNull(box.unpack());
+        assertFalse(box.isFragile());
+
+        Storage copy = roundTrip(List.of(small)).get(0);
+        assertEquals(small.toString(0), copy.toString(0));
+        assertArrayEquals(small.getPackedFragile(), copy.getPackedFragile());
+        Packable original;
+        while ((original = small.unpack()) != null) {
+            assertEquals(original.toString(), copy.unpack().toString());
+        }
+        assertNull(copy.unpack());
+    }
+
+    @Test
+    public void testRepeatedStringsStoredOnce() throws IOException, PackingException {
+        Box one = new Box(1000, 1000, 1000, Size.LARGE, "Books");
+        Box many = new Box(1000, 1000, 1000, Size.LARGE, "Books");
+        one.pack(new Book("A long owner name", "A long book title", false));
+        for (int i = 0; i < 10; i++) {
+            many.pack(new Book("A long owner name", "A long book title", false));
+        }
+        ByteArrayOutputStream oneOut = new ByteArrayOutputStream();
+        ByteArrayOutputStream manyOut = new ByteArrayOutputStream();
+        ManifestSnapshot.write(List.of(one), oneOut);
+        ManifestSnapshot.write(List.of(many), manyOut);
+        // Each extra book is a tag, two string references and a flag
+        assertEquals(oneOut.size() + 9 * 4, manyOut.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void testBadMagic() throws IOException {
+        ManifestSnapshot.read(new ByteArrayInputStream(new byte[] {1, 2, 3, 4, 5, 6}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncated() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ManifestSnapshot.write(List.of(truck), out);
+        byte[] bytes = out.toByteArray();
+        ManifestSnapshot.read(new ByteArrayInputStream(bytes, 0, bytes.length - 3));
+    }
+
+    @Test(expected = IOException.class)
+    public void testNegativeCountRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(ManifestSnapshot.MAGIC);
+        data.writeByte(ManifestSnapshot.VERSION);
+        // -1 as a five byte number
+        data.write(new byte[] {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F});
+        ManifestSnapshot.read(new ByteArrayInputStream(out.toByteArray()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCustomPolicyRejected() throws IOException {
+        truck.setUnpackPolicy(UnpackPolicy.comparing(Comparator.comparing(Object::toString)));
+        ManifestSnapshot.write(List.of(truck), new ByteArrayOutputStream());
+    }
+}
@@ -0,0 +1,159 @@
+package mms.manifest;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class MappedManifestTest {
+
+    private Path file;
+    private MovingTruck truck;
+    private MovingTruck other;
+
+    @Before
+    public void setUp() throws IOException, PackingException {
+        file = Files.createTempFile("manifest", ".mms");
+        truck = new MovingTruck(2000, 2500, 4000, Size.LARGE);
+        Box box = new Box(400, 280, 250, "Materials");
+        Bag bag = new Bag(100, 50, 100, Size.SMALL);
+        bag.pack(new Clothes("Barry", Size.SMALL, ClotheType.SHORTS));
+        bag.pack(new Laptop("Dawn", 3));
+        bag.setUnpackPolicy(UnpackPolicy.lifo());
+        box.pack(bag);
+        box.pack(new Book("Dawn", "Tales", true));
+        box.pack(new Box(10, 10, 10, "Empty"));
+        truck.pack(box);
+        truck.pack(new Furniture(FurnitureType.BED));
+        other = new MovingTruck(1000, 1000, 2000);
+        other.pack(new Book("Jane", "Tales", false));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void testNavigate() throws IOException {
+        MappedManifest.write(List.of(truck, other), file);
+        MappedManifest manifest = MappedManifest.open(file);
+
+        assertEquals(2, manifest.getRootCount());
+        assertEquals(10, manifest.getRecordCount());
+        List<ManifestRecord> roots = manifest.getRoots();
+        assertEquals(RecordType.TRUCK, roots.get(0).getType());
+        assertEquals(4000, roots.get(0).getLength(), 0);
+
+        List<ManifestRecord> truckElements = roots.get(0).getElements();
+        assertEquals(2, truckElements.size());
+        ManifestRecord box = truckElements.get(0);
+        assertEquals("Materials", box.getComment());
+        assertEquals(3, box.getElementCount());
+        assertEquals(FurnitureType.BED, truckElements.get(1).getFurnitureType());
+
+        ManifestRecord laptop = box.getElements().get(0).getElements().get(1);
+        assertEquals(RecordType.LAPTOP, laptop.getType());
+        assertEquals("Dawn", laptop.getOwner());
+        assertEquals(3, laptop.getAge());
+        assertEquals("Laptop (Dawn) - 3", laptop.toString());
+        assertTrue(box.getElements().get(2).getElements().isEmpty());
+    }
+
+    @Test
+    public void testToStorage() throws IOException {
+        MappedManifest.write(List.of(truck, other), file);
+        MappedManifest manifest = MappedManifest.open(file);
+
+        List<ManifestRecord> roots = manifest.getRoots();
+        assertEquals(truck.toString(0), roots.get(0).toStorage().toString(0));
+        assertEquals(other.toString(0), roots.get(1).toStorage().toString(0));
+        assertNull(roots.get(0).toPackable());
+
+        Bag bag = (Bag) roots.get(0).getElements().get(0).getElements().get(0).toPackable();
+        assertEquals(UnpackPolicy.lifo(), bag.getUnpackPolicy());
+        assertEquals("Laptop (Dawn) - 3", bag.unpack().toString());
+    }
+
+    @Test
+    public void testToStorageBoxFilledAfterPacking() throws IOException, PackingException {
+        MovingTruck small = new MovingTruck(1000, 1000, 2000, Size.SMALL);
+        small.setUnpackPolicy(UnpackPolicy.fragileLast());
+        Box box = new Box(100, 100, 100, "Electronics");
+        small.pack(box);
+        try {
+            while (true) {
+                small.pack(new Clothes("Lucy", Size.SMALL, ClotheType.SOCKS));
+            }
+        } catch (PackingException e) {
+            // Truck is full
+        }
+        box.pack(new Laptop("Dawn", 1));
+        box.pack(new Book("Jane", "Tales", false));
+        MappedManifest.write(List.of(small), file);
+
+        Storage copy = MappedManifest.open(file).getRoots().get(0).toStorage();
+        assertEquals(small.toString(0), copy.toString(0));
+        Packable original;
+        while ((original = small.unpack()) != null) {
+            assertEquals(original.toString(), copy.unpack().toString());
+        }
+    }
+
+    @Test
+    public void testToStringUsesStoredState() throws IOException, PackingException {
+        Box fragile = new Box(100, 100, 100, "Electronics");
+        fragile.pack(new Laptop("Dawn", 1));
+        other.pack(fragile);
+        MappedManifest.write(List.of(truck, other), file);
+        MappedManifest manifest = MappedManifest.open(file);
+
+        ManifestRecord loaded = manifest.getRoots().get(1);
+        assertEquals(other.toString(), loaded.toString());
+        assertEquals(2, loaded.getOccupiedCapacity());
+        ManifestRecord box = loaded.getElements().get(1);
+        assertTrue(box.isFragile());
+        assertEquals(fragile.toString(), box.toString());
+        assertNull(box.getTitle());
+        ManifestRecord bag = manifest.getRoots().get(0).getElements().get(0).getElements().get(0);
+        assertEquals(truck.toString(1).split("\n")[2].trim(), bag.toString());
+    }
+
+    @Test
+    public void testFindByOwner() throws IOException {
+        MappedManifest.write(List.of(truck, other), file);
+        MappedManifest manifest = MappedManifest.open(file);
+
+        List<ManifestRecord> found = manifest.findByOwner("Dawn");
+        assertEquals(2, found.size());
+        assertEquals(RecordType.LAPTOP, found.get(0).getType());
+        assertEquals("Tales", found.get(1).getTitle());
+        assertTrue(manifest.findByOwner("Nobody").isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAManifest() throws IOException {
+        Files.write(file, new byte[64]);
+        MappedManifest.open(file);
+    }
+}
@@ -0,0 +1,170 @@
+package mms.manifest;
+
+import mms.exceptions.BadItemException;
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.Storage;
+import mms.storage.UnpackPolicy;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static org.junit.Assert.*;
+
+public class PackingJournalTest {
+
+    private Path file;
+    private MovingTruck truck;
+
+    @Before
+    public void setUp() throws IOException, PackingException {
+        file = Files.createTempFile("journal", ".mmsj");
+        truck = new MovingTruck(2000, 2500, 4000, Size.LARGE);
+        truck.pack(new Laptop("Thomas", 2));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static void assertSameUnpackOrder(Storage expected, Storage actual) {
+        assertEquals(expected.toString(0), actual.toString(0));
+        Packable item;
+        while ((item = expected.unpack()) != null) {
+            assertEquals(item.toString(), actual.unpack().toString());
+        }
+        assertNull(actual.unpack());
+    }
+
+    @Test
+    public void testReplay() throws IOException, PackingException {
+        PackingJournal journal = new PackingJournal(file, truck, 4);
+        try {
+            Box box = new Box(200, 200, 200, "Books");
+            box.pack(new Book("Jane", "Tales", true));
+            truck.pack(box);
+            box.pack(new Book("Jane", "More tales", false));
+            Bag bag = new Bag(100, 100, 100);
+            truck.pack(bag);
+            bag.pack(new Clothes("Lucy", Size.SMALL, ClotheType.SHIRT));
+            box.unpack();
+            truck.pack(new Furniture(FurnitureType.BED));
+            truck.pack(new Furniture(FurnitureType.TELEVISION));
+            truck.unpack();
+        } finally {
+            journal.close();
+        }
+        assertSameUnpackOrder(truck, PackingJournal.replay(file));
+    }
+
+    @Test
+    public void testRepackedStorage() throws IOException, PackingException {
+        PackingJournal journal = new PackingJournal(file, truck, 1);
+        try {
+            Box box = new Box(200, 200, 200, "Moved");
+            truck.pack(box);
+            // Laptop first out, then the box, which is changed outside the truck and put back
+            truck.unpack();
+            truck.unpack();
+            box.pack(new Laptop("Dawn", 1));
+            truck.pack(box);
+            box.pack(new Laptop("Dawn", 2));
+        } finally {
+            journal.close();
+        }
+        assertSameUnpackOrder(truck, PackingJournal.replay(file));
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException, PackingException {
+        PackingJournal journal = new PackingJournal(file, truck, 3);
+        long start = Files.size(file);
+        truck.pack(new Laptop("A", 1));
+        truck.pack(new Laptop("B", 1));
+        assertEquals(start, Files.size(file));
+        truck.pack(new Laptop("C", 1));
+        assertTrue(Files.size(file) > start);
+
+        // Without a sync the latest record is lost, as it would be in a crash
+        truck.pack(new Laptop("D", 1));
+        assertEquals(4, PackingJournal.replay(file).getOccupiedCapacity());
+        journal.sync();
+        assertEquals(5, PackingJournal.replay(file).getOccupiedCapacity());
+        journal.close();
+    }
+
+    @Test
+    public void testTornRecordIgnored() throws IOException, PackingException {
+        PackingJournal journal = new PackingJournal(file, truck, 1);
+        truck.pack(new Book("Jane", "Tales", true));
+        journal.close();
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 2));
+        assertEquals(1, PackingJournal.replay(file).getOccupiedCapacity());
+    }
+
+    @Test
+    public void testUnsavableItemRefused() throws IOException, PackingException {
+        PackingJournal journal = new PackingJournal(file, truck, 1);
+        Box box = new Box(200, 200, 200, "Sorted");
+        box.setUnpackPolicy(UnpackPolicy.comparing(Comparator.comparing(Object::toString)));
+        try {
+            truck.pack(box);
+            fail("Box with a custom policy was packed");
+        } catch (BadItemException e) {
+            // Refused before anything was changed
+        }
+        assertEquals(1, truck.getElements().size());
+        truck.pack(new Book("Jane", "Tales", true));
+        journal.close();
+        assertSameUnpackOrder(truck, PackingJournal.replay(file));
+    }
+
+    @Test
+    public void testPolicyChangesRecorded() throws IOException, PackingException {
+        PackingJournal journal = new PackingJournal(file, truck, 1);
+        Box box = new Box(200, 200, 200, "Books");
+        truck.pack(box);
+        box.pack(new Book("Jane", "Tales", true));
+        box.pack(new Book("Jane", "More tales", false));
+        box.setUnpackPolicy(UnpackPolicy.lifo());
+        truck.setUnpackPolicy(UnpackPolicy.lifo());
+        try {
+            truck.setUnpackPolicy(
+                    UnpackPolicy.comparing(Comparator.comparing(Object::toString)));
+            fail("Custom policy was accepted");
+        } catch (IllegalArgumentException e) {
+            assertEquals(UnpackPolicy.lifo(), truck.getUnpackPolicy());
+        }
+        journal.close();
+
+        Storage copy = PackingJournal.replay(file);
+        assertEquals(UnpackPolicy.lifo(), copy.getUnpackPolicy());
+        Storage copiedBox = (Storage) copy.unpack();
+        assertEquals(UnpackPolicy.lifo(), copiedBox.getUnpackPolicy());
+        assertSameUnpackOrder(box, copiedBox);
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAJournal() throws IOException {
+        Files.write(file, new byte[] {1, 2, 3, 4, 5});
+        PackingJournal.replay(file);
+    }
+}
@@ -41,4 +41,9 @@ public class BookTest {
     public void testToStringNonFiction(){
         assertEquals("Book (Jim) Title: Worst Book (Non-Fiction)", book2.toString());
     }
+
+    @Test
+    public void testToStringBuiltOnce(){
+        assertSame(book1.toString(), book1.toString());
+    }
 }
\ No newline at end of file
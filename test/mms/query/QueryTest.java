@@ -0,0 +1,182 @@
+package mms.query;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.storage.Bag;
+import mms.storage.Box;
+import mms.storage.MovingTruck;
+import mms.storage.OwnerIndex;
+import mms.utility.Packable;
+import mms.utility.Size;
+import mms.utility.StringDictionary;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class QueryTest {
+
+    private MovingTruck truck;
+    private Box electronics;
+    private Box books;
+    private Bag bag;
+    private Laptop laptop;
+    private Book novel;
+    private Book manual;
+    private Book bobsBook;
+    private Clothes shirt;
+    private Clothes pants;
+    private Furniture chair;
+
+    @Before
+    public void setUp() throws PackingException {
+        truck = new MovingTruck(2000, 2500, 4000);
+        electronics = new Box(500, 500, 500, Size.LARGE, "Electronics");
+        books = new Box(500, 500, 500, "Books");
+        bag = new Bag(200, 100, 150);
+        laptop = new Laptop("Jane", 2);
+        novel = new Book("Jane", "Emma", true);
+        manual = new Book("Jane", "Java", false);
+        bobsBook = new Book("Bob", "Dune", true);
+        shirt = new Clothes("Bob", Size.SMALL, ClotheType.SHIRT);
+        pants = new Clothes("Jane", Size.LARGE, ClotheType.PANTS);
+        chair = new Furniture(FurnitureType.CHAIR);
+
+        electronics.pack(laptop);
+        electronics.pack(novel);
+        books.pack(manual);
+        books.pack(shirt);
+        bag.pack(pants);
+        bag.pack(bobsBook);
+        books.pack(bag);
+        truck.pack(electronics);
+        truck.pack(books);
+        truck.pack(chair);
+    }
+
+    @Test
+    public void testFragileBoxesContainingBooksByJane() {
+        List<Box> found = Query.containers(Box.class).fragile(true)
+                .containing(Query.items(Book.class).ownedBy("Jane"))
+                .compile().find(truck);
+        assertEquals(List.of(electronics), found);
+
+        List<Box> notFragile = Query.containers(Box.class).fragile(false)
+                .containing(Query.items(Book.class).ownedBy("Jane"))
+                .compile().find(truck);
+        assertEquals(List.of(books), notFragile);
+    }
+
+    @Test
+    public void testOwner() {
+        assertEquals(Set.of(laptop, novel, manual, pants),
+                found(Query.items().ownedBy("Jane")));
+        assertEquals(Set.of(), found(Query.items().ownedBy("Nobody")));
+    }
+
+    @Test
+    public void testItemCriteria() {
+        assertEquals(Set.of(novel, bobsBook), found(Query.items(Book.class).fiction(true)));
+        assertEquals(Set.of(shirt), found(Query.items().sized(Size.SMALL)));
+        assertEquals(Set.of(pants), found(Query.items().ofType(ClotheType.PANTS)));
+        assertEquals(Set.of(chair), found(Query.items().ofType(FurnitureType.CHAIR)));
+        assertEquals(Set.of(laptop), found(Query.items().fragile(true)));
+    }
+
+    @Test
+    public void testContainerCriteria() {
+        assertEquals(Set.of(electronics, books, bag), found(Query.containers()));
+        assertEquals(Set.of(electronics), found(Query.containers().sized(Size.LARGE)));
+        assertEquals(Set.of(books, bag), found(Query.containers().containing(
+                Query.items().ofType(ClotheType.PANTS))));
+    }
+
+    @Test
+    public void testWithin() {
+        assertEquals(Set.of(pants, bobsBook),
+                found(Query.items().within(Query.containers(Bag.class))));
+        assertEquals(Set.of(manual, shirt, pants, bobsBook),
+                found(Query.items().within(Query.containers(Box.class).fragile(false))));
+        assertEquals(Set.of(bag), found(Query.containers().within(Query.containers(Box.class))));
+        // The root counts as something to be inside, but is never found itself
+        assertEquals(Set.of(electronics, books, bag),
+                found(Query.containers().within(Query.containers(MovingTruck.class))));
+        assertEquals(Set.of(), found(Query.items().within(Query.containers().sized(Size.SMALL)
+                .containing(Query.items(Laptop.class)))));
+    }
+
+    @Test
+    public void testIndexMatchesWalk() throws PackingException {
+        OwnerIndex index = new OwnerIndex();
+        index.track(truck);
+        MovingTruck other = new MovingTruck(2000, 2500, 4000);
+        other.pack(new Book("Jane", "Persuasion", true));
+        index.track(other);
+
+        List<Query<? extends Packable>> queries = List.of(
+                Query.items().ownedBy("Jane"),
+                Query.items(Book.class).ownedBy("Jane").fiction(false),
+                Query.items().ownedBy("Jane").within(Query.containers(Bag.class)),
+                Query.items().ownedBy("Bob").within(Query.containers().fragile(false)),
+                Query.containers(Box.class).containing(Query.items().ownedBy("Bob")));
+        for (Query<? extends Packable> query : queries) {
+            CompiledQuery<? extends Packable> compiled = query.compile();
+            assertEquals(new HashSet<>(compiled.find(truck)),
+                    new HashSet<>(compiled.find(truck, index)));
+        }
+        assertEquals(Set.of(pants, bobsBook),
+                new HashSet<>(Query.items().within(Query.containers(Bag.class))
+                        .compile().find(books, index)));
+    }
+
+    @Test
+    public void testIncompatibleCriteriaFindNothing() {
+        assertEquals(Set.of(), found(Query.items(Laptop.class).fiction(true)));
+        assertEquals(Set.of(), found(Query.items().ofType(FurnitureType.CHAIR).ownedBy("Jane")));
+        assertEquals(Set.of(), found(Query.containers().ownedBy("Jane")));
+    }
+
+    @Test
+    public void testUnknownOwnerNotAdded() throws PackingException {
+        int known = StringDictionary.OWNERS.size();
+        OwnerIndex index = new OwnerIndex();
+        index.track(truck);
+        CompiledQuery<Packable> query = Query.items().ownedBy("Nobody at all").compile();
+        assertEquals(List.of(), query.find(truck));
+        assertEquals(List.of(), query.find(truck, index));
+        assertEquals(known, StringDictionary.OWNERS.size());
+        // The query still finds items given to the owner after it was compiled
+        Book later = new Book("Nobody at all", "Later", false);
+        books.pack(later);
+        assertEquals(List.of(later), query.find(truck));
+        assertEquals(List.of(later), query.find(truck, index));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testStorageItems() {
+        Query.items(Box.class);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEmptyOwner() {
+        Query.items().ownedBy("");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testItemsContaining() {
+        Query.items().containing(Query.items());
+    }
+
+    private Set<Object> found(Query<?> query) {
+        return new HashSet<>(query.compile().find(truck));
+    }
+}
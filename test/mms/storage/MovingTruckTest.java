@@ -74,6 +74,20 @@ public class MovingTruckTest {
         assertEquals("MovingTruck (2/40)", truck1.toString());
     }
 
+    @Test
+    public void testToStringFollowsNestedPacking() throws PackingException {
+        Bag bag = new Bag(100,100,100);
+        truck1.pack(bag);
+        String empty = truck1.toString();
+        assertEquals("MovingTruck (0/40)", empty);
+        assertSame(empty, truck1.toString());
+
+        bag.pack(new Laptop("Owner", 2));
+        assertEquals("MovingTruck (1/40)", truck1.toString());
+        bag.unpack();
+        assertEquals(empty, truck1.toString());
+    }
+
     @Test
     public void testGetMultiplier(){
         assertEquals(4, truck1.getMultiplier());
@@ -0,0 +1,105 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.utility.Size;
+import mms.utility.StringDictionary;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class OwnerIndexTest {
+
+    private OwnerIndex index;
+    private MovingTruck truck;
+    private Box box;
+    private Bag bag;
+    private Clothes shirt;
+    private Laptop laptop;
+    private Book book;
+
+    @Before
+    public void setUp() throws PackingException {
+        index = new OwnerIndex();
+        truck = new MovingTruck(2000, 2500, 4000);
+        box = new Box(200, 200, 200, "Box");
+        bag = new Bag(200, 100, 150);
+        shirt = new Clothes("Lucy", Size.SMALL, ClotheType.SHIRT);
+        laptop = new Laptop("Lucy", 2);
+        book = new Book("Caleb", "Java", false);
+
+        box.pack(shirt);
+        truck.pack(box);
+    }
+
+    @Test
+    public void testTrackIndexesExistingItems() {
+        index.track(truck);
+        assertEquals(Set.of(shirt), index.getItems("Lucy"));
+        assertEquals(Set.of(box), index.getContainers("Lucy"));
+        assertSame(box, index.getContainer(shirt));
+    }
+
+    @Test
+    public void testPackUpdatesIndex() throws PackingException {
+        index.track(truck);
+        bag.pack(laptop);
+        bag.pack(book);
+        truck.pack(bag);
+        box.pack(new Clothes("Bob", Size.LARGE, ClotheType.PANTS));
+
+        assertEquals(Set.of(shirt, laptop), index.getItems("Lucy"));
+        assertEquals(Set.of(box, bag), index.getContainers("Lucy"));
+        assertEquals(Set.of(book), index.getItems("Caleb"));
+        assertEquals(1, index.getItems("Bob").size());
+    }
+
+    @Test
+    public void testUnpackUpdatesIndex() throws PackingException {
+        box.pack(laptop);
+        index.track(truck);
+        Set<Storage> containers = index.getContainers("Lucy");
+
+        box.unpack();
+        assertEquals(Set.of(laptop), index.getItems("Lucy"));
+        assertEquals(Set.of(box), containers);
+
+        truck.unpack();
+        assertTrue(index.getItems("Lucy").isEmpty());
+        assertTrue(containers.isEmpty());
+        assertNull(index.getContainer(laptop));
+    }
+
+    @Test
+    public void testUntrack() {
+        index.track(truck);
+        index.untrack(truck);
+        assertTrue(index.getItems("Lucy").isEmpty());
+    }
+
+    @Test
+    public void testFleet() throws PackingException {
+        MovingTruck other = new MovingTruck(2000, 2500, 4000);
+        other.pack(laptop);
+        index.track(truck);
+        index.track(other);
+
+        assertEquals(Set.of(box, other), index.getContainers("Lucy"));
+    }
+
+    @Test
+    public void testLookupDoesNotAddOwner() {
+        index.track(truck);
+        int known = StringDictionary.OWNERS.size();
+        assertTrue(index.getItems("Nobody in particular").isEmpty());
+        assertTrue(index.getContainers("Nobody in particular").isEmpty());
+        assertEquals(Set.of("Lucy"), index.getOwners());
+        assertEquals(known, StringDictionary.OWNERS.size());
+    }
+}
@@ -0,0 +1,265 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class StorageCheckpointTest {
+
+    private MovingTruck truck;
+    private Box first;
+    private Box second;
+    private Book book;
+    private Laptop laptop;
+
+    private static Box bigBox(String comment) {
+        return new Box(1e5, 1e5, 1e5, Size.LARGE, comment) {
+            @Override
+            protected int getMultiplier() {
+                return 1000;
+            }
+        };
+    }
+
+    @Before
+    public void setUp() throws PackingException {
+        truck = new MovingTruck(1e9, 1e9, 1e9, Size.LARGE) {
+            @Override
+            protected int getMultiplier() {
+                return 1 << 20;
+            }
+        };
+        first = bigBox("First");
+        second = bigBox("Second");
+        book = new Book("Jane", "Tales", true);
+        laptop = new Laptop("Thomas", 2);
+        first.pack(book);
+        first.pack(laptop);
+        truck.pack(first);
+        truck.pack(second);
+    }
+
+    private static List<Packable> items(List<StorageChange> changes) {
+        List<Packable> items = new ArrayList<>();
+        for (StorageChange change : changes) {
+            items.add(change.getItem());
+        }
+        return items;
+    }
+
+    @Test
+    public void testNothingChanged() {
+        StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+        assertTrue(checkpoint.diffToCurrent().isEmpty());
+        assertTrue(checkpoint.diffTo(StorageCheckpoint.take(truck)).isEmpty());
+        assertSame(truck, checkpoint.getRoot());
+    }
+
+    @Test
+    public void testAddedRemovedAndMoved() throws PackingException {
+        StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+        Book added = new Book("Jane", "More Tales", true);
+        second.pack(added);
+        Packable removed = first.unpack();
+        second.pack(first.unpack());
+
+        StorageDiff diff = checkpoint.diffToCurrent();
+        assertEquals(List.of(added), items(diff.getAdded()));
+        assertSame(second, diff.getAdded().get(0).getTo());
+        assertNull(diff.getAdded().get(0).getFrom());
+        assertEquals(List.of(removed), items(diff.getRemoved()));
+        assertSame(first, diff.getRemoved().get(0).getFrom());
+        assertEquals(List.of(laptop), items(diff.getMoved()));
+        assertSame(first, diff.getMoved().get(0).getFrom());
+        assertSame(second, diff.getMoved().get(0).getTo());
+    }
+
+    @Test
+    public void testContainersRemovedAndAddedWhole() throws PackingException {
+        StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+        truck.clear();
+        Box third = bigBox("Third");
+        third.pack(first.unpack());
+        third.pack(new Book("Jane", "More Tales", true));
+        truck.pack(third);
+        truck.pack(new Furniture(FurnitureType.BED));
+
+        StorageDiff diff = checkpoint.diffToCurrent();
+        // The book moved into a new box; the other new book came in with it
+        assertEquals(List.of(first, second), items(diff.getRemoved()));
+        assertEquals(2, diff.getAdded().size());
+        assertSame(third, diff.getAdded().get(0).getItem());
+        assertEquals(List.of(book), items(diff.getMoved()));
+        assertSame(third, diff.getMoved().get(0).getTo());
+    }
+
+    @Test
+    public void testMovedContainerKeepsContents() throws PackingException {
+        Box outer = bigBox("Outer");
+        truck.pack(outer);
+        StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+        truck.unpack();
+        truck.unpack();
+        assertSame(first, truck.unpack());
+        outer.pack(first);
+        truck.pack(second);
+        truck.pack(outer);
+
+        StorageDiff diff = checkpoint.diffToCurrent();
+        assertEquals(List.of(first), items(diff.getMoved()));
+        assertTrue(diff.getAdded().isEmpty());
+        assertTrue(diff.getRemoved().isEmpty());
+    }
+
+    @Test
+    public void testLaterCheckpointsReuseEarlier() throws PackingException {
+        StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+        StorageCheckpoint later = StorageCheckpoint.take(truck, checkpoint);
+        second.pack(new Book("Jane", "More Tales", true));
+        StorageCheckpoint latest = StorageCheckpoint.take(truck, later);
+
+        assertTrue(checkpoint.diffTo(later).isEmpty());
+        assertEquals(1, later.diffTo(latest).getAdded().size());
+        assertEquals(1, checkpoint.diffTo(latest).getAdded().size());
+        assertTrue(latest.diffToCurrent().isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> checkpoint.diffTo(StorageCheckpoint.take(first)));
+    }
+
+    @Test
+    public void testDeepChangeFound() throws PackingException {
+        Box innermost = new Box(50, 50, 50, "Level 0");
+        Box box = innermost;
+        for (int i = 1; i < 100_000; i++) {
+            Box outer = new Box(100, 100, 100, "Level " + i);
+            outer.pack(box);
+            box = outer;
+        }
+        second.pack(box);
+        StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+        innermost.pack(new Laptop("Thomas", 3));
+
+        StorageDiff diff = checkpoint.diffToCurrent();
+        assertEquals(1, diff.getAdded().size());
+        assertSame(innermost, diff.getAdded().get(0).getTo());
+    }
+
+    /**
+     * Returns the storage object each item in the tree is in, walking the whole tree.
+     */
+    private static Map<Packable, Storage> locations(Storage root) {
+        Map<Packable, Storage> locations = new IdentityHashMap<>();
+        root.walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                if (depth > 0) {
+                    locations.put((Packable) storage, storage.getParent());
+                }
+                return true;
+            }
+
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                locations.put(item, container);
+            }
+        });
+        return locations;
+    }
+
+    private static Set<String> describe(List<StorageChange> changes) {
+        Set<String> described = new HashSet<>();
+        for (StorageChange change : changes) {
+            described.add(System.identityHashCode(change.getItem()) + " "
+                    + System.identityHashCode(change.getFrom()) + " "
+                    + System.identityHashCode(change.getTo()));
+        }
+        return described;
+    }
+
+    /**
+     * Makes a random change to the given box or the truck.
+     */
+    private static void change(Random random, MovingTruck truck, Box box, List<Box> boxes,
+                               int round) throws PackingException {
+        switch (random.nextInt(5)) {
+            case 0 -> box.pack(new Book("Jane", "Tales " + round, true));
+            case 1 -> box.unpack();
+            case 2 -> {
+                Box fresh = new Box(2000, 2000, 2000, Size.LARGE, "Box " + round);
+                boxes.add(fresh);
+                (random.nextBoolean() ? truck : box).pack(fresh);
+            }
+            case 3 -> {
+                Packable item = box.unpack();
+                if (item != null) {
+                    boxes.get(random.nextInt(boxes.size())).pack(item);
+                }
+            }
+            default -> {
+                if (random.nextInt(4) == 0) {
+                    box.clear();
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testMatchesFullComparison() throws PackingException {
+        Random random = new Random(3);
+        List<Box> boxes = new ArrayList<>(List.of(first, second));
+        for (int round = 0; round < 200; round++) {
+            Map<Packable, Storage> before = locations(truck);
+            StorageCheckpoint checkpoint = StorageCheckpoint.take(truck);
+            for (int step = 0; step < 5; step++) {
+                Box box = boxes.get(random.nextInt(boxes.size()));
+                try {
+                    change(random, truck, box, boxes, round);
+                } catch (PackingException e) {
+                    // Whatever did not fit is left out
+                }
+            }
+
+            Map<Packable, Storage> after = locations(truck);
+            List<StorageChange> added = new ArrayList<>();
+            List<StorageChange> removed = new ArrayList<>();
+            List<StorageChange> moved = new ArrayList<>();
+            for (Map.Entry<Packable, Storage> entry : before.entrySet()) {
+                Storage to = after.get(entry.getKey());
+                Storage from = entry.getValue();
+                if (to == null && (from == truck || after.containsKey(from))) {
+                    removed.add(new StorageChange(entry.getKey(), from, null));
+                } else if (to != null && to != from) {
+                    moved.add(new StorageChange(entry.getKey(), from, to));
+                }
+            }
+            for (Map.Entry<Packable, Storage> entry : after.entrySet()) {
+                Storage to = entry.getValue();
+                if (!before.containsKey(entry.getKey())
+                        && (to == truck || before.containsKey(to))) {
+                    added.add(new StorageChange(entry.getKey(), null, to));
+                }
+            }
+
+            StorageDiff diff = checkpoint.diffToCurrent();
+            assertEquals(describe(added), describe(diff.getAdded()));
+            assertEquals(describe(removed), describe(diff.getRemoved()));
+            assertEquals(describe(moved), describe(diff.getMoved()));
+        }
+    }
+}
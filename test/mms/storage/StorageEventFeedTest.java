@@ -0,0 +1,121 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.utility.Size;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class StorageEventFeedTest {
+
+    /**
+     * Subscriber that records every event it receives, requesting one batch at a time.
+     */
+    private static class RecordingSubscriber implements Flow.Subscriber<List<StorageEvent>> {
+        private final List<StorageEvent> events = new ArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private Flow.Subscription subscription;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<StorageEvent> batch) {
+            events.addAll(batch);
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            completed.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed.countDown();
+        }
+    }
+
+    @Test
+    public void testEventsPublishedInOrder() throws Exception {
+        MovingTruck truck = new MovingTruck(2000, 2500, 4000);
+        Box box = new Box(200, 200, 200, "Box");
+        Book book = new Book("Jane", "Tales", true);
+        Laptop laptop = new Laptop("Dawn", 3);
+        truck.pack(box);
+
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StorageEventFeed feed = new StorageEventFeed(4, 3);
+        feed.subscribe(subscriber);
+        truck.addListener(feed);
+
+        box.pack(book);
+        box.pack(laptop);
+        box.unpack();
+        feed.close();
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+
+        List<StorageEvent> events = subscriber.events;
+        assertEquals(3, events.size());
+        assertEquals(StorageEventType.PACKED, events.get(0).getType());
+        assertSame(book, events.get(0).getItem());
+        assertSame(laptop, events.get(1).getItem());
+        assertEquals(StorageEventType.UNPACKED, events.get(2).getType());
+        assertSame(book, events.get(2).getItem());
+        assertEquals(List.of(truck, box), events.get(0).getPath());
+        assertSame(box, events.get(0).getContainer());
+    }
+
+    @Test
+    public void testSlowSubscriberReceivesEverything() throws Exception {
+        Bag bag = new Bag(1000, 1000, 1000, Size.LARGE);
+        RecordingSubscriber subscriber = new RecordingSubscriber() {
+            @Override
+            public void onNext(List<StorageEvent> batch) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.onNext(batch);
+            }
+        };
+        StorageEventFeed feed = new StorageEventFeed(2, 2);
+        feed.subscribe(subscriber);
+        bag.addListener(feed);
+
+        for (int i = 0; i < 5; i++) {
+            bag.pack(new Book("Owner", "Book " + i, false));
+        }
+        while (bag.unpack() != null) {
+            // Unpack everything
+        }
+        feed.close();
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertEquals(10, subscriber.events.size());
+    }
+
+    @Test
+    public void testChangesAfterCloseIgnored() throws PackingException, InterruptedException {
+        Bag bag = new Bag(100, 100, 100);
+        RecordingSubscriber subscriber = new RecordingSubscriber();
+        StorageEventFeed feed = new StorageEventFeed(4, 4);
+        feed.subscribe(subscriber);
+        bag.addListener(feed);
+        feed.close();
+        bag.pack(new Book("Owner", "Title", true));
+        assertTrue(subscriber.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(subscriber.events.isEmpty());
+    }
+}
@@ -0,0 +1,127 @@
+package mms.storage;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.utility.Size;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class StorageFlightEventTest {
+
+    private Recording recording;
+
+    @Before
+    public void setUp() {
+        recording = new Recording();
+        recording.enable("mms.storage.Pack");
+        recording.enable("mms.storage.Unpack");
+        recording.enable("mms.storage.TruckUnpack");
+        recording.start();
+    }
+
+    @After
+    public void tearDown() {
+        recording.close();
+    }
+
+    private List<RecordedEvent> events(String name) throws IOException {
+        recording.stop();
+        Path file = Files.createTempFile("storage", ".jfr");
+        try {
+            recording.dump(file);
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getEventType().getName().equals(name))
+                    .collect(Collectors.toList());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPackEvents() throws PackingException, IOException {
+        Box outer = new Box(500, 500, 500, Size.LARGE, "Outer");
+        Box inner = new Box(200, 200, 200, Size.LARGE, "Inner");
+        outer.pack(inner);
+        inner.pack(new Book("Jane", "Tales", true));
+        Bag bag = new Bag(200, 200, 200, Size.SMALL);
+        assertThrows(PackingException.class, () -> bag.pack(new Furniture(FurnitureType.TABLE)));
+
+        List<RecordedEvent> events = events("mms.storage.Pack");
+        assertEquals(3, events.size());
+        RecordedEvent book = events.get(1);
+        assertEquals(Box.class.getName(), book.getClass("containerType").getName());
+        assertEquals(Book.class.getName(), book.getClass("itemType").getName());
+        assertEquals(1, book.getInt("depth"));
+        assertEquals(1, book.getInt("elementsMoved"));
+        assertEquals("packed", book.getString("outcome"));
+        assertEquals(0, events.get(0).getInt("depth"));
+
+        RecordedEvent refused = events.get(2);
+        assertEquals(Bag.class.getName(), refused.getClass("containerType").getName());
+        assertEquals("bad_item", refused.getString("outcome"));
+        assertEquals(0, refused.getInt("elementsMoved"));
+    }
+
+    @Test
+    public void testUnpackEvents() throws PackingException, IOException {
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        box.pack(new Laptop("Thomas", 2));
+        box.unpack();
+        box.unpack();
+
+        List<RecordedEvent> events = events("mms.storage.Unpack");
+        assertEquals(2, events.size());
+        assertEquals("unpacked", events.get(0).getString("outcome"));
+        assertEquals(Laptop.class.getName(), events.get(0).getClass("itemType").getName());
+        assertEquals("empty", events.get(1).getString("outcome"));
+        assertNull(events.get(1).getClass("itemType"));
+    }
+
+    @Test
+    public void testTruckUnpackEvents() throws PackingException, IOException {
+        MovingTruck truck = new MovingTruck(2000, 2000, 2000, Size.LARGE);
+        truck.pack(new Furniture(FurnitureType.TABLE));
+        truck.unpack();
+
+        List<RecordedEvent> events = events("mms.storage.TruckUnpack");
+        assertEquals(1, events.size());
+        assertEquals(MovingTruck.class.getName(),
+                events.get(0).getClass("containerType").getName());
+        assertEquals(Furniture.class.getName(), events.get(0).getClass("itemType").getName());
+        assertEquals("unpacked", events.get(0).getString("outcome"));
+    }
+
+    @Test
+    public void testElementsMovedIncludesGrowth() throws PackingException, IOException {
+        Box box = new Box(1000, 1000, 1000, Size.LARGE, "Books") {
+            @Override
+            protected int getMultiplier() {
+                return 10;
+            }
+        };
+        for (int i = 0; i < 40; i++) {
+            box.pack(new Book("Jane", "Tales", true));
+        }
+        int moved = 0;
+        for (RecordedEvent event : events("mms.storage.Pack")) {
+            moved += event.getInt("elementsMoved");
+        }
+        // Every pack moves its own item, and growing the slots copies the ones already there
+        assertTrue(moved > 40);
+    }
+}
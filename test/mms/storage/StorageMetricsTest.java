@@ -0,0 +1,148 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.utility.Size;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StorageMetricsTest {
+
+    private StorageMetrics metrics;
+
+    @Before
+    public void setUp() {
+        metrics = new StorageMetrics();
+        StorageMetrics.install(metrics);
+    }
+
+    @After
+    public void tearDown() {
+        StorageMetrics.install(null);
+    }
+
+    @Test
+    public void testCountsByType() throws PackingException {
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        Bag bag = new Bag(200, 200, 200, Size.SMALL);
+        box.pack(new Book("Jane", "Tales", true));
+        box.pack(new Book("Jane", "More Tales", true));
+        bag.pack(new Laptop("Thomas", 2));
+        box.unpack();
+
+        assertEquals(2, metrics.getPackCount(Box.class));
+        assertEquals(1, metrics.getUnpackCount(Box.class));
+        assertEquals(1, metrics.getItemCount(Box.class));
+        assertEquals(1, metrics.getPackCount(Bag.class));
+        assertEquals(0, metrics.getUnpackCount(Bag.class));
+        assertEquals(0, metrics.getPackCount(MovingTruck.class));
+        assertEquals(2, metrics.getPackLatency(Box.class).getCount());
+        assertEquals(1, metrics.getUnpackLatency(Box.class).getCount());
+    }
+
+    @Test
+    public void testEmptyUnpackNotCounted() {
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        assertNull(box.unpack());
+        assertEquals(0, metrics.getUnpackCount(Box.class));
+        assertEquals(0, metrics.getUnpackLatency(Box.class).getCount());
+    }
+
+    @Test
+    public void testClearCounted() throws PackingException {
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        box.pack(new Book("Jane", "Tales", true));
+        box.pack(new Book("Jane", "More Tales", true));
+        box.clear();
+        assertEquals(2, metrics.getUnpackCount(Box.class));
+        assertEquals(0, metrics.getItemCount(Box.class));
+    }
+
+    @Test
+    public void testRejections() throws PackingException {
+        Bag bag = new Bag(200, 200, 200, Size.SMALL);
+        assertThrows(PackingException.class, () -> bag.pack(new Furniture(FurnitureType.TABLE)));
+
+        MovingTruck truck = new MovingTruck(2000, 2000, 2000, Size.LARGE);
+        truck.pack(new Furniture(FurnitureType.TABLE));
+        assertThrows(PackingException.class, () -> truck.pack(new Laptop("Thomas", 2)));
+
+        Box box = new Box(1, 1, 1, Size.SMALL, "Tiny");
+        assertThrows(PackingException.class, () -> box.pack(new Laptop("Thomas", 2)));
+        assertThrows(PackingException.class, () -> box.pack(box));
+
+        assertEquals(1, metrics.getRejectionCount(Bag.class, RejectionReason.BAD_ITEM));
+        assertEquals(1, metrics.getRejectionCount(MovingTruck.class,
+                RejectionReason.PACKING_ORDER));
+        assertEquals(1, metrics.getRejectionCount(Box.class, RejectionReason.BAD_ITEM));
+        assertEquals(1, metrics.getRejectionCount(Box.class, RejectionReason.STORAGE_FULL));
+        assertEquals(0, metrics.getPackCount(Box.class));
+        assertEquals(1, metrics.getPackCount(MovingTruck.class));
+    }
+
+    @Test
+    public void testNothingRecordedWhenUninstalled() throws PackingException {
+        StorageMetrics.install(null);
+        assertNull(StorageMetrics.getInstalled());
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        box.pack(new Book("Jane", "Tales", true));
+        box.unpack();
+        assertEquals(0, metrics.getPackCount(Box.class));
+        assertEquals(0, metrics.getUnpackCount(Box.class));
+        assertEquals("", metrics.dump());
+    }
+
+    @Test
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(100);
+        histogram.record(100);
+        histogram.record(1000);
+        histogram.record(-5);
+
+        assertEquals(5, histogram.getCount());
+        assertEquals(1200, histogram.getSum());
+        assertEquals(2, histogram.getCount(0));
+        assertEquals(2, histogram.getCount(7));
+        assertEquals(1, histogram.getCount(10));
+        assertEquals(1, LatencyHistogram.getUpperBound(0));
+        assertEquals(128, LatencyHistogram.getUpperBound(7));
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.getUpperBound(LatencyHistogram.BUCKETS - 1));
+        assertEquals(1, histogram.getQuantile(0.2));
+        assertEquals(128, histogram.getQuantile(0.5));
+        assertEquals(1024, histogram.getQuantile(1));
+        assertEquals(0, new LatencyHistogram().getQuantile(0.5));
+    }
+
+    @Test
+    public void testDump() throws PackingException {
+        Box box = new Box(200, 200, 200, Size.LARGE, "Books");
+        box.pack(new Book("Jane", "Tales", true));
+        String dump = metrics.dump();
+
+        assertTrue(dump.contains("storage_packs_total{type=\"Box\"} 1\n"));
+        assertTrue(dump.contains("storage_unpacks_total{type=\"Box\"} 0\n"));
+        assertTrue(dump.contains(
+                "storage_rejections_total{type=\"Box\",reason=\"storage_full\"} 0\n"));
+        assertTrue(dump.contains("storage_items{type=\"Box\"} 1\n"));
+        assertTrue(dump.contains("storage_pack_latency_ns_bucket{type=\"Box\",le=\"0\"} "));
+        assertTrue(dump.contains("storage_pack_latency_ns_bucket{type=\"Box\",le=\"+Inf\"} 1\n"));
+        assertTrue(dump.contains("storage_pack_latency_ns_count{type=\"Box\"} 1\n"));
+        assertTrue(dump.contains("storage_unpack_latency_ns_count{type=\"Box\"} 0\n"));
+        assertFalse(dump.contains("Bag"));
+    }
+
+    @Test
+    public void testReadingUnusedTypeAddsNothing() {
+        assertEquals(0, metrics.getPackLatency(Bag.class).getCount());
+        assertEquals(0, metrics.getUnpackLatency(Bag.class).getCount());
+        assertEquals("", metrics.dump());
+    }
+}
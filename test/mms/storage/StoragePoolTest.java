@@ -0,0 +1,70 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.personal.Book;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StoragePoolTest {
+
+    private StoragePool<Box> pool;
+
+    @Before
+    public void setUp() {
+        pool = new StoragePool<>(() -> new Box(200, 200, 200, Size.LARGE, "Books"), 2);
+    }
+
+    @Test
+    public void testReusesReleasedStorage() throws PackingException {
+        Box box = pool.acquire();
+        box.pack(new Book("Jane", "Tales", true));
+        box.setUnpackPolicy(UnpackPolicy.lifo());
+        pool.release(box);
+        assertEquals(1, pool.getIdleCount());
+
+        Box again = pool.acquire();
+        assertSame(box, again);
+        assertEquals(0, again.getOccupiedCapacity());
+        assertSame(UnpackPolicy.fifo(), again.getUnpackPolicy());
+        assertEquals(1, pool.getCreatedCount());
+        assertEquals(0, pool.getIdleCount());
+    }
+
+    @Test
+    public void testKeepsAtMostMaxIdle() {
+        Box first = pool.acquire();
+        Box second = pool.acquire();
+        Box third = pool.acquire();
+        assertEquals(3, pool.getCreatedCount());
+        pool.release(first);
+        pool.release(second);
+        pool.release(third);
+        assertEquals(2, pool.getIdleCount());
+        // Most recently released first
+        assertSame(second, pool.acquire());
+        assertSame(first, pool.acquire());
+        assertNotSame(third, pool.acquire());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReleaseTwice() {
+        Box box = pool.acquire();
+        pool.release(box);
+        pool.release(box);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testReleasePacked() throws PackingException {
+        Box box = pool.acquire();
+        new Box(400, 400, 400, "Outer").pack(box);
+        pool.release(box);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeMaxIdle() {
+        new StoragePool<>(() -> new Bag(10, 10, 10), -1);
+    }
+}
@@ -0,0 +1,440 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Personal;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that storage operations keep their expected complexity as the number of items and the
+ * nesting depth grow. Rather than timing the operations, which is slow and depends on the
+ * machine, each test counts the work done: calls to the items themselves, items moved between
+ * slots, comparisons made by unpack policies and calls to visitors. The counts are checked
+ * against bounds that hold at every size, so anything quadratic fails at the larger sizes.
+ */
+public class StorageScalingTest {
+
+    private static final int[] ITEM_COUNTS = {1 << 11, 1 << 13, 1 << 15};
+
+    private static final int[] DEPTHS = {1 << 6, 1 << 8, 1 << 10};
+
+    /**
+     * An item that counts the calls made to it.
+     */
+    private static class CountingItem implements Packable {
+
+        /**
+         * Shared count of calls to every item made with the same array
+         */
+        private final long[] calls;
+
+        /**
+         * Side length of the item in cm
+         */
+        private final double side;
+
+        CountingItem(long[] calls, double side) {
+            this.calls = calls;
+            this.side = side;
+        }
+
+        @Override
+        public double getWidth() {
+            calls[0]++;
+            return side;
+        }
+
+        @Override
+        public double getHeight() {
+            calls[0]++;
+            return side;
+        }
+
+        @Override
+        public double getLength() {
+            calls[0]++;
+            return side;
+        }
+
+        @Override
+        public double getVolume() {
+            calls[0]++;
+            return side * side * side;
+        }
+
+        @Override
+        public String toString() {
+            calls[0]++;
+            return "Item " + side;
+        }
+    }
+
+    /**
+     * A personal item that counts the calls made to it, so it can be packed into bags.
+     */
+    private static class CountingPersonal extends Personal {
+
+        /**
+         * Shared count of calls to every item made with the same array
+         */
+        private final long[] calls;
+
+        CountingPersonal(long[] calls, double side) {
+            super("Jane", side, side, side);
+            this.calls = calls;
+        }
+
+        @Override
+        public double getWidth() {
+            calls[0]++;
+            return super.getWidth();
+        }
+
+        @Override
+        public double getHeight() {
+            calls[0]++;
+            return super.getHeight();
+        }
+
+        @Override
+        public double getLength() {
+            calls[0]++;
+            return super.getLength();
+        }
+
+        @Override
+        public double getVolume() {
+            calls[0]++;
+            return super.getWidth() * super.getHeight() * super.getLength();
+        }
+
+        @Override
+        public String toString() {
+            calls[0]++;
+            return super.toString();
+        }
+    }
+
+    private static Box bigBox() {
+        return bigBox(1e9);
+    }
+
+    private static Box bigBox(double side) {
+        return new Box(side, side, side, Size.LARGE, "Big") {
+            @Override
+            protected int getMultiplier() {
+                return 1 << 20;
+            }
+        };
+    }
+
+    private static MovingTruck bigTruck() {
+        return new MovingTruck(1e9, 1e9, 1e9, Size.LARGE) {
+            @Override
+            protected int getMultiplier() {
+                return 1 << 20;
+            }
+        };
+    }
+
+    /**
+     * Returns items of varying sizes that all count their calls in the given array.
+     */
+    private static List<Packable> items(int count, long[] calls) {
+        List<Packable> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(new CountingItem(calls, 1 + i % 97));
+        }
+        return items;
+    }
+
+    /**
+     * Returns a chain of boxes nested to the given depth, with the innermost box last.
+     */
+    private static List<Box> chain(int depth) throws PackingException {
+        List<Box> boxes = new ArrayList<>();
+        Box inner = bigBox();
+        boxes.add(inner);
+        // Build from the inside out, so each pack only has to look above a box with no parents
+        for (int i = 1; i < depth; i++) {
+            Box outer = bigBox();
+            outer.pack(inner);
+            boxes.add(0, outer);
+            inner = outer;
+        }
+        return boxes;
+    }
+
+    /**
+     * Returns a box holding boxes of 64 items each, with count items in total.
+     */
+    private static Box boxOfBoxes(int count, long[] calls) throws PackingException {
+        Box root = bigBox();
+        Box box = null;
+        List<Packable> items = items(count, calls);
+        for (int i = 0; i < count; i++) {
+            if (i % 64 == 0) {
+                box = bigBox(1e5);
+                root.pack(box);
+            }
+            box.pack(items.get(i));
+        }
+        return root;
+    }
+
+    private static int log2(int value) {
+        return 31 - Integer.numberOfLeadingZeros(value);
+    }
+
+    @Test
+    public void testPackReadsEachItemOnce() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] calls = new long[1];
+            Box box = bigBox();
+            for (Packable item : items(count, calls)) {
+                box.pack(item);
+            }
+            // Width, height, length and volume, each read once when the item is packed
+            assertEquals(4L * count, calls[0]);
+        }
+    }
+
+    @Test
+    public void testPackMovesAmortisedConstant() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            Box box = bigBox();
+            for (Packable item : items(count, new long[1])) {
+                box.pack(item);
+            }
+            // Doubling the slots each time they fill up copies fewer items than were packed
+            assertTrue(box.getMoveCount() <= count);
+        }
+    }
+
+    @Test
+    public void testUnpackIsLinearForEveryPolicy() throws PackingException {
+        UnpackPolicy[] policies = {UnpackPolicy.fifo(), UnpackPolicy.lifo(),
+            UnpackPolicy.fragileLast(), UnpackPolicy.largestVolumeFirst(),
+            UnpackPolicy.furnitureFirst()};
+        for (UnpackPolicy policy : policies) {
+            for (int count : ITEM_COUNTS) {
+                long[] calls = new long[1];
+                Box box = bigBox();
+                box.setUnpackPolicy(policy);
+                for (Packable item : items(count, calls)) {
+                    box.pack(item);
+                }
+                calls[0] = 0;
+                long moves = box.getMoveCount();
+                int unpacked = 0;
+                while (box.unpack() != null) {
+                    unpacked++;
+                }
+                assertEquals(count, unpacked);
+                // Unpacking goes by what was recorded at pack time, never the items themselves
+                assertEquals(0, calls[0]);
+                // Compacting only happens once most slots are empty, so each item moves at most
+                // once for every item unpacked
+                assertTrue(box.getMoveCount() - moves <= count);
+            }
+        }
+    }
+
+    @Test
+    public void testComparingPolicyIsLogarithmic() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] comparisons = new long[1];
+            Box box = bigBox();
+            box.setUnpackPolicy(UnpackPolicy.comparing(
+                    Comparator.comparingDouble((Packable item) -> {
+                        comparisons[0]++;
+                        return item.getVolume();
+                    })));
+            for (Packable item : items(count, new long[1])) {
+                box.pack(item);
+            }
+            while (box.unpack() != null) {
+                // Unpack everything
+            }
+            // Each comparison looks at two items; a heap makes a few per level for each item
+            assertTrue(comparisons[0] + " key reads for " + count + " items",
+                    comparisons[0] <= 8L * count * log2(count));
+        }
+    }
+
+    @Test
+    public void testMovingTruckIsLinear() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] calls = new long[1];
+            List<Packable> items = items(count / 2, calls);
+            for (int i = 0; i < count / 2; i++) {
+                items.add(new Furniture(FurnitureType.values()[i % FurnitureType.values().length]));
+            }
+            MovingTruck truck = bigTruck();
+            for (Packable item : items) {
+                truck.pack(item);
+            }
+            int unpacked = 0;
+            while (truck.unpack() != null) {
+                unpacked++;
+            }
+            assertEquals(count, unpacked);
+            assertEquals(4L * (count / 2), calls[0]);
+            assertTrue(truck.getMoveCount() <= 2L * count);
+        }
+    }
+
+    @Test
+    public void testBagsAreLinear() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] calls = new long[1];
+            Box box = bigBox();
+            List<Bag> bags = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                if (i % 4 == 0) {
+                    bags.add(new Bag(1e4, 1e4, 1e4, Size.LARGE));
+                    box.pack(bags.get(bags.size() - 1));
+                }
+                bags.get(bags.size() - 1).pack(new CountingPersonal(calls, 1 + i % 97));
+            }
+            assertEquals(4L * count, calls[0]);
+            assertEquals(count, box.getOccupiedCapacity());
+
+            calls[0] = 0;
+            long moves = 0;
+            int unpacked = 0;
+            for (Bag bag : bags) {
+                long before = bag.getMoveCount();
+                while (bag.unpack() != null) {
+                    unpacked++;
+                }
+                moves += bag.getMoveCount() - before;
+            }
+            assertEquals(count, unpacked);
+            assertEquals(0, calls[0]);
+            assertEquals(0, box.getOccupiedCapacity());
+            assertTrue(moves <= count);
+            while (box.unpack() != null) {
+                // Unpack the empty bags
+            }
+            assertEquals(0, calls[0]);
+        }
+    }
+
+    @Test
+    public void testOccupiedCapacityReadsNothing() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] calls = new long[1];
+            Box root = boxOfBoxes(count, calls);
+            calls[0] = 0;
+            assertEquals(count, root.getOccupiedCapacity());
+            assertEquals(0, calls[0]);
+        }
+    }
+
+    @Test
+    public void testWalkVisitsEachElementOnce() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] calls = new long[1];
+            Box root = boxOfBoxes(count, calls);
+            calls[0] = 0;
+            long[] visits = new long[3];
+            root.walk(new StorageVisitor() {
+                @Override
+                public boolean enterStorage(Storage storage, int depth) {
+                    visits[0]++;
+                    return true;
+                }
+
+                @Override
+                public void exitStorage(Storage storage, int depth) {
+                    visits[1]++;
+                }
+
+                @Override
+                public void visitItem(Packable item, Storage container, int depth) {
+                    visits[2]++;
+                }
+            });
+            int boxes = 1 + (count + 63) / 64;
+            assertEquals(boxes, visits[0]);
+            assertEquals(boxes, visits[1]);
+            assertEquals(count, visits[2]);
+            assertEquals(0, calls[0]);
+        }
+    }
+
+    @Test
+    public void testToStringDescribesEachItemOnce() throws PackingException {
+        for (int count : ITEM_COUNTS) {
+            long[] calls = new long[1];
+            Box root = boxOfBoxes(count, calls);
+            calls[0] = 0;
+            String text = root.toString(1);
+            assertEquals(count, calls[0]);
+            assertEquals(1 + (count + 63) / 64 + count, text.lines().count());
+        }
+    }
+
+    @Test
+    public void testNestedPackReadsItemOnce() throws PackingException {
+        for (int depth : DEPTHS) {
+            List<Box> boxes = chain(depth);
+            Box innermost = boxes.get(boxes.size() - 1);
+            long[] calls = new long[1];
+            for (Packable item : items(256, calls)) {
+                innermost.pack(item);
+            }
+            assertEquals(4L * 256, calls[0]);
+            calls[0] = 0;
+            assertEquals(256, boxes.get(0).getOccupiedCapacity());
+            while (innermost.unpack() != null) {
+                // Unpack everything
+            }
+            assertEquals(0, calls[0]);
+            assertEquals(0, boxes.get(0).getOccupiedCapacity());
+        }
+    }
+
+    @Test
+    public void testNestedToStringVisitsEachLevelOnce() throws PackingException {
+        for (int depth : DEPTHS) {
+            List<Box> boxes = chain(depth);
+            long[] calls = new long[1];
+            for (Box box : boxes) {
+                // Takes up no room, since each box is filled by the box inside it
+                box.pack(new CountingItem(calls, 0));
+            }
+            Box root = boxes.get(0);
+            long[] visits = new long[2];
+            root.walk(new StorageVisitor() {
+                @Override
+                public boolean enterStorage(Storage storage, int level) {
+                    visits[0]++;
+                    return true;
+                }
+
+                @Override
+                public void visitItem(Packable item, Storage container, int level) {
+                    visits[1]++;
+                }
+            });
+            assertEquals(depth, visits[0]);
+            assertEquals(depth, visits[1]);
+
+            // Describing the tree describes each level's item once, and nothing more
+            calls[0] = 0;
+            assertEquals(2L * depth, root.toString(0).lines().count());
+            assertEquals(depth, calls[0]);
+        }
+    }
+}
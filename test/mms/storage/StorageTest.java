@@ -0,0 +1,406 @@
+package mms.storage;
+
+import mms.exceptions.BadItemException;
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.Laptop;
+import mms.personal.Personal;
+import mms.utility.Packable;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class StorageTest {
+
+    /**
+     * Stack size given to threads running the deep nesting tests. This is far too small for a
+     * walk that recurses once per nesting level.
+     */
+    private static final long SMALL_STACK = 256 * 1024;
+
+    /**
+     * Creates a chain of boxes nested the given number of levels deep, with a laptop in the
+     * innermost box.
+     */
+    private static Box nestedBoxes(int depth) throws PackingException {
+        Box box = new Box(100, 100, 100, "Innermost");
+        box.pack(new Laptop("Owner", 1));
+        for (int i = 1; i < depth; i++) {
+            Box outer = new Box(100, 100, 100, "Level " + i);
+            outer.pack(box);
+            box = outer;
+        }
+        return box;
+    }
+
+    /**
+     * Runs the given task on a thread with a small stack, rethrowing anything it throws.
+     */
+    private static void runWithSmallStack(ThrowingRunnable task) throws Throwable {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "small-stack", SMALL_STACK);
+        thread.start();
+        thread.join();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Throwable;
+    }
+
+    @Test
+    public void testToStringLevel() throws PackingException {
+        Box outer = new Box(400, 280, 250, "Materials");
+        Bag inner = new Bag(100, 50, 100);
+        inner.pack(new Book("Jane", "Tales", true));
+        outer.pack(inner);
+        outer.pack(new Laptop("Dawn", 3));
+
+        String expected = String.join(System.lineSeparator(),
+                "\tBox (400.00, 280.00, 250.00) MEDIUM",
+                "\t\tBag (100.00, 50.00, 100.00) MEDIUM",
+                "\t\t\tBook (Jane) Title: Tales (Fiction)",
+                "\t\tLaptop (Dawn) - 3");
+        assertEquals(expected, outer.toString(1));
+    }
+
+    @Test
+    public void testToStringLevelEmpty() {
+        assertEquals("Bag (10.00, 20.00, 30.00) MEDIUM", new Bag(10, 20, 30).toString(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testToStringNegativeLevel() {
+        new Bag(10, 20, 30).toString(-1);
+    }
+
+    @Test
+    public void testWalkVisitsInPackingOrder() throws PackingException {
+        Box outer = new Box(400, 280, 250, "Outer");
+        Box inner = new Box(100, 100, 100, "Inner");
+        Book book = new Book("Jane", "Tales", true);
+        Laptop laptop = new Laptop("Dawn", 3);
+        inner.pack(book);
+        outer.pack(inner);
+        outer.pack(laptop);
+
+        StringBuilder visits = new StringBuilder();
+        outer.walk(new StorageVisitor() {
+            @Override
+            public boolean enterStorage(Storage storage, int depth) {
+                visits.append(" enter ").append(((Box) storage).getComment()).append(depth);
+                return true;
+            }
+
+            @Override
+            public void exitStorage(Storage storage, int depth) {
+                visits.append(" exit ").append(((Box) storage).getComment()).append(depth);
+            }
+
+            @Override
+            public void visitItem(Packable item, Storage container, int depth) {
+                visits.append(" item ").append(item.getClass().getSimpleName()).append(depth);
+            }
+        });
+        assertEquals("enter Outer0 enter Inner1 item Book2 exit Inner1 item Laptop1 exit Outer0",
+                visits.toString().trim());
+    }
+
+    @Test
+    public void testBagRefusesNull() throws PackingException {
+        Bag bag = new Bag(10, 10, 10);
+        try {
+            bag.pack(null);
+            fail("Expected BadItemException");
+        } catch (BadItemException e) {
+            assertEquals("Not an instance of the personal class", e.getMessage());
+        }
+        assertEquals(0, bag.getOccupiedCapacity());
+    }
+
+    @Test(expected = BadItemException.class)
+    public void testPackIntoItself() throws PackingException {
+        Box box = new Box(100, 100, 100, "Box");
+        box.pack(box);
+    }
+
+    @Test(expected = BadItemException.class)
+    public void testPackIntoDescendant() throws PackingException {
+        Box outer = new Box(100, 100, 100, "Outer");
+        Box middle = new Box(100, 100, 100, "Middle");
+        Box inner = new Box(100, 100, 100, "Inner");
+        outer.pack(middle);
+        middle.pack(inner);
+        inner.pack(outer);
+    }
+
+    @Test(expected = BadItemException.class)
+    public void testPackAlreadyPacked() throws PackingException {
+        Box box = new Box(100, 100, 100, "Box");
+        new Box(100, 100, 100, "First").pack(box);
+        new Box(100, 100, 100, "Second").pack(box);
+    }
+
+    @Test
+    public void testParentLinks() throws PackingException {
+        Box outer = new Box(100, 100, 100, "Outer");
+        Box inner = new Box(100, 100, 100, "Inner");
+        assertNull(inner.getParent());
+        outer.pack(inner);
+        assertSame(outer, inner.getParent());
+        outer.unpack();
+        assertNull(inner.getParent());
+        // Once unpacked, the box can be packed somewhere else
+        Box other = new Box(100, 100, 100, "Other");
+        other.pack(inner);
+        assertSame(other, inner.getParent());
+    }
+
+    @Test
+    public void testOccupiedCapacityPropagatesUpwards() throws PackingException {
+        MovingTruck truck = new MovingTruck(500, 1500, 2000);
+        Box outer = new Box(400, 280, 250, "Outer");
+        Bag inner = new Bag(100, 50, 100);
+        truck.pack(outer);
+        outer.pack(inner);
+        inner.pack(new Book("Jane", "Tales", true));
+        inner.pack(new Laptop("Dawn", 3));
+        outer.pack(new Laptop("Tom", 1));
+
+        assertEquals(2, inner.getOccupiedCapacity());
+        assertEquals(3, outer.getOccupiedCapacity());
+        assertEquals(3, truck.getOccupiedCapacity());
+
+        inner.unpack();
+        assertEquals(2, truck.getOccupiedCapacity());
+        outer.unpack();
+        assertEquals(1, outer.getOccupiedCapacity());
+        assertEquals(1, truck.getOccupiedCapacity());
+        assertEquals(1, inner.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testFragileAfterUnpack() throws PackingException {
+        Box box = new Box(200, 200, 200, "Box");
+        box.pack(new Furniture(FurnitureType.TELEVISION));
+        box.pack(new Book("Jane", "Tales", true));
+        assertTrue(box.isFragile());
+        box.unpack();
+        assertFalse(box.isFragile());
+    }
+
+    @Test
+    public void testToStringFollowsFragility() throws PackingException {
+        Box box = new Box(200, 200, 200, "Box");
+        String plain = box.toString();
+        assertSame(plain, box.toString());
+        box.pack(new Laptop("Owner", 1));
+        assertEquals("Box (200.00, 200.00, 200.00) MEDIUM - Box FRAGILE", box.toString());
+        box.unpack();
+        assertEquals(plain, box.toString());
+    }
+
+    @Test
+    public void testClear() throws PackingException {
+        MovingTruck truck = new MovingTruck(2000, 2500, 4000);
+        Box box = new Box(200, 200, 200, "Box");
+        Bag bag = new Bag(100, 100, 100);
+        bag.pack(new Laptop("Thomas", 2));
+        box.pack(bag);
+        box.pack(new Furniture(FurnitureType.TELEVISION));
+        truck.pack(box);
+        assertEquals(2, truck.getOccupiedCapacity());
+
+        box.clear();
+        assertEquals(0, box.getOccupiedCapacity());
+        assertEquals(0, truck.getOccupiedCapacity());
+        assertFalse(box.isFragile());
+        assertNull(box.unpack());
+        assertNull(bag.getParent());
+        assertEquals(1, bag.getOccupiedCapacity());
+
+        // The cleared box has all its space back, and the bag can be packed elsewhere
+        for (int i = 0; i < 10; i++) {
+            box.pack(new Book("Jane", "Tales " + i, true));
+        }
+        truck.pack(new Box(200, 200, 200, "Other"));
+        ((Box) truck.getElements().get(1)).pack(bag);
+        assertEquals(11, truck.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testClearTellsListeners() throws PackingException {
+        Box box = new Box(200, 200, 200, "Box");
+        box.pack(new Book("Jane", "First", true));
+        box.pack(new Book("Jane", "Second", true));
+        box.setUnpackPolicy(UnpackPolicy.lifo());
+        StringBuilder events = new StringBuilder();
+        box.addListener(new StorageListener() {
+            @Override
+            public void itemPacked(Storage container, Packable item) {
+            }
+
+            @Override
+            public void itemUnpacked(Storage container, Packable item) {
+                events.append(((Book) item).getTitle()).append(';');
+            }
+        });
+        box.clear();
+        assertEquals("Second;First;", events.toString());
+        assertEquals(0, box.getOccupiedCapacity());
+    }
+
+    @Test
+    public void testReset() throws PackingException {
+        MovingTruck truck = new MovingTruck(2000, 2500, 4000);
+        OwnerIndex index = new OwnerIndex();
+        index.track(truck);
+        truck.pack(new Laptop("Thomas", 2));
+        truck.setUnpackPolicy(UnpackPolicy.fifo());
+        truck.reset();
+        assertEquals(0, truck.getOccupiedCapacity());
+        assertSame(UnpackPolicy.furnitureFirst(), truck.getUnpackPolicy());
+        // The index was told about the items taken out, and stopped listening afterwards
+        assertEquals(0, index.getItems("Thomas").size());
+        truck.pack(new Laptop("Thomas", 3));
+        assertEquals(0, index.getItems("Thomas").size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testResetPacked() throws PackingException {
+        Box outer = new Box(200, 200, 200, "Outer");
+        Box inner = new Box(100, 100, 100, "Inner");
+        outer.pack(inner);
+        inner.reset();
+    }
+
+    @Test
+    public void testUnpackFreesRecordedDimensions() throws PackingException {
+        ResizableItem item = new ResizableItem();
+        Box box = new Box(21, 21, 100, "Resizable");
+        box.pack(item);
+        try {
+            box.pack(new Book("Owner", "Title", false));
+            fail("Expected the box to be full");
+        } catch (PackingException expected) {
+            // Both width and height would overflow
+        }
+        // Space freed on unpack is what was taken on pack, even if the item changed since
+        item.resize(1, 1, 1);
+        assertSame(item, box.unpack());
+        box.pack(new Book("Owner", "Title", false));
+    }
+
+    @Test
+    public void testTotalsResetWhenEmpty() throws PackingException {
+        Box box = new Box(1, 1, 100, "Tenths");
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 10; i++) {
+                box.pack(new ResizableItem(0.1, 0.1, 0.1));
+            }
+            while (box.unpack() != null) {
+                // Empty the box
+            }
+        }
+        box.pack(new ResizableItem(1, 1, 1));
+    }
+
+    /**
+     * A personal item whose dimensions can be changed after it is packed.
+     */
+    private static class ResizableItem extends Personal {
+        ResizableItem() {
+            super("Owner", 20, 20, 5);
+        }
+
+        ResizableItem(double width, double height, double length) {
+            super("Owner", width, height, length);
+        }
+
+        void resize(double width, double height, double length) {
+            setDimensions(width, height, length);
+        }
+    }
+
+    @Test
+    public void testDeepNestingWalk() throws Throwable {
+        int depth = 100_000;
+        Box root = nestedBoxes(depth);
+        runWithSmallStack(() -> {
+            int[] counts = new int[3];
+            root.walk(new StorageVisitor() {
+                @Override
+                public boolean enterStorage(Storage storage, int level) {
+                    counts[0]++;
+                    return true;
+                }
+
+                @Override
+                public void exitStorage(Storage storage, int level) {
+                    counts[1]++;
+                }
+
+                @Override
+                public void visitItem(Packable item, Storage container, int level) {
+                    counts[2] = level;
+                }
+            });
+            assertEquals(depth, counts[0]);
+            assertEquals(depth, counts[1]);
+            assertEquals(depth, counts[2]);
+        });
+    }
+
+    @Test
+    public void testDeepNestingToString() throws Throwable {
+        // The output itself grows with depth squared (one tab per level per line), so a
+        // smaller depth is used than for the other deep nesting tests
+        int depth = 3000;
+        Box root = nestedBoxes(depth);
+        runWithSmallStack(() -> {
+            String[] lines = root.toString(0).split(System.lineSeparator());
+            assertEquals(depth + 1, lines.length);
+            assertEquals("\t".repeat(depth) + "Laptop (Owner) - 1", lines[depth]);
+        });
+    }
+
+    @Test
+    public void testDeepNestingWalkIsLinear() throws Throwable {
+        Box small = nestedBoxes(25_000);
+        Box large = nestedBoxes(100_000);
+        runWithSmallStack(() -> {
+            // Warm up so that the comparison is not dominated by compilation
+            StorageVisitor visitor = new StorageVisitor() {
+            };
+            for (int i = 0; i < 5; i++) {
+                small.walk(visitor);
+                large.walk(visitor);
+            }
+            long smallTime = Long.MAX_VALUE;
+            long largeTime = Long.MAX_VALUE;
+            for (int i = 0; i < 5; i++) {
+                long start = System.nanoTime();
+                small.walk(visitor);
+                smallTime = Math.min(smallTime, System.nanoTime() - start);
+                start = System.nanoTime();
+                large.walk(visitor);
+                largeTime = Math.min(largeTime, System.nanoTime() - start);
+            }
+            // Four times the depth; a quadratic walk would take around sixteen times as long
+            assertTrue("Walk time grew faster than linearly: " + smallTime + "ns vs "
+                    + largeTime + "ns", largeTime < smallTime * 10);
+        });
+    }
+}
@@ -0,0 +1,140 @@
+package mms.storage;
+
+import mms.exceptions.PackingException;
+import mms.furniture.Furniture;
+import mms.furniture.FurnitureType;
+import mms.personal.Book;
+import mms.personal.ClotheType;
+import mms.personal.Clothes;
+import mms.personal.Laptop;
+import mms.utility.Packable;
+import mms.utility.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class UnpackPolicyTest {
+
+    private Box box;
+    private Book book;
+    private Laptop laptop;
+    private Clothes pants;
+    private Furniture chair;
+
+    @Before
+    public void setUp() throws PackingException {
+        box = new Box(1000, 1000, 1000, Size.LARGE, "Box");
+        book = new Book("Jane", "Tales", true);
+        laptop = new Laptop("Dawn", 3);
+        pants = new Clothes("Bob", Size.LARGE, ClotheType.PANTS);
+        chair = new Furniture(FurnitureType.CHAIR);
+        box.pack(laptop);
+        box.pack(book);
+        box.pack(chair);
+        box.pack(pants);
+    }
+
+    private List<Packable> unpackAll(Storage storage) {
+        List<Packable> result = new ArrayList<>();
+        Packable item;
+        while ((item = storage.unpack()) != null) {
+            result.add(item);
+        }
+        return result;
+    }
+
+    @Test
+    public void testDefaultFifo() {
+        assertSame(UnpackPolicy.fifo(), box.getUnpackPolicy());
+        assertEquals(List.of(laptop, book, chair, pants), unpackAll(box));
+    }
+
+    @Test
+    public void testLifo() {
+        box.setUnpackPolicy(UnpackPolicy.lifo());
+        assertEquals(List.of(pants, chair, book, laptop), unpackAll(box));
+    }
+
+    @Test
+    public void testFragileLast() throws PackingException {
+        Box fragileBox = new Box(100, 100, 100, "Fragile");
+        fragileBox.pack(new Laptop("Owner", 1));
+        box.pack(fragileBox);
+        box.setUnpackPolicy(UnpackPolicy.fragileLast());
+        assertEquals(List.of(book, chair, pants, laptop, fragileBox), unpackAll(box));
+    }
+
+    @Test
+    public void testLargestVolumeFirst() {
+        box.setUnpackPolicy(UnpackPolicy.largestVolumeFirst());
+        assertEquals(List.of(chair, pants, book, laptop), unpackAll(box));
+    }
+
+    @Test
+    public void testComparing() {
+        box.setUnpackPolicy(UnpackPolicy.comparing(
+                Comparator.comparing(item -> item.getClass().getSimpleName())));
+        assertEquals(List.of(book, pants, chair, laptop), unpackAll(box));
+    }
+
+    @Test
+    public void testPolicyChangeKeepsPackedItems() throws PackingException {
+        box.setUnpackPolicy(UnpackPolicy.lifo());
+        assertSame(pants, box.unpack());
+        box.setUnpackPolicy(UnpackPolicy.fifo());
+        assertSame(laptop, box.unpack());
+        assertEquals(List.of(book, chair), box.getElements());
+    }
+
+    @Test
+    public void testTruckFurnitureFirst() throws PackingException {
+        MovingTruck truck = new MovingTruck(2000, 2500, 4000);
+        Furniture bed = new Furniture(FurnitureType.BED);
+        Furniture desk = new Furniture(FurnitureType.DESK);
+        truck.pack(book);
+        truck.pack(laptop);
+        truck.pack(bed);
+        truck.pack(desk);
+
+        assertSame(bed, truck.unpack());
+        assertEquals(List.of(book, laptop, desk), truck.getElements());
+        assertEquals(List.of(desk, laptop, book), unpackAll(truck));
+    }
+
+    @Test
+    public void testHeapMatchesSortedOrder() throws PackingException {
+        // Interleave packing and unpacking so the heap has to cope with slots being reused
+        // and the contents being compacted
+        Random random = new Random(2002);
+        Box clothesBox = new Box(1e9, 1e9, 1e9, Size.LARGE, "Clothes");
+        clothesBox.setUnpackPolicy(UnpackPolicy.largestVolumeFirst());
+        List<Packable> expected = new ArrayList<>();
+        Size[] sizes = Size.values();
+        for (int round = 0; round < 200; round++) {
+            int packs = random.nextInt(4);
+            for (int i = 0; i < packs && expected.size() < clothesBox.getCapacity(); i++) {
+                Clothes clothes = new Clothes("Owner", sizes[random.nextInt(sizes.length)],
+                        ClotheType.SOCKS);
+                clothesBox.pack(clothes);
+                expected.add(clothes);
+            }
+            if (random.nextBoolean()) {
+                Packable largest = null;
+                for (Packable item : expected) {
+                    if (largest == null || item.getVolume() > largest.getVolume()) {
+                        largest = item;
+                    }
+                }
+                assertSame(largest, clothesBox.unpack());
+                expected.remove(largest);
+            }
+        }
+        assertEquals(expected, clothesBox.getElements());
+    }
+}
@@ -0,0 +1,94 @@
+package mms.utility;
+
+import mms.personal.Book;
+import mms.personal.Laptop;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.*;
+
+public class StringDictionaryTest {
+
+    private StringDictionary dictionary;
+
+    @Before
+    public void setUp() {
+        dictionary = new StringDictionary();
+    }
+
+    @Test
+    public void testIdsInOrder() {
+        assertEquals(0, dictionary.idOf("Jane"));
+        assertEquals(1, dictionary.idOf("Thomas"));
+        assertEquals(0, dictionary.idOf(new String("Jane")));
+        assertEquals(2, dictionary.size());
+        assertEquals("Thomas", dictionary.get(1));
+    }
+
+    @Test
+    public void testFindDoesNotAdd() {
+        assertEquals(-1, dictionary.find("Jane"));
+        assertEquals(-1, dictionary.find(null));
+        assertEquals(0, dictionary.size());
+        dictionary.idOf("Jane");
+        assertEquals(0, dictionary.find("Jane"));
+    }
+
+    @Test
+    public void testGrows() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, dictionary.idOf("String " + i));
+        }
+        assertEquals("String 999", dictionary.get(999));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testGetUnknownId() {
+        dictionary.get(0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNull() {
+        dictionary.idOf(null);
+    }
+
+    @Test
+    public void testConcurrentAdds() throws InterruptedException {
+        Set<String> seen = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    int id = dictionary.idOf("String " + i);
+                    seen.add(id + "=" + dictionary.get(id));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(2000, dictionary.size());
+        assertEquals(2000, seen.size());
+        for (int i = 0; i < 2000; i++) {
+            assertEquals(dictionary.get(dictionary.find("String " + i)), "String " + i);
+        }
+    }
+
+    @Test
+    public void testItemsShareOwners() {
+        Book first = new Book(new String("Jane"), new String("Tales"), true);
+        Book second = new Book(new String("Jane"), new String("Tales"), false);
+        Laptop laptop = new Laptop(new String("Jane"), 1);
+        assertSame(first.getOwner(), second.getOwner());
+        assertSame(first.getOwner(), laptop.getOwner());
+        assertEquals(first.getOwnerId(), laptop.getOwnerId());
+        assertEquals("Jane", StringDictionary.OWNERS.get(laptop.getOwnerId()));
+    }
+}